@@ -0,0 +1,40 @@
+import java.net.SocketAddress;
+import java.util.Arrays;
+
+/**
+ * Reply addresses of drones or zones, indexed by id.
+ * Lookups read a plain array without locking or boxing the id, and an address is only
+ * written when it changes, so the per-message cost of keeping the book current is a compare.
+ */
+public class AddressBook {
+    private volatile SocketAddress[] addresses = new SocketAddress[16];
+
+    /**
+     * Returns the address recorded for an id.
+     *
+     * @param id the drone or zone id
+     * @return the address, or null if none has been recorded
+     */
+    public SocketAddress get(int id) {
+        SocketAddress[] current = addresses;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * Records the address for an id, if it differs from the one already recorded.
+     *
+     * @param id the drone or zone id
+     * @param address the address
+     */
+    public void put(int id, SocketAddress address) {
+        if (id < 0 || address.equals(get(id))) return;
+        synchronized (this) {
+            SocketAddress[] current = addresses;
+            if (id >= current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, id + 1));
+            }
+            current[id] = address;
+            addresses = current; // Publish the write
+        }
+    }
+}
@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+/**
+ * Solves the assignment problem: matches drones to fires so that the total cost of the matched
+ * pairs (travel time, for the Scheduler) is as small as possible.
+ *
+ * Uses Bertsekas' auction algorithm with ε-scaling. Unassigned rows bid for their cheapest column,
+ * raising its price by the gap to their second choice plus ε and evicting the previous holder, until
+ * every row holds a column. Each phase starts from the prices left by the previous one with a smaller
+ * ε, so the early phases settle the rough layout in a few bids and the last phase only fixes the
+ * details. When the last phase ends the total cost is within n·ε of the optimum; the final ε is picked
+ * so that gap is below {@link #TOLERANCE}, which for integer costs means the result is optimal.
+ *
+ * Rectangular problems are solved on their shorter side (after transposing if there are more rows
+ * than columns), so every entry of the shorter side is matched and the surplus of the longer side
+ * is left unmatched. When the longer side is very long, the columns no optimal assignment could
+ * use are dropped first. A problem that is still much wider than tall is solved from its rows
+ * alone by shortest augmenting paths (the Hungarian method with potentials), which is exact and
+ * costs at most rows² × columns; padding it to square for the auction would cost about its long
+ * side squared. Problems closer to square are padded with zero-cost rows and auctioned.
+ */
+public final class AssignmentSolver {
+    /**
+     * The most the returned total cost may exceed the optimum by, in cost units.
+     */
+    public static final double TOLERANCE = 1e-3;
+
+    /**
+     * How much ε shrinks between phases.
+     */
+    private static final double EPSILON_FACTOR = 7;
+
+    /**
+     * A problem with rows² up to this many times its column count is solved without padding.
+     */
+    private static final int NARROW_FACTOR = 8;
+
+    private AssignmentSolver() {
+    }
+
+    /**
+     * Returns a minimum-cost assignment.
+     *
+     * @param cost the cost of matching each row to each column; every row must have the same length
+     *             and every entry must be finite
+     * @return for each row the column it is matched to, or -1 if it is left unmatched
+     */
+    public static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        if (rows == 0) return new int[0];
+        int columns = cost[0].length;
+        if (columns == 0) {
+            int[] unmatched = new int[rows];
+            Arrays.fill(unmatched, -1);
+            return unmatched;
+        }
+        if (rows <= columns) return solveWide(cost);
+
+        double[][] transposed = new double[columns][rows];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) transposed[column][row] = cost[row][column];
+        }
+        int[] columnToRow = solveWide(transposed);
+        int[] rowToColumn = new int[rows];
+        Arrays.fill(rowToColumn, -1);
+        for (int column = 0; column < columns; column++) rowToColumn[columnToRow[column]] = column;
+        return rowToColumn;
+    }
+
+    /**
+     * Returns the total cost of an assignment.
+     *
+     * @param cost the cost matrix
+     * @param assignment the column matched to each row, or -1
+     * @return the sum of the matched costs
+     */
+    public static double totalCost(double[][] cost, int[] assignment) {
+        double total = 0;
+        for (int row = 0; row < assignment.length; row++) {
+            if (assignment[row] >= 0) total += cost[row][assignment[row]];
+        }
+        return total;
+    }
+
+    /**
+     * Solves a problem with no more rows than columns.
+     *
+     * With n rows, an optimal assignment only uses columns that are among some row's n cheapest:
+     * a row matched outside its n cheapest would find one of them free and could swap to it.
+     * When there are far more columns than rows, the problem is cut down to those columns first.
+     * What is left is solved from the rows alone when that is cheap, and padded and auctioned
+     * otherwise: augmenting paths cost up to rows² × columns and slow down most on ties, which the
+     * auction handles well, while the padded auction costs about columns² whatever the row count.
+     */
+    private static int[] solveWide(double[][] cost) {
+        int rows = cost.length;
+        int columns = cost[0].length;
+        if ((long) rows * rows < columns) return solveAmongCandidates(cost);
+        return solveKept(cost);
+    }
+
+    /**
+     * Solves a problem with far more columns than rows over the columns some row ranks among its
+     * cheapest. Columns tied with a row's n-th cheapest are kept too, which only adds candidates.
+     */
+    private static int[] solveAmongCandidates(double[][] cost) {
+        int rows = cost.length;
+        int columns = cost[0].length;
+        boolean[] candidate = new boolean[columns];
+        double[] sorted = new double[columns];
+        for (double[] costs : cost) {
+            System.arraycopy(costs, 0, sorted, 0, columns);
+            Arrays.sort(sorted);
+            double threshold = sorted[rows - 1];
+            for (int column = 0; column < columns; column++) {
+                if (costs[column] <= threshold) candidate[column] = true;
+            }
+        }
+        int[] kept = new int[columns];
+        int keptCount = 0;
+        for (int column = 0; column < columns; column++) {
+            if (candidate[column]) kept[keptCount++] = column;
+        }
+        double[][] reduced = new double[rows][keptCount];
+        for (int row = 0; row < rows; row++) {
+            for (int i = 0; i < keptCount; i++) reduced[row][i] = cost[row][kept[i]];
+        }
+        int[] assignment = solveKept(reduced);
+        int[] result = new int[rows];
+        for (int row = 0; row < rows; row++) result[row] = kept[assignment[row]];
+        return result;
+    }
+
+    /**
+     * Solves a problem with no more rows than columns whose columns are all worth considering.
+     */
+    private static int[] solveKept(double[][] cost) {
+        int rows = cost.length;
+        int columns = cost[0].length;
+        if ((long) rows * rows <= (long) NARROW_FACTOR * columns) return solveNarrow(cost);
+        return Arrays.copyOf(solveSquare(pad(cost, columns)), rows);
+    }
+
+    /**
+     * Solves a problem with no more rows than columns by adding one row at a time along a shortest
+     * augmenting path, keeping a potential per row and column so every reduced cost stays non-negative.
+     * The work is O(rows² × columns), however many more columns there are than rows.
+     *
+     * @param cost the cost matrix, with no more rows than columns
+     * @return the column matched to each row
+     */
+    static int[] solveNarrow(double[][] cost) {
+        int rows = cost.length;
+        int columns = cost[0].length;
+        // Indexed from 1; column 0 is where the row being added starts its path
+        double[] rowPotential = new double[rows + 1];
+        double[] columnPotential = new double[columns + 1];
+        int[] holder = new int[columns + 1]; // The row holding each column, or 0
+        int[] previous = new int[columns + 1]; // The column before each one on the path
+        double[] slack = new double[columns + 1];
+        boolean[] reached = new boolean[columns + 1];
+        for (int row = 1; row <= rows; row++) {
+            holder[0] = row;
+            int column = 0;
+            Arrays.fill(slack, Double.POSITIVE_INFINITY);
+            Arrays.fill(reached, false);
+            do {
+                reached[column] = true;
+                int from = holder[column];
+                double[] costs = cost[from - 1];
+                double delta = Double.POSITIVE_INFINITY;
+                int next = 0;
+                for (int j = 1; j <= columns; j++) {
+                    if (reached[j]) continue;
+                    double reduced = costs[j - 1] - rowPotential[from] - columnPotential[j];
+                    if (reduced < slack[j]) {
+                        slack[j] = reduced;
+                        previous[j] = column;
+                    }
+                    if (slack[j] < delta) {
+                        delta = slack[j];
+                        next = j;
+                    }
+                }
+                for (int j = 0; j <= columns; j++) {
+                    if (reached[j]) {
+                        rowPotential[holder[j]] += delta;
+                        columnPotential[j] -= delta;
+                    } else {
+                        slack[j] -= delta;
+                    }
+                }
+                column = next;
+            } while (holder[column] != 0);
+            // Shift every column along the path to the row before it
+            do {
+                int before = previous[column];
+                holder[column] = holder[before];
+                column = before;
+            } while (column != 0);
+        }
+        int[] assignment = new int[rows];
+        for (int column = 1; column <= columns; column++) {
+            if (holder[column] != 0) assignment[holder[column] - 1] = column - 1;
+        }
+        return assignment;
+    }
+
+    /**
+     * Adds zero-cost rows until there are as many rows as columns. The added rows share one array.
+     */
+    private static double[][] pad(double[][] cost, int size) {
+        if (cost.length == size) return cost;
+        double[][] square = Arrays.copyOf(cost, size);
+        double[] zeros = new double[size];
+        for (int row = cost.length; row < size; row++) square[row] = zeros;
+        return square;
+    }
+
+    /**
+     * Solves a square problem.
+     *
+     * @return the column matched to each row
+     */
+    private static int[] solveSquare(double[][] cost) {
+        int n = cost.length;
+        double lowest = Double.POSITIVE_INFINITY;
+        double highest = Double.NEGATIVE_INFINITY;
+        for (double[] row : cost) {
+            for (double entry : row) {
+                lowest = Math.min(lowest, entry);
+                highest = Math.max(highest, entry);
+            }
+        }
+        double finalEpsilon = TOLERANCE / (n + 1);
+        double epsilon = Math.max((highest - lowest) / EPSILON_FACTOR, finalEpsilon);
+
+        double[] price = new double[n];
+        int[] owner = new int[n];
+        int[] assignment = new int[n];
+        int[] unassigned = new int[n]; // Circular queue of rows waiting to bid
+        while (true) {
+            Arrays.fill(owner, -1);
+            Arrays.fill(assignment, -1);
+            for (int row = 0; row < n; row++) unassigned[row] = row;
+            int head = 0;
+            int waiting = n;
+            while (waiting > 0) {
+                int row = unassigned[head];
+                head = head + 1 == n ? 0 : head + 1;
+                waiting--;
+
+                // Find the cheapest and second-cheapest columns at the current prices
+                double[] costs = cost[row];
+                double best = Double.POSITIVE_INFINITY;
+                double secondBest = Double.POSITIVE_INFINITY;
+                int bestColumn = 0;
+                for (int column = 0; column < n; column++) {
+                    double value = costs[column] + price[column];
+                    if (value < secondBest) {
+                        if (value < best) {
+                            secondBest = best;
+                            best = value;
+                            bestColumn = column;
+                        } else {
+                            secondBest = value;
+                        }
+                    }
+                }
+                double gap = secondBest == Double.POSITIVE_INFINITY ? 0 : secondBest - best;
+                price[bestColumn] += gap + epsilon;
+
+                int evicted = owner[bestColumn];
+                owner[bestColumn] = row;
+                assignment[row] = bestColumn;
+                if (evicted >= 0) {
+                    assignment[evicted] = -1;
+                    int tail = head + waiting;
+                    unassigned[tail >= n ? tail - n : tail] = evicted;
+                    waiting++;
+                }
+            }
+            if (epsilon <= finalEpsilon) return assignment;
+            epsilon = Math.max(epsilon / EPSILON_FACTOR, finalEpsilon);
+        }
+    }
+}
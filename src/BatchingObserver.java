@@ -0,0 +1,122 @@
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Passes updates on to another observer in batches, from a thread of its own.
+ *
+ * The simulation's threads only record an update and return, so they never wait on a slow
+ * observer such as the map, which locks against Swing's painting. A flusher thread delivers
+ * everything recorded every flush interval. A drone that moves several times between flushes is
+ * delivered once, with its latest position or flight leg; fire event changes are all delivered,
+ * in order.
+ */
+public class BatchingObserver implements SimulationObserver, AutoCloseable {
+    /**
+     * A drone's latest update.
+     */
+    private static final class DroneUpdate {
+        final int x, y;
+        final DroneSubsystem.DroneState state;
+        final int remainingAgent;
+        final double batteryLife;
+        final FlightLeg leg; // Null for a position
+
+        DroneUpdate(int x, int y, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife, FlightLeg leg) {
+            this.x = x;
+            this.y = y;
+            this.state = state;
+            this.remainingAgent = remainingAgent;
+            this.batteryLife = batteryLife;
+            this.leg = leg;
+        }
+    }
+
+    private final SimulationObserver delegate;
+    private final long flushIntervalMillis;
+    private final AtomicReference<List<Zone>> zones = new AtomicReference<>(); // Zones not yet delivered
+    private final ConcurrentLinkedQueue<FireEvent> fireEvents = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Integer, DroneUpdate> drones = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock(); // One flush at a time keeps the delegate's updates in order
+    private volatile boolean closed = false;
+
+    /**
+     * Constructs an observer and starts its flusher thread.
+     *
+     * @param delegate the observer to pass updates on to
+     * @param flushIntervalMillis how often to deliver, in wall-clock milliseconds
+     */
+    public BatchingObserver(SimulationObserver delegate, long flushIntervalMillis) {
+        this.delegate = delegate;
+        this.flushIntervalMillis = flushIntervalMillis;
+        SimulationThreads.startDaemon("Observer Flusher", this::flushUntilClosed);
+    }
+
+    @Override
+    public void zonesLoaded(List<Zone> zones) {
+        this.zones.set(zones);
+    }
+
+    @Override
+    public void droneUpdated(int droneId, int x, int y, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+        drones.put(droneId, new DroneUpdate(x, y, state, remainingAgent, batteryLife, null));
+    }
+
+    @Override
+    public void flightLegStarted(int droneId, FlightLeg leg, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+        drones.put(droneId, new DroneUpdate(0, 0, state, remainingAgent, batteryLife, leg));
+    }
+
+    @Override
+    public void fireEventUpdated(FireEvent event) {
+        fireEvents.add(event);
+    }
+
+    /**
+     * Delivers everything recorded so far.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<Zone> loaded = zones.getAndSet(null);
+            if (loaded != null) delegate.zonesLoaded(loaded);
+            FireEvent event;
+            while ((event = fireEvents.poll()) != null) delegate.fireEventUpdated(event);
+            for (Integer droneId : drones.keySet()) {
+                // A newer update recorded after the remove is delivered by the next flush
+                DroneUpdate update = drones.remove(droneId);
+                if (update == null) continue;
+                if (update.leg != null) {
+                    delegate.flightLegStarted(droneId, update.leg, update.state, update.remainingAgent, update.batteryLife);
+                } else {
+                    delegate.droneUpdated(droneId, update.x, update.y, update.state, update.remainingAgent, update.batteryLife);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the flusher thread after delivering everything recorded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flush();
+    }
+
+    private void flushUntilClosed() {
+        while (!closed) {
+            try {
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            flush();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of equally sized byte buffers, so the RPC hot path can encode and receive
+ * datagrams without allocating. When the pool is empty a new buffer is allocated; when it is
+ * full a released buffer is left to the garbage collector.
+ */
+public class BufferPool {
+    private final BlockingQueue<ByteBuffer> free;
+    private final int bufferSize;
+    private final boolean direct;
+
+    /**
+     * Constructs a new BufferPool.
+     *
+     * @param capacity the most buffers kept for reuse
+     * @param bufferSize the size of each buffer in bytes
+     * @param direct true for direct buffers (for channels), false for heap buffers backed by an array (for sockets)
+     */
+    public BufferPool(int capacity, int bufferSize, boolean direct) {
+        this.free = new ArrayBlockingQueue<>(capacity);
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating one if the pool is empty.
+     *
+     * @return a buffer of the pool's size
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use it afterwards.
+     *
+     * @param buffer a buffer taken from this pool
+     */
+    public void release(ByteBuffer buffer) {
+        free.offer(buffer);
+    }
+}
@@ -1,10 +1,8 @@
 import java.io.*;
 import java.net.*;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class DroneSubsystem implements Runnable {
     private final Scheduler scheduler;
@@ -18,8 +16,7 @@ public class DroneSubsystem implements Runnable {
     private volatile int currentX = 0;
     private volatile int currentY = 0;
     private volatile DroneState currentState;
-    private DatagramSocket socket;
-    private InetAddress schedulerAddress;
+    private RpcClient rpc;
     private final int DEFAULT_DRONE_PORT = 5500;
     private boolean busy = false;
     private boolean hardFault = false;
@@ -28,13 +25,32 @@ public class DroneSubsystem implements Runnable {
     public boolean arrivalFault = false;
     public boolean nozzleFault = false;
     public boolean packetlFault = false;
-    public MapUI map;
+    public SimulationObserver observer;
     public MetricsLogger logger;
 
 
-    private Timer travelTimer;
+    // Guards the flight phases; a lock rather than synchronized so sleeping in a phase does not pin a virtual thread
+    private final ReentrantLock flightLock = new ReentrantLock();
+    private Future<?> travelTimer;
     private boolean arrivedAtFireZone = false;
 
+    // Heartbeats tell the Scheduler where the drone is; sent on each state change and at most this often otherwise
+    private static final long HEARTBEAT_INTERVAL_MS = 1000;
+    private volatile DroneState lastReportedState;
+    private volatile long lastHeartbeat;
+
+    // In flight, the drone publishes its leg once and then only corrects it when it strays this far
+    // from where the leg says it should be; half a map cell
+    private static final double DRIFT_TOLERANCE_METERS = 25;
+    private FlightLeg publishedLeg;
+    private int legCorrections = 0;
+    // The wind the drone flies in, in m/s. Legs are planned at cruise speed, so wind along the track
+    // puts the drone ahead of or behind its published leg; it crabs into crosswind and keeps to the line.
+    private volatile double windX = 0;
+    private volatile double windY = 0;
+    // However strong the headwind, the drone still makes this share of its cruise speed over the ground
+    private static final double MIN_GROUND_SPEED_RATIO = 0.25;
+
     /**
      * Enumeration of possible drone states.
      */
@@ -48,69 +64,100 @@ public class DroneSubsystem implements Runnable {
 
 
     /**
-     * Sends an RPC request to the scheduler.
+     * Sends an RPC request to the scheduler and waits for the matching response.
      *
      * @param methodName the name of the method to invoke on the scheduler
      * @param parameters the parameters for the request
-     * @return the response received from the scheduler, or an error message if communication fails
+     * @return the response received from the scheduler
+     * @throws IOException if the scheduler could not be reached or never answered
      */
-    public Object sendRequest(String methodName, Object... parameters) {
+    public Object sendRequest(String methodName, Object... parameters) throws IOException {
         if (testingReturningState) return 15.0;
 
-        try {
-            List<Object> requestList = new ArrayList<>();
-            requestList.add(methodName);
-            requestList.addAll(Arrays.asList(parameters));
-            requestList.add(idNum);  // Include drone ID
-
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            ObjectOutputStream objStream = new ObjectOutputStream(byteStream);
-            objStream.writeObject(requestList);
-            objStream.flush();
-            byte[] requestData = byteStream.toByteArray();
-
-            // Send to scheduler on port 6500+idNum
-            DatagramPacket requestPacket = new DatagramPacket(requestData, requestData.length, schedulerAddress, 6500 + idNum);
-            socket.send(requestPacket);
-            System.out.println("Drone " + idNum + " request sent, waiting for response from: " + methodName);
+        System.out.println("Drone " + idNum + " request sent, waiting for response from: " + methodName);
+        // The scheduler holds a request for the next event open until it has one to give
+        Object response = methodName.equals("getNextFireEvent")
+                ? rpc.callUntilAnswered(methodName, parameters) : rpc.call(methodName, parameters);
+        if(response!=null){
+            System.out.printf("Drone %d recieved response: %s%n", idNum, response);
+        }
+        return response;
+    }
 
-            while (true) {
+    /**
+     * Asks the scheduler for the next fire event, without holding simulated time back while waiting.
+     *
+     * @return the event, or null if there are no more
+     * @throws IOException if the scheduler could not be reached
+     */
+    private FireEvent waitForNextFireEvent() throws IOException {
+        try {
+            return (FireEvent) SimulationClock.get().idle(() -> {
                 try {
-                    byte[] responseBuffer = new byte[4096]; // increased buffer size
-                    DatagramPacket responsePacket = new DatagramPacket(responseBuffer, responseBuffer.length);
-                    socket.receive(responsePacket);
-
-                    ObjectInputStream inputStream = new ObjectInputStream(
-                            new ByteArrayInputStream(responsePacket.getData(), 0, responsePacket.getLength()));
-                    Object response = inputStream.readObject();
-                    if(response!=null){
-                        System.out.printf("Drone %d recieved response: %s%n", idNum, response);
-                    }
-                    return response;
-                } catch (IOException | ClassNotFoundException e) {
-                    e.printStackTrace();
-                    return "ERROR: Failed to receive response.";
+                    return sendRequest("getNextFireEvent", currentX, currentY);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-            }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reports a fault to the scheduler. The drone deals with the fault whether or not the report
+     * gets through.
+     *
+     * @param event the event the drone was handling
+     * @param fault the kind of fault
+     */
+    private void reportFault(FireEvent event, String fault) {
+        try {
+            sendRequest("handleDroneFault", event, fault, idNum);
         } catch (IOException e) {
-            e.printStackTrace();
-            return "ERROR: IOException.";
+            System.out.println("[Drone " + idNum + "] Could not report the " + fault + " fault: " + e.getMessage());
         }
     }
 
+    /**
+     * Sends an RPC request to the scheduler without waiting for the response.
+     * Replies are matched by correlation id, so this may overlap with other requests from this drone.
+     *
+     * @param methodName the name of the method to invoke on the scheduler
+     * @param parameters the parameters for the request
+     * @return a future completed with the scheduler's response
+     */
+    public CompletableFuture<Object> sendRequestAsync(String methodName, Object... parameters) {
+        if (testingReturningState) return CompletableFuture.completedFuture(15.0);
+        return rpc.callAsync(methodName, parameters);
+    }
+
+    /**
+     * Sends the scheduler an update that the drone's next one supersedes, once and without waiting.
+     *
+     * @param methodName the name of the method to invoke on the scheduler
+     * @param parameters the parameters for the update
+     */
+    private void sendUpdate(String methodName, Object... parameters) {
+        if (testingReturningState) return;
+        rpc.sendOnce(methodName, parameters);
+    }
+
     /**
      * Constructs a new DroneSubsystem.
      *
-     * @param scheduler the Scheduler instance for managing fire events
+     * @param scheduler the Scheduler instance for managing fire events, or null to use the default scheduler port
      * @param idNum the unique identifier for this drone
      * @param baseOffsetport an offset for the port number to avoid conflicts
-     * @param map the MapUI instance for updating drone positions visually
+     * @param observer the observer shown the drone's movements, or null for none
      * @param logger the MetricsLogger instance for logging travel metrics
      */
-    public DroneSubsystem(Scheduler scheduler, int idNum, int baseOffsetport, MapUI map, MetricsLogger logger) {
+    public DroneSubsystem(Scheduler scheduler, int idNum, int baseOffsetport, SimulationObserver observer, MetricsLogger logger) {
+        int schedulerPort = scheduler != null ? scheduler.getPort() : Scheduler.DEFAULT_SCHEDULER_PORT;
         try {
-            socket = new DatagramSocket(DEFAULT_DRONE_PORT + idNum + baseOffsetport);
-            schedulerAddress = InetAddress.getLocalHost();
+            DatagramSocket socket = new DatagramSocket(DEFAULT_DRONE_PORT + idNum + baseOffsetport);
+            rpc = new RpcClient(socket, InetAddress.getLocalHost(), schedulerPort, WireProtocol.SENDER_DRONE, idNum);
+            rpc.setRequestHandler(this::handleSchedulerRequest);
             System.out.println("DroneSubsystem " + idNum + " is listening on port " + (DEFAULT_DRONE_PORT + idNum));
         } catch (SocketException | UnknownHostException e) {
             e.printStackTrace();
@@ -120,9 +167,99 @@ public class DroneSubsystem implements Runnable {
         this.scheduler = scheduler;
         this.remainingAgent = capacity;
         this.currentState = DroneState.IDLE;
-        this.map = map;
+        this.observer = observer != null ? observer : SimulationObserver.NONE;
         this.logger = logger;
-        map.updateDronePosition(idNum, currentX, currentY, DroneState.IDLE, remainingAgent, batteryLife);
+        this.observer.droneUpdated(idNum, currentX, currentY, DroneState.IDLE, remainingAgent, batteryLife);
+    }
+
+    /**
+     * Shows the drone to the observer and sends the Scheduler a heartbeat with its position, state,
+     * battery and agent. Heartbeats are not waited for.
+     *
+     * @param state the state to report
+     */
+    private void reportStatus(DroneState state) {
+        observer.droneUpdated(idNum, currentX, currentY, state, remainingAgent, batteryLife);
+        long now = SimulationClock.get().currentTimeMillis();
+        if (state != lastReportedState || now - lastHeartbeat >= HEARTBEAT_INTERVAL_MS) {
+            lastReportedState = state;
+            lastHeartbeat = now;
+            sendUpdate("heartbeat", currentX, currentY, state.ordinal(), batteryLife, remainingAgent);
+        }
+    }
+
+    /**
+     * Publishes the leg the drone is setting off on, from its current position: the Scheduler and
+     * the observer work out where the drone is from it until the next update. Counts as a heartbeat.
+     *
+     * @param targetZoneId the zone the drone is heading to, or 0 for home
+     * @param state the state the drone flies the leg in
+     * @param destX the x-coordinate of the destination
+     * @param destY the y-coordinate of the destination
+     * @param travelSeconds how long the leg takes, in seconds
+     * @param correction whether the leg replaces one the drone has strayed from
+     */
+    private void publishLeg(int targetZoneId, DroneState state, int destX, int destY, double travelSeconds, boolean correction) {
+        long now = SimulationClock.get().currentTimeMillis();
+        publishedLeg = new FlightLeg(idNum, targetZoneId, currentX, currentY, destX, destY, now, (long) (travelSeconds * 1000));
+        lastReportedState = state;
+        lastHeartbeat = now;
+        observer.flightLegStarted(idNum, publishedLeg, state, remainingAgent, batteryLife);
+        // Sent once: a lost leg is superseded by the drone's next update, and the flight does not wait
+        sendUpdate("flightLeg", targetZoneId, currentX, currentY, destX, destY, (double) now, travelSeconds,
+                state.ordinal(), batteryLife, remainingAgent, correction);
+    }
+
+    /**
+     * Compares the drone's position with where its published leg puts it, and publishes a
+     * correction for the rest of the leg if they have drifted apart.
+     *
+     * @param state the state the drone is flying in
+     * @param remainingSeconds how long the rest of the leg takes, in seconds
+     */
+    private void trackLeg(DroneState state, double remainingSeconds) {
+        double[] predicted = publishedLeg.positionAt(SimulationClock.get().currentTimeMillis());
+        if (Math.hypot(predicted[0] - currentX, predicted[1] - currentY) <= DRIFT_TOLERANCE_METERS) return;
+        double[] destination = publishedLeg.positionAt(publishedLeg.getEndMillis());
+        legCorrections++;
+        publishLeg(publishedLeg.getTargetZoneId(), state, (int) destination[0], (int) destination[1], remainingSeconds, true);
+    }
+
+    /**
+     * Sets the wind the drone flies in.
+     *
+     * @param windX the wind's speed towards positive x, in m/s
+     * @param windY the wind's speed towards positive y, in m/s
+     */
+    public void setWind(double windX, double windY) {
+        this.windX = windX;
+        this.windY = windY;
+    }
+
+    /**
+     * Returns the drone's speed over the ground on a leg, as a share of the cruise speed its legs
+     * are planned at: above 1 with a tailwind, below with a headwind.
+     *
+     * @param startX the x-coordinate the leg starts at
+     * @param startY the y-coordinate the leg starts at
+     * @param destX the x-coordinate of the destination
+     * @param destY the y-coordinate of the destination
+     * @return the ratio of ground speed to cruise speed
+     */
+    private double groundSpeedRatio(int startX, int startY, int destX, int destY) {
+        double length = Math.hypot(destX - startX, destY - startY);
+        if (length == 0 || (windX == 0 && windY == 0)) return 1;
+        double tailwind = (windX * (destX - startX) + windY * (destY - startY)) / length;
+        return Math.max(MIN_GROUND_SPEED_RATIO, (cruiseSpeed + tailwind) / cruiseSpeed);
+    }
+
+    /**
+     * Returns how many times the drone has corrected a published leg.
+     *
+     * @return the number of corrections
+     */
+    public int getLegCorrections() {
+        return legCorrections;
     }
 
     public DroneState getState() {
@@ -167,52 +304,76 @@ public class DroneSubsystem implements Runnable {
     }
 
     private volatile FireEvent newEvent;
-    private boolean doCheck = true;
-
-    private Thread checkEventThread;
-    private volatile boolean isCheckingForNewEvent = false;
+    // Guards enRoute and newEvent, so a reassignment is either taken before arrival or refused
+    private final Object reassignmentLock = new Object();
+    private boolean enRoute = false;
+    private int lastReassignmentId = 0;
+    private boolean lastReassignmentAccepted = false;
 
     /**
-     * Checks periodically for a new fire event while en route to the target event.
+     * Handles requests the Scheduler pushes to this drone. A REASSIGN request hands the drone
+     * an event near its flight path; the drone answers whether it will take it.
+     * Called on the RPC client's receiver thread.
      *
-     * @param currentFireEvent the current target fire event
+     * @param request the decoded request
+     * @param scheduler the address the request came from
      */
-    private void checkForNewEvent(FireEvent currentFireEvent) {
-        isCheckingForNewEvent = true;
-        newEvent = null;
-        checkEventThread = new Thread(() -> {
-            while (isCheckingForNewEvent) {
-                FireEvent checkEvent = (FireEvent) sendRequest("getNextAssignedEvent", Thread.currentThread().getName(), currentX, currentY);
-                if (checkEvent != null && checkEvent.getZoneId() != currentFireEvent.getZoneId()) {
-                    newEvent = checkEvent;
-                    isCheckingForNewEvent = false;
-                    break;
-                }
-                sleep(1000); // avoid flooding UDP
+    private void handleSchedulerRequest(WireProtocol.Message request, InetSocketAddress scheduler) {
+        if (!"REASSIGN".equals(request.getMethodName())) return;
+        boolean accepted;
+        synchronized (reassignmentLock) {
+            if (request.getCorrelationId() == lastReassignmentId) {
+                accepted = lastReassignmentAccepted; // Retransmitted push; answer it the same way
+            } else {
+                accepted = enRoute && newEvent == null;
+                if (accepted) newEvent = (FireEvent) request.getArgs().get(0);
+                lastReassignmentId = request.getCorrelationId();
+                lastReassignmentAccepted = accepted;
             }
-        });
-        checkEventThread.setDaemon(true);
-        checkEventThread.start();
+        }
+        try {
+            rpc.reply(scheduler, request.getCorrelationId(), accepted);
+        } catch (IOException e) {
+            System.err.println("Drone " + idNum + " failed to answer reassignment: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ends the current leg. A reassignment accepted too late to act on is handed back to the Scheduler.
+     */
+    private void endLeg() {
+        FireEvent late;
+        synchronized (reassignmentLock) {
+            enRoute = false;
+            late = newEvent;
+            newEvent = null;
+        }
+        if (late != null) sendRequestAsync("requeueFireEvent", late);
     }
 
     /**
      * Travels towards the center of the target fire zone, updating the drone's position incrementally.
-     * If a new fire event is detected en route, the drone switches assignment.
+     * The leg is registered with the Scheduler, which pushes a new event if one appears near the
+     * drone's path; the drone then switches assignment.
      *
      * @param fullTravelTime the total travel time in seconds to the target zone
      * @param targetEvent the fire event that is the current target
      * @return the fire event to handle (either the original or a new event detected en route)
      */
     // This is broken, need to fix
-    public synchronized FireEvent travelToZoneCenter(double fullTravelTime, FireEvent targetEvent) {
-        // Compute the target zone center from the event.
-        String[] zoneCoords = targetEvent.getZoneDetails().replaceAll("[()]", "").split(" to ");
-        String[] startCoords = zoneCoords[0].split(",");
-        String[] endCoords = zoneCoords[1].split(",");
-        int destX = (Integer.parseInt(startCoords[0].trim()) + Integer.parseInt(endCoords[0].trim())) / 2;
-        int destY = (Integer.parseInt(startCoords[1].trim()) + Integer.parseInt(endCoords[1].trim())) / 2;
+    public FireEvent travelToZoneCenter(double fullTravelTime, FireEvent targetEvent) {
+        flightLock.lock();
+        try {
+            return travelToZoneCenterLocked(fullTravelTime, targetEvent);
+        } finally {
+            flightLock.unlock();
+        }
+    }
 
-        newEvent = null;
+    private FireEvent travelToZoneCenterLocked(double fullTravelTime, FireEvent targetEvent) {
+        // The target zone center, precomputed by the zone the event carries.
+        int destX = targetEvent.getZone().getCenterX();
+        int destY = targetEvent.getZone().getCenterY();
 
         int startX = currentX;
         int startY = currentY;
@@ -226,74 +387,73 @@ public class DroneSubsystem implements Runnable {
         }
 
         // divide the travel into one-second increments.
-
-        if (!isCheckingForNewEvent) {
+        int steps = (int) Math.ceil(fullTravelTime);
+        double speedRatio = groundSpeedRatio(startX, startY, destX, destY);
+        synchronized (reassignmentLock) {
+            enRoute = true;
             newEvent = null;
-            checkForNewEvent(targetEvent);
         }
-
-        int steps = (int) Math.ceil(fullTravelTime);
         currentState = DroneState.ON_ROUTE;
-        for (int i = 1; i <= steps; i++) {
-            double fraction = (double) i / steps;
-            // Update position along the straight line from (startX, startY) to (destX, destY).
-            synchronized (this) {
-                currentX = startX + (int) ((destX - startX) * fraction);
-                currentY = startY + (int) ((destY - startY) * fraction);
-            }
-            map.updateDronePosition(idNum, currentX, currentY, DroneState.ON_ROUTE,remainingAgent, batteryLife);
-
+        publishLeg(targetEvent.getZoneId(), DroneState.ON_ROUTE, destX, destY, steps, false);
+        double fraction = steps > 0 ? 0 : 1;
+        for (int i = 1; fraction < 1; i++) {
             sleep(1000);  // simulate one second of travel
             batteryLife -= 1; // decrement battery by 1 second
 
-            if (newEvent != null && newEvent != targetEvent) {
-                System.out.println(Thread.currentThread().getName() + " found on-route event at zone " + newEvent.getZoneId() +
+            // The wind decides how far along the leg a second of flight gets the drone
+            fraction = Math.min(1, i * speedRatio / steps);
+            // Update position along the straight line from (startX, startY) to (destX, destY).
+            currentX = startX + (int) ((destX - startX) * fraction);
+            currentY = startY + (int) ((destY - startY) * fraction);
+            trackLeg(DroneState.ON_ROUTE, (1 - fraction) * steps / speedRatio);
+
+            FireEvent reassigned = newEvent;
+            if (reassigned != null && reassigned != targetEvent) {
+                synchronized (reassignmentLock) {
+                    enRoute = false;
+                    newEvent = null;
+                }
+                System.out.println(Thread.currentThread().getName() + " found on-route event at zone " + reassigned.getZoneId() +
                         " while en route to zone " + targetEvent.getZoneId() + ". Switching assignment.");
-                sendRequest("ADD_FIRE_EVENT",targetEvent);
-                return newEvent;
+                // Hand the original target back without waiting; the reply is matched to this call by id
+                sendRequestAsync("requeueFireEvent", targetEvent);
+                return reassigned;
             }
         }
         // Completed travel to target zone center.
         currentX = destX;
         currentY = destY;
-        map.updateDronePosition(idNum, currentX, currentY, DroneState.ON_ROUTE,remainingAgent, batteryLife);
+        reportStatus(DroneState.ON_ROUTE);
         arrivedAtFireZone = true; // Prevent fault
         if (travelTimer != null) {
-            travelTimer.cancel();
+            travelTimer.cancel(false);
             travelTimer = null;
         }
-
-        isCheckingForNewEvent = false;
-        if (checkEventThread != null && checkEventThread.isAlive()) {
-            checkEventThread.interrupt();  // optional
-            checkEventThread = null;
-        }
+        endLeg();
         return targetEvent;
     }
 
-    /**
-     * Stops checking for new fire events by interrupting the checking thread.
-     */
-    private synchronized void stopCheckingForNewEvents() {
-        isCheckingForNewEvent = false;
-        if (checkEventThread != null && checkEventThread.isAlive()) {
-            checkEventThread.interrupt();
-            checkEventThread = null;
-        }
-    }
-
     /**
      * Simulates extinguishing a fire by opening the nozzle, dropping firefighting agent,
      * and then closing the nozzle.
      *
      * @param amount the amount of firefighting agent (in liters) to drop
      */
-    public synchronized void extinguishFire(int amount) {
+    public void extinguishFire(int amount) {
+        flightLock.lock();
+        try {
+            dropAgent(amount);
+        } finally {
+            flightLock.unlock();
+        }
+    }
+
+    private void dropAgent(int amount) {
         System.out.println("\n" + Thread.currentThread().getName() + " opening nozzle...");
         sleep(1000);
         batteryLife -= 1;
         currentState = DroneState.DROPPING_AGENT;
-        map.updateDronePosition(idNum, currentX, currentY, currentState,remainingAgent, batteryLife);
+        reportStatus(currentState);
         displayState();
         int timeToDrop = amount / nozzleFlowRate;
         System.out.println(Thread.currentThread().getName() + " dropping " + amount + "L of firefighting agent at " + nozzleFlowRate + "L/s.");
@@ -313,11 +473,27 @@ public class DroneSubsystem implements Runnable {
      *
      * @param event the fire event that was being handled
      */
-    public synchronized void returnToBase(FireEvent event) {
+    public void returnToBase(FireEvent event) {
+        flightLock.lock();
+        try {
+            flyHome(event);
+        } finally {
+            flightLock.unlock();
+        }
+    }
+
+    private void flyHome(FireEvent event) {
         currentState = DroneState.RETURNING;
         displayState();
         System.out.println("\n" + Thread.currentThread().getName() + " returning to base...\n");
-        double distance = (double) sendRequest("calculateDistanceToHomeBase", event);
+        double distance;
+        try {
+            distance = (double) sendRequest("calculateDistanceToHomeBase", event);
+        } catch (IOException e) {
+            // The drone knows where it is; base is at the origin
+            System.out.println("[Drone " + idNum + "] Could not ask for the distance home: " + e.getMessage());
+            distance = Math.hypot(currentX, currentY);
+        }
 
         int startX = currentX;
         int startY = currentY;
@@ -329,22 +505,23 @@ public class DroneSubsystem implements Runnable {
 
         double travelTime = distance / cruiseSpeed;
         int steps = (int) Math.ceil(travelTime);
-        for (int i = 1; i <= steps; i++) {
-            double fraction = (double) i / steps;
-            synchronized (this) {
-                currentX = startX + (int) ((baseX - startX) * fraction);
-                currentY = startY + (int) ((baseY - startY) * fraction);
-            }
-            map.updateDronePosition(idNum, currentX, currentY, currentState,remainingAgent, batteryLife);
+        double speedRatio = groundSpeedRatio(startX, startY, baseX, baseY);
+        publishLeg(0, currentState, baseX, baseY, steps, false);
+        double fraction = steps > 0 ? 0 : 1;
+        for (int i = 1; fraction < 1; i++) {
             sleep(1000);
             batteryLife -= 1;
+            fraction = Math.min(1, i * speedRatio / steps);
+            currentX = startX + (int) ((baseX - startX) * fraction);
+            currentY = startY + (int) ((baseY - startY) * fraction);
+            trackLeg(currentState, (1 - fraction) * steps / speedRatio);
         }
         System.out.println();
         descend();
         System.out.println("----------------------------------------\n");
         currentX = 0;
         currentY = 0;
-        map.updateDronePosition(idNum, currentX, currentY, DroneState.IDLE,remainingAgent, batteryLife);
+        reportStatus(DroneState.IDLE);
     }
 
     /**
@@ -352,24 +529,34 @@ public class DroneSubsystem implements Runnable {
      *
      * @param lastEvent the last fire event that was handled
      */
-    private synchronized void makeDroneIdleAndRecharge(FireEvent lastEvent) {
-        stopCheckingForNewEvents();
-        returnToBase(lastEvent);
-        currentState = DroneState.IDLE;
-        displayState();
-        remainingAgent = capacity;
-        batteryLife = 1800;
-        map.updateDronePosition(idNum, currentX, currentY, currentState, remainingAgent, batteryLife);
+    private void makeDroneIdleAndRecharge(FireEvent lastEvent) {
+        if (!flightLock.tryLock()) {
+            // The fault timer waits out the drone's flight; it must not hold simulated time back meanwhile
+            SimulationClock.get().idle(() -> {
+                flightLock.lock();
+                return null;
+            });
+        }
+        try {
+            returnToBase(lastEvent);
+            currentState = DroneState.IDLE;
+            displayState();
+            remainingAgent = capacity;
+            batteryLife = 1800;
+            reportStatus(currentState);
+        } finally {
+            flightLock.unlock();
+        }
     }
 
     /**
-     * Pauses the execution for a specified duration.
+     * Pauses the execution for a span of simulated time.
      *
      * @param milliseconds the duration to sleep in milliseconds
      */
     private void sleep(long milliseconds) {
         try {
-            Thread.sleep(milliseconds);
+            SimulationClock.get().sleep(milliseconds);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
@@ -384,18 +571,15 @@ public class DroneSubsystem implements Runnable {
      */
     private void startTravelFaultTimer(double travelTimeSeconds, FireEvent event) {
         long timeout = (long) (travelTimeSeconds * 1000 * 1.1); // 1.5x buffer
-        travelTimer = new Timer();
-        travelTimer.schedule(new TimerTask() {
-            public void run() {
+        travelTimer = SimulationClock.get().schedule("Drone " + idNum + " travel fault", () -> {
             if (!arrivedAtFireZone) {
                 System.out.println("[Drone " + idNum + "] Fault detected: drone did not arrive in time.");
-                sendRequest("handleDroneFault",event,"timeout",idNum);
+                reportFault(event, "timeout");
                 //currentState = DroneState.FAULT;
-                map.updateDronePosition(idNum, currentX, currentY, DroneState.FAULT,remainingAgent, batteryLife);
+                reportStatus(DroneState.FAULT);
                 arrivalFault = false;
                 makeDroneIdleAndRecharge(event);
             }
-            }
         }, timeout);
     }
 
@@ -403,14 +587,21 @@ public class DroneSubsystem implements Runnable {
     @Override
     public void run() {
         System.out.println("Running DroneSubsystem " + idNum);
+        SimulationClock.get().register();
         try {
             // Outer loop: keep checking for new fire events.
             while (true) {
 
-                if ((boolean)sendRequest("STOP_?", idNum))break;
-
-                FireEvent event = (FireEvent) sendRequest("getNextFireEvent");
-                long taskStartTime = System.currentTimeMillis();
+                FireEvent event;
+                try {
+                    if ((boolean) sendRequest("STOP_?", idNum)) break;
+                    event = waitForNextFireEvent();
+                } catch (IOException e) {
+                    // Nothing more can be done without the scheduler
+                    System.out.println("[Drone " + idNum + "] Lost contact with the scheduler: " + e.getMessage());
+                    break;
+                }
+                long taskStartTime = SimulationClock.get().currentTimeMillis();
                 if(event != null) {
                     logger.recordFireDispatched(event, idNum);
 
@@ -427,7 +618,15 @@ public class DroneSubsystem implements Runnable {
                         takeoff();
                     }
 
-                    double travelTime = (double) sendRequest("calculateTravelTime", currentX, currentY, event);
+                    double travelTime;
+                    try {
+                        travelTime = (double) sendRequest("calculateTravelTime", currentX, currentY, event);
+                    } catch (IOException e) {
+                        System.out.println("[Drone " + idNum + "] Could not ask for the travel time: " + e.getMessage()
+                                + ". Returning to base.");
+                        makeDroneIdleAndRecharge(event);
+                        break;
+                    }
                     System.out.println("[Drone " + idNum + "] Travel time: " + travelTime);
 
                     arrivedAtFireZone = false;
@@ -443,8 +642,8 @@ public class DroneSubsystem implements Runnable {
                     // HANDLE PACKET LOSS FAULT
                     if ("PACKET_LOSS".equalsIgnoreCase(event.getFault())) {
                         System.out.println("\033[1;30m \033[43m [Drone " + idNum + "] PACKET LOSS fault injected - Lost packets in communication. \033[0m");
-                        sendRequest("handleDroneFault", event, "packet_loss", idNum);
-                        map.updateDronePosition(idNum, currentX, currentY, DroneState.FAULT,remainingAgent, batteryLife);
+                        reportFault(event, "packet_loss");
+                        reportStatus(DroneState.FAULT);
                         packetlFault = true;
                         break;
                     }
@@ -464,8 +663,8 @@ public class DroneSubsystem implements Runnable {
                     // HANDLE NOZZLE FAULT
                     if ("NOZZLE".equalsIgnoreCase(event.getFault())) {
                         System.out.println("\033[1;30m \033[43m [Drone " + idNum + "] NOZZLE fault injected — nozzle stuck CLOSED. \033[0m");
-                        sendRequest("handleDroneFault", event, "nozzle", idNum); // or whatever your fault method is
-                        map.updateDronePosition(idNum, currentX, currentY, DroneState.FAULT,remainingAgent, batteryLife);
+                        reportFault(event, "nozzle");
+                        reportStatus(DroneState.FAULT);
                         hardFault = true;
                         nozzleFault = true;
                         break;
@@ -473,7 +672,11 @@ public class DroneSubsystem implements Runnable {
 
                     if(!arrivalFault) {
                         extinguishFire(waterToDrop);
-                        sendRequest("updateFireStatus", event, waterToDrop);
+                        try {
+                            sendRequest("updateFireStatus", event, waterToDrop);
+                        } catch (IOException e) {
+                            System.out.println("[Drone " + idNum + "] Could not report the drop on zone " + event.getZoneId() + ": " + e.getMessage());
+                        }
                         logger.recordFireExtinguished(event, idNum);
                     }
                     FireEvent lastEvent = event;
@@ -481,7 +684,7 @@ public class DroneSubsystem implements Runnable {
                     // If the drone runs out of agent, return to base.
                     if (remainingAgent <= 0) {
                         System.out.println("Drone " + idNum + " has run out of agent. Returning to base.");
-                        long taskDuration = System.currentTimeMillis() - taskStartTime;
+                        long taskDuration = SimulationClock.get().currentTimeMillis() - taskStartTime;
                         logger.logDroneTaskTime(idNum, taskDuration);
                         makeDroneIdleAndRecharge(lastEvent);
                         break; // Break out of the inner loop.
@@ -490,12 +693,16 @@ public class DroneSubsystem implements Runnable {
                     FireEvent event2 = null;
                     // Request an additional event.
                     if(!arrivalFault) {
-                        event2 = (FireEvent) sendRequest("getAdditionalFireEvent", batteryLife, currentX, currentY);
+                        try {
+                            event2 = (FireEvent) sendRequest("getAdditionalFireEvent", batteryLife, currentX, currentY, remainingAgent);
+                        } catch (IOException e) {
+                            System.out.println("[Drone " + idNum + "] Could not ask for another event: " + e.getMessage());
+                        }
                     }
                     //FireEvent event2 = (FireEvent) sendRequest("getAdditionalFireEvent", batteryLife, currentX, currentY);
                     if (event2 == null) {
                         System.out.println("No additional event. Returning to base.");
-                        long taskDuration = System.currentTimeMillis() - taskStartTime;
+                        long taskDuration = SimulationClock.get().currentTimeMillis() - taskStartTime;
                         logger.logDroneTaskTime(idNum, taskDuration);
                         makeDroneIdleAndRecharge(lastEvent);
                         break; // Break out of the inner loop.
@@ -511,6 +718,8 @@ public class DroneSubsystem implements Runnable {
             }
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            SimulationClock.get().deregister();
         }
         System.out.println("DroneSubsystem " + idNum + " shutting down.");
         logger.markSimulationEnd();
@@ -0,0 +1,122 @@
+import java.util.Arrays;
+
+/**
+ * Per-sender window of recently seen request correlation ids, used by the Scheduler
+ * to apply each retransmitted request only once.
+ *
+ * A request seen for the first time is admitted. A repeat of a request that is still being
+ * handled is dropped, and a repeat of an answered request gets the cached reply resent
+ * instead of being applied again. Each sender's window holds the most recent
+ * {@link #WINDOW_SIZE} requests.
+ *
+ * Windows are fixed-size rings indexed by sender id, and replies are cached as the value
+ * that was sent rather than as encoded bytes, so checking a request allocates nothing.
+ */
+public class DuplicateFilter {
+    public static final int WINDOW_SIZE = 64;
+
+    private static final Object IN_PROGRESS = new Object();
+    private static final Object NULL_REPLY = new Object();
+
+    /**
+     * Outcome of checking a request against the window.
+     */
+    public enum Verdict {
+        NEW,
+        IN_PROGRESS,
+        ANSWERED
+    }
+
+    /**
+     * The most recent requests from one sender, oldest overwritten first.
+     */
+    private static final class Window {
+        final int[] correlationIds = new int[WINDOW_SIZE];
+        final Object[] replies = new Object[WINDOW_SIZE];
+        int next = 0;
+
+        int indexOf(int correlationId) {
+            for (int i = 0; i < WINDOW_SIZE; i++) {
+                if (correlationIds[i] == correlationId && replies[i] != null) return i;
+            }
+            return -1;
+        }
+    }
+
+    // Windows by sender type, then sender id
+    private final Window[][] windows = new Window[3][];
+
+    /**
+     * Checks a request against its sender's window and admits it if it is new.
+     * Correlation id 0 marks an untracked request, which is always admitted, as are
+     * requests with a sender type or id outside the table.
+     *
+     * @param senderType the sender type from the request header
+     * @param senderId the sender id from the request header
+     * @param correlationId the correlation id from the request header
+     * @return whether the request is new, still being handled, or already answered
+     */
+    public synchronized Verdict admit(byte senderType, int senderId, int correlationId) {
+        if (!isTracked(senderType, senderId, correlationId)) return Verdict.NEW;
+        Window window = windowFor(senderType, senderId);
+        int index = window.indexOf(correlationId);
+        if (index < 0) {
+            window.correlationIds[window.next] = correlationId;
+            window.replies[window.next] = IN_PROGRESS;
+            window.next = (window.next + 1) % WINDOW_SIZE;
+            return Verdict.NEW;
+        }
+        return window.replies[index] == IN_PROGRESS ? Verdict.IN_PROGRESS : Verdict.ANSWERED;
+    }
+
+    /**
+     * Records the reply to an admitted request so duplicates can be answered from the cache.
+     *
+     * @param senderType the sender type of the request
+     * @param senderId the sender id of the request
+     * @param correlationId the correlation id of the request
+     * @param reply the reply value, possibly null
+     */
+    public synchronized void complete(byte senderType, int senderId, int correlationId, Object reply) {
+        if (!isTracked(senderType, senderId, correlationId)) return;
+        Window window = windowFor(senderType, senderId);
+        int index = window.indexOf(correlationId);
+        if (index >= 0) window.replies[index] = reply == null ? NULL_REPLY : reply;
+    }
+
+    /**
+     * Returns the cached reply to an answered request.
+     *
+     * @param senderType the sender type of the request
+     * @param senderId the sender id of the request
+     * @param correlationId the correlation id of the request
+     * @return the reply value, or null if the reply was null or the request is unknown or unanswered
+     */
+    public synchronized Object cachedReply(byte senderType, int senderId, int correlationId) {
+        if (!isTracked(senderType, senderId, correlationId)) return null;
+        Window window = windowFor(senderType, senderId);
+        int index = window.indexOf(correlationId);
+        if (index < 0) return null;
+        Object reply = window.replies[index];
+        return reply == IN_PROGRESS || reply == NULL_REPLY ? null : reply;
+    }
+
+    private boolean isTracked(byte senderType, int senderId, int correlationId) {
+        return correlationId != 0 && senderType >= 0 && senderType < windows.length && senderId >= 0;
+    }
+
+    private Window windowFor(byte senderType, int senderId) {
+        Window[] byId = windows[senderType];
+        if (byId == null || senderId >= byId.length) {
+            byId = byId == null ? new Window[Math.max(16, senderId + 1)]
+                    : Arrays.copyOf(byId, Math.max(byId.length * 2, senderId + 1));
+            windows[senderType] = byId;
+        }
+        Window window = byId[senderId];
+        if (window == null) {
+            window = new Window();
+            byId[senderId] = window;
+        }
+        return window;
+    }
+}
@@ -0,0 +1,463 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A uniform grid of pending fire events, keyed by the center of each event's zone.
+ * Radius, nearest-neighbour and segment queries only visit the cells that can hold an answer,
+ * instead of scanning every pending event, and an event is added or removed in constant time.
+ * Events at the same position share one spot in their cell, so a zone with many pending events
+ * costs a query one distance test, and a nearest-k query takes only the k events it returns from it.
+ *
+ * Events are tracked by identity, so the same event object is added at most once.
+ * The grid is not thread-safe; the Scheduler uses it under its lock.
+ */
+public class EventGrid {
+
+    /**
+     * Decides whether a pending event qualifies for a query.
+     */
+    @FunctionalInterface
+    public interface EventFilter {
+        /**
+         * @param event the pending event
+         * @param x the x-coordinate the event is indexed at
+         * @param y the y-coordinate the event is indexed at
+         * @return true if the event qualifies
+         */
+        boolean test(FireEvent event, double x, double y);
+    }
+
+    /**
+     * A nearest-first search over the occupied cells, visited ring by ring outward from a center cell.
+     */
+    private abstract static class RingSearch {
+        /**
+         * @param ringDistanceSquared a lower bound on the squared distance to every cell from this ring outward
+         * @return true if no cell from this ring outward can improve the result
+         */
+        abstract boolean finished(double ringDistanceSquared);
+
+        abstract void visit(Cell cell);
+    }
+
+    /**
+     * One indexed event and where it is stored.
+     */
+    private static final class Entry {
+        final FireEvent event;
+        Spot spot;
+        int slot;
+
+        Entry(FireEvent event) {
+            this.event = event;
+        }
+    }
+
+    /**
+     * The events indexed at one position, in no particular order.
+     */
+    private static final class Spot {
+        final double x;
+        final double y;
+        final Cell cell;
+        int slot;
+        Entry[] entries = new Entry[2];
+        int size = 0;
+
+        Spot(double x, double y, Cell cell) {
+            this.x = x;
+            this.y = y;
+            this.cell = cell;
+        }
+    }
+
+    /**
+     * The occupied positions in one grid cell, in no particular order.
+     */
+    private static final class Cell {
+        final long key;
+        Spot[] spots = new Spot[2];
+        int size = 0;
+
+        Cell(long key) {
+            this.key = key;
+        }
+    }
+
+    private final double cellSize;
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final Map<FireEvent, Entry> entries = new IdentityHashMap<>();
+    // Bounds of every cell ever occupied, so searches do not walk empty space beyond them
+    private int minCellX = Integer.MAX_VALUE, maxCellX = Integer.MIN_VALUE;
+    private int minCellY = Integer.MAX_VALUE, maxCellY = Integer.MIN_VALUE;
+    private long examined = 0; // Spots and events looked at by queries
+
+    /**
+     * Constructs a new EventGrid.
+     *
+     * @param cellSize the side of each square cell in meters; about the typical query radius works best
+     */
+    public EventGrid(double cellSize) {
+        if (cellSize <= 0) throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Adds an event at the given position. An event that is already indexed is moved there.
+     *
+     * @param event the event
+     * @param x the x-coordinate of the event's zone center
+     * @param y the y-coordinate of the event's zone center
+     */
+    public void add(FireEvent event, double x, double y) {
+        remove(event);
+        Entry entry = new Entry(event);
+        int cellX = cellOf(x), cellY = cellOf(y);
+        long key = key(cellX, cellY);
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = new Cell(key);
+            cells.put(key, cell);
+            minCellX = Math.min(minCellX, cellX);
+            maxCellX = Math.max(maxCellX, cellX);
+            minCellY = Math.min(minCellY, cellY);
+            maxCellY = Math.max(maxCellY, cellY);
+        }
+        Spot spot = null;
+        for (int i = 0; i < cell.size && spot == null; i++) {
+            if (cell.spots[i].x == x && cell.spots[i].y == y) spot = cell.spots[i];
+        }
+        if (spot == null) {
+            spot = new Spot(x, y, cell);
+            if (cell.size == cell.spots.length) cell.spots = Arrays.copyOf(cell.spots, cell.size * 2);
+            spot.slot = cell.size;
+            cell.spots[cell.size++] = spot;
+        }
+        if (spot.size == spot.entries.length) spot.entries = Arrays.copyOf(spot.entries, spot.size * 2);
+        entry.spot = spot;
+        entry.slot = spot.size;
+        spot.entries[spot.size++] = entry;
+        entries.put(event, entry);
+    }
+
+    /**
+     * Removes an event.
+     *
+     * @param event the event
+     * @return true if the event was indexed
+     */
+    public boolean remove(FireEvent event) {
+        Entry entry = entries.remove(event);
+        if (entry == null) return false;
+        Spot spot = entry.spot;
+        Entry last = spot.entries[--spot.size];
+        spot.entries[entry.slot] = last;
+        last.slot = entry.slot;
+        spot.entries[spot.size] = null;
+        if (spot.size > 0) return true;
+        Cell cell = spot.cell;
+        Spot lastSpot = cell.spots[--cell.size];
+        cell.spots[spot.slot] = lastSpot;
+        lastSpot.slot = spot.slot;
+        cell.spots[cell.size] = null;
+        if (cell.size == 0) cells.remove(cell.key);
+        return true;
+    }
+
+    /**
+     * Returns whether an event is indexed.
+     *
+     * @param event the event
+     * @return true if the event is indexed
+     */
+    public boolean contains(FireEvent event) {
+        return entries.containsKey(event);
+    }
+
+    /**
+     * Returns the number of indexed events.
+     *
+     * @return the number of events
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes every event.
+     */
+    public void clear() {
+        cells.clear();
+        entries.clear();
+        minCellX = minCellY = Integer.MAX_VALUE;
+        maxCellX = maxCellY = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Returns every event within a distance of a point.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param radius the distance in meters, inclusive
+     * @return the events, in no particular order
+     */
+    public List<FireEvent> withinRadius(double x, double y, double radius) {
+        List<FireEvent> found = new ArrayList<>();
+        double radiusSquared = radius * radius;
+        for (Cell cell : cellsIn(x - radius, y - radius, x + radius, y + radius)) {
+            for (int i = 0; i < cell.size; i++) {
+                Spot spot = cell.spots[i];
+                examined++;
+                if (distanceSquared(spot.x, spot.y, x, y) <= radiusSquared) collect(spot, spot.size, found);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns every event within a distance of a line segment, such as the rest of a flight leg.
+     *
+     * @param x1 the x-coordinate of the segment's start
+     * @param y1 the y-coordinate of the segment's start
+     * @param x2 the x-coordinate of the segment's end
+     * @param y2 the y-coordinate of the segment's end
+     * @param radius the distance in meters, inclusive
+     * @return the events, in no particular order
+     */
+    public List<FireEvent> nearSegment(double x1, double y1, double x2, double y2, double radius) {
+        List<FireEvent> found = new ArrayList<>();
+        double radiusSquared = radius * radius;
+        double dx = x2 - x1, dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        // Walk the corridor one column of cells at a time, covering only the rows the segment
+        // (widened by the radius) passes through in that column
+        int fromColumn = cellOf(Math.min(x1, x2) - radius), toColumn = cellOf(Math.max(x1, x2) + radius);
+        for (int column = fromColumn; column <= toColumn; column++) {
+            double fromY = Math.min(y1, y2), toY = Math.max(y1, y2);
+            if (dx != 0) {
+                double t1 = Math.max(0, Math.min(1, (column * cellSize - radius - x1) / dx));
+                double t2 = Math.max(0, Math.min(1, ((column + 1) * cellSize + radius - x1) / dx));
+                fromY = Math.min(y1 + t1 * dy, y1 + t2 * dy);
+                toY = Math.max(y1 + t1 * dy, y1 + t2 * dy);
+            }
+            double columnX = column * cellSize;
+            for (Cell cell : cellsIn(columnX, fromY - radius, columnX, toY + radius)) {
+                for (int i = 0; i < cell.size; i++) {
+                    Spot spot = cell.spots[i];
+                    examined++;
+                    double t = lengthSquared == 0 ? 0
+                            : Math.max(0, Math.min(1, ((spot.x - x1) * dx + (spot.y - y1) * dy) / lengthSquared));
+                    if (distanceSquared(spot.x, spot.y, x1 + t * dx, y1 + t * dy) <= radiusSquared) collect(spot, spot.size, found);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the events nearest a point.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param k the most events to return
+     * @return up to k events, nearest first
+     */
+    public List<FireEvent> nearest(double x, double y, int k) {
+        if (k <= 0) return new ArrayList<>();
+        // The nearest spots holding at least k events between them, farthest at the head
+        PriorityQueue<Spot> best = new PriorityQueue<>(
+                Comparator.comparingDouble((Spot spot) -> distanceSquared(spot.x, spot.y, x, y)).reversed());
+        int[] held = {0};
+        search(x, y, Double.POSITIVE_INFINITY, new RingSearch() {
+            @Override
+            boolean finished(double ringDistanceSquared) {
+                return held[0] >= k && ringDistanceSquared > distanceSquared(best.peek().x, best.peek().y, x, y);
+            }
+
+            @Override
+            void visit(Cell cell) {
+                for (int i = 0; i < cell.size; i++) {
+                    examined++;
+                    best.add(cell.spots[i]);
+                    held[0] += cell.spots[i].size;
+                    while (held[0] - best.peek().size >= k) held[0] -= best.poll().size;
+                }
+            }
+        });
+        List<Spot> nearestFirst = new ArrayList<>(best.size());
+        while (!best.isEmpty()) nearestFirst.add(best.poll());
+        Collections.reverse(nearestFirst);
+        List<FireEvent> found = new ArrayList<>(Math.min(k, held[0]));
+        for (Spot spot : nearestFirst) collect(spot, k - found.size(), found);
+        return found;
+    }
+
+    /**
+     * Returns the event nearest a point that passes a filter, such as one a drone can reach
+     * and still get home from on its remaining battery.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param maxDistance the farthest an event may be, in meters, inclusive
+     * @param filter the test an event must pass
+     * @return the nearest qualifying event, or null if there is none
+     */
+    public FireEvent nearest(double x, double y, double maxDistance, EventFilter filter) {
+        if (maxDistance < 0) return null;
+        class FilteredSearch extends RingSearch {
+            FireEvent best = null;
+            double bestDistanceSquared = maxDistance * maxDistance;
+
+            @Override
+            boolean finished(double ringDistanceSquared) {
+                return ringDistanceSquared > bestDistanceSquared;
+            }
+
+            @Override
+            void visit(Cell cell) {
+                for (int i = 0; i < cell.size; i++) {
+                    Spot spot = cell.spots[i];
+                    examined++;
+                    double distanceSquared = distanceSquared(spot.x, spot.y, x, y);
+                    if (distanceSquared > bestDistanceSquared || (best != null && distanceSquared == bestDistanceSquared)) continue;
+                    for (int j = 0; j < spot.size; j++) {
+                        examined++;
+                        if (!filter.test(spot.entries[j].event, spot.x, spot.y)) continue;
+                        best = spot.entries[j].event;
+                        bestDistanceSquared = distanceSquared;
+                        break;
+                    }
+                }
+            }
+        }
+        FilteredSearch search = new FilteredSearch();
+        search(x, y, maxDistance, search);
+        return search.best;
+    }
+
+    /**
+     * Returns how many positions and events the queries have looked at so far, a measure of
+     * their work that does not depend on timing.
+     *
+     * @return the count
+     */
+    long getExamined() {
+        return examined;
+    }
+
+    /**
+     * Adds up to {@code limit} of a spot's events to a list.
+     */
+    private void collect(Spot spot, int limit, List<FireEvent> found) {
+        for (int i = 0; i < spot.size && i < limit; i++) {
+            examined++;
+            found.add(spot.entries[i].event);
+        }
+    }
+
+    /**
+     * Visits the occupied cells ring by ring outward from the cell holding a point, until the
+     * search is finished or no occupied cell is left within {@code maxDistance}. Once a ring would
+     * have more cells than the grid has occupied cells, the remaining occupied cells are sorted
+     * by ring and visited in that order instead.
+     */
+    private void search(double x, double y, double maxDistance, RingSearch search) {
+        if (cells.isEmpty()) return;
+        int centerX = cellOf(x), centerY = cellOf(y);
+        int lastRing = Math.max(Math.max(centerX - minCellX, maxCellX - centerX), Math.max(centerY - minCellY, maxCellY - centerY));
+        if (maxDistance / cellSize + 1 < lastRing) lastRing = (int) Math.ceil(maxDistance / cellSize) + 1;
+        for (int ring = 0; ring <= lastRing; ring++) {
+            if (search.finished(ringDistanceSquared(ring))) return;
+            if (8L * ring > cells.size()) {
+                List<Cell> remaining = new ArrayList<>();
+                for (Cell cell : cells.values()) {
+                    if (ringOf(cell, centerX, centerY) >= ring) remaining.add(cell);
+                }
+                remaining.sort(Comparator.comparingInt(cell -> ringOf(cell, centerX, centerY)));
+                for (Cell cell : remaining) {
+                    int cellRing = ringOf(cell, centerX, centerY);
+                    if (cellRing > lastRing || search.finished(ringDistanceSquared(cellRing))) return;
+                    search.visit(cell);
+                }
+                return;
+            }
+            if (ring == 0) {
+                visitCell(search, centerX, centerY);
+                continue;
+            }
+            for (int offset = -ring; offset <= ring; offset++) {
+                visitCell(search, centerX + offset, centerY - ring);
+                visitCell(search, centerX + offset, centerY + ring);
+            }
+            for (int offset = -ring + 1; offset <= ring - 1; offset++) {
+                visitCell(search, centerX - ring, centerY + offset);
+                visitCell(search, centerX + ring, centerY + offset);
+            }
+        }
+    }
+
+    private void visitCell(RingSearch search, int cellX, int cellY) {
+        Cell cell = cells.get(key(cellX, cellY));
+        if (cell != null) search.visit(cell);
+    }
+
+    /**
+     * Returns how many cells away (in Chebyshev distance) a cell is from a center cell.
+     */
+    private static int ringOf(Cell cell, int centerX, int centerY) {
+        return Math.max(Math.abs((int) (cell.key >> 32) - centerX), Math.abs((int) cell.key - centerY));
+    }
+
+    /**
+     * Returns the occupied cells overlapping a rectangle. When the rectangle spans more cells
+     * than are occupied, the occupied cells are scanned instead of the rectangle.
+     */
+    private List<Cell> cellsIn(double minX, double minY, double maxX, double maxY) {
+        int fromX = Math.max(cellOf(minX), minCellX), toX = Math.min(cellOf(maxX), maxCellX);
+        int fromY = Math.max(cellOf(minY), minCellY), toY = Math.min(cellOf(maxY), maxCellY);
+        List<Cell> found = new ArrayList<>();
+        if (fromX > toX || fromY > toY) return found;
+        if ((long) (toX - fromX + 1) * (toY - fromY + 1) > cells.size()) {
+            for (Cell cell : cells.values()) {
+                int cellX = (int) (cell.key >> 32), cellY = (int) cell.key;
+                if (cellX >= fromX && cellX <= toX && cellY >= fromY && cellY <= toY) found.add(cell);
+            }
+            return found;
+        }
+        for (int cellX = fromX; cellX <= toX; cellX++) {
+            for (int cellY = fromY; cellY <= toY; cellY++) {
+                Cell cell = cells.get(key(cellX, cellY));
+                if (cell != null) found.add(cell);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns a lower bound on the squared distance from any point in the center cell to any point in a ring.
+     */
+    private double ringDistanceSquared(int ring) {
+        double distance = Math.max(0, ring - 1) * cellSize;
+        return distance * distance;
+    }
+
+    private int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    private static double distanceSquared(double x1, double y1, double x2, double y2) {
+        double dx = x1 - x2, dy = y1 - y2;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,230 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the fire events streamed in by each zone into one stream in detection-time order.
+ *
+ * Each zone reads the event file in time order and sends its events in numbered batches. Every
+ * batch also carries the time the zone has read up to, a promise that the zone will send nothing
+ * detected earlier. The lowest of those times over all open zones is the low watermark. Events at
+ * or before it are released, oldest first, as soon as the watermark passes them; later events wait
+ * in their zone's buffer. Batches that arrive ahead of a missing one are held until the gap fills,
+ * so a retransmitted datagram cannot move a zone's promise past events still in flight. When a zone
+ * closes its stream it stops holding the watermark back.
+ *
+ * Releasing is a k-way merge: a heap holds each zone whose buffer is not empty, ordered by the
+ * detection time of the oldest buffered event, so each release costs O(log k) for k zones.
+ * Events sent without a batch number, or detected before the watermark, are released at once.
+ * The merger is thread-safe.
+ */
+public class EventMerger {
+    private static final int OPEN = -1; // Watermark of a zone that has not yet sent anything
+
+    /**
+     * One zone's stream: its promise, its buffered events and any batches that arrived early.
+     */
+    private static final class Stream {
+        final int zoneId;
+        final Deque<FireEvent> buffered = new ArrayDeque<>();
+        final Map<Integer, Batch> early = new HashMap<>();
+        int nextSequence = 0;
+        int through = OPEN; // Second of the day this zone has read up to
+        boolean closed = false;
+
+        Stream(int zoneId) {
+            this.zoneId = zoneId;
+        }
+
+        int headSecond() {
+            return secondOf(buffered.peekFirst());
+        }
+    }
+
+    /**
+     * A batch held until the batches before it have arrived.
+     */
+    private static final class Batch {
+        final int throughSecond;
+        final List<FireEvent> events;
+
+        Batch(int throughSecond, List<FireEvent> events) {
+            this.throughSecond = throughSecond;
+            this.events = events;
+        }
+    }
+
+    private final Map<Integer, Stream> streams = new HashMap<>();
+    private final PriorityQueue<Stream> heads = new PriorityQueue<>((a, b) -> {
+        int order = Integer.compare(a.headSecond(), b.headSecond());
+        return order != 0 ? order : Integer.compare(a.zoneId, b.zoneId);
+    });
+    private int openStreams = 0;
+    private int bufferedEvents = 0;
+
+    /**
+     * Registers a zone whose stream the watermark must wait for, before it sends anything.
+     *
+     * @param zoneId the zone id
+     */
+    public synchronized void expect(int zoneId) {
+        stream(zoneId);
+    }
+
+    /**
+     * Adds a batch from a zone and returns the events it makes releasable.
+     *
+     * @param zoneId the zone that sent the batch
+     * @param sequence the batch number, counting from 0 for each zone, or -1 to release the events unordered
+     * @param throughSecond the second of the day the zone has read up to
+     * @param events the zone's events in the batch
+     * @return the released events: any the watermark had already passed, then the rest in detection-time order
+     */
+    public synchronized List<FireEvent> offer(int zoneId, int sequence, int throughSecond, List<FireEvent> events) {
+        List<FireEvent> released = new ArrayList<>();
+        if (sequence < 0) {
+            released.addAll(events);
+            return released;
+        }
+        Stream stream = stream(zoneId);
+        if (stream.closed) {
+            released.addAll(events); // Nothing is held back for a zone that has finished
+            return released;
+        }
+        if (sequence < stream.nextSequence) return released; // Already applied
+        if (sequence > stream.nextSequence) {
+            stream.early.put(sequence, new Batch(throughSecond, events));
+            return released;
+        }
+        apply(stream, throughSecond, events, released);
+        Batch next;
+        while ((next = stream.early.remove(stream.nextSequence)) != null) {
+            apply(stream, next.throughSecond, next.events, released);
+        }
+        release(released);
+        return released;
+    }
+
+    /**
+     * Closes a zone's stream once it has sent every event, and returns the events that makes releasable.
+     *
+     * @param zoneId the zone id
+     * @return the released events, in detection-time order
+     */
+    public synchronized List<FireEvent> close(int zoneId) {
+        List<FireEvent> released = new ArrayList<>();
+        Stream stream = stream(zoneId);
+        if (!stream.closed) {
+            // Batches still waiting for a gap to fill will never be completed; keep their events
+            for (Batch batch : stream.early.values()) apply(stream, batch.throughSecond, batch.events, released);
+            stream.early.clear();
+            stream.closed = true;
+            openStreams--;
+        }
+        release(released);
+        return released;
+    }
+
+    /**
+     * Returns the low watermark: every event detected at or before it has been released.
+     *
+     * @return the second of the day, -1 if some zone has not sent anything yet,
+     *         or {@link Integer#MAX_VALUE} once every zone has closed its stream
+     */
+    public synchronized int getWatermark() {
+        int watermark = Integer.MAX_VALUE;
+        for (Stream stream : streams.values()) {
+            if (!stream.closed) watermark = Math.min(watermark, stream.through);
+        }
+        return watermark;
+    }
+
+    /**
+     * Returns whether every zone has closed its stream, so nothing more can arrive.
+     *
+     * @return true if every stream is closed
+     */
+    public synchronized boolean isComplete() {
+        return openStreams == 0;
+    }
+
+    /**
+     * Returns how many events are waiting for the watermark to pass them.
+     *
+     * @return the number of buffered events
+     */
+    public synchronized int getBufferedCount() {
+        return bufferedEvents;
+    }
+
+    private Stream stream(int zoneId) {
+        Stream stream = streams.get(zoneId);
+        if (stream == null) {
+            stream = new Stream(zoneId);
+            streams.put(zoneId, stream);
+            openStreams++;
+        }
+        return stream;
+    }
+
+    /**
+     * Buffers a batch's events and advances the zone's promise. Events the watermark has already
+     * passed are released straight away.
+     */
+    private void apply(Stream stream, int throughSecond, List<FireEvent> events, List<FireEvent> released) {
+        stream.nextSequence++;
+        int watermark = getWatermark();
+        for (FireEvent event : events) {
+            if (secondOf(event) <= watermark) {
+                released.add(event);
+            } else {
+                buffer(stream, event);
+            }
+        }
+        stream.through = Math.max(stream.through, throughSecond);
+    }
+
+    /**
+     * Adds an event to a zone's buffer, keeping the buffer in time order.
+     */
+    private void buffer(Stream stream, FireEvent event) {
+        boolean wasEmpty = stream.buffered.isEmpty();
+        int second = secondOf(event);
+        if (wasEmpty || second >= secondOf(stream.buffered.peekLast())) {
+            stream.buffered.addLast(event);
+        } else {
+            // Out of order within the zone: rare, so shuffle the tail rather than keep a heap per zone
+            if (second < stream.headSecond()) heads.remove(stream);
+            Deque<FireEvent> later = new ArrayDeque<>();
+            while (!stream.buffered.isEmpty() && secondOf(stream.buffered.peekLast()) > second) {
+                later.addFirst(stream.buffered.pollLast());
+            }
+            stream.buffered.addLast(event);
+            stream.buffered.addAll(later);
+            if (!heads.contains(stream)) heads.add(stream);
+        }
+        if (wasEmpty) heads.add(stream);
+        bufferedEvents++;
+    }
+
+    /**
+     * Moves every buffered event at or before the watermark to the released list, oldest first.
+     */
+    private void release(List<FireEvent> released) {
+        int watermark = getWatermark();
+        while (!heads.isEmpty() && heads.peek().headSecond() <= watermark) {
+            Stream stream = heads.poll();
+            released.add(stream.buffered.pollFirst());
+            bufferedEvents--;
+            if (!stream.buffered.isEmpty()) heads.add(stream);
+        }
+    }
+
+    private static int secondOf(FireEvent event) {
+        return event.getTimeAsLocalTime().toSecondOfDay();
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Scores pending fire events for dispatch: severity, time waited since detection and remaining litres,
+ * each with its own weight. The event with the highest score is dispatched first.
+ *
+ * Every queued event waits at the same rate, so the waiting-time term can be measured from the
+ * detection time alone: {@code ageWeight * (now - detected)} orders events the same way as
+ * {@code -ageWeight * detected}. The score therefore never changes while an event sits in the queue,
+ * and a heap ordered by it stays valid without being rebuilt as time passes.
+ */
+public class EventPriority {
+    /**
+     * A HIGH fire outranks a LOW fire detected up to 20 minutes earlier, and a fire with 10 litres
+     * left outranks an otherwise equal fire needing 30 litres by a little over 3 minutes.
+     */
+    public static final EventPriority DEFAULT = new EventPriority(600, 1, -10);
+
+    private final double severityWeight;
+    private final double ageWeight;
+    private final double litresWeight;
+
+    /**
+     * Constructs a new EventPriority.
+     *
+     * @param severityWeight the score per severity level (LOW = 1, MODERATE = 2, HIGH = 3)
+     * @param ageWeight the score per second waited since detection
+     * @param litresWeight the score per litre still needed; negative to finish nearly extinguished fires first
+     */
+    public EventPriority(double severityWeight, double ageWeight, double litresWeight) {
+        this.severityWeight = severityWeight;
+        this.ageWeight = ageWeight;
+        this.litresWeight = litresWeight;
+    }
+
+    /**
+     * Returns the time-invariant score of an event. Higher scores are dispatched first.
+     *
+     * @param event the event
+     * @return the score
+     */
+    public double score(FireEvent event) {
+        return severityWeight * severityLevel(event.getSeverity())
+                - ageWeight * event.getTimeAsLocalTime().toSecondOfDay()
+                + litresWeight * event.getLitres();
+    }
+
+    /**
+     * Returns the numeric level of a severity.
+     *
+     * @param severity the severity (e.g., low, moderate, high)
+     * @return 1 to 3, or 0 if the severity is unknown
+     */
+    public static int severityLevel(String severity) {
+        if (severity == null) return 0;
+        return switch (severity.toLowerCase()) {
+            case "low" -> 1;
+            case "moderate" -> 2;
+            case "high" -> 3;
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,189 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Scheduler's backlog of pending fire events: an indexed binary heap ordered by an
+ * {@link EventPriority} score, highest first, with ties going to the event queued first.
+ *
+ * Each event knows its slot in the heap, so besides O(log n) insertion and removal of the top,
+ * any queued event can be removed or re-scored (for example when its remaining litres change)
+ * in O(log n) without searching for it. Events are tracked by identity.
+ * The queue is not thread-safe; the Scheduler uses it under its lock.
+ */
+public class EventQueue {
+
+    /**
+     * A queued event, its score and its slot in the heap.
+     */
+    private static final class Node {
+        final FireEvent event;
+        final long sequence;
+        double score;
+        int slot;
+
+        Node(FireEvent event, long sequence, double score) {
+            this.event = event;
+            this.sequence = sequence;
+            this.score = score;
+        }
+    }
+
+    private final EventPriority priority;
+    private final Map<FireEvent, Node> nodes = new IdentityHashMap<>();
+    private Node[] heap = new Node[16];
+    private int size = 0;
+    private long nextSequence = 0;
+
+    /**
+     * Constructs a new EventQueue.
+     *
+     * @param priority the score that orders the queue
+     */
+    public EventQueue(EventPriority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Adds an event. An event that is already queued is re-scored instead.
+     *
+     * @param event the event
+     */
+    public void add(FireEvent event) {
+        if (nodes.containsKey(event)) {
+            update(event);
+            return;
+        }
+        Node node = new Node(event, nextSequence++, priority.score(event));
+        if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+        node.slot = size;
+        heap[size++] = node;
+        nodes.put(event, node);
+        siftUp(node.slot);
+    }
+
+    /**
+     * Returns the highest-priority event without removing it.
+     *
+     * @return the event, or null if the queue is empty
+     */
+    public FireEvent peek() {
+        return size == 0 ? null : heap[0].event;
+    }
+
+    /**
+     * Removes and returns the highest-priority event.
+     *
+     * @return the event, or null if the queue is empty
+     */
+    public FireEvent poll() {
+        if (size == 0) return null;
+        FireEvent event = heap[0].event;
+        remove(event);
+        return event;
+    }
+
+    /**
+     * Removes an event from anywhere in the queue.
+     *
+     * @param event the event
+     * @return true if the event was queued
+     */
+    public boolean remove(FireEvent event) {
+        Node node = nodes.remove(event);
+        if (node == null) return false;
+        int slot = node.slot;
+        Node last = heap[--size];
+        heap[size] = null;
+        if (slot < size) {
+            heap[slot] = last;
+            last.slot = slot;
+            siftDown(slot);
+            siftUp(last.slot);
+        }
+        return true;
+    }
+
+    /**
+     * Re-scores a queued event after its severity or remaining litres changed.
+     *
+     * @param event the event
+     * @return true if the event was queued
+     */
+    public boolean update(FireEvent event) {
+        Node node = nodes.get(event);
+        if (node == null) return false;
+        node.score = priority.score(event);
+        siftUp(node.slot);
+        siftDown(node.slot);
+        return true;
+    }
+
+    /**
+     * Returns whether an event is queued.
+     *
+     * @param event the event
+     * @return true if the event is queued
+     */
+    public boolean contains(FireEvent event) {
+        return nodes.containsKey(event);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the queued events, in no particular order.
+     *
+     * @return a snapshot of the queued events
+     */
+    public List<FireEvent> toList() {
+        List<FireEvent> events = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) events.add(heap[i].event);
+        return events;
+    }
+
+    /**
+     * Returns whether node a should be dispatched before node b.
+     */
+    private static boolean before(Node a, Node b) {
+        if (a.score != b.score) return a.score > b.score;
+        return a.sequence < b.sequence;
+    }
+
+    private void siftUp(int slot) {
+        Node node = heap[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (!before(node, heap[parent])) break;
+            place(heap[parent], slot);
+            slot = parent;
+        }
+        place(node, slot);
+    }
+
+    private void siftDown(int slot) {
+        Node node = heap[slot];
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= size) break;
+            if (child + 1 < size && before(heap[child + 1], heap[child])) child++;
+            if (!before(heap[child], node)) break;
+            place(heap[child], slot);
+            slot = child;
+        }
+        place(node, slot);
+    }
+
+    private void place(Node node, int slot) {
+        heap[slot] = node;
+        node.slot = slot;
+    }
+}
@@ -1,7 +1,5 @@
 import java.io.Serializable;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 
 /**
  * Represents a fire event in the simulation.
@@ -12,6 +10,7 @@ public class FireEvent implements Serializable {
     private static final long serialVersionUID = 1L;
 
     private final String time;
+    private final int secondOfDay; // Parsed once from the time; -1 if it is not HH:mm:ss
     private final int zoneId;
     private final String eventType;
     private final String severity;
@@ -27,11 +26,11 @@ public class FireEvent implements Serializable {
         INACTIVE,
     }
 
-    // New field to hold zone coordinates so that they survive serialization.
-    private final String zoneDetails;
+    // The zone the event is in, so its geometry survives serialization; null if unknown.
+    private final Zone zone;
 
     // Removed transient fireIncidentSubsystem from what we rely on for zone details.
-    // (You can still keep a transient reference if needed for runtime purposes, but it’s not used in getZoneDetails().)
+    // (You can still keep a transient reference if needed for runtime purposes, but it’s not used in getZone().)
     private transient FireIncidentSubsystem fireIncidentSubsystem;
 
     /**
@@ -42,18 +41,19 @@ public class FireEvent implements Serializable {
      * @param eventType the type of fire event
      * @param severity the severity of the fire event
      * @param fault fault information related to the event, if any
-     * @param fireIncidentSubsystem the FireIncidentSubsystem instance to capture zone coordinates
+     * @param fireIncidentSubsystem the FireIncidentSubsystem instance to capture the zone from
      */
     public FireEvent(String time, int zoneId, String eventType, String severity, String fault, FireIncidentSubsystem fireIncidentSubsystem) {
         this.time = time;
+        this.secondOfDay = secondOfDay(time);
         this.zoneId = zoneId;
         this.eventType = eventType;
         this.severity = severity;
         this.fireIncidentSubsystem = fireIncidentSubsystem;
         this.litresNeeded = 0;  // Default value, will be set by Scheduler
         this.fault = fault;
-        // Capture the zone coordinates for later use.
-        this.zoneDetails = fireIncidentSubsystem != null ? fireIncidentSubsystem.getZoneCoordinates() : "Unknown";
+        // Capture the zone for later use.
+        this.zone = fireIncidentSubsystem != null ? fireIncidentSubsystem.getZone() : null;
         this.currentState = FireEventState.ACTIVE;
     }
 
@@ -64,28 +64,82 @@ public class FireEvent implements Serializable {
      */
     public FireEvent(FireEvent other) {
         this.time = other.time;
+        this.secondOfDay = other.secondOfDay;
         this.zoneId = other.zoneId;
         this.eventType = other.eventType;
         this.severity = other.severity;
         this.litresNeeded = other.litresNeeded;
         this.fault = other.fault;  // You can also set this to "NONE" if you're resetting
-        this.zoneDetails = other.zoneDetails;
+        this.zone = other.zone;
         this.currentState = other.currentState;
         this.fireIncidentSubsystem = null; // Don't carry over transient references
     }
 
+    /**
+     * Constructs a FireEvent from fields decoded off the wire.
+     *
+     * @param time the time at which the event occurred (in HH:mm:ss format)
+     * @param zoneId the ID of the zone where the event occurred
+     * @param eventType the type of fire event
+     * @param severity the severity of the fire event
+     * @param fault fault information related to the event, if any
+     * @param zone the zone captured by the sender, or null if unknown
+     * @param litresNeeded the remaining amount of agent needed in liters
+     * @param currentState the current state of the fire event
+     */
+    FireEvent(String time, int zoneId, String eventType, String severity, String fault,
+              Zone zone, int litresNeeded, FireEventState currentState) {
+        this.time = time;
+        this.secondOfDay = secondOfDay(time);
+        this.zoneId = zoneId;
+        this.eventType = eventType;
+        this.severity = severity;
+        this.fault = fault;
+        this.zone = zone;
+        this.litresNeeded = litresNeeded;
+        this.currentState = currentState;
+    }
+
     /**
      * Parses the time string and returns it as a LocalTime object.
      *
      * @return the event time as a LocalTime, or LocalTime.MIDNIGHT if parsing fails
      */
     public LocalTime getTimeAsLocalTime() {
-        try {
-            return LocalTime.parse(this.time, DateTimeFormatter.ofPattern("HH:mm:ss"));
-        } catch (DateTimeParseException e) {
+        if (secondOfDay < 0) {
             System.err.println("Invalid time format in FireEvent: " + this.time);
             return LocalTime.MIDNIGHT; // fallback
         }
+        return LocalTime.ofSecondOfDay(secondOfDay);
+    }
+
+    /**
+     * Returns the time of the fire event as seconds since midnight, parsed when the event was made.
+     *
+     * @return the second of the day, or -1 if the time is not in HH:mm:ss format
+     */
+    public int getSecondOfDay() {
+        return secondOfDay;
+    }
+
+    /**
+     * Parses an HH:mm:ss time without going through java.time, since every event created or
+     * decoded parses one.
+     *
+     * @param time the time to parse
+     * @return the second of the day, or -1 if the time is null or not in HH:mm:ss format
+     */
+    private static int secondOfDay(String time) {
+        if (time == null || time.length() != 8 || time.charAt(2) != ':' || time.charAt(5) != ':') return -1;
+        int hours = twoDigits(time, 0), minutes = twoDigits(time, 3), seconds = twoDigits(time, 6);
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) return -1;
+        return hours * 3600 + minutes * 60 + seconds;
+    }
+
+    private static int twoDigits(String text, int at) {
+        char tens = text.charAt(at), units = text.charAt(at + 1);
+        if (tens < '0' || tens > '9' || units < '0' || units > '9') return -1;
+        return (tens - '0') * 10 + (units - '0');
     }
 
 
@@ -174,10 +228,12 @@ public class FireEvent implements Serializable {
     public int getLitres() { return litresNeeded; }
 
     /**
-     * Returns the zone details that were captured during construction.
+     * Returns the zone that was captured during construction.
+     *
+     * @return the zone, or null if it is unknown
      */
-    public String getZoneDetails() {
-        return zoneDetails;
+    public Zone getZone() {
+        return zone;
     }
 
     @Override
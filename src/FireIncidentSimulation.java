@@ -1,16 +1,86 @@
 import javax.swing.*;
 import java.awt.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
 
 public class FireIncidentSimulation {
 
+    /**
+     * Launches the simulation.
+     * Pass {@code --virtual-threads} to run drones, zones and listeners on virtual threads,
+     * {@code --drones=N} to change the fleet size, {@code --shards=N} to split the zones and
+     * drones across N Schedulers, and {@code --journal=DIR} to journal the Schedulers' state to a
+     * directory, resuming from it if a previous run left state there. {@code --speed=X} runs
+     * simulated time X times faster than the wall clock, and {@code --discrete-time} skips straight
+     * from one drone wake-up to the next. {@code --headless} runs without the map or any other
+     * Swing component, for benchmark and batch runs. {@code --tick-engine} runs headless too,
+     * with the whole fleet flown by a {@link FleetEngine} instead of a thread per drone.
+     * {@code --wind=X,Y} has the drones fly in a wind of X m/s towards positive x and Y m/s towards
+     * positive y, which puts them ahead of or behind the legs they publish.
+     *
+     * @param args command-line flags
+     */
     public static void main(String[] args) {
         String fireIncidentFile = "src//input//test_event_file_with_faults.csv";
         String zoneFile = "src//input//test_zone_file.csv";
         int numDrones = 10;
+        int numShards = 1;
+        Path journalDirectory = null;
+        boolean headless = false;
+        boolean tickEngine = false;
+        double[] wind = {0, 0};
+        for (String arg : args) {
+            if (arg.equals("--virtual-threads")) {
+                SimulationThreads.useVirtualThreads();
+            } else if (arg.startsWith("--drones=")) {
+                numDrones = Integer.parseInt(arg.substring("--drones=".length()));
+            } else if (arg.startsWith("--shards=")) {
+                numShards = Integer.parseInt(arg.substring("--shards=".length()));
+            } else if (arg.startsWith("--journal=")) {
+                journalDirectory = Paths.get(arg.substring("--journal=".length()));
+            } else if (arg.startsWith("--speed=")) {
+                SimulationClock.set(SimulationClock.realTime(Double.parseDouble(arg.substring("--speed=".length()))));
+            } else if (arg.equals("--discrete-time")) {
+                SimulationClock.set(SimulationClock.discreteEvent());
+            } else if (arg.equals("--headless")) {
+                headless = true;
+            } else if (arg.equals("--tick-engine")) {
+                tickEngine = true;
+            } else if (arg.startsWith("--wind=")) {
+                String[] components = arg.substring("--wind=".length()).split(",");
+                wind = new double[]{Double.parseDouble(components[0]), Double.parseDouble(components[1])};
+            }
+        }
+        int fleetSize = numDrones;
+        ShardPlan shards = new ShardPlan(numShards, 0);
+        Path journal = journalDirectory;
 
         MetricsLogger logger = new MetricsLogger();
         logger.markSimulationStart();
 
+        if (tickEngine) {
+            if (numShards > 1) System.out.println("The tick engine runs a single Scheduler; ignoring --shards.");
+            if (wind[0] != 0 || wind[1] != 0) System.out.println("The tick engine flies without wind; ignoring --wind.");
+            runTickEngine(zoneFile, fireIncidentFile, fleetSize, journal, logger);
+            System.exit(0);
+        }
+        if (headless) {
+            // The drones export the metrics as they shut down; the Schedulers keep listening, so stop them once they have
+            for (Thread drone : launch(zoneFile, fireIncidentFile, fleetSize, shards, journal, wind, SimulationObserver.NONE, logger)) {
+                try {
+                    drone.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            System.exit(0);
+        }
+        double[] droneWind = wind;
         SwingUtilities.invokeLater(() -> {
             MapUI mapUI = new MapUI();
             DroneStatusPanel statusPanel = new DroneStatusPanel();
@@ -47,16 +117,67 @@ public class FireIncidentSimulation {
             frame.setVisible(true);
 
             // === SIMULATION ===
-            Scheduler scheduler = new Scheduler(zoneFile, fireIncidentFile, numDrones, 0, mapUI, logger);
-            Thread schedulerThread = new Thread(scheduler, "Scheduler");
-            schedulerThread.start();
-
-            for (int i = 1; i <= numDrones; i++) {
-                DroneSubsystem drone = new DroneSubsystem(scheduler, i, 0, mapUI, logger);
-                new Thread(drone, "Drone Subsystem " + i).start();
-            }
+            // The simulation's threads hand updates to the map in batches rather than wait on its lock
+            launch(zoneFile, fireIncidentFile, fleetSize, shards, journal, droneWind, new BatchingObserver(mapUI, 100), logger);
         });
 
     }
 
+    /**
+     * Runs a single Scheduler and flies the fleet with a {@link FleetEngine}, one simulated second
+     * per tick, until every fire event has been handled.
+     *
+     * @param zoneFile the zone file
+     * @param fireIncidentFile the event file
+     * @param fleetSize the number of drones
+     * @param journal the journal directory, or null not to journal
+     * @param logger the metrics logger
+     */
+    private static void runTickEngine(String zoneFile, String fireIncidentFile, int fleetSize, Path journal, MetricsLogger logger) {
+        Scheduler scheduler = new Scheduler(zoneFile, fireIncidentFile, fleetSize, new ShardPlan(1, 0), 0, journal,
+                SimulationObserver.NONE, logger);
+        SimulationThreads.startDaemon("Scheduler", scheduler);
+        FleetEngine engine = new FleetEngine(fleetSize, FleetEngine.Dispatcher.of(scheduler), 1, ForkJoinPool.commonPool());
+        while (!scheduler.hasFinished()) {
+            engine.tick();
+            // Waiting for the zones to send events; do not spin
+            if (engine.countInState(DroneSubsystem.DroneState.IDLE) == fleetSize) LockSupport.parkNanos(1_000_000);
+        }
+        System.out.println("Tick engine: " + fleetSize + " drones handled every event in " + engine.getSimulatedSeconds()
+                + " simulated seconds; slowest tick " + engine.getSlowestTickNanos() / 1000 + " us.");
+        logger.markSimulationEnd();
+        logger.exportToFile("simulation_metrics.txt");
+    }
+
+    /**
+     * Starts the Schedulers and the drones.
+     *
+     * @param zoneFile the zone file
+     * @param fireIncidentFile the event file
+     * @param fleetSize the number of drones
+     * @param shards how the zones and drones are split across Schedulers
+     * @param journal the journal directory, or null not to journal
+     * @param wind the wind the drones fly in, in m/s along x and y
+     * @param observer the observer shown the run
+     * @param logger the metrics logger
+     * @return the drones' threads
+     */
+    private static List<Thread> launch(String zoneFile, String fireIncidentFile, int fleetSize, ShardPlan shards, Path journal,
+                               double[] wind, SimulationObserver observer, MetricsLogger logger) {
+        Scheduler[] schedulers = new Scheduler[shards.getShardCount()];
+        for (int shard = 0; shard < schedulers.length; shard++) {
+            Path shardJournal = journal == null || schedulers.length == 1 ? journal : journal.resolve("shard-" + shard);
+            schedulers[shard] = new Scheduler(zoneFile, fireIncidentFile, fleetSize, shards, shard, shardJournal, observer, logger);
+            SimulationThreads.start(schedulers.length == 1 ? "Scheduler" : "Scheduler " + shard, schedulers[shard]);
+        }
+
+        List<Thread> drones = new ArrayList<>();
+        for (int i = 1; i <= fleetSize; i++) {
+            DroneSubsystem drone = new DroneSubsystem(schedulers[shards.shardOfDrone(i)], i, 0, observer, logger);
+            drone.setWind(wind[0], wind[1]);
+            drones.add(SimulationThreads.start("Drone Subsystem " + i, drone));
+        }
+        return drones;
+    }
+
 }
\ No newline at end of file
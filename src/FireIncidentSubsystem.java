@@ -1,26 +1,29 @@
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * FireIncidentSubsystem represents a subsystem responsible for handling fire events
- * for a specific zone. It reads fire events from a file, listens for incoming UDP requests,
+ * for a specific zone. It reads fire events from a file, answers incoming UDP requests,
  * and communicates with the Scheduler to add new fire events.
  * Implements Runnable to allow concurrent execution.
  */
 public class FireIncidentSubsystem implements Runnable {
     public static final int DEFAULT_FIS_PORT = 5000;
-    public static final int DEFAULT_SCHEDULER_PORT = 6100;
+    public static final int DEFAULT_SCHEDULER_PORT = Scheduler.DEFAULT_SCHEDULER_PORT;
+    public static final int MAX_BATCHES_IN_FLIGHT = 16;
+    public static final int PROGRESS_LINES = 64; // File lines read between batches sent to report progress
     private static int PORT;
     private final int zoneId;
-    private final int x1, y1, x2, y2;
+    private final Zone zone;
     private final InetAddress schedulerAddress;
     private DatagramSocket socket;
-    private boolean running = true;
+    private RpcClient rpc;
     private final int schedulerPort;
-    private Thread udpListenerThread;
     private String eventFile;
     private int numEvents;
+    private int eventsToSkip = 0; // Events a restarted Scheduler already has
 
     /**
      * Constructs a new FireIncidentSubsystem.
@@ -36,17 +39,34 @@ public class FireIncidentSubsystem implements Runnable {
      */
     public FireIncidentSubsystem(String eventFile, int zoneId,
                                  int x1, int y1, int x2, int y2, int baseOffsetport) throws UnknownHostException {
+        this(eventFile, zoneId, x1, y1, x2, y2, baseOffsetport, DEFAULT_SCHEDULER_PORT);
+    }
+
+    /**
+     * Constructs a new FireIncidentSubsystem that reports to a Scheduler on the given port.
+     *
+     * @param eventFile the file path containing fire events
+     * @param zoneId the identifier of the zone for which this subsystem is responsible
+     * @param x1 the x-coordinate of the zone's starting point
+     * @param y1 the y-coordinate of the zone's starting point
+     * @param x2 the x-coordinate of the zone's ending point
+     * @param y2 the y-coordinate of the zone's ending point
+     * @param baseOffsetport an offset to avoid port conflicts
+     * @param schedulerPort the port the Scheduler receives requests on
+     * @throws UnknownHostException if the local host address cannot be determined
+     */
+    public FireIncidentSubsystem(String eventFile, int zoneId, int x1, int y1, int x2, int y2,
+                                 int baseOffsetport, int schedulerPort) throws UnknownHostException {
         this.schedulerAddress = InetAddress.getLocalHost();
-        this.schedulerPort = DEFAULT_SCHEDULER_PORT;
+        this.schedulerPort = schedulerPort;
         this.zoneId = zoneId;
-        this.x1 = x1;
-        this.y1 = y1;
-        this.x2 = x2;
-        this.y2 = y2;
+        this.zone = new Zone(zoneId, x1, y1, x2, y2);
         PORT = DEFAULT_FIS_PORT + zoneId + baseOffsetport;
         this.eventFile = eventFile;
         try {
             this.socket = new DatagramSocket(PORT);
+            this.rpc = new RpcClient(socket, schedulerAddress, schedulerPort, WireProtocol.SENDER_ZONE, zoneId);
+            this.rpc.setRequestHandler(this::processRequest);
             System.out.println("FireIncidentSubsystem for Zone " + zoneId + " listening on port " + PORT);
         } catch (SocketException e) {
             System.err.println("Error initializing UDP socket on port " + PORT);
@@ -55,77 +75,139 @@ public class FireIncidentSubsystem implements Runnable {
     }
 
     /**
-     * UDPListener is a private inner class that continuously listens for UDP packets.
-     * When a packet is received, it processes the packet.
+     * Processes the event file for this zone by reading each line, parsing it into a FireEvent,
+     * and streaming the zone's events to the Scheduler while the file is still being read.
+     *
+     * The file is in detection-time order. Events go out in numbered ADD_FIRE_EVENTS batches that
+     * also carry the last second the file has been read through, so the Scheduler can queue events
+     * as soon as every zone is past them instead of waiting for the whole file. A batch is sent
+     * when it fills a datagram, and otherwise every {@link #PROGRESS_LINES} lines, even if empty,
+     * so a zone with few events does not hold the others back. Up to
+     * {@link #MAX_BATCHES_IN_FLIGHT} batches are outstanding at once. SET_EVENTS_LOADED is sent
+     * at the end in every case, including a zone with no events.
+     *
+     * @param eventFile the path to the event file
      */
-    private class UDPListener implements Runnable {
-        @Override
-        public void run() {
-            System.out.println("UDPListener running for Zone " + zoneId);
-            byte[] buffer = new byte[4096];
-            while (running) {
-                try {
-                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                    socket.receive(packet);
-                    processUDPPacket(packet);
-                } catch (SocketException se) {
-                    // Socket is closed; exit the loop.
-                    System.out.println("UDPListener for Zone " + zoneId + " detected socket closure, exiting.");
-                    break;
-                } catch (IOException e) {
-                    if (running) {
-                        System.err.println("Error receiving UDP packet: " + e.getMessage());
+    public void processEventFile(String eventFile) {
+        System.out.println("Processing event file for Zone " + zoneId);
+        Deque<CompletableFuture<Object>> inFlight = new ArrayDeque<>();
+        boolean allAcknowledged = true;
+        numEvents = 0;
+        try {
+            if (rpc == null) return;
+            InetSocketAddress scheduler = new InetSocketAddress(schedulerAddress, schedulerPort);
+            List<Object> batch = new ArrayList<>();
+            int sequence = 0;
+            int latestSecond = -1;
+            int linesSinceSend = 0;
+            try (BufferedReader reader = new BufferedReader(new FileReader(eventFile))) {
+                String line;
+                boolean skipHeader = true;
+                while ((line = reader.readLine()) != null) {
+                    if (skipHeader) {
+                        skipHeader = false;
+                        continue;
+                    }
+                    FireEvent fireEvent = parseEvent(line);
+                    int second = fireEvent.getTimeAsLocalTime().toSecondOfDay();
+                    // Every line before this one has been read, so the zone is through the second before it
+                    latestSecond = Math.max(latestSecond, second);
+                    linesSinceSend++;
+                    if (fireEvent.getZoneId() == zoneId && eventsToSkip > 0) {
+                        eventsToSkip--;
+                    } else if (fireEvent.getZoneId() == zoneId) {
+                        System.out.println("FireIncidentSubsystem-Zone " + zoneId + " → New Fire Event: " + fireEvent);
+                        batch.add(fireEvent);
+                        numEvents++;
+                        if (WireProtocol.countFitting(batchArgs(sequence, latestSecond - 1, batch), 0) < batch.size() + 2) {
+                            FireEvent overflow = (FireEvent) batch.remove(batch.size() - 1);
+                            allAcknowledged &= sendBatch(scheduler, inFlight, sequence++, latestSecond - 1, batch);
+                            batch = new ArrayList<>();
+                            batch.add(overflow);
+                            linesSinceSend = 0;
+                        }
+                    }
+                    if (linesSinceSend >= PROGRESS_LINES) {
+                        allAcknowledged &= sendBatch(scheduler, inFlight, sequence++, latestSecond - 1, batch);
+                        batch = new ArrayList<>();
+                        linesSinceSend = 0;
                     }
-                    // Optionally, break or continue depending on your design.
                 }
+            } catch (FileNotFoundException e) {
+                System.err.println("[FIS-Zone " + zoneId + "] No event file: " + eventFile);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            if (!batch.isEmpty()) {
+                allAcknowledged &= sendBatch(scheduler, inFlight, sequence, latestSecond, batch);
+            }
+            while (!inFlight.isEmpty()) allAcknowledged &= awaitBatch(inFlight);
+            System.out.println("[FIS-Zone " + zoneId + "] Sent " + numEvents + " events to the Scheduler.");
+        } finally {
+            if (rpc != null) {
+                // Always close the zone's stream, or the Scheduler would wait on it forever
+                List<Object> request = List.of("SET_EVENTS_LOADED", zoneId, numEvents);
+                Object response = rpc_send(request, schedulerAddress, schedulerPort);
+                System.out.println("Setting events to loaded for Zone " + zoneId + ": " + response
+                        + (allAcknowledged ? "" : " (some batches failed)"));
+                System.out.println("----------------------------------------\n");
             }
         }
     }
 
     /**
-     * Processes the event file for this zone by reading each line,
-     * parsing it into a FireEvent, and sending it to the Scheduler.
+     * Makes the next run of the event file leave out this zone's first events, because a
+     * Scheduler recovered from its journal has already received them.
      *
-     * @param eventFile the path to the event file
+     * @param count the number of this zone's events to skip
      */
-    public void processEventFile(String eventFile) {
-        boolean eventsAdded = false;
-        System.out.println("Processing event file for Zone " + zoneId);
-        try (BufferedReader reader = new BufferedReader(new FileReader(eventFile))) {
-            String line;
-            boolean skipHeader = true;
-            while ((line = reader.readLine()) != null) {
-                if (skipHeader) {
-                    skipHeader = false;
-                    continue;
-                }
-                FireEvent fireEvent = parseEvent(line);
-                if (fireEvent.getZoneId() == zoneId) {
-                    System.out.println("FireIncidentSubsystem-Zone " + zoneId + " → New Fire Event: " + fireEvent);
-                    // Build a request with method name and the FireEvent object
-                    List<Object> request = new ArrayList<>();
-                    request.add("ADD_FIRE_EVENT");
-                    request.add(fireEvent);
-                    Object response = rpc_send(request, schedulerAddress, schedulerPort);
-                    if (response instanceof String && ((String) response).contains("SUCCESS")) {
-                        eventsAdded = true;
-                    } else {
-                        System.err.println("Failed to add fire event: " + response);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    public void skipEvents(int count) {
+        eventsToSkip = count;
+    }
+
+    /**
+     * Returns the arguments of one ADD_FIRE_EVENTS batch: its number, the second of the day the
+     * file has been read through, then the events.
+     */
+    private static List<Object> batchArgs(int sequence, int throughSecond, List<Object> events) {
+        List<Object> args = new ArrayList<>(events.size() + 2);
+        args.add(sequence);
+        args.add(throughSecond);
+        args.addAll(events);
+        return args;
+    }
+
+    /**
+     * Sends one batch without waiting for its reply, first waiting for the oldest outstanding
+     * batch if {@link #MAX_BATCHES_IN_FLIGHT} are already outstanding.
+     *
+     * @return false if a batch waited for was not acknowledged
+     */
+    private boolean sendBatch(InetSocketAddress scheduler, Deque<CompletableFuture<Object>> inFlight,
+                              int sequence, int throughSecond, List<Object> events) {
+        boolean acknowledged = true;
+        if (inFlight.size() >= MAX_BATCHES_IN_FLIGHT) acknowledged = awaitBatch(inFlight);
+        inFlight.add(rpc.callAsync(scheduler, "ADD_FIRE_EVENTS", batchArgs(sequence, throughSecond, events).toArray()));
+        return acknowledged;
+    }
+
+    /**
+     * Waits for the oldest outstanding batch.
+     *
+     * @return true if the Scheduler acknowledged it
+     */
+    private boolean awaitBatch(Deque<CompletableFuture<Object>> inFlight) {
+        Object response;
+        try {
+            response = inFlight.poll().join();
+        } catch (RuntimeException e) {
+            response = "ERROR: " + e.getMessage();
         }
-        if (eventsAdded) {
-            List<Object> request = new ArrayList<>();
-            request.add("SET_EVENTS_LOADED");
-            request.add(zoneId);
-            request.add(numEvents);
-            Object response = rpc_send(request, schedulerAddress, schedulerPort);
-            System.out.println("Setting events to loaded for Zone " + zoneId + ": " + response);
-            System.out.println("----------------------------------------\n");
+        if (!(response instanceof String) || !((String) response).contains("SUCCESS")) {
+            System.err.println("Failed to add fire events: " + response);
+            return false;
         }
+        return true;
     }
 
     /**
@@ -145,52 +227,39 @@ public class FireIncidentSubsystem implements Runnable {
     }
 
     @Override
-    public synchronized void run() {
+    public void run() {
         processEventFile(eventFile);
         System.out.println(Thread.currentThread().getName() + " running for Zone " + zoneId);
-        udpListenerThread = new Thread(new UDPListener());
-        udpListenerThread.setName("UDPListener-Zone" + zoneId);
-        udpListenerThread.setDaemon(true);  // Marking as daemon
-        udpListenerThread.start();
     }
 
     /**
-     * Processes an incoming UDP packet by reading its content, sending an ACK,
-     * and printing the request details.
+     * Processes an incoming request by sending an ACK and printing the request details.
+     * Called on the RPC client's receiver thread, which owns this subsystem's socket.
      *
-     * @param packet the received DatagramPacket
-     * @throws IOException if an I/O error occurs while processing the packet
+     * @param request the decoded request
+     * @param client the address the request came from
      */
-    private void processUDPPacket(DatagramPacket packet) throws IOException {
-        ObjectInputStream inputStream = new ObjectInputStream(
-                new ByteArrayInputStream(packet.getData(), 0, packet.getLength()));
+    private void processRequest(WireProtocol.Message request, InetSocketAddress client) {
+        System.out.println("[FIS-Zone " + zoneId + "] Received request: " + request + " (from " + client + ")");
         try {
-            Object request = inputStream.readObject();
-            InetAddress clientAddress = packet.getAddress();
-            int clientPort = packet.getPort();
-            System.out.println("[FIS-Zone " + zoneId + "] Received request: " + request +
-                    " (from " + clientAddress + ":" + clientPort + ")");
-            sendResponse("ACK:" + request, clientAddress, clientPort);
-            // (Additional processing could be added here.)
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+            sendResponse("ACK:" + request, request.getCorrelationId(), client.getAddress(), client.getPort());
+        } catch (IOException e) {
+            System.err.println("Error sending UDP response: " + e.getMessage());
         }
+        // (Additional processing could be added here.)
     }
 
     /**
      * Sends a response back to a client via UDP.
      *
      * @param response the response object to send
+     * @param correlationId the correlation id of the request being answered
      * @param address the destination IP address
      * @param port the destination port
      * @throws IOException if an I/O error occurs while sending the response
      */
-    private void sendResponse(Object response, InetAddress address, int port) throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        ObjectOutputStream objStream = new ObjectOutputStream(byteStream);
-        objStream.writeObject(response);
-        objStream.flush();
-        byte[] responseData = byteStream.toByteArray();
+    private void sendResponse(Object response, int correlationId, InetAddress address, int port) throws IOException {
+        byte[] responseData = WireProtocol.encodeResponse(WireProtocol.SENDER_ZONE, zoneId, correlationId, response);
         DatagramPacket responsePacket = new DatagramPacket(responseData, responseData.length, address, port);
         socket.send(responsePacket);
         System.out.println("[FIS-Zone " + zoneId + "] Sent response: " + response +
@@ -198,47 +267,31 @@ public class FireIncidentSubsystem implements Runnable {
     }
 
     /**
-     * Sends an RPC request as a serialized object to the Scheduler and waits for an ACK.
+     * Sends an RPC request to the Scheduler and waits for an ACK.
+     * The first element of the request names the method; the rest are its arguments.
+     * The request is retransmitted until the ACK arrives.
      *
-     * @param request the request object to send
+     * @param request the method name followed by its arguments
      * @param hostAddress the Scheduler's IP address
      * @param hostPort the Scheduler's port
      * @return the ACK response received from the Scheduler, or an error message if unsuccessful
      */
-    public Object rpc_send(Object request, InetAddress hostAddress, int hostPort) {
+    public Object rpc_send(List<?> request, InetAddress hostAddress, int hostPort) {
         // Check if the socket is closed
         if (socket == null || socket.isClosed()) {
             return "ERROR: Socket is closed";
         }
         try {
             System.out.println("\n[Zone " + zoneId + " -> Host] Sent request: " + request);
-            // Serialize the request object
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            ObjectOutputStream objStream = new ObjectOutputStream(byteStream);
-            objStream.writeObject(request);
-            objStream.flush();
-            byte[] requestData = byteStream.toByteArray();
-
-            // Send the serialized request packet
-            DatagramPacket requestPacket = new DatagramPacket(requestData, requestData.length, hostAddress, hostPort + zoneId);
-            socket.send(requestPacket);
-
-            // Receive ACK first
-            byte[] ackBuffer = new byte[4096];
-            DatagramPacket ackPacket = new DatagramPacket(ackBuffer, ackBuffer.length);
-            socket.receive(ackPacket);
-            ObjectInputStream ackStream = new ObjectInputStream(new ByteArrayInputStream(ackPacket.getData(), 0, ackPacket.getLength()));
-            Object ackResponse = ackStream.readObject();
+            Object ackResponse = rpc.call(new InetSocketAddress(hostAddress, hostPort), (String) request.get(0),
+                    request.subList(1, request.size()).toArray());
             System.out.println("[FIS-Zone " + zoneId + "] Received ACK: " + ackResponse);
             if (!(ackResponse instanceof String) || !((String) ackResponse).startsWith("ACK:")) {
                 System.out.println("Unexpected response instead of ACK. Aborting.");
                 return "ERROR: No ACK received";
             }
             return ackResponse;
-        } catch (SocketException e) {
-            System.err.println("Error in rpc_send: " + e.getMessage());
-            return "ERROR: Socket is closed";
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             return "ERROR: Communication failed: " + e.getMessage();
         }
@@ -246,15 +299,16 @@ public class FireIncidentSubsystem implements Runnable {
 
 
     /**
-     * Returns the coordinates of the zone
-     * @return a String representing the coordinates of the zone
+     * Returns the zone this subsystem is responsible for.
+     *
+     * @return the zone
      */
-    public String getZoneCoordinates() {
-        return "(" + x1 + "," + y1 + ") to (" + x2 + "," + y2 + ")";
+    public Zone getZone() {
+        return zone;
     }
 
     @Override
     public String toString() {
-        return "FireIncidentSubsystem-Zone " + zoneId + " [" + getZoneCoordinates() + "]";
+        return "FireIncidentSubsystem-Zone " + zoneId + " [" + zone + "]";
     }
 }
@@ -0,0 +1,508 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Flies a whole fleet in fixed ticks, from a few worker threads, instead of one thread per drone.
+ *
+ * Each drone follows the same states as a {@link DroneSubsystem}: it takes off from base, flies
+ * ON_ROUTE to its fire, drops agent, asks for more work while it has agent left, and flies home,
+ * where it lands, recharges and refills. Faults play out as they do for the threaded drones: a drone
+ * that reaches a fire with a nozzle fault reports it and flies home; with an arrival fault it
+ * loiters for 15% of its travel time before setting off, so its timeout, 110% of the travel time,
+ * runs out on the way and it reports the fault and flies home; with packet loss it reports the
+ * fault as soon as it sets off, then waits at base for other work if it has only just taken off,
+ * or flies home if it was already in the air. Timings match the threaded
+ * drones: 10 s to take off or land, 18 m/s cruise, and two seconds of nozzle handling plus one
+ * second per 2 L dropped.
+ *
+ * State lives in parallel arrays indexed by drone, so a tick is a sweep over packed primitives.
+ * A tick runs in two phases. First the sweep moves every drone and counts down its waits; it is
+ * split into ranges across a {@link ForkJoinPool}, and each drone only touches its own slots, so
+ * the phase needs no locks. Drones that finished a drop, hit a fault or are waiting for work are
+ * flagged. Then the engine's thread walks the flags and talks to the {@link Dispatcher}, so the
+ * dispatcher is only ever called from one thread. Drones waiting at base are handed to the
+ * dispatcher together, so it can match them to events as a batch; drones already in the air with
+ * agent left are given their next event one at a time. Drone {@code i} in the arrays has id {@code i + 1}.
+ */
+public class FleetEngine {
+    public static final double CRUISE_SPEED = 18; // meters per second
+    public static final double TAKEOFF_SECONDS = 10;
+    public static final double LANDING_SECONDS = 10;
+    public static final double NOZZLE_SECONDS = 2; // Opening and closing the nozzle
+    public static final double NOZZLE_FLOW_RATE = 2; // litres per second
+    public static final double BATTERY_SECONDS = 1800;
+    public static final int CAPACITY = 14; // litres
+    public static final double ARRIVAL_LOITER = 0.15; // Share of the travel time a drone with an arrival fault stays put
+    public static final double ARRIVAL_TIMEOUT = 1.1; // Share of the travel time before an arrival fault is detected
+    private static final int SWEEP_CHUNK = 4096; // Drones per fork-join task
+
+    // What a drone needs from the dispatcher after the sweep
+    private static final byte NOTHING = 0;
+    private static final byte ASK_AT_BASE = 1;
+    private static final byte DROPPED = 2;
+    private static final byte FAULTED = 3;
+
+    private static final byte IDLE = (byte) DroneSubsystem.DroneState.IDLE.ordinal();
+    private static final byte ON_ROUTE = (byte) DroneSubsystem.DroneState.ON_ROUTE.ordinal();
+    private static final byte DROPPING_AGENT = (byte) DroneSubsystem.DroneState.DROPPING_AGENT.ordinal();
+    private static final byte RETURNING = (byte) DroneSubsystem.DroneState.RETURNING.ordinal();
+    private static final byte FAULT = (byte) DroneSubsystem.DroneState.FAULT.ordinal();
+    private static final DroneSubsystem.DroneState[] STATES = DroneSubsystem.DroneState.values();
+
+    /**
+     * Hands out fire events and hears what the drones did with them.
+     * Only the engine's own thread calls it.
+     */
+    public interface Dispatcher {
+        /**
+         * Returns the event a drone should fly to next, if any.
+         *
+         * @param droneId the drone id
+         * @param x the drone's x-coordinate
+         * @param y the drone's y-coordinate
+         * @param batteryLife the drone's remaining battery in seconds
+         * @param remainingAgent the litres left in the drone's tank
+         * @return the event, or null if there is none for this drone
+         */
+        FireEvent assign(int droneId, int x, int y, double batteryLife, int remainingAgent);
+
+        /**
+         * Returns the events drones waiting at base, charged and full, should fly to. By default
+         * each drone in turn is offered to {@link #assign}, until one gets nothing.
+         *
+         * @param droneIds the drones, longest-waiting first
+         * @param x the drones' x-coordinates
+         * @param y the drones' y-coordinates
+         * @return the event for each drone, or null where there is none
+         */
+        default FireEvent[] assignAtBase(int[] droneIds, int[] x, int[] y) {
+            FireEvent[] events = new FireEvent[droneIds.length];
+            for (int i = 0; i < droneIds.length; i++) {
+                events[i] = assign(droneIds[i], x[i], y[i], BATTERY_SECONDS, CAPACITY);
+                if (events[i] == null) break;
+            }
+            return events;
+        }
+
+        /**
+         * Called when a drone has dropped agent on a fire.
+         *
+         * @param droneId the drone id
+         * @param event the fire event
+         * @param litres the litres dropped
+         */
+        void dropped(int droneId, FireEvent event, int litres);
+
+        /**
+         * Called when a drone could not drop agent on a fire because of a fault.
+         *
+         * @param droneId the drone id
+         * @param event the fire event, which still needs a drone
+         */
+        void faulted(int droneId, FireEvent event);
+
+        /**
+         * Returns the zone an event is in, whose center the drone flies to.
+         *
+         * @param event the fire event
+         * @return the zone
+         */
+        default Zone zoneOf(FireEvent event) {
+            return event.getZone();
+        }
+
+        /**
+         * Returns a dispatcher that takes its events from a Scheduler in the same process, with no RPC.
+         * Drones at base get events as parked getNextFireEvent requests do, by priority and matched
+         * by travel time; drones in the air get the next stop of a tour, as getAdditionalFireEvent
+         * gives it.
+         *
+         * @param scheduler the Scheduler
+         * @return the dispatcher
+         */
+        static Dispatcher of(Scheduler scheduler) {
+            return new Dispatcher() {
+                @Override
+                public FireEvent assign(int droneId, int x, int y, double batteryLife, int remainingAgent) {
+                    return scheduler.getAdditionalFireEvent(droneId, batteryLife, x, y, remainingAgent);
+                }
+
+                @Override
+                public FireEvent[] assignAtBase(int[] droneIds, int[] x, int[] y) {
+                    return scheduler.dispatchToWaitingDrones(droneIds, x, y);
+                }
+
+                @Override
+                public void dropped(int droneId, FireEvent event, int litres) {
+                    scheduler.updateFireStatus(event, litres);
+                }
+
+                @Override
+                public void faulted(int droneId, FireEvent event) {
+                    scheduler.handleDroneFault(event, event.getFault(), droneId);
+                }
+
+                @Override
+                public Zone zoneOf(FireEvent event) {
+                    Zone zone = scheduler.getZoneRegistry().get(event.getZoneId());
+                    return zone != null ? zone : event.getZone();
+                }
+            };
+        }
+    }
+
+    private final int size;
+    private final Dispatcher dispatcher;
+    private final double tickSeconds;
+    private final ForkJoinPool pool;
+
+    private final double[] x, y;
+    private final double[] targetX, targetY;
+    private final byte[] state;
+    private final double[] battery;
+    private final int[] agent;
+    private final double[] wait; // Seconds of takeoff, loitering, nozzle or landing time left
+    private final double[] timeout; // Seconds until an arrival fault is detected; infinite without one
+    private final int[] litres; // Litres being dropped
+    private final byte[] pending;
+    private final FireEvent[] event;
+    private final int[] waiting; // Drones at base asking for work in this tick's dispatch
+
+    private long ticks = 0;
+    private long lastTickNanos = 0;
+    private long slowestTickNanos = 0;
+
+    /**
+     * Constructs an engine with every drone idle at base, charged and full.
+     *
+     * @param size the number of drones
+     * @param dispatcher where the drones get their events
+     * @param tickSeconds how much simulated time each tick covers
+     * @param pool the pool that runs the sweep
+     */
+    public FleetEngine(int size, Dispatcher dispatcher, double tickSeconds, ForkJoinPool pool) {
+        if (!(tickSeconds > 0)) throw new IllegalArgumentException("The tick must be positive: " + tickSeconds);
+        this.size = size;
+        this.dispatcher = dispatcher;
+        this.tickSeconds = tickSeconds;
+        this.pool = pool;
+        x = new double[size];
+        y = new double[size];
+        targetX = new double[size];
+        targetY = new double[size];
+        state = new byte[size];
+        battery = new double[size];
+        agent = new int[size];
+        wait = new double[size];
+        litres = new int[size];
+        pending = new byte[size];
+        event = new FireEvent[size];
+        timeout = new double[size];
+        waiting = new int[size];
+        for (int i = 0; i < size; i++) {
+            timeout[i] = Double.POSITIVE_INFINITY;
+            state[i] = IDLE;
+            battery[i] = BATTERY_SECONDS;
+            agent[i] = CAPACITY;
+            pending[i] = ASK_AT_BASE;
+        }
+    }
+
+    /**
+     * Advances every drone by one tick.
+     */
+    public void tick() {
+        long start = System.nanoTime();
+        pool.invoke(new Sweep(0, size));
+        dispatch();
+        ticks++;
+        lastTickNanos = System.nanoTime() - start;
+        slowestTickNanos = Math.max(slowestTickNanos, lastTickNanos);
+    }
+
+    /**
+     * Runs a number of ticks, paced to a tick rate in wall-clock time.
+     *
+     * @param count the number of ticks
+     * @param ticksPerSecond the tick rate, or 0 to run as fast as possible
+     */
+    public void run(long count, double ticksPerSecond) {
+        long period = ticksPerSecond > 0 ? (long) (1e9 / ticksPerSecond) : 0;
+        long next = System.nanoTime();
+        for (long i = 0; i < count; i++) {
+            tick();
+            if (period == 0) continue;
+            next += period;
+            long delay = next - System.nanoTime();
+            if (delay > 0) LockSupport.parkNanos(delay);
+        }
+    }
+
+    /**
+     * Sweeps a range of drones, splitting it while it is larger than one chunk.
+     */
+    private final class Sweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+
+        Sweep(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SWEEP_CHUNK) {
+                for (int i = from; i < to; i++) advance(i);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Sweep(from, middle), new Sweep(middle, to));
+        }
+    }
+
+    /**
+     * Moves one drone through one tick. Touches only that drone's slots.
+     */
+    private void advance(int i) {
+        byte current = state[i];
+        if (current == IDLE || current == FAULT) return;
+        battery[i] -= tickSeconds;
+        if (current == ON_ROUTE) {
+            timeout[i] -= tickSeconds;
+            if (timeout[i] <= 0) {
+                fault(i); // Did not arrive in time
+                return;
+            }
+        }
+        if (current == DROPPING_AGENT) {
+            wait[i] -= tickSeconds;
+            if (wait[i] <= 0) {
+                agent[i] -= litres[i];
+                pending[i] = DROPPED;
+            }
+        } else if (wait[i] > 0) {
+            wait[i] -= tickSeconds; // Taking off, loitering, or landing at base
+            if (current == RETURNING && wait[i] <= 0) {
+                state[i] = IDLE;
+                battery[i] = BATTERY_SECONDS;
+                agent[i] = CAPACITY;
+                pending[i] = ASK_AT_BASE;
+            } else if (current == ON_ROUTE && wait[i] <= 0 && "PACKET_LOSS".equalsIgnoreCase(event[i].getFault())) {
+                fault(i); // Lost contact as soon as it set off
+            }
+        } else if (fly(i)) {
+            if (current == RETURNING) {
+                wait[i] = LANDING_SECONDS;
+            } else if ("NOZZLE".equalsIgnoreCase(event[i].getFault())) {
+                fault(i);
+            } else {
+                state[i] = DROPPING_AGENT;
+                litres[i] = Math.min(event[i].getLitres(), agent[i]);
+                wait[i] = NOZZLE_SECONDS + litres[i] / NOZZLE_FLOW_RATE;
+            }
+        }
+    }
+
+    private void fault(int i) {
+        state[i] = FAULT;
+        pending[i] = FAULTED;
+        timeout[i] = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Flies a drone one tick toward its target.
+     *
+     * @return true if it has arrived
+     */
+    private boolean fly(int i) {
+        double dx = targetX[i] - x[i], dy = targetY[i] - y[i];
+        double distance = Math.hypot(dx, dy);
+        double step = CRUISE_SPEED * tickSeconds;
+        if (distance <= step) {
+            x[i] = targetX[i];
+            y[i] = targetY[i];
+            return true;
+        }
+        x[i] += dx / distance * step;
+        y[i] += dy / distance * step;
+        return false;
+    }
+
+    /**
+     * Reports what the sweep flagged to the dispatcher, and hands out events.
+     */
+    private void dispatch() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            byte flag = pending[i];
+            if (flag == NOTHING) continue;
+            if (flag == ASK_AT_BASE) {
+                waiting[count++] = i; // Still asking until the batch below gives it an event
+                continue;
+            }
+            pending[i] = NOTHING;
+            if (flag == FAULTED) {
+                boolean packetLoss = "PACKET_LOSS".equalsIgnoreCase(event[i].getFault());
+                dispatcher.faulted(i + 1, event[i]);
+                event[i] = null;
+                if (packetLoss && x[i] == 0 && y[i] == 0) {
+                    // Never left base; waits there for other work, as a threaded drone does
+                    state[i] = IDLE;
+                    pending[i] = ASK_AT_BASE;
+                } else {
+                    goHome(i);
+                }
+            } else if (flag == DROPPED) {
+                dispatcher.dropped(i + 1, event[i], litres[i]);
+                event[i] = null;
+                FireEvent next = agent[i] > 0 ? dispatcher.assign(i + 1, (int) x[i], (int) y[i], battery[i], agent[i]) : null;
+                if (next != null) send(i, next, 0);
+                else goHome(i);
+            }
+        }
+        if (count > 0) assignAtBase(count);
+    }
+
+    /**
+     * Hands the drones waiting at base to the dispatcher as one batch and sends off those given an event.
+     *
+     * @param count how many drones are listed in {@code waiting}
+     */
+    private void assignAtBase(int count) {
+        int[] ids = new int[count], atX = new int[count], atY = new int[count];
+        for (int k = 0; k < count; k++) {
+            int i = waiting[k];
+            ids[k] = i + 1;
+            atX[k] = (int) x[i];
+            atY[k] = (int) y[i];
+        }
+        FireEvent[] events = dispatcher.assignAtBase(ids, atX, atY);
+        for (int k = 0; k < count; k++) {
+            if (events[k] == null) continue;
+            int i = waiting[k];
+            pending[i] = NOTHING;
+            send(i, events[k], TAKEOFF_SECONDS);
+        }
+    }
+
+    /**
+     * Sends a drone off to an event, after a delay for taking off. A drone carrying an arrival
+     * fault loiters before it flies, and its timeout starts counting.
+     */
+    private void send(int i, FireEvent next, double takeoff) {
+        Zone zone = dispatcher.zoneOf(next);
+        event[i] = next;
+        targetX[i] = zone.getCenterX();
+        targetY[i] = zone.getCenterY();
+        state[i] = ON_ROUTE;
+        wait[i] = takeoff;
+        timeout[i] = Double.POSITIVE_INFINITY;
+        if ("PACKET_LOSS".equalsIgnoreCase(next.getFault()) && takeoff == 0) {
+            fault(i); // Already in the air, so contact is lost at once
+        } else if ("ARRIVAL".equalsIgnoreCase(next.getFault())) {
+            double travel = Math.hypot(targetX[i] - x[i], targetY[i] - y[i]) / CRUISE_SPEED;
+            wait[i] += ARRIVAL_LOITER * travel;
+            timeout[i] = takeoff + ARRIVAL_TIMEOUT * travel;
+        }
+    }
+
+    private void goHome(int i) {
+        state[i] = RETURNING;
+        targetX[i] = 0;
+        targetY[i] = 0;
+        wait[i] = 0;
+        timeout[i] = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns how many drones are in a state.
+     *
+     * @param droneState the state
+     * @return the number of drones
+     */
+    public int countInState(DroneSubsystem.DroneState droneState) {
+        byte wanted = (byte) droneState.ordinal();
+        int count = 0;
+        for (int i = 0; i < size; i++) if (state[i] == wanted) count++;
+        return count;
+    }
+
+    /**
+     * Returns a drone's state.
+     *
+     * @param droneId the drone id
+     * @return the state
+     */
+    public DroneSubsystem.DroneState getState(int droneId) {
+        return STATES[state[droneId - 1]];
+    }
+
+    /**
+     * Returns a drone's x-coordinate.
+     *
+     * @param droneId the drone id
+     * @return the x-coordinate
+     */
+    public double getX(int droneId) {
+        return x[droneId - 1];
+    }
+
+    /**
+     * Returns a drone's y-coordinate.
+     *
+     * @param droneId the drone id
+     * @return the y-coordinate
+     */
+    public double getY(int droneId) {
+        return y[droneId - 1];
+    }
+
+    /**
+     * Returns a drone's remaining battery.
+     *
+     * @param droneId the drone id
+     * @return the battery in seconds
+     */
+    public double getBatteryLife(int droneId) {
+        return battery[droneId - 1];
+    }
+
+    /**
+     * Returns the litres left in a drone's tank.
+     *
+     * @param droneId the drone id
+     * @return the litres
+     */
+    public int getRemainingAgent(int droneId) {
+        return agent[droneId - 1];
+    }
+
+    /**
+     * Returns how much simulated time has passed.
+     *
+     * @return the time in seconds
+     */
+    public double getSimulatedSeconds() {
+        return ticks * tickSeconds;
+    }
+
+    /**
+     * Returns how long the last tick took.
+     *
+     * @return the wall-clock time in nanoseconds
+     */
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    /**
+     * Returns how long the slowest tick so far took.
+     *
+     * @return the wall-clock time in nanoseconds
+     */
+    public long getSlowestTickNanos() {
+        return slowestTickNanos;
+    }
+}
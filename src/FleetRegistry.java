@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+/**
+ * Where every drone is and what it holds, as last reported in its heartbeats.
+ *
+ * The fleet is kept as parallel arrays indexed by drone id rather than one object per drone, so a
+ * heartbeat overwrites a few array slots without allocating, and a query over the whole fleet is a
+ * linear scan of packed primitives. Drone ids are small and dense, as handed out by the simulation;
+ * the arrays grow to fit the largest id seen. The registry is thread-safe.
+ *
+ * A drone in flight publishes its {@link FlightLeg} instead of a heartbeat a second. Until it next
+ * reports, its position is read off the leg and its battery counted down from the leg's start.
+ */
+public class FleetRegistry {
+    private static final byte UNKNOWN = -1; // State of an id no drone has reported under
+    private static final DroneSubsystem.DroneState[] STATES = DroneSubsystem.DroneState.values();
+
+    private int[] x = new int[0];
+    private int[] y = new int[0];
+    private byte[] state = new byte[0];
+    private double[] battery = new double[0];
+    private int[] agent = new int[0];
+    private long[] lastHeard = new long[0];
+    private FlightLeg[] legs = new FlightLeg[0]; // Null unless the drone last reported a leg
+    private int size = 0;
+
+    /**
+     * Records a drone's heartbeat.
+     *
+     * @param droneId the drone id
+     * @param droneX the drone's x-coordinate
+     * @param droneY the drone's y-coordinate
+     * @param droneState the drone's state
+     * @param batteryLife the drone's remaining battery in seconds
+     * @param remainingAgent the litres left in the drone's tank
+     * @throws IllegalArgumentException if the drone id is negative
+     */
+    public synchronized void update(int droneId, int droneX, int droneY, DroneSubsystem.DroneState droneState,
+                                    double batteryLife, int remainingAgent) {
+        if (droneId < 0) throw new IllegalArgumentException("Drone ids must not be negative: " + droneId);
+        if (droneId >= state.length) grow(droneId + 1);
+        if (state[droneId] == UNKNOWN) size++;
+        x[droneId] = droneX;
+        y[droneId] = droneY;
+        state[droneId] = (byte) droneState.ordinal();
+        battery[droneId] = batteryLife;
+        agent[droneId] = remainingAgent;
+        lastHeard[droneId] = SimulationClock.get().currentTimeMillis();
+        legs[droneId] = null;
+    }
+
+    /**
+     * Records the flight leg a drone has set off on, which stands for its position until it next reports.
+     *
+     * @param droneId the drone id
+     * @param leg the leg
+     * @param droneState the state the drone flies the leg in
+     * @param batteryLife the drone's battery at the start of the leg, in seconds
+     * @param remainingAgent the litres left in the drone's tank
+     * @throws IllegalArgumentException if the drone id is negative
+     */
+    public synchronized void updateLeg(int droneId, FlightLeg leg, DroneSubsystem.DroneState droneState,
+                                       double batteryLife, int remainingAgent) {
+        double[] start = leg.positionAt(leg.getStartMillis());
+        update(droneId, (int) start[0], (int) start[1], droneState, batteryLife, remainingAgent);
+        legs[droneId] = leg;
+    }
+
+    /**
+     * Returns the drone nearest a point that is idle and has the battery and agent asked for.
+     *
+     * @param pointX the x-coordinate of the point
+     * @param pointY the y-coordinate of the point
+     * @param minBattery the least battery the drone must have, in seconds
+     * @param minAgent the fewest litres the drone must have
+     * @return the drone id, or -1 if no drone qualifies
+     */
+    public synchronized int nearestIdle(int pointX, int pointY, double minBattery, int minAgent) {
+        // Idle drones are on the ground, so never have a leg to read their position from
+        byte idle = (byte) DroneSubsystem.DroneState.IDLE.ordinal();
+        int best = -1;
+        long bestDistanceSquared = Long.MAX_VALUE;
+        for (int id = 0; id < state.length; id++) {
+            if (state[id] != idle || battery[id] < minBattery || agent[id] < minAgent) continue;
+            long dx = x[id] - pointX, dy = y[id] - pointY;
+            long distanceSquared = dx * dx + dy * dy;
+            if (distanceSquared < bestDistanceSquared) {
+                best = id;
+                bestDistanceSquared = distanceSquared;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns how many drones were last reported in a state.
+     *
+     * @param droneState the state
+     * @return the number of drones
+     */
+    public synchronized int countInState(DroneSubsystem.DroneState droneState) {
+        byte wanted = (byte) droneState.ordinal();
+        int count = 0;
+        for (byte reported : state) if (reported == wanted) count++;
+        return count;
+    }
+
+    /**
+     * Returns how many drones have sent a heartbeat.
+     *
+     * @return the number of drones
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns a drone's last reported state.
+     *
+     * @param droneId the drone id
+     * @return the state, or null if the drone has not reported
+     */
+    public synchronized DroneSubsystem.DroneState getState(int droneId) {
+        return known(droneId) ? STATES[state[droneId]] : null;
+    }
+
+    /**
+     * Returns a drone's x-coordinate: where its leg puts it now, or where it last reported.
+     *
+     * @param droneId the drone id
+     * @return the x-coordinate, or 0 if the drone has not reported
+     */
+    public synchronized int getX(int droneId) {
+        if (!known(droneId)) return 0;
+        FlightLeg leg = legs[droneId];
+        return leg != null ? (int) Math.round(leg.positionAt(SimulationClock.get().currentTimeMillis())[0]) : x[droneId];
+    }
+
+    /**
+     * Returns a drone's y-coordinate: where its leg puts it now, or where it last reported.
+     *
+     * @param droneId the drone id
+     * @return the y-coordinate, or 0 if the drone has not reported
+     */
+    public synchronized int getY(int droneId) {
+        if (!known(droneId)) return 0;
+        FlightLeg leg = legs[droneId];
+        return leg != null ? (int) Math.round(leg.positionAt(SimulationClock.get().currentTimeMillis())[1]) : y[droneId];
+    }
+
+    /**
+     * Returns a drone's battery: as last reported, less the time it has flown of its current leg.
+     *
+     * @param droneId the drone id
+     * @return the battery in seconds, or 0 if the drone has not reported
+     */
+    public synchronized double getBatteryLife(int droneId) {
+        if (!known(droneId)) return 0;
+        FlightLeg leg = legs[droneId];
+        if (leg == null) return battery[droneId];
+        long flown = Math.min(SimulationClock.get().currentTimeMillis(), leg.getEndMillis()) - leg.getStartMillis();
+        return battery[droneId] - Math.max(0, flown) / 1000.0;
+    }
+
+    /**
+     * Returns the leg a drone last published, if it has not reported since.
+     *
+     * @param droneId the drone id
+     * @return the leg, or null if the drone is not flying one
+     */
+    public synchronized FlightLeg getFlightLeg(int droneId) {
+        return known(droneId) ? legs[droneId] : null;
+    }
+
+    /**
+     * Returns the litres a drone last reported in its tank.
+     *
+     * @param droneId the drone id
+     * @return the litres, or 0 if the drone has not reported
+     */
+    public synchronized int getRemainingAgent(int droneId) {
+        return known(droneId) ? agent[droneId] : 0;
+    }
+
+    /**
+     * Returns when a drone's last heartbeat arrived.
+     *
+     * @param droneId the drone id
+     * @return the simulated time in milliseconds, or 0 if the drone has not reported
+     */
+    public synchronized long getLastHeard(int droneId) {
+        return known(droneId) ? lastHeard[droneId] : 0;
+    }
+
+    private boolean known(int droneId) {
+        return droneId >= 0 && droneId < state.length && state[droneId] != UNKNOWN;
+    }
+
+    private void grow(int minimum) {
+        int length = Math.max(minimum, Math.max(16, state.length * 2));
+        int old = state.length;
+        x = Arrays.copyOf(x, length);
+        y = Arrays.copyOf(y, length);
+        battery = Arrays.copyOf(battery, length);
+        agent = Arrays.copyOf(agent, length);
+        lastHeard = Arrays.copyOf(lastHeard, length);
+        legs = Arrays.copyOf(legs, length);
+        state = Arrays.copyOf(state, length);
+        Arrays.fill(state, old, length, UNKNOWN);
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * A straight-line flight registered by a drone when it sets off towards a fire zone or home.
+ * The drone flies at constant speed from the start point to the destination, so the Scheduler
+ * and the map can work out where it is at any moment without asking it.
+ */
+public class FlightLeg {
+    private final int droneId;
+    private final int targetZoneId;
+    private final int startX;
+    private final int startY;
+    private final int destX;
+    private final int destY;
+    private final long startMillis;
+    private final long durationMillis;
+
+    /**
+     * Constructs a new FlightLeg.
+     *
+     * @param droneId the drone flying the leg
+     * @param targetZoneId the zone the drone is heading to, or 0 for home
+     * @param startX the x-coordinate the leg starts at
+     * @param startY the y-coordinate the leg starts at
+     * @param destX the x-coordinate of the destination
+     * @param destY the y-coordinate of the destination
+     * @param startMillis when the leg started, in milliseconds
+     * @param durationMillis how long the leg takes, in milliseconds
+     */
+    public FlightLeg(int droneId, int targetZoneId, int startX, int startY, int destX, int destY,
+                     long startMillis, long durationMillis) {
+        this.droneId = droneId;
+        this.targetZoneId = targetZoneId;
+        this.startX = startX;
+        this.startY = startY;
+        this.destX = destX;
+        this.destY = destY;
+        this.startMillis = startMillis;
+        this.durationMillis = Math.max(1, durationMillis);
+    }
+
+    public int getDroneId() { return droneId; }
+
+    public int getTargetZoneId() { return targetZoneId; }
+
+    public long getStartMillis() { return startMillis; }
+
+    /**
+     * Returns when the drone reaches its destination.
+     *
+     * @return the arrival time in milliseconds
+     */
+    public long getEndMillis() {
+        return startMillis + durationMillis;
+    }
+
+    /**
+     * Returns whether the drone has reached its destination.
+     *
+     * @param nowMillis the current time in milliseconds
+     * @return true once the leg has been flown
+     */
+    public boolean hasEnded(long nowMillis) {
+        return nowMillis >= getEndMillis();
+    }
+
+    /**
+     * Returns the drone's position at the given time.
+     *
+     * @param nowMillis the time in milliseconds
+     * @return the x and y coordinates of the drone
+     */
+    public double[] positionAt(long nowMillis) {
+        double fraction = Math.min(1.0, Math.max(0.0, (double) (nowMillis - startMillis) / durationMillis));
+        return new double[]{startX + (destX - startX) * fraction, startY + (destY - startY) * fraction};
+    }
+
+    /**
+     * Returns the earliest time, no sooner than {@code fromMillis}, at which the drone is within
+     * {@code radius} of a point. The distance along the leg is a quadratic in time, so the
+     * moments the drone enters and leaves the circle are its two roots.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param radius the distance that counts as near, in meters
+     * @param fromMillis the earliest time to consider, in milliseconds
+     * @return the time in milliseconds, or -1 if the drone does not come that close for the rest of the leg
+     */
+    public long earliestApproach(double x, double y, double radius, long fromMillis) {
+        long from = Math.max(fromMillis, startMillis);
+        if (from > getEndMillis()) return -1;
+        // Position relative to the point: w + v * t, with t in milliseconds since the leg started
+        double wx = startX - x, wy = startY - y;
+        double vx = (double) (destX - startX) / durationMillis, vy = (double) (destY - startY) / durationMillis;
+        double a = vx * vx + vy * vy;
+        double b = 2 * (wx * vx + wy * vy);
+        double c = wx * wx + wy * wy - radius * radius;
+        double enter, leave;
+        if (a == 0) {
+            if (c > 0) return -1;
+            enter = 0;
+            leave = durationMillis;
+        } else {
+            double discriminant = b * b - 4 * a * c;
+            if (discriminant < 0) return -1;
+            double root = Math.sqrt(discriminant);
+            enter = (-b - root) / (2 * a);
+            leave = (-b + root) / (2 * a);
+        }
+        double earliest = Math.max(enter, from - startMillis);
+        if (earliest > Math.min(leave, durationMillis)) return -1;
+        return startMillis + (long) Math.ceil(earliest - 1e-6); // Tolerate floating-point error in the roots
+    }
+}
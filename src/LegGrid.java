@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid of the corridors flight legs fly through. Each leg is filed under every cell its
+ * path, widened by a radius, passes through, so the legs that may pass near a point are found from
+ * the point's own cell instead of by checking every leg.
+ *
+ * A drone has at most one leg in the grid; adding a new one replaces the old.
+ * The grid is not thread-safe; the Scheduler uses it under its lock.
+ */
+public class LegGrid {
+
+    private final double cellSize;
+    private final double radius;
+    private final Map<Long, Map<Integer, FlightLeg>> cells = new HashMap<>();
+    private final Map<Integer, List<Long>> keysByDrone = new HashMap<>();
+
+    /**
+     * @param cellSize the side length of a grid cell, in meters
+     * @param radius how far from its path a leg is filed, in meters
+     */
+    public LegGrid(double cellSize, double radius) {
+        if (cellSize <= 0) throw new IllegalArgumentException("cellSize must be positive");
+        this.cellSize = cellSize;
+        this.radius = radius;
+    }
+
+    /**
+     * Files the path a leg has left to fly, replacing the drone's previous leg.
+     *
+     * @param leg the leg
+     * @param x1 the x-coordinate the leg is flown from
+     * @param y1 the y-coordinate the leg is flown from
+     * @param x2 the x-coordinate of the leg's destination
+     * @param y2 the y-coordinate of the leg's destination
+     */
+    public void add(FlightLeg leg, double x1, double y1, double x2, double y2) {
+        int droneId = leg.getDroneId();
+        remove(droneId);
+        List<Long> keys = new ArrayList<>();
+        double dx = x2 - x1;
+        // The same column walk as EventGrid.nearSegment: only the rows the widened path crosses in each column
+        int fromColumn = cellOf(Math.min(x1, x2) - radius), toColumn = cellOf(Math.max(x1, x2) + radius);
+        for (int column = fromColumn; column <= toColumn; column++) {
+            double fromY = Math.min(y1, y2), toY = Math.max(y1, y2);
+            if (dx != 0) {
+                double t1 = Math.max(0, Math.min(1, (column * cellSize - radius - x1) / dx));
+                double t2 = Math.max(0, Math.min(1, ((column + 1) * cellSize + radius - x1) / dx));
+                fromY = Math.min(y1 + t1 * (y2 - y1), y1 + t2 * (y2 - y1));
+                toY = Math.max(y1 + t1 * (y2 - y1), y1 + t2 * (y2 - y1));
+            }
+            for (int row = cellOf(fromY - radius); row <= cellOf(toY + radius); row++) {
+                long key = key(column, row);
+                cells.computeIfAbsent(key, k -> new HashMap<>()).put(droneId, leg);
+                keys.add(key);
+            }
+        }
+        keysByDrone.put(droneId, keys);
+    }
+
+    /**
+     * Removes a drone's leg.
+     *
+     * @param droneId the drone
+     * @return true if the drone had a leg in the grid
+     */
+    public boolean remove(int droneId) {
+        List<Long> keys = keysByDrone.remove(droneId);
+        if (keys == null) return false;
+        for (long key : keys) {
+            Map<Integer, FlightLeg> cell = cells.get(key);
+            cell.remove(droneId);
+            if (cell.isEmpty()) cells.remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the legs whose corridor covers the cell of a point. Every leg that passes within the
+     * radius of the point is among them, but so may be legs that only pass near the same cell.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return the candidate legs
+     */
+    public Collection<FlightLeg> legsNear(double x, double y) {
+        if (keysByDrone.isEmpty()) return Collections.emptyList();
+        Map<Integer, FlightLeg> cell = cells.get(key(cellOf(x), cellOf(y)));
+        return cell == null ? Collections.emptyList() : new ArrayList<>(cell.values());
+    }
+
+    /**
+     * @return the number of legs in the grid
+     */
+    public int size() {
+        return keysByDrone.size();
+    }
+
+    private int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+}
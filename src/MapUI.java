@@ -3,7 +3,7 @@ import java.awt.*;
 import java.util.*;
 import java.util.List;
 
-public class MapUI extends JPanel {
+public class MapUI extends JPanel implements SimulationObserver {
     private static final int REAL_WIDTH = 2000;  // 2000 meters width
     private static final int REAL_HEIGHT = 1500; // 1500 meters height
     private static final int METERS_PER_CELL = 50; // Each cell represents 25m x 25m
@@ -47,6 +47,7 @@ public class MapUI extends JPanel {
 
         repaintTimer = new javax.swing.Timer(100, e -> {
             revalidate();  // Optional
+            refreshFlyingDrones();
             repaint();
             needsRepaint = false;
         });
@@ -83,6 +84,9 @@ public class MapUI extends JPanel {
     protected static class DroneInfo {
         final int x, y;
         final DroneSubsystem.DroneState state;
+        final FlightLeg leg; // Null unless the drone is flying a leg; x and y are then where it started
+        final int remainingAgent;
+        final double batteryLife;
 
         /**
          * Constructs a new DroneInfo instance.
@@ -92,9 +96,38 @@ public class MapUI extends JPanel {
          * @param state the current state of the drone
          */
         public DroneInfo(int x, int y, DroneSubsystem.DroneState state) {
+            this(x, y, state, null, 0, 0);
+        }
+
+        /**
+         * Constructs a new DroneInfo instance for a drone flying a leg.
+         *
+         * @param x the x-coordinate the drone started from
+         * @param y the y-coordinate the drone started from
+         * @param state the current state of the drone
+         * @param leg the leg the drone is flying, or null
+         * @param remainingAgent the litres left in the drone's tank
+         * @param batteryLife the drone's battery at the start of the leg, in seconds
+         */
+        public DroneInfo(int x, int y, DroneSubsystem.DroneState state, FlightLeg leg, int remainingAgent, double batteryLife) {
             this.x = x;
             this.y = y;
             this.state = state;
+            this.leg = leg;
+            this.remainingAgent = remainingAgent;
+            this.batteryLife = batteryLife;
+        }
+
+        /**
+         * Returns where the drone is at a given time, following its leg if it has one.
+         *
+         * @param nowMillis the simulated time in milliseconds
+         * @return the x and y coordinates of the drone
+         */
+        public int[] positionAt(long nowMillis) {
+            if (leg == null) return new int[]{x, y};
+            double[] position = leg.positionAt(nowMillis);
+            return new int[]{(int) position[0], (int) position[1]};
         }
     }
 
@@ -130,6 +163,60 @@ public class MapUI extends JPanel {
         updateDronePosition(droneId, x, y, droneState, 0, 0);
     }
 
+    /**
+     * Shows a drone setting off on a flight leg. The map moves it along the leg on each repaint.
+     *
+     * @param droneId        the unique identifier of the drone
+     * @param leg            the leg the drone is flying
+     * @param droneState     the current state of the drone
+     * @param remainingAgent the remaining firefighting agent capacity
+     * @param batteryLife    the battery life at the start of the leg, in seconds
+     */
+    public synchronized void updateDroneLeg(int droneId, FlightLeg leg, DroneSubsystem.DroneState droneState, int remainingAgent, double batteryLife) {
+        double[] start = leg.positionAt(leg.getStartMillis());
+        drones.put(droneId, new DroneInfo((int) start[0], (int) start[1], droneState, leg, remainingAgent, batteryLife));
+        if (statusPanel != null) {
+            statusPanel.updateDroneStatus(droneId, (int) start[0], (int) start[1], droneState, remainingAgent, batteryLife);
+        }
+    }
+
+    /**
+     * Moves the drones flying legs along them in the status panel, with their battery run down
+     * by the time flown. Called on each repaint.
+     */
+    private void refreshFlyingDrones() {
+        if (statusPanel == null) return;
+        long now = SimulationClock.get().currentTimeMillis();
+        for (Map.Entry<Integer, DroneInfo> entry : drones.entrySet()) {
+            DroneInfo drone = entry.getValue();
+            if (drone.leg == null) continue;
+            int[] position = drone.positionAt(now);
+            long flown = Math.max(0, Math.min(now, drone.leg.getEndMillis()) - drone.leg.getStartMillis());
+            statusPanel.updateDroneStatus(entry.getKey(), position[0], position[1], drone.state, drone.remainingAgent,
+                    drone.batteryLife - flown / 1000.0);
+        }
+    }
+
+    @Override
+    public void zonesLoaded(List<Zone> zones) {
+        setZones(zones);
+    }
+
+    @Override
+    public void droneUpdated(int droneId, int x, int y, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+        updateDronePosition(droneId, x, y, state, remainingAgent, batteryLife);
+    }
+
+    @Override
+    public void flightLegStarted(int droneId, FlightLeg leg, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+        updateDroneLeg(droneId, leg, state, remainingAgent, batteryLife);
+    }
+
+    @Override
+    public void fireEventUpdated(FireEvent event) {
+        drawFireEvents(event);
+    }
+
     /**
      * Paints the MapUI component by drawing the grid, zones, fire events, and drones.
      *
@@ -265,12 +352,14 @@ public class MapUI extends JPanel {
      * @param g the Graphics2D context for drawing drones
      */
     private void drawDrones(Graphics2D g) {
+        long now = SimulationClock.get().currentTimeMillis();
         for (Map.Entry<Integer, DroneInfo> entry : drones.entrySet()) {
             int id = entry.getKey();
             DroneInfo drone = entry.getValue();
+            int[] position = drone.positionAt(now);
 
-            int screenX = (drone.x * PIXELS_PER_CELL) / METERS_PER_CELL;
-            int screenY = getHeight() - ((drone.y * PIXELS_PER_CELL) / METERS_PER_CELL) - PIXELS_PER_CELL;
+            int screenX = (position[0] * PIXELS_PER_CELL) / METERS_PER_CELL;
+            int screenY = getHeight() - ((position[1] * PIXELS_PER_CELL) / METERS_PER_CELL) - PIXELS_PER_CELL;
 
             // Choose drone color based on state
             Color droneColor;
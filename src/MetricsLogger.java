@@ -1,33 +1,44 @@
 import java.io.FileWriter;
 import java.io.IOException;
-import java.time.LocalTime;
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects simulation metrics. The Scheduler's execute workers and every drone record into one
+ * logger concurrently, and the summary can be exported while they are still running, so the
+ * maps are concurrent and each event's records are a copy-on-write list.
+ */
 public class MetricsLogger {
     private long simulationStartTime;
     private long simulationEndTime;
 
-    private final Map<Integer, Double> zoneDistances = new HashMap<>();
-    private final Map<Integer, Double> droneDistances = new HashMap<>();
-    private final Map<Integer, Long> droneTimes = new HashMap<>();
-    private final Map<String, List<FireEventMetrics>> eventMetrics = new HashMap<>();
+    private final Map<Integer, Double> zoneDistances = new ConcurrentHashMap<>();
+    private final Map<Integer, Double> droneDistances = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> droneTimes = new ConcurrentHashMap<>();
+    private final Map<String, List<FireEventMetrics>> eventMetrics = new ConcurrentHashMap<>();
+    // Dispatch assignment totals; guarded by this
+    private int assignmentBatches = 0;
+    private int assignedEvents = 0;
+    private double greedyTravelSeconds = 0;
+    private double assignedTravelSeconds = 0;
 
     public void markSimulationStart() {
-        simulationStartTime = System.currentTimeMillis();
+        simulationStartTime = SimulationClock.get().currentTimeMillis();
     }
 
     public void markSimulationEnd() {
-        simulationEndTime = System.currentTimeMillis();
+        simulationEndTime = SimulationClock.get().currentTimeMillis();
     }
 
     public void recordFireDetected(FireEvent event) {
         String key = event.getTime() + "_" + event.getZoneId();
         FireEventMetrics m = new FireEventMetrics();
         m.detectedSimTimeMs = parseSimulatedTime(event);
-        m.detectedWallTime = System.currentTimeMillis();
+        m.detectedWallTime = SimulationClock.get().currentTimeMillis();
         m.zoneId = event.getZoneId();
         m.litresNeeded = event.getLitres();
-        eventMetrics.computeIfAbsent(key, k -> new ArrayList<>()).add(m);
+        eventMetrics.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(m);
     }
 
     public void recordFireDispatched(FireEvent event, int droneId) {
@@ -40,7 +51,7 @@ public class MetricsLogger {
             m.droneId = droneId;
             m.detectedSimTimeMs = parseSimulatedTime(event);
             m.detectedWallTime = list.get(0).detectedWallTime; // from first detection
-            m.dispatchedOffset = System.currentTimeMillis() - m.detectedWallTime;
+            m.dispatchedOffset = SimulationClock.get().currentTimeMillis() - m.detectedWallTime;
             list.add(m);
         }
     }
@@ -51,7 +62,7 @@ public class MetricsLogger {
         if (list != null) {
             for (FireEventMetrics m : list) {
                 if (m.droneId == droneId && m.extinguishedOffset == 0) {
-                    m.extinguishedOffset = System.currentTimeMillis() - m.detectedWallTime;
+                    m.extinguishedOffset = SimulationClock.get().currentTimeMillis() - m.detectedWallTime;
                     break;
                 }
             }
@@ -70,9 +81,23 @@ public class MetricsLogger {
         droneTimes.merge(droneId, durationMillis, Long::sum);
     }
 
+    /**
+     * Records one batch of parked drones matched to events by the Scheduler.
+     *
+     * @param events the number of events handed out
+     * @param greedySeconds the fleet travel time had the longest-waiting drones taken the events in priority order
+     * @param assignedSeconds the fleet travel time of the matching actually used
+     */
+    public synchronized void logAssignmentBatch(int events, double greedySeconds, double assignedSeconds) {
+        assignmentBatches++;
+        assignedEvents += events;
+        greedyTravelSeconds += greedySeconds;
+        assignedTravelSeconds += assignedSeconds;
+    }
+
     private long parseSimulatedTime(FireEvent event) {
-        LocalTime baseTime = LocalTime.parse(event.getTime());
-        return baseTime.toSecondOfDay() * 1000L;
+        // The event parsed its time when it was made
+        return event.getTimeAsLocalTime().toSecondOfDay() * 1000L;
     }
 
     public void exportToFile(String filename) {
@@ -95,6 +120,15 @@ public class MetricsLogger {
                 writer.write("Drone " + entry.getKey() + ": " + entry.getValue() + " ms\n");
             }
 
+            String assignment;
+            synchronized (this) {
+                assignment = "Batches: " + assignmentBatches + " (" + assignedEvents + " events)\n"
+                        + String.format("Fleet Travel Time: %.1f s (greedy %.1f s, saved %.1f s)%n",
+                        assignedTravelSeconds, greedyTravelSeconds, greedyTravelSeconds - assignedTravelSeconds);
+            }
+            writer.write("\n--- Dispatch Assignment ---\n");
+            writer.write(assignment);
+
             writer.write("\n--- Fire Event Metrics ---\n");
             for (var entry : eventMetrics.entrySet()) {
                 for (FireEventMetrics m : entry.getValue()) {
@@ -146,7 +180,7 @@ public class MetricsLogger {
         long detectedSimTimeMs;
         long detectedWallTime;
         long dispatchedOffset;
-        long extinguishedOffset;
+        volatile long extinguishedOffset; // Set by the drone after the record is published
         int litresNeeded;
         int zoneId;
         int droneId;
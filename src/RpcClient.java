@@ -0,0 +1,415 @@
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Client side of the Scheduler RPC protocol.
+ * Every request is stamped with a fresh correlation id and registered in a pending-call table.
+ * A single receiver thread owns the socket's receive side and completes the matching future
+ * when a response arrives, so several requests from one sender can be in flight at once
+ * and each reply reaches the caller that asked for it.
+ *
+ * Requests are retransmitted until answered. The retransmission timeout adapts to the measured
+ * round-trip time (smoothed RTT plus four times its deviation, as in TCP) and doubles on every
+ * retry of the same request. The Scheduler suppresses duplicates by correlation id, so a
+ * retransmitted request is only applied once. A request still unanswered after a set number of
+ * transmissions ({@link #DEFAULT_MAX_ATTEMPTS} unless changed) fails with a
+ * {@link SocketTimeoutException}, so a dead receiver does not leave calls retrying forever; only
+ * a request the receiver may hold open for as long as it likes, sent with
+ * {@link #callUntilAnswered}, has no limit.
+ *
+ * Requests are encoded in place into pooled buffers that are held until the call completes,
+ * the receiver reuses one packet and buffer, and replies share one packet, so the transport itself
+ * allocates little per call.
+ */
+public class RpcClient {
+    private static final long INITIAL_RTO_MS = 500;
+    private static final long MIN_RTO_MS = 50;
+    private static final long MAX_RTO_MS = 4000;
+    // Gives up after 10 to 25 seconds of silence, depending on the measured round-trip time
+    public static final int DEFAULT_MAX_ATTEMPTS = 8;
+
+    // Encode buffers shared by every client in the process; a call holds one until it completes
+    private static final BufferPool BUFFERS = new BufferPool(1024, WireProtocol.MAX_DATAGRAM_SIZE, false);
+
+    private final DatagramSocket socket;
+    private final InetSocketAddress serverAddress;
+    private final byte senderType;
+    private final int senderId;
+    // Start at a time-derived id so a restarted client is not mistaken for duplicates of its predecessor
+    private final AtomicInteger nextCorrelationId = new AtomicInteger((int) (System.nanoTime() & 0x3fffffff) + 1);
+    private final Map<Integer, PendingCall> pendingCalls = new ConcurrentHashMap<>();
+    private final Thread receiverThread;
+    private final DatagramPacket replyPacket = new DatagramPacket(new byte[0], 0); // Reused by every reply
+    private volatile BiConsumer<WireProtocol.Message, InetSocketAddress> requestHandler;
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    // Round-trip estimator state, in milliseconds
+    private double smoothedRtt = -1;
+    private double rttVariance;
+    private volatile long rto = INITIAL_RTO_MS;
+    private final AtomicInteger retransmissions = new AtomicInteger();
+
+    /**
+     * A request waiting for its response.
+     */
+    private final class PendingCall {
+        final int correlationId;
+        final String methodName;
+        final DatagramPacket packet;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final long sentAt = System.nanoTime();
+        final int maxAttempts; // 0 for no limit
+        // Held while sending, so the buffer is not returned to the pool mid-send
+        final ReentrantLock sendLock = new ReentrantLock();
+        ByteBuffer buffer; // Guarded by sendLock; null once released
+        volatile int attempts = 0;
+        volatile long timeout;
+        volatile Future<?> retransmitTask;
+
+        PendingCall(int correlationId, String methodName, ByteBuffer buffer, InetSocketAddress destination, int maxAttempts) {
+            this.correlationId = correlationId;
+            this.methodName = methodName;
+            this.maxAttempts = maxAttempts;
+            this.buffer = buffer;
+            this.packet = new DatagramPacket(buffer.array(), buffer.limit(), destination);
+            this.timeout = rto;
+        }
+
+        /**
+         * Returns the call's buffer to the pool. Called once the call has completed.
+         */
+        void release() {
+            sendLock.lock();
+            try {
+                if (buffer != null) BUFFERS.release(buffer);
+                buffer = null;
+            } finally {
+                sendLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Constructs a new RpcClient and starts its receiver thread.
+     *
+     * @param socket the bound socket used for both requests and responses
+     * @param serverAddress the address of the Scheduler
+     * @param serverPort the port of the Scheduler
+     * @param senderType the sender type written in each request header
+     * @param senderId the drone or zone id written in each request header
+     */
+    public RpcClient(DatagramSocket socket, InetAddress serverAddress, int serverPort, byte senderType, int senderId) {
+        this.socket = socket;
+        this.serverAddress = new InetSocketAddress(serverAddress, serverPort);
+        this.senderType = senderType;
+        this.senderId = senderId;
+        this.receiverThread = SimulationThreads.startDaemon("RpcClient-" + senderId, this::receiveLoop);
+    }
+
+    /**
+     * Sets the handler for requests that arrive on this client's socket.
+     * Without a handler, incoming requests are dropped.
+     *
+     * @param requestHandler receives each decoded request and the address it came from
+     */
+    public void setRequestHandler(BiConsumer<WireProtocol.Message, InetSocketAddress> requestHandler) {
+        this.requestHandler = requestHandler;
+    }
+
+    /**
+     * Sets how many times a request is sent before its call fails with a
+     * {@link SocketTimeoutException}. Applies to requests sent from now on.
+     *
+     * @param maxAttempts the number of transmissions, at least one
+     * @throws IllegalArgumentException if the number is less than one
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("A request must be sent at least once: " + maxAttempts);
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Answers a request that arrived through the request handler.
+     *
+     * @param destination the address the request came from
+     * @param correlationId the correlation id of the request
+     * @param value the response value
+     * @throws IOException if the response could not be sent
+     */
+    public void reply(InetSocketAddress destination, int correlationId, Object value) throws IOException {
+        ByteBuffer buffer = BUFFERS.acquire();
+        try {
+            WireProtocol.encodeResponse(buffer, senderType, senderId, correlationId, value);
+            synchronized (replyPacket) {
+                replyPacket.setData(buffer.array(), 0, buffer.position());
+                replyPacket.setSocketAddress(destination);
+                socket.send(replyPacket);
+            }
+        } finally {
+            BUFFERS.release(buffer);
+        }
+    }
+
+    /**
+     * Sends a request to the Scheduler and returns a future completed with the response value.
+     * The request is retransmitted until answered; the future completes exceptionally if the
+     * request cannot be encoded or sent, runs out of transmissions (see
+     * {@link #setMaxAttempts}), or the client is closed.
+     *
+     * @param methodName the method to invoke on the Scheduler
+     * @param parameters the method arguments
+     * @return a future for the response value
+     */
+    public CompletableFuture<Object> callAsync(String methodName, Object... parameters) {
+        return callAsync(serverAddress, methodName, parameters);
+    }
+
+    /**
+     * Sends a request to the given address and returns a future completed with the response value.
+     *
+     * @param destination the address of the receiver
+     * @param methodName the method to invoke
+     * @param parameters the method arguments
+     * @return a future for the response value
+     */
+    public CompletableFuture<Object> callAsync(InetSocketAddress destination, String methodName, Object... parameters) {
+        return callAsync(destination, maxAttempts, methodName, parameters);
+    }
+
+    private CompletableFuture<Object> callAsync(InetSocketAddress destination, int maxAttempts, String methodName,
+                                                Object... parameters) {
+        int correlationId = nextCorrelationId.getAndIncrement();
+        ByteBuffer buffer = BUFFERS.acquire();
+        try {
+            WireProtocol.encodeRequest(buffer, methodName, senderType, senderId, correlationId, parameters);
+        } catch (RuntimeException e) {
+            BUFFERS.release(buffer);
+            return CompletableFuture.failedFuture(e);
+        }
+        buffer.flip();
+        PendingCall call = new PendingCall(correlationId, methodName, buffer, destination, maxAttempts);
+        pendingCalls.put(correlationId, call);
+        transmit(call);
+        return call.future;
+    }
+
+    /**
+     * Sends a request to the Scheduler and waits for its response.
+     *
+     * @param methodName the method to invoke on the Scheduler
+     * @param parameters the method arguments
+     * @return the response value
+     * @throws IOException if the request could not be sent, went unanswered or the client was closed
+     */
+    public Object call(String methodName, Object... parameters) throws IOException {
+        return await(callAsync(methodName, parameters), methodName);
+    }
+
+    /**
+     * Sends a request to the Scheduler once, without retransmitting it. For updates the next one
+     * supersedes, such as heartbeats: a lost update is not worth resending, and retransmissions
+     * would only queue stale ones up behind a slow Scheduler.
+     *
+     * @param methodName the method to invoke on the Scheduler
+     * @param parameters the method arguments
+     * @return a future for the response value, which fails with a {@link SocketTimeoutException}
+     *         if no response arrives within the retransmission timeout
+     */
+    public CompletableFuture<Object> sendOnce(String methodName, Object... parameters) {
+        return callAsync(serverAddress, 1, methodName, parameters);
+    }
+
+    /**
+     * Sends a request to the Scheduler and waits for its response for as long as it takes.
+     * For requests the Scheduler holds open until it has an answer, such as getNextFireEvent
+     * while no event is queued: the Scheduler drops their retransmissions, so a limit on the
+     * attempts would fail a drone that is only waiting for work.
+     *
+     * @param methodName the method to invoke on the Scheduler
+     * @param parameters the method arguments
+     * @return the response value
+     * @throws IOException if the request could not be sent or the client was closed
+     */
+    public Object callUntilAnswered(String methodName, Object... parameters) throws IOException {
+        return await(callAsync(serverAddress, 0, methodName, parameters), methodName);
+    }
+
+    /**
+     * Sends a request to the given address and waits for its response.
+     *
+     * @param destination the address of the receiver
+     * @param methodName the method to invoke
+     * @param parameters the method arguments
+     * @return the response value
+     * @throws IOException if the request could not be sent, went unanswered or the client was closed
+     */
+    public Object call(InetSocketAddress destination, String methodName, Object... parameters) throws IOException {
+        return await(callAsync(destination, methodName, parameters), methodName);
+    }
+
+    private Object await(CompletableFuture<Object> future, String methodName) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for " + methodName, e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new IOException("Call to " + methodName + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number of requests still waiting for a response.
+     *
+     * @return the size of the pending-call table
+     */
+    public int getPendingCallCount() {
+        return pendingCalls.size();
+    }
+
+    /**
+     * Returns the current retransmission timeout.
+     *
+     * @return the timeout in milliseconds applied to the first transmission of a new request
+     */
+    public long getRetransmissionTimeout() {
+        return rto;
+    }
+
+    /**
+     * Returns how many requests have been retransmitted so far.
+     *
+     * @return the total number of retransmissions
+     */
+    public int getRetransmissionCount() {
+        return retransmissions.get();
+    }
+
+    /**
+     * Closes the socket and fails every call still waiting for a response.
+     */
+    public void close() {
+        socket.close();
+        failPendingCalls(new SocketException("RPC client closed"));
+    }
+
+    /**
+     * Sends (or resends) a pending call and arms its retransmission timer.
+     * Each retry doubles the call's timeout, up to {@link #MAX_RTO_MS}. A call that has used up
+     * its attempts is failed instead.
+     */
+    private void transmit(PendingCall call) {
+        if (call.future.isDone()) return;
+        if (call.maxAttempts > 0 && call.attempts >= call.maxAttempts) {
+            if (pendingCalls.remove(call.correlationId, call)) { // Unless the response has just arrived
+                call.release();
+                if (call.maxAttempts > 1) {
+                    System.out.println("RpcClient " + senderId + " giving up on " + call.methodName + " after " + call.attempts + " attempts");
+                }
+                call.future.completeExceptionally(new SocketTimeoutException(
+                        "No response to " + call.methodName + " after " + call.attempts + " attempts"));
+            }
+            return;
+        }
+        if (call.attempts > 0) {
+            retransmissions.incrementAndGet();
+            call.timeout = Math.min(call.timeout * 2, MAX_RTO_MS);
+            System.out.println("RpcClient " + senderId + " retransmitting " + call.methodName + " (attempt " + (call.attempts + 1) + ")");
+        }
+        call.attempts++;
+        IOException failure = null;
+        call.sendLock.lock();
+        try {
+            if (call.buffer == null) return; // Completed since the check above
+            socket.send(call.packet);
+        } catch (IOException e) {
+            failure = e; // Unless the socket is closed, treat it like a lost datagram; the timer will retry it
+        } finally {
+            call.sendLock.unlock();
+        }
+        if (failure != null && socket.isClosed()) {
+            pendingCalls.remove(call.correlationId);
+            call.release();
+            call.future.completeExceptionally(failure);
+            return;
+        }
+        // Sending a datagram does not block, so the retry runs on the shared timer's thread
+        call.retransmitTask = SimulationThreads.scheduleOnTimer(() -> transmit(call), call.timeout);
+    }
+
+    /**
+     * Feeds one round-trip sample into the estimator.
+     * Only calls answered on their first transmission are sampled (Karn's algorithm).
+     */
+    private synchronized void sampleRtt(long rttMillis) {
+        if (smoothedRtt < 0) {
+            smoothedRtt = rttMillis;
+            rttVariance = rttMillis / 2.0;
+        } else {
+            rttVariance = 0.75 * rttVariance + 0.25 * Math.abs(smoothedRtt - rttMillis);
+            smoothedRtt = 0.875 * smoothedRtt + 0.125 * rttMillis;
+        }
+        rto = Math.max(MIN_RTO_MS, Math.min(MAX_RTO_MS, (long) Math.ceil(smoothedRtt + 4 * rttVariance)));
+    }
+
+    /**
+     * Receives datagrams until the socket closes. Responses complete the matching pending call;
+     * responses with no matching call (late or duplicate replies) are discarded.
+     * Requests are passed to the request handler, if one is set.
+     */
+    private void receiveLoop() {
+        byte[] buffer = new byte[WireProtocol.MAX_DATAGRAM_SIZE];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (!socket.isClosed()) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                WireProtocol.Message message = WireProtocol.decode(packet.getData(), 0, packet.getLength());
+                if (!message.isResponse()) {
+                    BiConsumer<WireProtocol.Message, InetSocketAddress> handler = requestHandler;
+                    if (handler != null) handler.accept(message, (InetSocketAddress) packet.getSocketAddress());
+                    continue;
+                }
+                PendingCall call = pendingCalls.remove(message.getCorrelationId());
+                if (call == null) continue;
+                Future<?> retransmitTask = call.retransmitTask;
+                if (retransmitTask != null) retransmitTask.cancel(false);
+                if (call.attempts == 1) {
+                    sampleRtt(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - call.sentAt));
+                }
+                call.release();
+                call.future.complete(message.getValue());
+            } catch (SocketException e) {
+                break; // Socket closed
+            } catch (IOException e) {
+                System.err.println("RpcClient " + senderId + " dropped malformed datagram: " + e.getMessage());
+            }
+        }
+        failPendingCalls(new SocketException("RPC client socket closed"));
+    }
+
+    private void failPendingCalls(Exception cause) {
+        for (Integer correlationId : pendingCalls.keySet()) {
+            PendingCall call = pendingCalls.remove(correlationId);
+            if (call == null) continue;
+            Future<?> retransmitTask = call.retransmitTask;
+            if (retransmitTask != null) retransmitTask.cancel(false);
+            call.release();
+            call.future.completeExceptionally(cause);
+        }
+    }
+}
@@ -1,6 +1,21 @@
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 /**
  * The Scheduler class acts as a centralized system for handling fire events.
  * It manages incoming fire events and assigns tasks to drones.
@@ -8,6 +23,33 @@ import java.util.*;
  * for fire incident management.
  *
  * Implements the Runnable interface to allow it to execute in a separate thread.
+ * Requests move through four stages connected by bounded queues:
+ * {@link #run()} receives datagrams, a decode stage parses them and filters duplicates,
+ * a single execute stage applies them to the event queue, and a send stage encodes and
+ * transmits the replies. Drones asking for their next event are parked in the execute
+ * stage until one is available, so no request holds up the ones behind it.
+ *
+ * Drones register each flight leg instead of polling for nearby events. When a queued event
+ * comes within {@link #REASSIGN_RADIUS} of a flying drone, the Scheduler pushes a REASSIGN
+ * request to it, retrying until the drone answers whether it took the event.
+ *
+ * Queued events are dispatched by an {@link EventPriority} score of severity, time waited and
+ * remaining litres, so a partly extinguished HIGH fire does not wait behind newer LOW fires.
+ * They are also indexed in an {@link EventGrid} by zone center, so nearby and reachable
+ * events are found without scanning the whole queue.
+ *
+ * A large region can be split across several Schedulers by a {@link ShardPlan}. Each shard runs
+ * the subsystems of the zones it owns and serves the drones that report to it. A shard whose
+ * drones are waiting with nothing queued asks its peers, in turn, for an event with a
+ * STEAL_EVENT request; a peer with a backlog its own waiting drones cannot cover hands over its
+ * highest-priority event, and the idle drone is sent to it. The event then belongs to the shard
+ * that took it. A shard only tells its drones to stop once every peer has reported that its own
+ * events are all handled, since until then its drones may still be lent out.
+ *
+ * Given a journal directory, every change to the queue and the event counters is recorded in a
+ * {@link SchedulerJournal} first. A Scheduler started on the same directory puts the queue and
+ * counters back as they were and only starts the zones that had not finished, which skip the
+ * events already received.
  *
  * @author Joey Andrwes
  * @author Grant Phillips
@@ -18,40 +60,181 @@ import java.util.*;
  * @version 2.0
  */
 public class Scheduler implements Runnable {
-    private final Queue<FireEvent> queue = new LinkedList<>();
+    // Pending events by dispatch priority, each also indexed by its zone center in eventGrid; guarded by lock
+    private final EventQueue queue = new EventQueue(EventPriority.DEFAULT);
+    private final EventGrid eventGrid = new EventGrid(EVENT_GRID_CELL_SIZE);
+    public static final double EVENT_GRID_CELL_SIZE = 100; // meters
+    private static final int CRUISE_SPEED = 18; // meters per second
+    private static final int NOZZLE_FLOW_RATE = 2; // litres per second
+    private static final int DRONE_CAPACITY = 14; // litres, assumed for drones that do not report their tank
+    private static final int TOUR_CANDIDATES = 12; // Nearest reachable events a tour is planned over
     private final Map<Integer, FireIncidentSubsystem> zones = new HashMap<>();
+    private final ZoneRegistry zoneRegistry = new ZoneRegistry();
+    private final FleetRegistry fleet = new FleetRegistry(); // Updated by the drones' heartbeats
+    private volatile TourPlanner tourPlanner = new TourPlanner(List.of(), CRUISE_SPEED, NOZZLE_FLOW_RATE);
     private final Set<Integer> droneIds = new HashSet<>();
     private final String zoneFile;
     private final String eventFile;
     private volatile boolean isFinished = false;
     private volatile boolean isLoaded = false;
-    private Boolean stopDrones = false;
+    private volatile boolean stopDrones = false;
     private SchedulerState state = SchedulerState.WAITING_FOR_EVENTS;
+    public static final int DEFAULT_SCHEDULER_PORT = 6000;
     public static final int DEFAULT_FIS_PORT = 5000;
     private final int DEFAULT_DRONE_PORT = 5500;
-    private DatagramSocket dronesendSocket;
-    private DatagramSocket FISsendSocket;
-    private ArrayList<DatagramSocket> FIS_Sockets = new ArrayList<>();
-    private ArrayList<DatagramSocket> drone_Sockets = new ArrayList<>();
+    private final int port;
+    private final Selector selector;
+    private final DatagramChannel channel;
+    private final AddressBook droneAddresses = new AddressBook();
+    private final AddressBook zoneAddresses = new AddressBook();
+    private final AddressBook peerAddresses = new AddressBook(); // Other shards, by shard index
+    private final InetAddress localHost; // Resolved once, for drones and zones not yet heard from
+    public static final int STAGE_QUEUE_CAPACITY = 1024;
+    private final BlockingQueue<Datagram> inbound = new ArrayBlockingQueue<>(STAGE_QUEUE_CAPACITY);
+    // Work for the execute stage: decoded requests, plus reassignment checks and push outcomes. Each worker
+    // has its own queue, and every drone and zone always goes to the same worker, so the requests of one
+    // sender are applied in the order they arrived while different senders are handled in parallel.
+    public static final int EXECUTE_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private final List<BlockingQueue<Runnable>> executeQueues = new ArrayList<>();
+    private final BlockingQueue<Reply> outbound = new ArrayBlockingQueue<>(STAGE_QUEUE_CAPACITY);
+    // Datagrams and replies cycle through the stages and back here instead of being allocated per message
+    private static final int DATAGRAM_POOL_SIZE = 2 * STAGE_QUEUE_CAPACITY;
+    private final BlockingQueue<Datagram> freeDatagrams = new ArrayBlockingQueue<>(DATAGRAM_POOL_SIZE);
+    private final BlockingQueue<Reply> freeReplies = new ArrayBlockingQueue<>(STAGE_QUEUE_CAPACITY);
+    private int datagramsAllocated = 0; // Only touched by the receive stage
+    // getNextFireEvent requests waiting for an event, oldest first. Any execute worker may park a request;
+    // only the worker holding dispatchLock takes them off again.
+    private final ConcurrentLinkedDeque<ParkedRequest> parkedEventRequests = new ConcurrentLinkedDeque<>();
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+    private volatile double assignmentTimeSaved = 0; // Seconds; only written under dispatchLock
+    private final List<Thread> stageThreads = new ArrayList<>();
+    private final AtomicLong droppedDatagrams = new AtomicLong();
+    public static final double REASSIGN_RADIUS = 50; // meters
+    private static final long PUSH_RETRY_MS = 500;
+    private static final int MAX_PUSH_ATTEMPTS = 5;
+    // Registered flight legs, the cells their paths cross, and their pending reassignment checks and
+    // when those run, by drone id; guarded by lock
+    private final Map<Integer, FlightLeg> flightLegs = new HashMap<>();
+    private final LegGrid legGrid = new LegGrid(EVENT_GRID_CELL_SIZE, REASSIGN_RADIUS);
+    private final Map<Integer, Future<?>> reassignmentChecks = new HashMap<>();
+    private final Map<Integer, Long> reassignmentCheckTimes = new HashMap<>();
+    // REASSIGN pushes waiting for the drone's answer, by correlation id
+    private final Map<Integer, PendingPush> pendingPushes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextPushId = new AtomicInteger(1);
+    private final DuplicateFilter duplicateFilter = new DuplicateFilter();
+    // Guards the event queue, its grid and the flight legs. Only queue and index updates are made while
+    // it is held; logging, map updates and metrics happen after it is released. A lock rather than the
+    // object monitor, so threads waiting for events do not pin virtual threads to their carriers.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition queueChanged = lock.newCondition();
     private boolean zonesLoaded = false;
-    private int numEvents = 0;
-    private int completedEvents = 0;
+    private final AtomicInteger numEvents = new AtomicInteger();
+    private final AtomicInteger completedEvents = new AtomicInteger();
 
-    public boolean timeoutFault = false;
-    public boolean nozzleFault = false;
-    public boolean packetFault = false;
+    public volatile boolean timeoutFault = false;
+    public volatile boolean nozzleFault = false;
+    public volatile boolean packetFault = false;
 
-    public MapUI map;
+    public SimulationObserver observer;
     public MetricsLogger logger;
 
-    private int totalZonesExpected = 0;   // Set dynamically
-    private int zonesFinishedLoading = 0; // Counter
+    private static final List<String> knownFISMethods = List.of("ADD_FIRE_EVENT", "ADD_FIRE_EVENTS", "SET_EVENTS_LOADED");
+    private static final List<String> knowndroneMethods = List.of(
+            "flightLeg", "ADD_FIRE_EVENT", "calculateDistanceToHomeBase",
+            "getNextFireEvent", "calculateTravelTime", "updateFireStatus", "getAdditionalFireEvent", "handleDroneFault", "STOP_?",
+            "heartbeat", "requeueFireEvent");
+
+    // Orders the events streamed in by the zones; events reach the queue as its watermark passes them
+    private final EventMerger merger = new EventMerger();
+
+    // Sharding: which zones this Scheduler owns, and the client it asks other shards for events with
+    private final ShardPlan shards;
+    private final int shardIndex;
+    private final RpcClient peers; // Null with a single shard
+    public static final int LEND_BACKLOG = 2; // Events a shard must have beyond its waiting drones before lending
+    private static final long STEAL_RETRY_MS = 250;
+    private final AtomicBoolean stealing = new AtomicBoolean(); // A steal is in flight or waiting to retry
+    private final AtomicInteger nextVictim = new AtomicInteger();
+    private final Set<Integer> finishedPeers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger eventsBorrowed = new AtomicInteger();
+    private final AtomicInteger eventsLent = new AtomicInteger();
+    private static final List<String> knownPeerMethods = List.of("STEAL_EVENT");
+
+    // Records every queue and counter change for recovery; null unless journaling. Changes to the queue
+    // are recorded while the lock is held, so the journal sees them in the order they were made.
+    private final SchedulerJournal journal;
+
+    /**
+     * A receive buffer that carries one datagram through the decode and execute stages.
+     * Running it executes the decoded request and returns the datagram to the pool.
+     */
+    private final class Datagram implements Runnable {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(WireProtocol.MAX_DATAGRAM_SIZE);
+        SocketAddress source;
+        WireProtocol.Message message;
+
+        @Override
+        public void run() {
+            try {
+                execute(this);
+            } finally {
+                recycle(this);
+            }
+        }
+    }
+
+    /**
+     * A getNextFireEvent request waiting for an event.
+     */
+    private static final class ParkedRequest {
+        final int droneId;
+        final int correlationId;
+        final int x, y; // Where the drone asked from
+
+        ParkedRequest(int droneId, int correlationId, int x, int y) {
+            this.droneId = droneId;
+            this.correlationId = correlationId;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /**
+     * A message waiting to be encoded and sent: either a response to a drone or zone, or a
+     * request pushed to a drone. Replies are pooled, so the fields are set on each use.
+     */
+    private static final class Reply {
+        String methodName;     // Set for a request; null for a response
+        byte targetType;
+        int targetId;
+        int correlationId;
+        Object value;
+        SocketAddress address; // Set to answer a duplicate at its source; null to look up the target
 
-    public static class DroneStatus {
-        public String droneId;
-        public int x;
-        public int y;
-        public double batteryLife;
+        Reply set(String methodName, byte targetType, int targetId, int correlationId, Object value, SocketAddress address) {
+            this.methodName = methodName;
+            this.targetType = targetType;
+            this.targetId = targetId;
+            this.correlationId = correlationId;
+            this.value = value;
+            this.address = address;
+            return this;
+        }
+    }
+
+    /**
+     * A REASSIGN request sent to a drone and not yet answered.
+     */
+    private static final class PendingPush {
+        final int droneId;
+        final FireEvent event;
+        int attempts = 0;
+
+        PendingPush(int droneId, FireEvent event) {
+            this.droneId = droneId;
+            this.event = event;
+        }
     }
 
     /**
@@ -69,46 +252,142 @@ public class Scheduler implements Runnable {
      *
      * @param zoneFile the file path containing zone definitions
      * @param eventFile the file path containing fire events
-     * @param numDrones the number of drones available for the simulation
+     * @param numDrones the number of drones available for the simulation; drones are told apart by the
+     *                  id in each request header, so this does not limit the fleet size
      * @param baseOffsetport the offset to avoid port conflicts
-     * @param map the MapUI instance for visual updates
+     * @param observer the observer shown fire events and zones, or null for none
      * @param logger the MetricsLogger instance for recording metrics
      */
-    public Scheduler(String zoneFile, String eventFile, int numDrones, int baseOffsetport, MapUI map, MetricsLogger logger) {
+    public Scheduler(String zoneFile, String eventFile, int numDrones, int baseOffsetport, SimulationObserver observer, MetricsLogger logger) {
+        this(zoneFile, eventFile, numDrones, new ShardPlan(1, baseOffsetport), 0, observer, logger);
+    }
+
+    /**
+     * Constructs one shard of a sharded deployment. The shard reads every zone's geometry but only
+     * runs the subsystems of the zones the plan gives it.
+     *
+     * @param zoneFile the file path containing zone definitions
+     * @param eventFile the file path containing fire events
+     * @param numDrones the number of drones available for the simulation
+     * @param shards how zones and drones are split across the shards
+     * @param shardIndex which shard this Scheduler is
+     * @param observer the observer shown fire events and zones, or null for none
+     * @param logger the MetricsLogger instance for recording metrics
+     */
+    public Scheduler(String zoneFile, String eventFile, int numDrones, ShardPlan shards, int shardIndex,
+                     SimulationObserver observer, MetricsLogger logger) {
+        this(zoneFile, eventFile, numDrones, shards, shardIndex, null, observer, logger);
+    }
+
+    /**
+     * Constructs one shard that journals its state to a directory, first recovering any state a
+     * previous Scheduler left there.
+     *
+     * @param zoneFile the file path containing zone definitions
+     * @param eventFile the file path containing fire events
+     * @param numDrones the number of drones available for the simulation
+     * @param shards how zones and drones are split across the shards
+     * @param shardIndex which shard this Scheduler is
+     * @param journalDirectory the directory for the journal and snapshots, or null not to journal
+     * @param observer the observer shown fire events and zones, or null for none
+     * @param logger the MetricsLogger instance for recording metrics
+     */
+    public Scheduler(String zoneFile, String eventFile, int numDrones, ShardPlan shards, int shardIndex,
+                     Path journalDirectory, SimulationObserver observer, MetricsLogger logger) {
         this.zoneFile = zoneFile;
         this.eventFile = eventFile;
-        int droneBasePort = 6500 + baseOffsetport;
-        int fisBasePort = 6100 + baseOffsetport;
-        int fisSendPort = 6000 + baseOffsetport;
-        int droneSendPort = 6001 + baseOffsetport;
-        this.map = map;
+        this.shards = shards;
+        this.shardIndex = shardIndex;
+        this.port = shards.portOf(shardIndex);
+        this.observer = observer != null ? observer : SimulationObserver.NONE;
         this.logger = logger;
-        for (int i = 1; i <= numDrones; i++) {
-            try {
-                DatagramSocket drone_socket = new DatagramSocket(droneBasePort + i);
-                drone_socket.setSoTimeout(1000);
-                drone_Sockets.add(drone_socket);
-            } catch (SocketException e) {
-                throw new RuntimeException(e);
-            }
-        }
         try {
-            FISsendSocket = new DatagramSocket(fisSendPort);
-            dronesendSocket = new DatagramSocket(droneSendPort);
-        } catch (SocketException e) {
+            // Every drone and zone talks to this one port; replies go back to each sender's source address.
+            selector = Selector.open();
+            channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+            localHost = InetAddress.getLocalHost();
+            peers = shards.getShardCount() > 1
+                    ? new RpcClient(new DatagramSocket(), localHost, port, WireProtocol.SENDER_SCHEDULER, shardIndex)
+                    : null;
+            journal = journalDirectory != null ? new SchedulerJournal(journalDirectory) : null;
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        readZoneFile(fisBasePort);
+        if (journal != null) recover();
+        stageThreads.add(SimulationThreads.startDaemon("Scheduler-Decode", this::decodeLoop));
+        for (int i = 0; i < EXECUTE_THREADS; i++) {
+            BlockingQueue<Runnable> tasks = new ArrayBlockingQueue<>(STAGE_QUEUE_CAPACITY);
+            executeQueues.add(tasks);
+            stageThreads.add(SimulationThreads.startDaemon("Scheduler-Execute-" + i, () -> executeLoop(tasks)));
+        }
+        stageThreads.add(SimulationThreads.startDaemon("Scheduler-Send", this::sendLoop));
+        readZoneFile();
+        if (journal != null && journal.getNumEvents() > 0 && merger.isComplete()) {
+            isLoaded = true; // Every zone had finished before the restart
+            state = SchedulerState.WAITING_FOR_DRONE;
+        }
     }
 
     /**
-     * Reads the zone file to initialize zones and start corresponding FireIncidentSubsystem threads.
+     * Returns the port the scheduler receives all drone and FIS requests on.
+     *
+     * @return the scheduler's ingress port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Returns the decode, execute and send stage threads, for measuring them.
+     * The receive stage runs on whichever thread calls {@link #run()}.
      *
-     * @param fisBasePort the base port number for Fire Incident Subsystems
+     * @return the stage threads
      */
-    public void readZoneFile(int fisBasePort) {
+    List<Thread> getStageThreads() {
+        return Collections.unmodifiableList(stageThreads);
+    }
+
+    /**
+     * Puts back the queue and counters recorded in the journal by a previous Scheduler. Events it
+     * had sent to drones stay counted, so they are finished by the drones' updateFireStatus requests.
+     */
+    private void recover() {
+        List<FireEvent> queued = journal.getQueuedEvents();
+        numEvents.set(journal.getNumEvents());
+        completedEvents.set(journal.getCompletedEvents());
+        lock.lock();
+        try {
+            for (FireEvent event : queued) {
+                if (event.getLitres() == 0) event.setLitres(calculateWaterNeeded(event.getSeverity()));
+                enqueue(event);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (FireEvent event : queued) observer.fireEventUpdated(event);
+        if (journal.getNumEvents() > 0) {
+            System.out.println("Scheduler: Recovered " + queued.size() + " queued events, " + journal.getAssignments().size()
+                    + " with drones and " + journal.getCompletedEvents() + " extinguished in " + journal.getRecoveryMillis() + " ms.");
+        }
+    }
+
+    /**
+     * Returns the journal this Scheduler records its state in.
+     *
+     * @return the journal, or null if not journaling
+     */
+    public SchedulerJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Reads the zone file to initialize zones and start corresponding FireIncidentSubsystem threads.
+     */
+    public void readZoneFile() {
         try {
-            List<Zone> uiZones = new ArrayList<>();
             File file = new File(this.zoneFile);
             System.out.println("Checking path: " + file.getAbsolutePath());
             if (!file.exists()) {
@@ -120,7 +399,6 @@ public class Scheduler implements Runnable {
                 String line;
                 boolean isFirstLine = true;
                 while ((line = br.readLine()) != null) {
-                    totalZonesExpected++;
                     if (isFirstLine) {
                         isFirstLine = false;
                         continue;
@@ -141,51 +419,94 @@ public class Scheduler implements Runnable {
                         }
                         int x1 = startCoords[0], y1 = startCoords[1];
                         int x2 = endCoords[0], y2 = endCoords[1];
-                        uiZones.add(new Zone(zoneId, x1, y1, x2, y2));
-                        FireIncidentSubsystem fireIncidentSubsystem = new FireIncidentSubsystem(eventFile, zoneId, x1, y1, x2, y2, 0);
+                        // Every shard knows every zone, so it can send its drones to events it borrows
+                        zoneRegistry.register(new Zone(zoneId, x1, y1, x2, y2));
+                        if (shards.shardOfZone(zoneId) != shardIndex) continue;
+                        if (journal != null && journal.isZoneLoaded(zoneId)) continue; // Finished before a restart
+                        merger.expect(zoneId);
+                        FireIncidentSubsystem fireIncidentSubsystem = new FireIncidentSubsystem(eventFile, zoneId, x1, y1, x2, y2, 0, port);
+                        if (journal != null) fireIncidentSubsystem.skipEvents(journal.getEventsReceived(zoneId));
                         zones.put(zoneId, fireIncidentSubsystem);
-                        DatagramSocket socket = new DatagramSocket(fisBasePort + zoneId);
-                        socket.setSoTimeout(1000);
-                        FIS_Sockets.add(socket);
-                        Thread thread = new Thread(fireIncidentSubsystem);
-                        thread.setName("Fire Incident Subsystem Zone: " + zoneId);
-                        thread.start();
+                        SimulationThreads.start("Fire Incident Subsystem Zone: " + zoneId, fireIncidentSubsystem);
                     } catch (NumberFormatException e) {
                         System.out.println("Error parsing numbers in line: " + line);
                     }
                 }
             }
-            if (map != null) {
-                //map.setZones(uiZones);
-                uiZones.sort(Comparator.comparingInt(Zone::getId));
-                map.setZones(uiZones);
-            }
+            tourPlanner = new TourPlanner(zoneRegistry.getZones(), CRUISE_SPEED, NOZZLE_FLOW_RATE);
+            observer.zonesLoaded(zoneRegistry.getZones());
         } catch (IOException e) {
             System.out.println("Error reading file: " + zoneFile);
         }
     }
 
     /**
-     * Marks that events have been loaded once all zones have finished loading.
-     * Sorts the event queue by timestamp.
+     * Records that a zone has sent all of its events, so it no longer holds the watermark back,
+     * and marks events as loaded once every zone has finished.
+     *
+     * @param zoneId the zone that finished
      */
-    public synchronized void setEventsLoaded() {
-        zonesFinishedLoading++;
-        if (zonesFinishedLoading == totalZonesExpected) {
-            // Sort queue by timestamp
-            List<FireEvent> events = new ArrayList<>(queue);
-            events.sort(Comparator.comparing(FireEvent::getTimeAsLocalTime));
-            queue.clear();
-            queue.addAll(events);
-
+    public void setEventsLoaded(int zoneId) {
+        if (journal != null) journal.zoneLoaded(zoneId);
+        admitEvents(merger.close(zoneId));
+        if (!merger.isComplete()) return;
+        lock.lock();
+        try {
+            if (isLoaded) return;
             isLoaded = true;
             state = SchedulerState.WAITING_FOR_DRONE;
+            queueChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        System.out.println("Scheduler: All zones finished. Queue ordered by priority. Ready to assign to drones.");
+    }
 
-            System.out.println("Scheduler: All zones finished. Queue sorted by timestamp. Ready to assign to drones.");
-            notifyAll();
+    /**
+     * Takes a batch of events streamed in by a zone. The events are counted straight away, so the
+     * simulation cannot end while some are held back, and queued once the watermark passes them.
+     *
+     * @param zoneId the zone that sent the batch
+     * @param params the batch number and the second of the day the zone has read up to, then the
+     *               events; or only events, which are queued at once
+     */
+    private void addFireEventBatch(int zoneId, List<Object> params) {
+        int sequence = -1;
+        int throughSecond = -1;
+        int first = 0;
+        if (!params.isEmpty() && params.get(0) instanceof Integer) {
+            sequence = (Integer) params.get(0);
+            throughSecond = (Integer) params.get(1);
+            first = 2;
+        }
+        List<FireEvent> events = new ArrayList<>(params.size() - first);
+        for (int i = first; i < params.size(); i++) events.add((FireEvent) params.get(i));
+        if (journal != null) journal.eventsReceived(zoneId, events);
+        numEvents.addAndGet(events.size());
+        admitEvents(merger.offer(zoneId, sequence, throughSecond, events));
+    }
+
+    /**
+     * Draws and queues events the merger has released.
+     *
+     * @param events the released events
+     */
+    private void admitEvents(List<FireEvent> events) {
+        for (FireEvent event : events) {
+            observer.fireEventUpdated(event);
+            addFireEvent(event);
         }
     }
 
+    /**
+     * Returns the merger that orders the events streamed in by the zones.
+     *
+     * @return the event merger
+     */
+    public EventMerger getEventMerger() {
+        return merger;
+    }
+
     /**
      * Parses a coordinate string into an integer array.
      *
@@ -209,14 +530,19 @@ public class Scheduler implements Runnable {
     /**
      * Causes the scheduler to wait until fire events have been loaded.
      */
-    public synchronized void waitForEvents() {
-        while (!isLoaded) {
-            try {
-                System.out.println("Scheduler: Waiting for fire events to be loaded...");
-                wait();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    public void waitForEvents() {
+        lock.lock();
+        try {
+            while (!isLoaded) {
+                try {
+                    System.out.println("Scheduler: Waiting for fire events to be loaded...");
+                    queueChanged.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -226,12 +552,30 @@ public class Scheduler implements Runnable {
      *
      * @param event the FireEvent to add
      */
-    public synchronized void addFireEvent(FireEvent event) {
+    public void addFireEvent(FireEvent event) {
+        addFireEvent(event, false);
+    }
+
+    /**
+     * Adds a fire event to the event queue, recording it in the journal as a new event if asked.
+     * Events released by the merger were recorded when they arrived.
+     *
+     * @param event the FireEvent to add
+     * @param record whether to record the event in the journal
+     */
+    private void addFireEvent(FireEvent event, boolean record) {
         int totalWaterNeeded = calculateWaterNeeded(event.getSeverity());
         event.setLitres(totalWaterNeeded);
-        queue.add(event);
+        lock.lock();
+        try {
+            if (record && journal != null) journal.eventAdded(event);
+            enqueue(event);
+            queueChanged.signalAll();
+            scheduleReassignmentChecks(event);
+        } finally {
+            lock.unlock();
+        }
         logger.recordFireDetected(event);
-        notifyAll();
         System.out.println("Scheduler: Added FireEvent → " + event);
     }
 
@@ -259,21 +603,9 @@ public class Scheduler implements Runnable {
      * @return the estimated travel time in seconds
      */
     public double calculateTravelTime(int xDrone, int yDrone, FireEvent event) {
-        int cruiseSpeed = 18;
         System.out.println("Calculating travel time");
-        String[] zoneCoords = event.getZoneDetails().replaceAll("[()]", "").split(" to ");
-        String[] startCoords = zoneCoords[0].split(",");
-        String[] endCoords = zoneCoords[1].split(",");
-
-        int x1 = Integer.parseInt(startCoords[0].trim());
-        int y1 = Integer.parseInt(startCoords[1].trim());
-        int x2 = Integer.parseInt(endCoords[0].trim());
-        int y2 = Integer.parseInt(endCoords[1].trim());
-
-        int centerX = (x1 + x2) / 2;
-        int centerY = (y1 + y2) / 2;
-        double distance = Math.sqrt(Math.pow(centerX - xDrone, 2) + Math.pow(centerY - yDrone, 2));
-        double travelTimeToFire = distance / cruiseSpeed;
+        double distance = zoneOf(event).distanceFrom(xDrone, yDrone);
+        double travelTimeToFire = distance / CRUISE_SPEED;
         System.out.println("\nScheduler: Travel time to fire: " + travelTimeToFire);
         return travelTimeToFire;
     }
@@ -285,318 +617,1173 @@ public class Scheduler implements Runnable {
      * @return the distance to home base in meters
      */
     public double calculateDistanceToHomeBase(FireEvent event) {
-        int homeBaseX = 0;
-        int homeBaseY = 0;
-        String[] zoneCoords = event.getZoneDetails().replaceAll("[()]", "").split(" to ");
-        String[] startCoords = zoneCoords[0].split(",");
-        String[] endCoords = zoneCoords[1].split(",");
-        int x1 = Integer.parseInt(startCoords[0].trim());
-        int y1 = Integer.parseInt(startCoords[1].trim());
-        int x2 = Integer.parseInt(endCoords[0].trim());
-        int y2 = Integer.parseInt(endCoords[1].trim());
-        int centerX = (x1 + x2) / 2;
-        int centerY = (y1 + y2) / 2;
-        double distanceToHomeBase = Math.sqrt(Math.pow(centerX - homeBaseX, 2) + Math.pow(centerY - homeBaseY, 2));
+        double distanceToHomeBase = zoneOf(event).getDistanceToHomeBase();
         System.out.println("\nScheduler: Distance to home base is: " + distanceToHomeBase + " meters\n" +
                 "Scheduler: Time to Home Base is: " + distanceToHomeBase / 18 + " seconds\n");
         return distanceToHomeBase;
     }
 
     /**
-     * Returns the next fire event that is within a specified threshold of the drone's current position.
+     * Returns the zone a fire event is in: the zone registered under its id, or else the zone
+     * the event carries, for zones that are not in this scheduler's zone file.
      *
-     * @param droneId the identifier of the drone (as a String)
-     * @param currentX the drone's current x-coordinate
-     * @param currentY the drone's current y-coordinate
-     * @return a FireEvent within range, or null if none is found
+     * @param event the fire event
+     * @return the zone
+     * @throws IllegalArgumentException if the zone is unknown
      */
-    public synchronized FireEvent getNextAssignedEvent(String droneId, int currentX, int currentY) {
-        double threshold = 50; // meters
-        if (queue.isEmpty()) return null;
-        for (FireEvent event : queue) {
-            int[] center = calculateZoneCenter(event);
-            double distance = Math.sqrt(Math.pow(center[0] - currentX, 2) + Math.pow(center[1] - currentY, 2));
-            if (distance <= threshold) {
-                queue.remove(event);
-                return event;
-            }
-        }
-//        if (!queue.isEmpty()) {
-//            return queue.poll();
-//        }
-        return null;
+    private Zone zoneOf(FireEvent event) {
+        Zone zone = zoneRegistry.get(event.getZoneId());
+        if (zone == null) zone = event.getZone();
+        if (zone == null) throw new IllegalArgumentException("Unknown zone " + event.getZoneId());
+        return zone;
     }
 
     /**
-     * Calculates the center coordinates of a fire event's zone.
+     * Returns the zones read from the zone file.
      *
-     * @param event the fire event
-     * @return an array containing the x and y coordinates of the zone center
+     * @return the zone registry
+     */
+    public ZoneRegistry getZoneRegistry() {
+        return zoneRegistry;
+    }
+
+    /**
+     * Returns the drones' positions, states, battery and agent as last reported in their heartbeats.
+     *
+     * @return the fleet registry
+     */
+    public FleetRegistry getFleet() {
+        return fleet;
+    }
+
+    /**
+     * Adds an event to the queue and indexes it by its zone center.
+     * Must be called with the lock held.
+     *
+     * @param event the event to queue
+     */
+    private void enqueue(FireEvent event) {
+        queue.add(event);
+        Zone zone = zoneOf(event);
+        eventGrid.add(event, zone.getCenterX(), zone.getCenterY());
+    }
+
+    /**
+     * Removes an event from the queue and the index.
+     * Must be called with the lock held.
+     *
+     * @param event the queued event
      */
-    private int[] calculateZoneCenter(FireEvent event) {
-        String[] zoneCoords = event.getZoneDetails().replaceAll("[()]", "").split(" to ");
-        String[] startCoords = zoneCoords[0].split(",");
-        String[] endCoords = zoneCoords[1].split(",");
-        int centerX = (Integer.parseInt(startCoords[0].trim()) + Integer.parseInt(endCoords[0].trim())) / 2;
-        int centerY = (Integer.parseInt(startCoords[1].trim()) + Integer.parseInt(endCoords[1].trim())) / 2;
-        return new int[]{centerX, centerY};
+    private void dequeue(FireEvent event) {
+        queue.remove(event);
+        eventGrid.remove(event);
     }
 
     /**
-     * Retrieves the next fire event from the queue.
+     * Retrieves the next fire event from the queue, waiting while the queue is empty.
      * If no events remain and the simulation is finished, it signals drones to stop.
      *
      * @return the next FireEvent, or null if finished
      */
-    public synchronized FireEvent getNextFireEvent() {
-        while(completedEvents == numEvents){
-            if (isFinished) {
-                System.out.println("Scheduler: No more fire events. Notifying all waiting drones to stop.");
-                stopDrones = true;
-                notifyAll();
-                return null;
+    public FireEvent getNextFireEvent() {
+        FireEvent event = null;
+        lock.lock();
+        try {
+            while (queue.isEmpty()) {
+                if (allEventsHandled()) break;
+                try {
+                    queueChanged.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
             }
-            try {
-                System.out.println("Scheduler: Waiting for fire events to be added...");
-                wait();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+            if (!queue.isEmpty()) {
+                event = pollNextFireEvent();
+                if (journal != null) journal.dispatched(-1, event);
             }
+        } finally {
+            lock.unlock();
         }
-
-        FireEvent event = queue.poll();
-
         if (event != null) {
             System.out.println("Scheduler: Sending fire event to drone: " + event);
-        }
-
-        // If the queue is now empty, and no more are expected, mark finished
-        if (queue.isEmpty()) {
-            isFinished = true;
-//            stopDrones = true;
-            notifyAll();
+        } else {
+            System.out.println("Scheduler: No more fire events. Notifying all waiting drones to stop.");
         }
         return event;
     }
 
     /**
-     * Retrieves an additional fire event for a drone based on battery life and current position.
+     * Checks whether every fire event has been handled, here and on every other shard, and if so
+     * signals drones to stop. Must be called with the lock held.
      *
-     * @param batteryLife the remaining battery life of the drone
-     * @param x the drone's current x-coordinate
-     * @param y the drone's current y-coordinate
-     * @return a suitable FireEvent, or null if none is found
+     * @return true if no events remain and none are expected
      */
-    public synchronized FireEvent getAdditionalFireEvent(double batteryLife, int x, int y) {
-        for (FireEvent currentEvent : queue) {
-            double range = calculateTravelTime(x, y, currentEvent);
-            double travelToHome = calculateDistanceToHomeBase(currentEvent);
-            if (range + travelToHome < batteryLife) {
-                System.out.println("\nSending new event to the drone\n");
-                queue.remove(currentEvent);
-                return currentEvent;
-            }
+    private boolean allEventsHandled() {
+        if (completedEvents.get() == numEvents.get() && isFinished && finishedPeers.size() == shards.getShardCount() - 1) {
+            stopDrones = true;
+            queueChanged.signalAll();
+            return true;
         }
-        return null;
+        return false;
     }
 
     /**
-     * Updates the fire event's status based on the amount of firefighting agent dropped.
-     * If the event still requires more agent, it is re-added to the queue.
+     * Returns whether every fire event has been handled, here and on every other shard. For
+     * callers that drive drones themselves rather than waiting in getNextFireEvent.
      *
-     * @param event the fire event to update
-     * @param waterDropped the amount of agent dropped in liters
+     * @return true if no events remain and none are expected
      */
-    public synchronized void updateFireStatus(FireEvent event, int waterDropped) {
-        event.removeLitres(waterDropped);
-        int remainingLiters = event.getLitres();
-        if (remainingLiters > 0 && waterDropped > 0) {
-            System.out.println("Scheduler: Fire at Zone: " + event.getZoneId() + " still needs " + remainingLiters + "L.");
-            queue.add(event);
-            notifyAll();
-        } else {
-            markFireExtinguished(event);
-            completedEvents++;
+    public boolean hasFinished() {
+        lock.lock();
+        try {
+            return allEventsHandled();
+        } finally {
+            lock.unlock();
         }
     }
 
     /**
-     * Returns the map of zones (fire incident subsystems) managed by the scheduler.
+     * Removes the highest-priority fire event from a non-empty queue.
+     * Must be called with the lock held.
      *
-     * @return a Map with zone IDs as keys and FireIncidentSubsystem instances as values
+     * @return the next FireEvent
      */
-    public Map<Integer, FireIncidentSubsystem> getZones() {
-        return zones;
-    }
+    private FireEvent pollNextFireEvent() {
+        FireEvent event = queue.poll();
+        eventGrid.remove(event);
 
-    /**
-     * Marks a fire event as extinguished, updates the map display, and logs the event.
-     *
-     * @param event the fire event to mark as extinguished
-     */
-    public synchronized void markFireExtinguished(FireEvent event) {
-        System.out.println("\nScheduler: Fire at Zone: " + event.getZoneId() + " Extinguished\n");
-        map.drawFireEvents(event);
-        event.setCurrentState(FireEvent.FireEventState.INACTIVE);
-        //logger.recordFireExtinguished(event);
+        // If the queue is now empty, and no more are expected, mark finished
         if (queue.isEmpty()) {
-            state = SchedulerState.SHUTTING_DOWN;
             isFinished = true;
-            notifyAll();
+//            stopDrones = true;
+            queueChanged.signalAll();
         }
+        return event;
     }
 
     /**
-     * Handles a drone fault by re-adding the corresponding fire event to the queue.
-     *
-     * @param event the fire event related to the fault
-     * @param type the type of fault (e.g., "ARRIVAL", "NOZZLE", "PACKET_LOSS")
-     * @param idnum the identifier of the drone that experienced the fault
+     * Answers parked getNextFireEvent requests if events have become available. Every execute worker
+     * calls this after each task. One worker dispatches at a time; a worker that finds another one
+     * dispatching leaves a note, and that worker looks again before it stops.
      */
-    public synchronized void handleDroneFault(FireEvent event, String type,int idnum){
-        if (event.getFault().equals("ARRIVAL")){
-            System.out.println("\u001B[33m !!!!Scheduler: handling drone TRAVEL TIMEOUT!!!! \u001B[0m");
-            timeoutFault = true;
-        } else if (event.getFault().equals("NOZZLE")) {
-            System.out.println("\u001B[33m !!!!Scheduler: handling drone NOZZLE failure!!!! \u001B[0m");
-            nozzleFault = true;
-        } else if (event.getFault().equals("PACKET_LOSS")) {
-            System.out.println("\u001B[33m !!!!Scheduler: handling drone PACKET_LOSS failure!!!! \u001B[0m");
-            packetFault = true;
+    private void serveParkedEventRequests() {
+        dispatchPending.set(true);
+        while (dispatchPending.get() && dispatchLock.tryLock()) {
+            try {
+                dispatchPending.set(false);
+                dispatchParkedRequests();
+            } finally {
+                dispatchLock.unlock();
+            }
         }
-
-        event.remFault();
-        queue.add(event);
     }
 
-    @Override
-    public synchronized void run() {
-        byte[] buffer = new byte[4096];
-        ArrayList<String> knownFISMethods = new ArrayList<>(Arrays.asList("ADD_FIRE_EVENT", "SET_EVENTS_LOADED"));
-        ArrayList<String> knowndroneMethods = new ArrayList<>(Arrays.asList(
-                "getNextAssignedEvent", "ADD_FIRE_EVENT", "calculateDistanceToHomeBase",
-                "getNextFireEvent", "calculateTravelTime", "updateFireStatus", "getAdditionalFireEvent","handleDroneFault", "STOP_?"));
+    /**
+     * Answers parked getNextFireEvent requests while events are available.
+     * The highest-priority events are taken, one per parked drone, and matched to the drones so
+     * that their total travel time is as small as possible; when there are fewer events than
+     * drones, the drones left over stay parked. With nothing queued, another shard is asked for an
+     * event. Once every event has been handled, the remaining requests are answered with null.
+     * Must be called with dispatchLock held.
+     */
+    private void dispatchParkedRequests() {
+        if (parkedEventRequests.isEmpty()) return;
+        List<ParkedRequest> drones = new ArrayList<>();
+        List<FireEvent> events = new ArrayList<>();
+        boolean steal = false;
+        lock.lock();
         try {
-            FISsendSocket.setSoTimeout(1000);
-            dronesendSocket.setSoTimeout(1000);
-        } catch (SocketException e) {
-            System.out.println("Error in scheduler run");
-            throw new RuntimeException(e);
+            if (!queue.isEmpty()) {
+                for (ParkedRequest parked; (parked = parkedEventRequests.poll()) != null; ) drones.add(parked);
+                int batch = Math.min(drones.size(), queue.size());
+                for (int i = 0; i < batch; i++) events.add(pollNextFireEvent());
+            } else if (!allEventsHandled()) {
+                steal = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (steal) {
+            stealEvent();
+            return;
+        }
+        if (events.isEmpty()) {
+            System.out.println("Scheduler: No more fire events. Notifying all waiting drones to stop.");
+            for (ParkedRequest parked; (parked = parkedEventRequests.poll()) != null; ) {
+                droneRPCSend(null, parked.droneId, parked.correlationId);
+            }
+            return;
         }
 
-        // Variables for graceful shutdown after finishing events
-        long lastRequestTime = System.currentTimeMillis();
-        final long GRACE_PERIOD_MS = 30000; // e.g., 30 seconds
+        int[] x = new int[drones.size()], y = new int[drones.size()];
+        for (int i = 0; i < drones.size(); i++) {
+            x[i] = drones.get(i).x;
+            y[i] = drones.get(i).y;
+        }
+        int[] assignment = matchByTravelTime(x, y, events);
+        // Drones left without an event go back to the front, still ahead of requests parked since
+        for (int i = drones.size() - 1; i >= 0; i--) {
+            if (assignment[i] < 0) parkedEventRequests.addFirst(drones.get(i));
+        }
+        for (int i = 0; i < drones.size(); i++) {
+            if (assignment[i] < 0) continue;
+            ParkedRequest parked = drones.get(i);
+            FireEvent event = events.get(assignment[i]);
+            if (journal != null) journal.dispatched(parked.droneId, event);
+            System.out.println("Scheduler: Sending fire event to drone " + parked.droneId + ": " + event);
+            droneRPCSend(event, parked.droneId, parked.correlationId);
+        }
+    }
 
-        while (true) {
-            boolean messageProcessed = false;
+    /**
+     * Hands events to drones waiting at base, for callers that fly drones themselves, such as the
+     * {@link FleetEngine}. Events go out as they do to parked getNextFireEvent requests: the
+     * highest-priority events, one per drone, matched to the drones by travel time. Only as many of
+     * the longest-waiting drones as there are events take part, so a large fleet waiting on a few
+     * events costs no more than the events do. Does not wait; drones left without an event should
+     * ask again later.
+     *
+     * @param droneIds the drones waiting, longest-waiting first
+     * @param x the drones' x-coordinates
+     * @param y the drones' y-coordinates
+     * @return the event for each drone, or null where there is none
+     */
+    public FireEvent[] dispatchToWaitingDrones(int[] droneIds, int[] x, int[] y) {
+        FireEvent[] assigned = new FireEvent[droneIds.length];
+        if (droneIds.length == 0) return assigned;
+        List<FireEvent> events = new ArrayList<>();
+        dispatchLock.lock(); // Taken before the lock, as parked dispatch does
+        try {
+            lock.lock();
             try {
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-
-                // Process messages from FIS sockets
-                for (DatagramSocket FIS_Socket : FIS_Sockets) {
-                    try {
-                        FIS_Socket.receive(packet);
-                        lastRequestTime = System.currentTimeMillis();
-                        ByteArrayInputStream byteStream = new ByteArrayInputStream(packet.getData(), 0, packet.getLength());
-                        ObjectInputStream objStream = new ObjectInputStream(byteStream);
-                        Object obj = objStream.readObject();
-                        if (obj instanceof List) {
-                            List<Object> list = (List<Object>) obj;
-                            if (knownFISMethods.contains(list.get(0))) {
-                                System.out.println("Calling invokeMethod for FIS");
-                                invokeMethod((String) list.get(0), list.subList(1, list.size()), true);
-                                messageProcessed = true;
-                            }
-                        }
-                    } catch (Exception e) {
-                    }
-                }
-
-                // Process messages from Drone sockets
-                for (DatagramSocket drone_Socket : drone_Sockets) {
-                    try {
-                        drone_Socket.receive(packet);
-                        lastRequestTime = System.currentTimeMillis();
-                        ByteArrayInputStream byteStream = new ByteArrayInputStream(packet.getData(), 0, packet.getLength());
-                        ObjectInputStream objStream = new ObjectInputStream(byteStream);
-                        Object obj = objStream.readObject();
-                        if (obj instanceof List) {
-                            List<Object> list = (List<Object>) obj;
-                            if (knowndroneMethods.contains(list.get(0))) {
-                                invokeMethod((String) list.get(0), list.subList(1, list.size()), false);
-                                messageProcessed = true;
-                            }
-                        }
-                    } catch (Exception e) {
-                    }
-                }
-            } catch (Exception e) {
-                System.out.println("Exception in scheduler run");
-                throw new RuntimeException(e);
+                int batch = Math.min(droneIds.length, queue.size());
+                for (int j = 0; j < batch; j++) events.add(pollNextFireEvent());
+            } finally {
+                lock.unlock();
             }
-
-
-            if (!messageProcessed) {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+            if (events.isEmpty()) return assigned;
+            int[] assignment = matchByTravelTime(Arrays.copyOf(x, events.size()), Arrays.copyOf(y, events.size()), events);
+            for (int i = 0; i < events.size(); i++) {
+                assigned[i] = events.get(assignment[i]);
+                if (journal != null) journal.dispatched(droneIds[i], assigned[i]);
             }
+        } finally {
+            dispatchLock.unlock();
         }
+        return assigned;
     }
 
     /**
-     * Invokes the appropriate method based on the provided method name and parameters.
-     * This method acts as a centralized RPC handler, processing various requests such as
-     * adding fire events, retrieving events, updating statuses, and handling drone faults.
+     * Matches drones to events so that their total travel time is as small as possible, and records
+     * the time saved against sending the highest-priority event to the longest-waiting drone.
+     * There must be at least as many drones as events. Must be called with dispatchLock held and
+     * the lock released: building the matrix and solving it do not touch the queue.
      *
-     * @param methodName the name of the method to invoke
-     * @param params a list of parameters required by the method
-     * @param from a boolean flag indicating the source of the request (true if from the Fire Incident Subsystem, false if from a drone)
-     * @return a result object from the invoked method, or a status string indicating success or failure
+     * @param x the drones' x-coordinates, longest-waiting first
+     * @param y the drones' y-coordinates
+     * @param events the events, highest priority first
+     * @return for each drone the index of its event, or -1 if it gets none
      */
-    private Object invokeMethod(String methodName, List<Object> params, boolean from) {
-        switch (methodName) {
-            case "ADD_FIRE_EVENT": {
-                this.numEvents++;
-                FireEvent event = (FireEvent) params.get(0);
-
-                map.drawFireEvents(event);
-
-                System.out.println("Received event: " + event);
-                addFireEvent(event);
+    private int[] matchByTravelTime(int[] x, int[] y, List<FireEvent> events) {
+        if (x.length == 1) return new int[]{0}; // One drone, one event: nothing to match
+        double[][] travelTime = new double[x.length][events.size()];
+        for (int i = 0; i < x.length; i++) {
+            for (int j = 0; j < events.size(); j++) {
+                travelTime[i][j] = zoneOf(events.get(j)).distanceFrom(x[i], y[i]) / CRUISE_SPEED;
+            }
+        }
+        int[] assignment = AssignmentSolver.solve(travelTime);
+        if (events.size() > 1) {
+            // Oldest request first, highest priority first: what the drones would have flown unmatched
+            double greedy = 0;
+            for (int j = 0; j < events.size(); j++) greedy += travelTime[j][j];
+            double assigned = AssignmentSolver.totalCost(travelTime, assignment);
+            assignmentTimeSaved += greedy - assigned;
+            if (logger != null) logger.logAssignmentBatch(events.size(), greedy, assigned);
+        }
+        return assignment;
+    }
+
+    /**
+     * Asks the next shard not known to be finished for an event, unless a steal is already under way.
+     * The answer is handled on the execute stage; if the shard had nothing to spare, the next steal
+     * waits {@link #STEAL_RETRY_MS}, so idle shards do not flood busy ones.
+     */
+    private void stealEvent() {
+        if (peers == null || !stealing.compareAndSet(false, true)) return;
+        int victim = -1;
+        for (int i = 0; i < shards.getShardCount() && victim < 0; i++) {
+            int candidate = Math.floorMod(nextVictim.getAndIncrement(), shards.getShardCount());
+            if (candidate != shardIndex && !finishedPeers.contains(candidate)) victim = candidate;
+        }
+        if (victim < 0) {
+            stealing.set(false);
+            return;
+        }
+        int peer = victim;
+        peers.callAsync(new InetSocketAddress(localHost, shards.portOf(peer)), "STEAL_EVENT")
+                .whenComplete((answer, failure) -> {
+                    try {
+                        executeQueueOf(WireProtocol.SENDER_SCHEDULER, peer).put(() -> takeStolenEvent(peer, answer));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+    }
+
+    /**
+     * Handles another shard's answer to a steal: an event to queue here, true if the shard has
+     * handled all of its own events, or null if it had none to spare. Runs on the execute stage.
+     *
+     * @param peer the shard that answered
+     * @param answer the answer, or null if the request failed
+     */
+    private void takeStolenEvent(int peer, Object answer) {
+        if (answer instanceof FireEvent) {
+            FireEvent event = (FireEvent) answer;
+            numEvents.incrementAndGet();
+            eventsBorrowed.incrementAndGet();
+            lock.lock();
+            try {
+                if (journal != null) journal.borrowed(event);
+                enqueue(event);
+                queueChanged.signalAll();
+                scheduleReassignmentChecks(event);
+            } finally {
+                lock.unlock();
+            }
+            System.out.println("Scheduler shard " + shardIndex + ": Borrowed zone " + event.getZoneId() + " from shard " + peer);
+            stealing.set(false);
+        } else if (Boolean.TRUE.equals(answer)) {
+            finishedPeers.add(peer);
+            stealing.set(false);
+        } else {
+            SimulationThreads.scheduleOnTimer(() -> {
+                stealing.set(false);
+                // An empty task, so the worker looks at the parked drones again; if its queue is
+                // full it is busy and will look anyway, and the timer thread must not block
+                executeQueueOf(WireProtocol.SENDER_SCHEDULER, peer).offer(() -> { });
+            }, STEAL_RETRY_MS);
+        }
+    }
+
+    /**
+     * Answers another shard's STEAL_EVENT request. The highest-priority event is handed over if more
+     * are queued than this shard's waiting drones can take, by at least {@link #LEND_BACKLOG}; it
+     * then counts as the other shard's event. Runs on the execute stage.
+     *
+     * @param peer the shard asking
+     * @param correlationId the correlation id to echo in the response
+     */
+    private void lendEvent(int peer, int correlationId) {
+        Object answer = null;
+        lock.lock();
+        try {
+            if (queue.size() - parkedEventRequests.size() >= LEND_BACKLOG) {
+                FireEvent event = pollNextFireEvent();
+                if (journal != null) journal.lent(event);
+                numEvents.decrementAndGet();
+                answer = event;
+            } else if (isLoaded && queue.isEmpty() && completedEvents.get() == numEvents.get()) {
+                answer = Boolean.TRUE;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (answer instanceof FireEvent) {
+            eventsLent.incrementAndGet();
+            System.out.println("Scheduler shard " + shardIndex + ": Lent zone " + ((FireEvent) answer).getZoneId() + " to shard " + peer);
+        }
+        enqueueReply(obtainReply().set(null, WireProtocol.SENDER_SCHEDULER, peer, correlationId, answer, null));
+    }
+
+    /**
+     * Returns how many events this shard has been given, including those borrowed from other shards.
+     *
+     * @return the number of events
+     */
+    public int getNumEvents() {
+        return numEvents.get();
+    }
+
+    /**
+     * Returns how many events this shard has taken from other shards for its idle drones.
+     *
+     * @return the number of borrowed events
+     */
+    public int getEventsBorrowed() {
+        return eventsBorrowed.get();
+    }
+
+    /**
+     * Returns how many events this shard has handed to other shards.
+     *
+     * @return the number of lent events
+     */
+    public int getEventsLent() {
+        return eventsLent.get();
+    }
+
+    /**
+     * Returns the total travel time saved by matching parked drones to events, compared with giving
+     * the highest-priority event to the drone that has waited longest.
+     *
+     * @return the travel time saved in seconds
+     */
+    public double getAssignmentTimeSaved() {
+        return assignmentTimeSaved;
+    }
+
+    /**
+     * Retrieves an additional fire event for a drone based on battery life and current position.
+     * Assumes the drone has a full tank; see {@link #getAdditionalFireEvent(double, int, int, int)}.
+     *
+     * @param batteryLife the remaining battery life of the drone
+     * @param x the drone's current x-coordinate
+     * @param y the drone's current y-coordinate
+     * @return a suitable FireEvent, or null if none is found
+     */
+    public FireEvent getAdditionalFireEvent(double batteryLife, int x, int y) {
+        return getAdditionalFireEvent(batteryLife, x, y, DRONE_CAPACITY);
+    }
+
+    /**
+     * Retrieves an additional fire event for a drone based on battery life, current position and
+     * the agent left in its tank. A tour is planned through the nearest queued events the drone can
+     * reach and still get home from, and the drone is sent to its first stop. The tour is planned
+     * afresh at each stop, so the rest of it is not held back from other drones.
+     *
+     * @param batteryLife the remaining battery life of the drone
+     * @param x the drone's current x-coordinate
+     * @param y the drone's current y-coordinate
+     * @param remainingAgent the litres left in the drone's tank
+     * @return a suitable FireEvent, or null if none is found
+     */
+    public FireEvent getAdditionalFireEvent(double batteryLife, int x, int y, int remainingAgent) {
+        return getAdditionalFireEvent(-1, batteryLife, x, y, remainingAgent);
+    }
+
+    /**
+     * Retrieves an additional fire event for a known drone, as
+     * {@link #getAdditionalFireEvent(double, int, int, int)} does, journaling the dispatch against it.
+     *
+     * @param droneId the drone asking, or -1 if not known
+     * @param batteryLife the remaining battery life of the drone
+     * @param x the drone's current x-coordinate
+     * @param y the drone's current y-coordinate
+     * @param remainingAgent the litres left in the drone's tank
+     * @return a suitable FireEvent, or null if none is found
+     */
+    public FireEvent getAdditionalFireEvent(int droneId, double batteryLife, int x, int y, int remainingAgent) {
+        FireEvent event = null;
+        lock.lock();
+        try {
+            // A candidate must at least be reachable on its own with battery left to fly home
+            List<FireEvent> candidates = new ArrayList<>();
+            for (FireEvent candidate : eventGrid.nearest(x, y, TOUR_CANDIDATES)) {
+                Zone zone = zoneOf(candidate);
+                if (zone.distanceFrom(x, y) / CRUISE_SPEED + zone.getDistanceToHomeBase() / CRUISE_SPEED < batteryLife) {
+                    candidates.add(candidate);
+                }
+            }
+            List<FireEvent> tour = tourPlanner.plan(x, y, batteryLife, remainingAgent, candidates);
+            if (!tour.isEmpty()) {
+                event = tour.get(0);
+                dequeue(event);
+                if (journal != null) journal.dispatched(droneId, event);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (event != null) System.out.println("\nSending new event to the drone\n");
+        return event;
+    }
+
+    /**
+     * Updates the fire event's status based on the amount of firefighting agent dropped.
+     * If the event still requires more agent, it is re-added to the queue.
+     *
+     * @param event the fire event to update
+     * @param waterDropped the amount of agent dropped in liters
+     */
+    public void updateFireStatus(FireEvent event, int waterDropped) {
+        event.removeLitres(waterDropped);
+        int remainingLiters = event.getLitres();
+        if (remainingLiters > 0 && waterDropped > 0) {
+            lock.lock();
+            try {
+                if (journal != null) journal.requeued(event);
+                enqueue(event);
+                queueChanged.signalAll();
+                scheduleReassignmentChecks(event);
+            } finally {
+                lock.unlock();
+            }
+            System.out.println("Scheduler: Fire at Zone: " + event.getZoneId() + " still needs " + remainingLiters + "L.");
+        } else {
+            // Counted before waiters are signalled, so they see it when they check for the end
+            if (journal != null) journal.completed(event);
+            completedEvents.incrementAndGet();
+            markFireExtinguished(event);
+        }
+    }
+
+    /**
+     * Returns the map of zones (fire incident subsystems) managed by the scheduler.
+     *
+     * @return a Map with zone IDs as keys and FireIncidentSubsystem instances as values
+     */
+    public Map<Integer, FireIncidentSubsystem> getZones() {
+        return zones;
+    }
+
+    /**
+     * Marks a fire event as extinguished, updates the map display, and logs the event.
+     *
+     * @param event the fire event to mark as extinguished
+     */
+    public void markFireExtinguished(FireEvent event) {
+        event.setCurrentState(FireEvent.FireEventState.INACTIVE);
+        lock.lock();
+        try {
+            if (queue.isEmpty()) {
+                state = SchedulerState.SHUTTING_DOWN;
+                isFinished = true;
+                queueChanged.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        System.out.println("\nScheduler: Fire at Zone: " + event.getZoneId() + " Extinguished\n");
+        observer.fireEventUpdated(event);
+        //logger.recordFireExtinguished(event);
+    }
+
+    /**
+     * Handles a drone fault by re-adding the corresponding fire event to the queue.
+     *
+     * @param event the fire event related to the fault
+     * @param type the type of fault (e.g., "ARRIVAL", "NOZZLE", "PACKET_LOSS")
+     * @param idnum the identifier of the drone that experienced the fault
+     */
+    public void handleDroneFault(FireEvent event, String type,int idnum) {
+        if (event.getFault().equals("ARRIVAL")){
+            System.out.println("\u001B[33m !!!!Scheduler: handling drone TRAVEL TIMEOUT!!!! \u001B[0m");
+            timeoutFault = true;
+        } else if (event.getFault().equals("NOZZLE")) {
+            System.out.println("\u001B[33m !!!!Scheduler: handling drone NOZZLE failure!!!! \u001B[0m");
+            nozzleFault = true;
+        } else if (event.getFault().equals("PACKET_LOSS")) {
+            System.out.println("\u001B[33m !!!!Scheduler: handling drone PACKET_LOSS failure!!!! \u001B[0m");
+            packetFault = true;
+        }
+
+        event.remFault();
+        lock.lock();
+        try {
+            if (journal != null) journal.requeued(event);
+            enqueue(event);
+            queueChanged.signalAll();
+            scheduleReassignmentChecks(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receive stage: waits on the selector and hands every datagram to the decode stage.
+     * Datagrams are read straight into pooled buffers. If the decode stage has fallen behind and
+     * its queue is full, or every pooled buffer is in use, the datagram is dropped; the sender
+     * retransmits it.
+     */
+    @Override
+    public void run() {
+        ByteBuffer discard = ByteBuffer.allocateDirect(WireProtocol.MAX_DATAGRAM_SIZE);
+
+        while (selector.isOpen()) {
+            try {
+                // Block until a datagram from a drone or FIS is waiting.
+                selector.select();
+            } catch (IOException e) {
+                System.out.println("Exception in scheduler run");
+                throw new RuntimeException(e);
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid() || !key.isReadable()) continue;
+
+                try {
+                    // Drain every queued datagram before selecting again.
+                    while (true) {
+                        Datagram datagram = obtainDatagram();
+                        ByteBuffer buffer = datagram != null ? datagram.buffer : discard;
+                        buffer.clear();
+                        SocketAddress source = channel.receive(buffer);
+                        if (source == null) {
+                            if (datagram != null) recycle(datagram);
+                            break;
+                        }
+                        if (datagram == null) {
+                            droppedDatagrams.incrementAndGet();
+                            continue;
+                        }
+                        buffer.flip();
+                        datagram.source = source;
+                        if (!inbound.offer(datagram)) {
+                            droppedDatagrams.incrementAndGet();
+                            recycle(datagram);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error receiving on scheduler channel: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes a free datagram from the pool, allocating one if the pool has not reached its size.
+     * Only the receive stage calls this.
+     *
+     * @return a datagram, or null if every datagram is in use
+     */
+    private Datagram obtainDatagram() {
+        Datagram datagram = freeDatagrams.poll();
+        if (datagram == null && datagramsAllocated < DATAGRAM_POOL_SIZE) {
+            datagramsAllocated++;
+            datagram = new Datagram();
+        }
+        return datagram;
+    }
+
+    /**
+     * Returns a datagram to the pool once its request has been handled.
+     *
+     * @param datagram the datagram
+     */
+    private void recycle(Datagram datagram) {
+        datagram.source = null;
+        datagram.message = null;
+        freeDatagrams.offer(datagram);
+    }
+
+    /**
+     * Decode stage: takes datagrams from the receive stage and hands decoded requests to the execute stage.
+     */
+    private void decodeLoop() {
+        while (true) {
+            try {
+                Datagram datagram = inbound.take();
+                if (decode(datagram)) {
+                    executeQueueOf(datagram.message.getSenderType(), datagram.message.getSenderId()).put(datagram);
+                } else {
+                    recycle(datagram);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Decodes a single request datagram and records the sender's address for replies.
+     * Retransmitted requests are applied only once: a duplicate of a request still being handled
+     * is dropped, and a duplicate of an answered request gets the cached reply again.
+     *
+     * @param datagram the received datagram; its message is set if it is a new request
+     * @return true if the request should be executed, false if it is malformed, a response or a duplicate
+     * @throws InterruptedException if interrupted while queueing a cached reply
+     */
+    private boolean decode(Datagram datagram) throws InterruptedException {
+        WireProtocol.Message request;
+        try {
+            request = WireProtocol.decode(datagram.buffer);
+        } catch (ProtocolException e) {
+            System.out.println("Failed to decode request from " + datagram.source + ": " + e);
+            return false;
+        }
+        addressesOf(request.getSenderType()).put(request.getSenderId(), datagram.source);
+        if (request.isResponse()) {
+            PendingPush push = pendingPushes.remove(request.getCorrelationId());
+            if (push != null && !Boolean.TRUE.equals(request.getValue())) {
+                executeQueueOf(WireProtocol.SENDER_DRONE, push.droneId).put(() -> requeueRefusedEvent(push));
+            }
+            return false;
+        }
+        switch (duplicateFilter.admit(request.getSenderType(), request.getSenderId(), request.getCorrelationId())) {
+            case IN_PROGRESS:
+                return false;
+            case ANSWERED:
+                Object reply = duplicateFilter.cachedReply(request.getSenderType(), request.getSenderId(), request.getCorrelationId());
+                outbound.put(obtainReply().set(null, request.getSenderType(), request.getSenderId(),
+                        request.getCorrelationId(), reply, datagram.source));
+                return false;
+            default:
+                datagram.message = request;
+                return true;
+        }
+    }
+
+    /**
+     * Returns the queue of the execute worker that handles a drone or zone.
+     *
+     * @param senderType the sender type of the drone or zone
+     * @param senderId the drone or zone id
+     * @return the worker's task queue
+     */
+    private BlockingQueue<Runnable> executeQueueOf(byte senderType, int senderId) {
+        return executeQueues.get(Math.floorMod(31 * senderType + senderId, executeQueues.size()));
+    }
+
+    /**
+     * Execute stage worker: applies requests to the event queue. After each task, parked
+     * getNextFireEvent requests are served if events became available.
+     *
+     * @param tasks this worker's task queue
+     */
+    private void executeLoop(BlockingQueue<Runnable> tasks) {
+        while (true) {
+            Runnable task;
+            try {
+                task = tasks.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                task.run();
+                serveParkedEventRequests();
+            } catch (RuntimeException e) {
+                System.out.println("Scheduler failed to execute task: " + e);
+            }
+        }
+    }
+
+    /**
+     * Applies one decoded request, or parks it if it asks for the next fire event.
+     *
+     * @param datagram the datagram holding the decoded request
+     */
+    private void execute(Datagram datagram) {
+        WireProtocol.Message message = datagram.message;
+        if (message.getSenderType() == WireProtocol.SENDER_SCHEDULER) {
+            if (knownPeerMethods.contains(message.getMethodName())) lendEvent(message.getSenderId(), message.getCorrelationId());
+            return;
+        }
+        boolean fromFIS = message.getSenderType() == WireProtocol.SENDER_ZONE;
+        List<String> knownMethods = fromFIS ? knownFISMethods : knowndroneMethods;
+        if (!knownMethods.contains(message.getMethodName())) return;
+        if (fromFIS) System.out.println("Calling invokeMethod for FIS");
+        if (message.getMethodName().equals("getNextFireEvent")) {
+            // Drones send their position; a request without one is taken to come from home base
+            List<Object> args = message.getArgs();
+            int x = args.size() >= 2 ? (int) args.get(0) : 0;
+            int y = args.size() >= 2 ? (int) args.get(1) : 0;
+            parkedEventRequests.add(new ParkedRequest(message.getSenderId(), message.getCorrelationId(), x, y));
+        } else {
+            invokeMethod(message.getMethodName(), message.getArgs(), message.getSenderId(), message.getCorrelationId(), fromFIS);
+        }
+    }
+
+    /**
+     * Queues a task for the execute worker that handles a drone.
+     *
+     * @param droneId the drone the task concerns
+     * @param task the task to run
+     */
+    private void submit(int droneId, Runnable task) {
+        try {
+            executeQueueOf(WireProtocol.SENDER_DRONE, droneId).put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records a flight leg a drone has published, or its correction to one it strayed from. The
+     * fleet registry works out the drone's position and battery from the leg until the drone next
+     * reports, and a leg towards a fire zone is watched for events near its path: queued events
+     * the leg passes near are pushed to the drone as it reaches them.
+     *
+     * @param leg the leg
+     * @param state the state the drone flies the leg in
+     * @param batteryLife the drone's battery when it set off on the leg, in seconds
+     * @param remainingAgent the litres left in the drone's tank
+     * @param correction whether the leg replaces an earlier one
+     */
+    public void recordFlightLeg(FlightLeg leg, DroneSubsystem.DroneState state, double batteryLife, int remainingAgent,
+                                boolean correction) {
+        int droneId = leg.getDroneId();
+        fleet.updateLeg(droneId, leg, state, batteryLife, remainingAgent);
+        if (leg.getTargetZoneId() <= 0) return; // Flying home
+        lock.lock();
+        try {
+            // Once an event has been pushed, the drone is switching to it; a late correction must not watch the old leg again
+            if (correction && !flightLegs.containsKey(droneId)) return;
+            flightLegs.put(droneId, leg);
+            double[] start = leg.positionAt(leg.getStartMillis());
+            double[] destination = leg.positionAt(leg.getEndMillis());
+            legGrid.add(leg, start[0], start[1], destination[0], destination[1]);
+            scheduleReassignmentCheck(leg);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Brings forward the reassignment check of each leg that passes near a newly queued event
+     * before its check would otherwise run. Only the legs filed under the event's cell are looked
+     * at, and only their approach to this one event is worked out. Must be called with the lock held.
+     *
+     * @param event the event just queued
+     */
+    private void scheduleReassignmentChecks(FireEvent event) {
+        Zone zone = zoneOf(event);
+        long now = SimulationClock.get().currentTimeMillis();
+        for (FlightLeg leg : legGrid.legsNear(zone.getCenterX(), zone.getCenterY())) {
+            int droneId = leg.getDroneId();
+            if (leg.hasEnded(now)) {
+                forgetLeg(droneId);
+                continue;
+            }
+            if (event.getZoneId() == leg.getTargetZoneId()) continue;
+            long approach = leg.earliestApproach(zone.getCenterX(), zone.getCenterY(), REASSIGN_RADIUS, now);
+            if (approach < 0) continue;
+            Long scheduled = reassignmentCheckTimes.get(droneId);
+            if (scheduled != null && scheduled <= approach) continue;
+            scheduleReassignmentCheckAt(droneId, approach, now);
+        }
+    }
+
+    /**
+     * Schedules a reassignment check for the moment the leg first comes within
+     * {@link #REASSIGN_RADIUS} of a queued event outside its target zone.
+     * Must be called with the lock held.
+     *
+     * @param leg the flight leg to check
+     */
+    private void scheduleReassignmentCheck(FlightLeg leg) {
+        cancelReassignmentCheck(leg.getDroneId());
+        long now = SimulationClock.get().currentTimeMillis();
+        if (leg.hasEnded(now)) {
+            forgetLeg(leg.getDroneId());
+            return;
+        }
+        long earliest = -1;
+        double[] position = leg.positionAt(now);
+        double[] destination = leg.positionAt(leg.getEndMillis());
+        for (FireEvent event : eventGrid.nearSegment(position[0], position[1], destination[0], destination[1], REASSIGN_RADIUS)) {
+            if (event.getZoneId() == leg.getTargetZoneId()) continue;
+            Zone zone = zoneOf(event);
+            long approach = leg.earliestApproach(zone.getCenterX(), zone.getCenterY(), REASSIGN_RADIUS, now);
+            if (approach >= 0 && (earliest < 0 || approach < earliest)) earliest = approach;
+        }
+        if (earliest >= 0) scheduleReassignmentCheckAt(leg.getDroneId(), earliest, now);
+    }
+
+    /**
+     * Replaces a drone's reassignment check with one at the given time.
+     * Must be called with the lock held.
+     *
+     * @param droneId the drone
+     * @param at when to check, in simulation milliseconds
+     * @param now the current simulation time
+     */
+    private void scheduleReassignmentCheckAt(int droneId, long at, long now) {
+        cancelReassignmentCheck(droneId);
+        reassignmentCheckTimes.put(droneId, at);
+        reassignmentChecks.put(droneId, SimulationClock.get().schedule("Scheduler-Reassign-Drone" + droneId,
+                () -> submit(droneId, () -> checkReassignment(droneId)), Math.max(0, at - now)));
+    }
+
+    /**
+     * Cancels a drone's pending reassignment check, if it has one.
+     * Must be called with the lock held.
+     *
+     * @param droneId the drone
+     */
+    private void cancelReassignmentCheck(int droneId) {
+        reassignmentCheckTimes.remove(droneId);
+        Future<?> previous = reassignmentChecks.remove(droneId);
+        if (previous != null) previous.cancel(false);
+    }
+
+    /**
+     * Stops watching a drone's leg and cancels its check. Must be called with the lock held.
+     *
+     * @param droneId the drone
+     */
+    private void forgetLeg(int droneId) {
+        flightLegs.remove(droneId);
+        legGrid.remove(droneId);
+        cancelReassignmentCheck(droneId);
+    }
+
+    /**
+     * Pushes the first queued event within {@link #REASSIGN_RADIUS} of the drone's current position,
+     * or schedules the next check if none is near yet. Runs on the execute stage.
+     *
+     * @param droneId the drone to check
+     */
+    private void checkReassignment(int droneId) {
+        FireEvent event;
+        lock.lock();
+        try {
+            reassignmentChecks.remove(droneId);
+            reassignmentCheckTimes.remove(droneId);
+            FlightLeg leg = flightLegs.get(droneId);
+            long now = SimulationClock.get().currentTimeMillis();
+            if (leg == null || leg.hasEnded(now)) {
+                forgetLeg(droneId);
+                return;
+            }
+            double[] position = leg.positionAt(now);
+            // Allow for rounding in the predicted approach time
+            event = eventGrid.nearest(position[0], position[1], REASSIGN_RADIUS + 1,
+                    (candidate, x, y) -> candidate.getZoneId() != leg.getTargetZoneId());
+            if (event != null) {
+                dequeue(event);
+                if (journal != null) journal.dispatched(droneId, event);
+                forgetLeg(droneId);
+            } else {
+                scheduleReassignmentCheck(leg);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (event != null) pushReassignment(droneId, event);
+    }
+
+    /**
+     * Sends a REASSIGN request for an event to a drone.
+     *
+     * @param droneId the drone to reassign
+     * @param event the event taken off the queue for it
+     */
+    private void pushReassignment(int droneId, FireEvent event) {
+        System.out.println("Scheduler: Reassigning drone " + droneId + " to zone " + event.getZoneId());
+        int correlationId = nextPushId.getAndIncrement();
+        PendingPush push = new PendingPush(droneId, event);
+        pendingPushes.put(correlationId, push);
+        transmitPush(correlationId, push);
+    }
+
+    /**
+     * Sends (or resends) a REASSIGN request until the drone answers. If it never does,
+     * the event goes back on the queue.
+     *
+     * @param correlationId the correlation id of the push
+     * @param push the pending push
+     */
+    private void transmitPush(int correlationId, PendingPush push) {
+        if (pendingPushes.get(correlationId) != push) return; // Answered
+        if (push.attempts++ == MAX_PUSH_ATTEMPTS) {
+            if (pendingPushes.remove(correlationId, push)) submit(push.droneId, () -> requeueRefusedEvent(push));
+            return;
+        }
+        enqueueReply(obtainReply().set("REASSIGN", WireProtocol.SENDER_DRONE, push.droneId, correlationId, push.event, null));
+        SimulationThreads.schedule("Scheduler-Push-Drone" + push.droneId,
+                () -> transmitPush(correlationId, push), PUSH_RETRY_MS);
+    }
+
+    /**
+     * Puts a pushed event back on the queue after the drone refused it or never answered,
+     * for example because it had already arrived. Runs on the execute stage.
+     *
+     * @param push the push that failed
+     */
+    private void requeueRefusedEvent(PendingPush push) {
+        System.out.println("Scheduler: Drone " + push.droneId + " did not take zone " + push.event.getZoneId() + "; requeueing.");
+        requeueFireEvent(push.event);
+    }
+
+    /**
+     * Puts an event that was already counted back on the queue as it is: it keeps the litres it
+     * still needs and does not count as a new event.
+     *
+     * @param event the event
+     */
+    private void requeueFireEvent(FireEvent event) {
+        lock.lock();
+        try {
+            if (journal != null) journal.requeued(event);
+            enqueue(event);
+            queueChanged.signalAll();
+            scheduleReassignmentChecks(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Send stage: encodes each message in place into one reused buffer, records responses for
+     * duplicate suppression and transmits them.
+     */
+    private void sendLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WireProtocol.MAX_DATAGRAM_SIZE);
+        while (true) {
+            Reply reply;
+            try {
+                reply = outbound.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                buffer.clear();
+                if (reply.methodName != null) {
+                    WireProtocol.encodeRequest(buffer, reply.methodName, WireProtocol.SENDER_SCHEDULER, 0,
+                            reply.correlationId, reply.value);
+                } else {
+                    WireProtocol.encodeResponse(buffer, WireProtocol.SENDER_SCHEDULER, 0, reply.correlationId, reply.value);
+                    if (reply.address == null) {
+                        duplicateFilter.complete(reply.targetType, reply.targetId, reply.correlationId, reply.value);
+                    }
+                }
+                buffer.flip();
+                channel.send(buffer, reply.address != null ? reply.address : addressOf(reply.targetType, reply.targetId));
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Failed to send reply: " + e);
+            } finally {
+                reply.set(null, (byte) 0, 0, 0, null, null);
+                freeReplies.offer(reply);
+            }
+        }
+    }
+
+    /**
+     * Returns the address a drone, zone or shard last sent from, or its default port if it has not been heard from.
+     * The default address is recorded, so it is only built once.
+     *
+     * @param targetType the sender type of the drone or zone
+     * @param targetId the drone or zone id
+     * @return the reply address
+     */
+    private SocketAddress addressOf(byte targetType, int targetId) {
+        AddressBook addresses = addressesOf(targetType);
+        SocketAddress address = addresses.get(targetId);
+        if (address != null) return address;
+        int defaultPort = switch (targetType) {
+            case WireProtocol.SENDER_ZONE -> DEFAULT_FIS_PORT + targetId;
+            case WireProtocol.SENDER_SCHEDULER -> shards.portOf(targetId);
+            default -> DEFAULT_DRONE_PORT + targetId;
+        };
+        address = new InetSocketAddress(localHost, defaultPort);
+        addresses.put(targetId, address);
+        return address;
+    }
+
+    /**
+     * Returns the address book for drones, zones or other shards.
+     *
+     * @param senderType the sender type
+     * @return the address book
+     */
+    private AddressBook addressesOf(byte senderType) {
+        switch (senderType) {
+            case WireProtocol.SENDER_ZONE: return zoneAddresses;
+            case WireProtocol.SENDER_SCHEDULER: return peerAddresses;
+            default: return droneAddresses;
+        }
+    }
+
+    /**
+     * Takes a reply from the pool, allocating one if the pool is empty.
+     *
+     * @return an unused reply
+     */
+    private Reply obtainReply() {
+        Reply reply = freeReplies.poll();
+        return reply != null ? reply : new Reply();
+    }
+
+    /**
+     * Queues a reply for the send stage.
+     *
+     * @param reply the reply to send
+     */
+    private void enqueueReply(Reply reply) {
+        try {
+            outbound.put(reply);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns how many datagrams were dropped because the decode stage's queue was full.
+     *
+     * @return the number of dropped datagrams
+     */
+    public long getDroppedDatagramCount() {
+        return droppedDatagrams.get();
+    }
+
+    /**
+     * Invokes the appropriate method based on the provided method name and parameters.
+     * This method acts as a centralized RPC handler, processing various requests such as
+     * adding fire events, retrieving events, updating statuses, and handling drone faults.
+     * getNextFireEvent is not handled here; the execute stage parks it until an event is available.
+     *
+     * @param methodName the name of the method to invoke
+     * @param params a list of parameters required by the method
+     * @param senderId the drone or zone id taken from the request header
+     * @param correlationId the correlation id to echo in the response
+     * @param from a boolean flag indicating the source of the request (true if from the Fire Incident Subsystem, false if from a drone)
+     * @return a result object from the invoked method, or a status string indicating success or failure
+     */
+    private Object invokeMethod(String methodName, List<Object> params, int senderId, int correlationId, boolean from) {
+        switch (methodName) {
+            case "ADD_FIRE_EVENT": {
+                this.numEvents.incrementAndGet();
+                FireEvent event = (FireEvent) params.get(0);
+
+                observer.fireEventUpdated(event);
+
+                System.out.println("Received event: " + event);
+                addFireEvent(event, true);
                 if (from) {
-                    FISRPCSend("ACK:", (Integer) params.get(0));
-                    FISRPCSend("SUCCESS", (Integer) params.get(0));
+                    FISRPCSend("ACK:SUCCESS", senderId, correlationId);
                 } else {
-                    int droneId = (Integer) params.get(params.size() - 1);
-                    droneRPCSend("ACK:done", droneId);
+                    droneRPCSend("ACK:done", senderId, correlationId);
                 }
                 break;
             }
-            case "getNextAssignedEvent": {
-                String droneId = (String) params.get(0);
-                int currentX = (Integer) params.get(1);
-                int currentY = (Integer) params.get(2);
-                FireEvent event = getNextAssignedEvent(droneId, currentX, currentY);
-                int droneId2 = (Integer) params.get(params.size() - 1);
-                droneRPCSend(event, droneId2);
+            case "requeueFireEvent": {
+                // An event a drone was given and hands back, e.g. after switching to one near its path
+                FireEvent event = (FireEvent) params.get(0);
+                System.out.println("Drone " + senderId + " handed back zone " + event.getZoneId());
+                requeueFireEvent(event);
+                droneRPCSend("ACK:done", senderId, correlationId);
+                break;
+            }
+            case "ADD_FIRE_EVENTS": {
+                // One batch of events, acknowledged with a single reply
+                addFireEventBatch(senderId, params);
+                System.out.println("Received a batch of events from zone " + senderId);
+                FISRPCSend("ACK:SUCCESS", senderId, correlationId);
+                break;
+            }
+            case "flightLeg": {
+                FlightLeg leg = new FlightLeg(senderId, (Integer) params.get(0), (Integer) params.get(1), (Integer) params.get(2),
+                        (Integer) params.get(3), (Integer) params.get(4), ((Double) params.get(5)).longValue(),
+                        (long) ((Double) params.get(6) * 1000));
+                recordFlightLeg(leg, DroneSubsystem.DroneState.values()[(Integer) params.get(7)], (Double) params.get(8),
+                        (Integer) params.get(9), (Boolean) params.get(10));
+                droneRPCSend("ACK:done", senderId, correlationId);
+                break;
+            }
+            case "heartbeat": {
+                fleet.update(senderId, (Integer) params.get(0), (Integer) params.get(1),
+                        DroneSubsystem.DroneState.values()[(Integer) params.get(2)], (Double) params.get(3), (Integer) params.get(4));
+                droneRPCSend("ACK:done", senderId, correlationId);
                 break;
             }
             case "calculateDistanceToHomeBase": {
                 FireEvent event = (FireEvent) params.get(0);
                 double distance = calculateDistanceToHomeBase(event);
-                int droneId = (Integer) params.get(params.size() - 1);
-                droneRPCSend(distance, droneId);
-                break;
-            }
-            case "getNextFireEvent": {
-                System.out.println("Sending drone the event");
-                FireEvent event = getNextFireEvent();
-                int droneId = (Integer) params.get(params.size() - 1);
-                droneRPCSend(event, droneId);
+                droneRPCSend(distance, senderId, correlationId);
                 break;
             }
             case "calculateTravelTime": {
@@ -605,44 +1792,40 @@ public class Scheduler implements Runnable {
 
                 FireEvent event = (FireEvent) params.get(2);
                 double travelTime = calculateTravelTime(x, y, event);
-                int droneId = (Integer) params.get(params.size() - 1);
-                droneRPCSend(travelTime, droneId);
+                droneRPCSend(travelTime, senderId, correlationId);
                 break;
             }
             case "updateFireStatus": {
                 FireEvent event = (FireEvent) params.get(0);
                 int waterDropped = (Integer) params.get(1);
                 updateFireStatus(event, waterDropped);
-                int droneId = (Integer) params.get(params.size() - 1);
-                droneRPCSend("ACK:done", droneId);
+                droneRPCSend("ACK:done", senderId, correlationId);
                 break;
             }
             case "getAdditionalFireEvent": {
-                FireEvent event = getAdditionalFireEvent(
+                FireEvent event = getAdditionalFireEvent(senderId,
                         (Double) params.get(0),
                         (Integer) params.get(1),
-                        (Integer) params.get(2)
+                        (Integer) params.get(2),
+                        params.size() > 3 ? (Integer) params.get(3) : DRONE_CAPACITY
                 );
-                int droneId = (Integer) params.get(params.size() - 1);
-                droneRPCSend(event, droneId);
+                droneRPCSend(event, senderId, correlationId);
                 break;
             }
             case "SET_EVENTS_LOADED": {
-                setEventsLoaded();
-                FISRPCSend("ACK:", (Integer) params.get(0));
-                FISRPCSend("SUCCESS", (Integer) params.get(0));
+                setEventsLoaded(senderId);
+                FISRPCSend("ACK:SUCCESS", senderId, correlationId);
                 break;
             }
             case "handleDroneFault": {
                 int droneId = (Integer) params.get(2);
                 handleDroneFault((FireEvent) params.get(0), (String) params.get(1), droneId);
-                droneRPCSend("ACK:done", droneId);
+                droneRPCSend("ACK:done", droneId, correlationId);
                 break;
             }
             case "STOP_?": {
                 boolean stop = isStopDrones();
-                int droneId = (Integer) params.get(params.size() - 1);
-                droneRPCSend(stop, droneId);
+                droneRPCSend(stop, senderId, correlationId);
                 break;
             }
             default:
@@ -654,50 +1837,53 @@ public class Scheduler implements Runnable {
 
     /**
      * Sends an RPC response to a drone with the specified ID.
-     * This method serializes the response object and transmits it via UDP
-     * to the drone listening on the designated port.
+     * The response is queued for the send stage, which encodes it with {@link WireProtocol} and transmits it via UDP
+     * to the address the drone last sent from, or to its default port if it has not been heard from.
      *
      * @param response the object to send as the response (cannot be null)
      * @param idnum the identifier of the target drone
      */
-    public synchronized void droneRPCSend(Object response, int idnum) {
-        try {
-            if (response!=null){
-                System.out.println("Sending response to drone " + idnum + ": " + response);
-            }
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            ObjectOutputStream objStream = new ObjectOutputStream(byteStream);
-            objStream.writeObject(response);
-            objStream.flush();
-            byte[] responseData = byteStream.toByteArray();
-            DatagramPacket responsePacket = new DatagramPacket(responseData, responseData.length, InetAddress.getLocalHost(), DEFAULT_DRONE_PORT + idnum);
-            dronesendSocket.send(responsePacket);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    public void droneRPCSend(Object response, int idnum) {
+        droneRPCSend(response, idnum, 0);
+    }
+
+    /**
+     * Sends an RPC response to a drone, echoing the correlation id of the request it answers.
+     *
+     * @param response the object to send as the response
+     * @param idnum the identifier of the target drone
+     * @param correlationId the correlation id of the drone's request
+     */
+    public void droneRPCSend(Object response, int idnum, int correlationId) {
+        if (response!=null){
+            System.out.println("Sending response to drone " + idnum + ": " + response);
         }
+        enqueueReply(obtainReply().set(null, WireProtocol.SENDER_DRONE, idnum, correlationId, response, null));
     }
 
     /**
      * Sends an RPC message to the Fire Incident Subsystem (FIS) for a given zone.
-     * This method serializes the provided message and sends it via UDP to the
-     * FIS listening on a port determined by the zone number.
+     * The message is queued for the send stage, which encodes it with {@link WireProtocol} and sends it via UDP to the
+     * address the zone last sent from, or to a port determined by the zone number if it has not been heard from.
      *
      * @param message the message object to be sent
      * @param zone the zone number representing the target FIS
      */
-    public synchronized void FISRPCSend(Object message, int zone) {
-        try {
-            System.out.println("Sending FIS message to zone " + zone + ": " + message);
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            ObjectOutputStream objStream = new ObjectOutputStream(byteStream);
-            objStream.writeObject(message);
-            objStream.flush();
-            byte[] responseData = byteStream.toByteArray();
-            DatagramPacket responsePacket = new DatagramPacket(responseData, responseData.length, InetAddress.getLocalHost(), DEFAULT_FIS_PORT + zone);
-            FISsendSocket.send(responsePacket);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    public void FISRPCSend(Object message, int zone) {
+        FISRPCSend(message, zone, 0);
+    }
+
+    /**
+     * Sends an RPC message to the Fire Incident Subsystem for a given zone,
+     * echoing the correlation id of the request it answers.
+     *
+     * @param message the message object to be sent
+     * @param zone the zone number representing the target FIS
+     * @param correlationId the correlation id of the zone's request
+     */
+    public void FISRPCSend(Object message, int zone, int correlationId) {
+        System.out.println("Sending FIS message to zone " + zone + ": " + message);
+        enqueueReply(obtainReply().set(null, WireProtocol.SENDER_ZONE, zone, correlationId, message, null));
     }
 
     /**
@@ -0,0 +1,511 @@
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the Scheduler's state, so a restarted Scheduler can carry on where the
+ * last one stopped instead of having every zone send its events again.
+ *
+ * Every change to the event queue and the event counters is appended as a record to a
+ * memory-mapped file before the Scheduler answers the request behind it. Records land in the page cache, so they
+ * survive the process dying without a write system call per record. The journal also keeps a
+ * compact model of what the records add up to: the queued events, the events out with drones,
+ * the counters, and how far each zone has got. Once half the mapped region is used, the model
+ * is written to a snapshot file, replacing the previous one atomically, and the journal starts
+ * again from the beginning of the region. Recovery reads the snapshot and replays the records
+ * written since, which is bounded by the region size.
+ *
+ * Each record is
+ * <pre>
+ *   int length | int crc32 | long sequence | byte type | values...
+ * </pre>
+ * with the values written as in {@link WireProtocol}. The length is written last, so a record
+ * cut short by a crash is never read. Replay stops at the first record whose checksum fails or
+ * whose sequence number does not follow on, which also stops it at records left over from
+ * before the last snapshot. Events are matched by time, zone and severity, since the queue
+ * holds decoded copies rather than the objects the Scheduler used.
+ *
+ * The journal is thread-safe.
+ */
+public class SchedulerJournal implements AutoCloseable {
+    public static final int DEFAULT_REGION_SIZE = 16 * 1024 * 1024;
+    private static final String JOURNAL_FILE = "scheduler.journal";
+    private static final String SNAPSHOT_FILE = "scheduler.snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x534A4E31; // "SJN1"
+    private static final int RECORD_HEADER = 8; // Length and checksum
+
+    // Record types
+    private static final byte EVENTS_RECEIVED = 1;
+    private static final byte EVENT_ADDED = 2;
+    private static final byte DISPATCHED = 3;
+    private static final byte REQUEUED = 4;
+    private static final byte COMPLETED = 5;
+    private static final byte LENT = 6;
+    private static final byte BORROWED = 7;
+    private static final byte ZONE_LOADED = 8;
+
+    private final Path directory;
+    private final FileChannel channel;
+    private final MappedByteBuffer region;
+    private final int snapshotThreshold;
+    private final CRC32 crc = new CRC32();
+    private long nextSequence;
+    private long snapshotSequence; // Last record the current snapshot covers
+    private long recoveryMillis;
+    private int snapshots = 0;
+
+    // The state the records add up to
+    private int numEvents = 0;
+    private int completedEvents = 0;
+    private final Map<String, Deque<FireEvent>> queued = new LinkedHashMap<>();
+    private int queuedCount = 0;
+    private final Map<String, Deque<Assignment>> inFlight = new LinkedHashMap<>();
+    private final Map<Integer, Integer> eventsReceived = new HashMap<>();
+    private final Set<Integer> loadedZones = new HashSet<>();
+
+    /**
+     * An event dispatched to a drone and not yet finished.
+     */
+    public static final class Assignment {
+        private final int droneId;
+        private final FireEvent event;
+
+        Assignment(int droneId, FireEvent event) {
+            this.droneId = droneId;
+            this.event = event;
+        }
+
+        /**
+         * Returns the drone the event was sent to.
+         *
+         * @return the drone id, or -1 if not known
+         */
+        public int getDroneId() { return droneId; }
+
+        /**
+         * Returns the event as it was when dispatched.
+         *
+         * @return the event
+         */
+        public FireEvent getEvent() { return event; }
+    }
+
+    /**
+     * Opens the journal in a directory with the default region size, recovering any state left there.
+     *
+     * @param directory the directory holding the journal and snapshot; created if missing
+     * @throws IOException if the files cannot be read or created
+     */
+    public SchedulerJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Opens the journal in a directory, recovering any state left there.
+     *
+     * @param directory the directory holding the journal and snapshot; created if missing
+     * @param regionSize the size of the mapped journal region in bytes
+     * @throws IOException if the files cannot be read or created
+     */
+    public SchedulerJournal(Path directory, int regionSize) throws IOException {
+        long start = System.nanoTime();
+        this.directory = directory;
+        this.snapshotThreshold = regionSize / 2;
+        Files.createDirectories(directory);
+        readSnapshot();
+        channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        region = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionSize);
+        replay();
+        recoveryMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Records events received from a zone, before they are queued.
+     *
+     * @param zoneId the zone that sent them
+     * @param events the events, as received
+     */
+    public synchronized void eventsReceived(int zoneId, List<FireEvent> events) {
+        Object[] values = new Object[events.size() + 1];
+        values[0] = zoneId;
+        for (int i = 0; i < events.size(); i++) values[i + 1] = events.get(i);
+        record(EVENTS_RECEIVED, values);
+    }
+
+    /**
+     * Records an event added on its own, counted as a new event.
+     *
+     * @param event the event
+     */
+    public synchronized void eventAdded(FireEvent event) {
+        record(EVENT_ADDED, event);
+    }
+
+    /**
+     * Records an event taken off the queue for a drone.
+     *
+     * @param droneId the drone, or -1 if not known
+     * @param event the event
+     */
+    public synchronized void dispatched(int droneId, FireEvent event) {
+        record(DISPATCHED, droneId, event);
+    }
+
+    /**
+     * Records an event put back on the queue: partly extinguished, refused or after a fault.
+     *
+     * @param event the event, with the litres it still needs
+     */
+    public synchronized void requeued(FireEvent event) {
+        record(REQUEUED, event);
+    }
+
+    /**
+     * Records an event extinguished.
+     *
+     * @param event the event
+     */
+    public synchronized void completed(FireEvent event) {
+        record(COMPLETED, event);
+    }
+
+    /**
+     * Records a queued event handed to another shard.
+     *
+     * @param event the event
+     */
+    public synchronized void lent(FireEvent event) {
+        record(LENT, event);
+    }
+
+    /**
+     * Records an event taken from another shard and queued here.
+     *
+     * @param event the event
+     */
+    public synchronized void borrowed(FireEvent event) {
+        record(BORROWED, event);
+    }
+
+    /**
+     * Records that a zone has sent all of its events.
+     *
+     * @param zoneId the zone
+     */
+    public synchronized void zoneLoaded(int zoneId) {
+        record(ZONE_LOADED, zoneId);
+    }
+
+    public synchronized int getNumEvents() {
+        return numEvents;
+    }
+
+    public synchronized int getCompletedEvents() {
+        return completedEvents;
+    }
+
+    /**
+     * Returns copies of the queued events.
+     *
+     * @return the queued events, oldest first
+     */
+    public synchronized List<FireEvent> getQueuedEvents() {
+        List<FireEvent> events = new ArrayList<>(queuedCount);
+        for (Deque<FireEvent> same : queued.values()) events.addAll(same);
+        return events;
+    }
+
+    /**
+     * Returns the events out with drones.
+     *
+     * @return the assignments, oldest first
+     */
+    public synchronized List<Assignment> getAssignments() {
+        List<Assignment> assignments = new ArrayList<>();
+        for (Deque<Assignment> same : inFlight.values()) assignments.addAll(same);
+        return assignments;
+    }
+
+    /**
+     * Returns how many events a zone has sent, so a restarted zone can skip them.
+     *
+     * @param zoneId the zone
+     * @return the number of events received from it
+     */
+    public synchronized int getEventsReceived(int zoneId) {
+        return eventsReceived.getOrDefault(zoneId, 0);
+    }
+
+    /**
+     * Returns whether a zone has sent all of its events.
+     *
+     * @param zoneId the zone
+     * @return true if the zone finished loading
+     */
+    public synchronized boolean isZoneLoaded(int zoneId) {
+        return loadedZones.contains(zoneId);
+    }
+
+    /**
+     * Returns how long opening the journal took, including reading the snapshot and replaying.
+     *
+     * @return the recovery time in milliseconds
+     */
+    public long getRecoveryMillis() {
+        return recoveryMillis;
+    }
+
+    /**
+     * Returns how many snapshots this journal has written since it was opened.
+     *
+     * @return the snapshot count
+     */
+    public synchronized int getSnapshotCount() {
+        return snapshots;
+    }
+
+    /**
+     * Writes a snapshot of the current state and starts the journal again.
+     *
+     * @throws RuntimeException if the snapshot cannot be written
+     */
+    public synchronized void snapshot() {
+        ByteBuffer buf = ByteBuffer.allocate(4096 + 64 * (queuedCount + inFlight.size()));
+        while (true) {
+            try {
+                writeSnapshot(buf);
+                break;
+            } catch (BufferOverflowException e) {
+                buf = ByteBuffer.allocate(buf.capacity() * 2);
+            }
+        }
+        buf.flip();
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) out.write(buf);
+            out.force(true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        snapshotSequence = nextSequence - 1;
+        region.clear();
+        snapshots++;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        region.force();
+        channel.close();
+    }
+
+    private void record(byte type, Object... values) {
+        apply(type, values);
+        append(type, values);
+    }
+
+    /**
+     * Appends a record to the mapped region, taking a snapshot first if it does not fit and
+     * afterwards if the region is half full.
+     */
+    private void append(byte type, Object[] values) {
+        long sequence = nextSequence++;
+        int start = region.position();
+        try {
+            region.position(start + RECORD_HEADER);
+            region.putLong(sequence).put(type);
+            for (Object value : values) WireProtocol.writeValue(region, value);
+        } catch (BufferOverflowException | IllegalArgumentException e) {
+            // The model already holds this change, so the snapshot covers it
+            region.position(start);
+            snapshot();
+            return;
+        }
+        int end = region.position();
+        ByteBuffer body = region.duplicate();
+        body.position(start + RECORD_HEADER).limit(end);
+        crc.reset();
+        crc.update(body);
+        region.putInt(start + 4, (int) crc.getValue());
+        region.putInt(start, end - start - RECORD_HEADER);
+        if (end >= snapshotThreshold) snapshot();
+    }
+
+    /**
+     * Applies a record to the model.
+     */
+    private void apply(byte type, Object[] values) {
+        switch (type) {
+            case EVENTS_RECEIVED: {
+                int zoneId = (Integer) values[0];
+                eventsReceived.merge(zoneId, values.length - 1, Integer::sum);
+                numEvents += values.length - 1;
+                for (int i = 1; i < values.length; i++) enqueue((FireEvent) values[i]);
+                break;
+            }
+            case EVENT_ADDED:
+            case BORROWED:
+                numEvents++;
+                enqueue((FireEvent) values[0]);
+                break;
+            case DISPATCHED: {
+                FireEvent event = (FireEvent) values[1];
+                if (take(queued, key(event))) queuedCount--;
+                inFlight.computeIfAbsent(key(event), k -> new ArrayDeque<>())
+                        .add(new Assignment((Integer) values[0], new FireEvent(event)));
+                break;
+            }
+            case REQUEUED:
+                take(inFlight, key((FireEvent) values[0]));
+                enqueue((FireEvent) values[0]);
+                break;
+            case COMPLETED:
+                take(inFlight, key((FireEvent) values[0]));
+                completedEvents++;
+                break;
+            case LENT:
+                if (take(queued, key((FireEvent) values[0]))) queuedCount--;
+                numEvents--;
+                break;
+            case ZONE_LOADED:
+                loadedZones.add((Integer) values[0]);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown journal record type " + type);
+        }
+    }
+
+    private void enqueue(FireEvent event) {
+        queued.computeIfAbsent(key(event), k -> new ArrayDeque<>()).add(new FireEvent(event));
+        queuedCount++;
+    }
+
+    /**
+     * Removes the oldest entry under a key.
+     *
+     * @return false if there was none
+     */
+    private static <T> boolean take(Map<String, Deque<T>> entries, String key) {
+        Deque<T> same = entries.get(key);
+        if (same == null) return false;
+        same.poll();
+        if (same.isEmpty()) entries.remove(key);
+        return true;
+    }
+
+    private static String key(FireEvent event) {
+        return event.getTime() + "_" + event.getZoneId() + "_" + event.getSeverity();
+    }
+
+    /**
+     * Replays the records written since the snapshot and leaves the region positioned after them.
+     */
+    private void replay() {
+        long expected = snapshotSequence + 1;
+        int position = 0;
+        while (position + RECORD_HEADER + 9 <= region.capacity()) {
+            int length = region.getInt(position);
+            if (length < 9 || position + RECORD_HEADER + length > region.capacity()) break;
+            ByteBuffer body = region.duplicate();
+            body.position(position + RECORD_HEADER).limit(position + RECORD_HEADER + length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != region.getInt(position + 4)) break;
+            long sequence = body.getLong();
+            byte type = body.get();
+            if (sequence != expected) {
+                // Records the snapshot already covers, if the last run stopped before restarting the region
+                if (sequence <= snapshotSequence && expected == snapshotSequence + 1) {
+                    position += RECORD_HEADER + length;
+                    continue;
+                }
+                break;
+            }
+            List<Object> values = new ArrayList<>();
+            try {
+                while (body.hasRemaining()) values.add(WireProtocol.readValue(body));
+            } catch (ProtocolException | BufferUnderflowException e) {
+                break;
+            }
+            apply(type, values.toArray());
+            expected++;
+            position += RECORD_HEADER + length;
+        }
+        nextSequence = expected;
+        if (expected == snapshotSequence + 1) {
+            region.clear(); // Nothing replayed, so anything in the region is stale
+        } else {
+            region.position(position);
+        }
+    }
+
+    /*
+     * Snapshot layout:
+     *   int magic | long sequence | int numEvents | int completedEvents
+     *   | int zones [| int zoneId | int received | boolean loaded]...
+     *   | int queued [| event]... | int inFlight [| int droneId | event]...
+     */
+    private void writeSnapshot(ByteBuffer buf) {
+        buf.clear();
+        buf.putInt(SNAPSHOT_MAGIC).putLong(nextSequence - 1).putInt(numEvents).putInt(completedEvents);
+        Set<Integer> zones = new TreeSet<>(eventsReceived.keySet());
+        zones.addAll(loadedZones);
+        buf.putInt(zones.size());
+        for (int zoneId : zones) {
+            buf.putInt(zoneId).putInt(eventsReceived.getOrDefault(zoneId, 0)).put((byte) (loadedZones.contains(zoneId) ? 1 : 0));
+        }
+        buf.putInt(queuedCount);
+        for (Deque<FireEvent> same : queued.values()) {
+            for (FireEvent event : same) WireProtocol.writeValue(buf, event);
+        }
+        List<Assignment> assignments = getAssignments();
+        buf.putInt(assignments.size());
+        for (Assignment assignment : assignments) {
+            buf.putInt(assignment.droneId);
+            WireProtocol.writeValue(buf, assignment.event);
+        }
+    }
+
+    private void readSnapshot() throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        snapshotSequence = 0;
+        if (!Files.exists(file)) return;
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (buf.getInt() != SNAPSHOT_MAGIC) throw new IOException("Not a scheduler snapshot: " + file);
+            snapshotSequence = buf.getLong();
+            numEvents = buf.getInt();
+            completedEvents = buf.getInt();
+            for (int zones = buf.getInt(); zones > 0; zones--) {
+                int zoneId = buf.getInt();
+                eventsReceived.put(zoneId, buf.getInt());
+                if (buf.get() != 0) loadedZones.add(zoneId);
+            }
+            for (int count = buf.getInt(); count > 0; count--) enqueue((FireEvent) WireProtocol.readValue(buf));
+            for (int count = buf.getInt(); count > 0; count--) {
+                int droneId = buf.getInt();
+                FireEvent event = (FireEvent) WireProtocol.readValue(buf);
+                inFlight.computeIfAbsent(key(event), k -> new ArrayDeque<>()).add(new Assignment(droneId, event));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated scheduler snapshot: " + file);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * How zones and drones are split across the Schedulers of a sharded deployment.
+ *
+ * Each shard is a Scheduler with its own port and pipeline, so dispatch capacity grows with the
+ * number of shards. Zones and drones are dealt out by id, so every process can work out the
+ * owner of any zone or drone without asking. Shard {@code i} listens on
+ * {@link Scheduler#DEFAULT_SCHEDULER_PORT} plus the base offset plus {@code i}.
+ * A plan with one shard is the usual single Scheduler.
+ */
+public final class ShardPlan {
+    private final int shardCount;
+    private final int basePortOffset;
+
+    /**
+     * Constructs a plan.
+     *
+     * @param shardCount the number of Schedulers
+     * @param basePortOffset the port offset of shard 0
+     */
+    public ShardPlan(int shardCount, int basePortOffset) {
+        if (shardCount < 1) throw new IllegalArgumentException("At least one shard is needed: " + shardCount);
+        this.shardCount = shardCount;
+        this.basePortOffset = basePortOffset;
+    }
+
+    /**
+     * Returns the number of Schedulers.
+     *
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Returns the shard that owns a zone: it runs the zone's subsystem and queues its events.
+     *
+     * @param zoneId the zone id
+     * @return the shard index
+     */
+    public int shardOfZone(int zoneId) {
+        return Math.floorMod(zoneId, shardCount);
+    }
+
+    /**
+     * Returns the shard a drone reports to.
+     *
+     * @param droneId the drone id
+     * @return the shard index
+     */
+    public int shardOfDrone(int droneId) {
+        return Math.floorMod(droneId, shardCount);
+    }
+
+    /**
+     * Returns the port offset of a shard, as passed to a single Scheduler.
+     *
+     * @param shard the shard index
+     * @return the port offset
+     */
+    public int portOffsetOf(int shard) {
+        return basePortOffset + shard;
+    }
+
+    /**
+     * Returns the port a shard receives requests on.
+     *
+     * @param shard the shard index
+     * @return the port
+     */
+    public int portOf(int shard) {
+        return Scheduler.DEFAULT_SCHEDULER_PORT + portOffsetOf(shard);
+    }
+}
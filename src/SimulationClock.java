@@ -0,0 +1,329 @@
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * The time the simulation runs on. Drones wait out flight, takeoff, descent and nozzle time on it,
+ * and the Scheduler and metrics read the time from it, so the simulation can run at a different
+ * pace from the wall clock without changing what it reports.
+ *
+ * In real-time mode, the default, simulated time is the wall clock sped up by a multiplier; at 1 the
+ * simulation behaves as it always has. In discrete-event mode, time only moves when every
+ * participant is waiting on the clock: it then jumps straight to the earliest wake-up in a priority
+ * queue. Participants are the threads that act in simulated time, the drones; each registers itself
+ * and marks the stretches it spends waiting for work with {@link #idle}, so a drone waiting on the
+ * Scheduler does not hold time back. A scheduled task is a participant while it runs, so time
+ * stands still until it has finished or is waiting on the clock itself. Other threads may sleep on
+ * the clock too, but time does not wait for them.
+ *
+ * There is one clock for the whole process, set before the simulation starts.
+ */
+public abstract class SimulationClock {
+    private static volatile SimulationClock current = realTime(1);
+
+    /**
+     * Returns the simulation's clock.
+     *
+     * @return the clock
+     */
+    public static SimulationClock get() {
+        return current;
+    }
+
+    /**
+     * Replaces the simulation's clock. Call it before starting any drone or Scheduler.
+     *
+     * @param clock the clock
+     */
+    public static void set(SimulationClock clock) {
+        current = clock;
+    }
+
+    /**
+     * Returns a clock that follows the wall clock at a multiple of its speed.
+     *
+     * @param speed how many simulated seconds pass per wall-clock second
+     * @return the clock
+     * @throws IllegalArgumentException if the speed is not positive
+     */
+    public static SimulationClock realTime(double speed) {
+        return new RealTime(speed);
+    }
+
+    /**
+     * Returns a clock that jumps from one wake-up to the next once every participant is waiting.
+     * It starts at 0.
+     *
+     * @return the clock
+     */
+    public static SimulationClock discreteEvent() {
+        return new DiscreteEvent();
+    }
+
+    /**
+     * Returns the simulated time.
+     *
+     * @return the time in milliseconds
+     */
+    public abstract long currentTimeMillis();
+
+    /**
+     * Blocks the calling thread for a span of simulated time.
+     *
+     * @param millis the span in milliseconds
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public abstract void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Runs a task on a new daemon thread after a span of simulated time. In discrete-event mode the
+     * task is a participant until it returns.
+     *
+     * @param name the name of the thread that runs the task
+     * @param task the task to run
+     * @param delayMillis the delay in milliseconds
+     * @return a future that can cancel the task before it fires
+     */
+    public abstract Future<?> schedule(String name, Runnable task, long delayMillis);
+
+    /**
+     * Makes the calling thread a participant, which simulated time waits for.
+     */
+    public void register() {
+    }
+
+    /**
+     * Stops the calling thread being a participant.
+     */
+    public void deregister() {
+    }
+
+    /**
+     * Runs a blocking call, such as a request for work, during which the caller does not hold
+     * simulated time back.
+     *
+     * @param call the call
+     * @param <T> the result type
+     * @return the call's result
+     */
+    public <T> T idle(Supplier<T> call) {
+        return call.get();
+    }
+
+    /**
+     * The wall clock, scaled.
+     */
+    private static final class RealTime extends SimulationClock {
+        private final double speed;
+        private final long origin = System.currentTimeMillis();
+
+        RealTime(double speed) {
+            if (!(speed > 0)) throw new IllegalArgumentException("The clock speed must be positive: " + speed);
+            this.speed = speed;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            long now = System.currentTimeMillis();
+            return speed == 1 ? now : origin + (long) ((now - origin) * speed);
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            Thread.sleep(Math.round(millis / speed));
+        }
+
+        @Override
+        public Future<?> schedule(String name, Runnable task, long delayMillis) {
+            return SimulationThreads.schedule(name, task, Math.round(delayMillis / speed));
+        }
+    }
+
+    /**
+     * Time that advances from wake-up to wake-up.
+     */
+    private static final class DiscreteEvent extends SimulationClock {
+        /**
+         * A sleeping thread, or a task waiting to be started.
+         */
+        private static final class Wakeup implements Comparable<Wakeup> {
+            final long time;
+            final long sequence; // Wake-ups at the same time go in the order they were made
+            final boolean participant;
+            final String name;
+            final FutureTask<Void> task; // Null for a sleeping thread
+            boolean due = false;
+
+            Wakeup(long time, long sequence, boolean participant, String name, FutureTask<Void> task) {
+                this.time = time;
+                this.sequence = sequence;
+                this.participant = participant;
+                this.name = name;
+                this.task = task;
+            }
+
+            @Override
+            public int compareTo(Wakeup other) {
+                int order = Long.compare(time, other.time);
+                return order != 0 ? order : Long.compare(sequence, other.sequence);
+            }
+        }
+
+        // A lock rather than synchronized so waiting does not pin a virtual thread
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition advanced = lock.newCondition();
+        private final PriorityQueue<Wakeup> wakeups = new PriorityQueue<>();
+        private final Set<Thread> participants = new HashSet<>();
+        private long now = 0;
+        private long sequence = 0;
+        private int running = 0; // Participants not waiting on the clock
+
+        @Override
+        public long currentTimeMillis() {
+            lock.lock();
+            try {
+                return now;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            lock.lock();
+            try {
+                boolean participant = participants.contains(Thread.currentThread());
+                Wakeup wakeup = new Wakeup(now + Math.max(0, millis), sequence++, participant, null, null);
+                wakeups.add(wakeup);
+                if (participant) running--;
+                advance();
+                while (!wakeup.due) {
+                    try {
+                        advanced.await();
+                    } catch (InterruptedException e) {
+                        if (!wakeup.due) {
+                            wakeups.remove(wakeup);
+                            if (participant) running++;
+                        }
+                        throw e;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Future<?> schedule(String name, Runnable task, long delayMillis) {
+            FutureTask<Void> future = new FutureTask<>(task, null);
+            lock.lock();
+            try {
+                wakeups.add(new Wakeup(now + Math.max(0, delayMillis), sequence++, false, name, future));
+                advance();
+            } finally {
+                lock.unlock();
+            }
+            return future;
+        }
+
+        @Override
+        public void register() {
+            lock.lock();
+            try {
+                if (participants.add(Thread.currentThread())) running++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void deregister() {
+            lock.lock();
+            try {
+                if (participants.remove(Thread.currentThread())) running--;
+                advance();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public <T> T idle(Supplier<T> call) {
+            boolean participant;
+            lock.lock();
+            try {
+                participant = participants.contains(Thread.currentThread());
+                if (participant) {
+                    running--;
+                    advance();
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                return call.get();
+            } finally {
+                if (participant) {
+                    lock.lock();
+                    try {
+                        running++;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Runs a fired task as a participant, whose place in the running count was taken when it
+         * fired, and lets time move on once it has finished.
+         *
+         * @param task the task
+         */
+        private void runTask(FutureTask<Void> task) {
+            lock.lock();
+            try {
+                participants.add(Thread.currentThread());
+            } finally {
+                lock.unlock();
+            }
+            try {
+                task.run();
+            } finally {
+                deregister();
+            }
+        }
+
+        /**
+         * Jumps to the earliest wake-ups while no participant is running, waking the threads and
+         * starting the tasks that are due. Must be called with the lock held.
+         */
+        private void advance() {
+            boolean woken = false;
+            while (running == 0 && !wakeups.isEmpty()) {
+                long time = wakeups.peek().time;
+                now = Math.max(now, time);
+                while (!wakeups.isEmpty() && wakeups.peek().time == time) {
+                    Wakeup wakeup = wakeups.poll();
+                    if (wakeup.task != null) {
+                        if (wakeup.task.isCancelled()) continue;
+                        // Counted as running from now, so time cannot move past the task before its thread starts
+                        running++;
+                        FutureTask<Void> task = wakeup.task;
+                        SimulationThreads.startDaemon(wakeup.name, () -> runTask(task));
+                    } else {
+                        wakeup.due = true;
+                        woken = true;
+                        if (wakeup.participant) running++;
+                    }
+                }
+            }
+            if (woken) advanced.signalAll();
+        }
+    }
+}
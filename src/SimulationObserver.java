@@ -0,0 +1,68 @@
+import java.util.List;
+
+/**
+ * Receives what happens in a simulation run: the zones, every drone's movements and every change
+ * to a fire event. The map is one observer; a headless run uses {@link #NONE}, and
+ * {@link BatchingObserver} hands updates to a slower observer off the simulation's threads.
+ *
+ * The Scheduler and the drones call these methods from many threads at once, so implementations
+ * must be thread-safe and should return quickly.
+ */
+public interface SimulationObserver {
+    /** An observer that ignores everything, for runs with no display. */
+    SimulationObserver NONE = new SimulationObserver() {
+        @Override
+        public void zonesLoaded(List<Zone> zones) {
+        }
+
+        @Override
+        public void droneUpdated(int droneId, int x, int y, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+        }
+
+        @Override
+        public void fireEventUpdated(FireEvent event) {
+        }
+    };
+
+    /**
+     * Called once the zones have been read from the zone file.
+     *
+     * @param zones the zones
+     */
+    void zonesLoaded(List<Zone> zones);
+
+    /**
+     * Called when a drone moves or changes state.
+     *
+     * @param droneId the drone id
+     * @param x the drone's x-coordinate
+     * @param y the drone's y-coordinate
+     * @param state the drone's state
+     * @param remainingAgent the litres left in the drone's tank
+     * @param batteryLife the drone's remaining battery in seconds
+     */
+    void droneUpdated(int droneId, int x, int y, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife);
+
+    /**
+     * Called when a drone sets off on a flight leg, or corrects one it has strayed from. Until the
+     * drone's next update it is where the leg puts it, so an observer that shows drones moving
+     * should work their positions out from the leg. By default the drone is shown at the start.
+     *
+     * @param droneId the drone id
+     * @param leg the leg
+     * @param state the state the drone flies the leg in
+     * @param remainingAgent the litres left in the drone's tank
+     * @param batteryLife the drone's battery at the start of the leg, in seconds
+     */
+    default void flightLegStarted(int droneId, FlightLeg leg, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+        double[] start = leg.positionAt(leg.getStartMillis());
+        droneUpdated(droneId, (int) start[0], (int) start[1], state, remainingAgent, batteryLife);
+    }
+
+    /**
+     * Called when a fire event is detected, or changes state.
+     *
+     * @param event the fire event
+     */
+    void fireEventUpdated(FireEvent event);
+}
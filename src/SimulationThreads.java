@@ -0,0 +1,140 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.Future;
+
+/**
+ * Creates the threads that run drones, zones, listeners and timers.
+ *
+ * By default every task gets a platform thread. After {@link #useVirtualThreads()} each task gets
+ * a virtual thread instead, so a single JVM can run tens of thousands of drones and zones without
+ * an OS thread for each. Virtual threads are looked up reflectively so the simulation still builds
+ * and runs on JDKs that predate them; there the call reports failure and platform threads are kept.
+ *
+ * Code run on these threads should block with {@link Thread#sleep}, socket I/O or
+ * {@link java.util.concurrent.locks.Lock}s rather than inside {@code synchronized},
+ * which would pin a virtual thread to its carrier.
+ */
+public final class SimulationThreads {
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+
+    static {
+        Method ofVirtual = null, name = null, unstarted = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null; // Virtual threads are not available on this JDK
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_UNSTARTED = unstarted;
+    }
+
+    // One timing wheel fires every delayed task; 10 ms ticks, and a turn of the wheel is about five seconds
+    private static final TimerWheel TIMER = TimerWheel.start("SimulationThreads-Timer", 10, 512);
+
+    private static volatile boolean virtual = false;
+
+    private SimulationThreads() {
+    }
+
+    /**
+     * Switches every thread started afterwards to a virtual thread, if the JDK supports them.
+     *
+     * @return true if virtual threads are now in use, false if this JDK does not provide them
+     */
+    public static boolean useVirtualThreads() {
+        if (OF_VIRTUAL == null) {
+            System.out.println("Virtual threads are not available on Java " + Runtime.version().feature() + "; using platform threads.");
+            return false;
+        }
+        virtual = true;
+        return true;
+    }
+
+    /**
+     * Returns whether new threads are started as virtual threads.
+     *
+     * @return true in virtual-thread mode
+     */
+    public static boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Starts a task on a new thread that keeps the JVM alive until it finishes.
+     * Virtual threads are always daemon threads, so in virtual-thread mode the caller must
+     * keep the JVM running by other means (the UI, or by joining the thread).
+     *
+     * @param name the thread name
+     * @param task the task to run
+     * @return the started thread
+     */
+    public static Thread start(String name, Runnable task) {
+        Thread thread = newThread(name, task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Starts a task on a new daemon thread.
+     *
+     * @param name the thread name
+     * @param task the task to run
+     * @return the started thread
+     */
+    public static Thread startDaemon(String name, Runnable task) {
+        Thread thread = newThread(name, task);
+        if (!thread.isDaemon()) thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Runs a task on a new daemon thread after a delay.
+     * Replaces a {@link java.util.Timer} per task: the delay is kept on one shared
+     * {@link TimerWheel}, and the task, which may block, gets a thread of its own only once it fires.
+     *
+     * @param name the name of the thread that runs the task
+     * @param task the task to run
+     * @param delayMillis the delay in milliseconds
+     * @return a future that can cancel the task before it fires
+     */
+    public static Future<?> schedule(String name, Runnable task, long delayMillis) {
+        return TIMER.schedule(task, delayMillis, due -> startDaemon(name, due));
+    }
+
+    /**
+     * Runs a short, non-blocking task on the shared timer's own thread after a delay, without
+     * starting a thread for it.
+     *
+     * @param task the task to run
+     * @param delayMillis the delay in milliseconds
+     * @return a future that can cancel the task before it fires
+     */
+    public static Future<?> scheduleOnTimer(Runnable task, long delayMillis) {
+        return TIMER.schedule(task, delayMillis);
+    }
+
+    /**
+     * Returns how many tasks are waiting on the shared timer.
+     *
+     * @return the number of tasks
+     */
+    public static int pendingTimeouts() {
+        return TIMER.pendingTimeouts();
+    }
+
+    private static Thread newThread(String name, Runnable task) {
+        if (!virtual) return new Thread(task, name);
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+            return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
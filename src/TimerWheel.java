@@ -0,0 +1,285 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * A hashed timing wheel: one thread that fires every delayed task in the process.
+ *
+ * Time is cut into ticks, and the wheel is a ring of buckets, one per tick. A task due in n ticks
+ * goes in the bucket n ticks ahead of the hand, with a count of how many more turns of the wheel
+ * it must wait. Adding and cancelling a task are O(1) whatever the number pending, so a fleet of
+ * drones can keep a fault timeout, en-route checks and retries each without the timer slowing
+ * down; a heap-based timer pays O(log n) per task and a java.util.Timer a thread per drone.
+ * The price is resolution: a task fires on the first tick at or after its deadline, never early.
+ *
+ * Other threads never touch the buckets. New and cancelled tasks are handed to the wheel's thread
+ * through lock-free queues and filed or unlinked on its next tick.
+ *
+ * {@link #start} makes a wheel driven by its own thread and the system clock. A wheel made with
+ * the constructor has no thread: it reads the clock it is given and fires tasks only when
+ * {@link #advance} is called, so tests can turn it by hand.
+ */
+public class TimerWheel {
+    /**
+     * A task waiting on the wheel. Cancelling it before it fires stops it running at all.
+     */
+    public static final class Timeout implements Future<Void> {
+        private static final int WAITING = 0, EXPIRED = 1, CANCELLED = 2;
+
+        private final TimerWheel wheel;
+        private final FutureTask<Void> task;
+        private final Consumer<FutureTask<Void>> runner;
+        private final long deadline; // Nanoseconds since the wheel started
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        // Owned by the wheel's thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout previous, next;
+
+        private Timeout(TimerWheel wheel, Runnable task, Consumer<FutureTask<Void>> runner, long deadline) {
+            this.wheel = wheel;
+            this.task = new FutureTask<>(task, null);
+            this.runner = runner;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!state.compareAndSet(WAITING, CANCELLED)) return task.cancel(mayInterruptIfRunning);
+            task.cancel(false);
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            return task.get();
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return task.get(timeout, unit);
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(WAITING, EXPIRED)) return;
+            wheel.pending.decrementAndGet();
+            try {
+                runner.accept(task);
+            } catch (RuntimeException e) {
+                System.out.println("TimerWheel: Could not start a timed task: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The tasks filed under one slot of the wheel, as a doubly linked list so any can be unlinked.
+     */
+    private static final class Bucket {
+        private Timeout head, tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = tail;
+            if (tail == null) head = timeout;
+            else tail.next = timeout;
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous == null) head = timeout.next;
+            else timeout.previous.next = timeout.next;
+            if (timeout.next == null) tail = timeout.previous;
+            else timeout.next.previous = timeout.previous;
+            timeout.previous = timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * Fires the tasks due by the end of the current tick and counts down the rest by a turn.
+         *
+         * @param tickEnd the end of the tick, in nanoseconds since the wheel started
+         */
+        void expire(long tickEnd) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.rounds <= 0 && timeout.deadline <= tickEnd) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final LongSupplier clock; // Nanoseconds
+    private final long startNanos;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Thread thread; // Null unless started
+    private volatile boolean running = true;
+    private long tick = 0; // Owned by the wheel's thread, or whoever calls advance
+
+    /**
+     * Creates a wheel without a thread, turned by {@link #advance}.
+     *
+     * @param tickMillis the length of a tick, and so the timer's resolution, in milliseconds
+     * @param slots the number of buckets, rounded up to a power of two; one turn of the wheel is
+     *              {@code slots * tickMillis}, and longer delays wait out extra turns
+     * @param clock the time in nanoseconds, as {@link System#nanoTime} gives it
+     * @throws IllegalArgumentException if the tick length or slot count is not positive
+     */
+    public TimerWheel(long tickMillis, int slots, LongSupplier clock) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("The tick length must be positive: " + tickMillis);
+        if (slots <= 0 || slots > 1 << 30) throw new IllegalArgumentException("Invalid number of slots: " + slots);
+        int size = Integer.highestOneBit(slots);
+        if (size < slots) size <<= 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) wheel[i] = new Bucket();
+        this.mask = size - 1;
+        this.clock = clock;
+        this.startNanos = clock.getAsLong();
+    }
+
+    /**
+     * Creates a wheel on the system clock and starts its thread.
+     *
+     * @param name the name of the wheel's thread
+     * @param tickMillis the length of a tick, and so the timer's resolution, in milliseconds
+     * @param slots the number of buckets, rounded up to a power of two
+     * @return the running wheel
+     * @throws IllegalArgumentException if the tick length or slot count is not positive
+     */
+    public static TimerWheel start(String name, long tickMillis, int slots) {
+        TimerWheel wheel = new TimerWheel(tickMillis, slots, System::nanoTime);
+        // A platform thread: it must wake on time, and it only ever parks
+        Thread thread = new Thread(wheel::turn, name);
+        thread.setDaemon(true);
+        wheel.thread = thread;
+        thread.start();
+        return wheel;
+    }
+
+    /**
+     * Runs a task on the wheel's thread after a delay. The task must be short and must not block,
+     * or it holds up every task due after it.
+     *
+     * @param task the task to run
+     * @param delayMillis the delay in milliseconds
+     * @return the timeout, which can cancel the task before it fires
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        return schedule(task, delayMillis, FutureTask::run);
+    }
+
+    /**
+     * Hands a task to a runner after a delay. The runner is called on the wheel's thread and
+     * should only start the task somewhere else, such as a thread of its own.
+     *
+     * @param task the task to run
+     * @param delayMillis the delay in milliseconds
+     * @param runner starts the task once it is due
+     * @return the timeout, which can cancel the task before it fires
+     */
+    public Timeout schedule(Runnable task, long delayMillis, Consumer<FutureTask<Void>> runner) {
+        long deadline = clock.getAsLong() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(this, task, runner, deadline);
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns how many tasks have been scheduled and have neither fired nor been cancelled.
+     *
+     * @return the number of tasks
+     */
+    public int pendingTimeouts() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the wheel. Tasks that have not fired never will.
+     */
+    public void stop() {
+        running = false;
+        Thread current = thread;
+        if (current != null) current.interrupt();
+    }
+
+    /**
+     * Fires every task due by the clock's current time. Only for a wheel without a thread, and
+     * from one thread at a time.
+     *
+     * @throws IllegalStateException if the wheel has its own thread
+     */
+    public void advance() {
+        if (thread != null) throw new IllegalStateException("The wheel is turned by its own thread");
+        while (running && (tick + 1) * tickNanos <= clock.getAsLong() - startNanos) expireTick();
+    }
+
+    private void turn() {
+        while (running) {
+            long wait = (tick + 1) * tickNanos - (clock.getAsLong() - startNanos);
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            expireTick();
+        }
+    }
+
+    /**
+     * Files and unlinks the tasks handed over since the last tick, then fires the current tick's bucket.
+     */
+    private void expireTick() {
+        unlinkCancelled();
+        fileAdded();
+        wheel[(int) (tick & mask)].expire((tick + 1) * tickNanos);
+        tick++;
+    }
+
+    private void unlinkCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            pending.decrementAndGet();
+            if (timeout.bucket != null) timeout.bucket.remove(timeout);
+        }
+    }
+
+    private void fileAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state.get() != Timeout.WAITING) continue; // Cancelled before it was filed
+            long due = timeout.deadline / tickNanos; // The tick whose end passes the deadline
+            timeout.rounds = (due - tick) / wheel.length;
+            wheel[(int) (Math.max(due, tick) & mask)].add(timeout);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plans a drone's next few stops before it has to fly home.
+ *
+ * The travel times between every pair of zone centers, and from each center to home base, are
+ * worked out once when the planner is built, so planning a tour is table lookups. A tour starts
+ * wherever the drone is, visits each stop, drops agent there and ends at home base. It is built by
+ * cheapest insertion: each round adds the candidate, at the position in the tour, that delivers the
+ * most litres for the seconds it adds, until the tank is spoken for or nothing more fits in the
+ * battery. Two-opt then reorders the stops while that shortens the tour without delivering less.
+ *
+ * A stop is only worth making while the drone still has agent when it gets there, so every stop but
+ * the last must leave some in the tank. Events in zones the planner was not built with are timed
+ * straight from their zone's center.
+ */
+public class TourPlanner {
+    /** Seconds spent opening and closing the nozzle at each stop. */
+    public static final double DROP_OVERHEAD = 2;
+
+    private static final int HOME = 0; // Matrix index of home base
+
+    private final double cruiseSpeed;
+    private final double nozzleFlowRate;
+    private final int[] indexOfZone; // Matrix index by zone id, or 0 if not in the matrix
+    private final Zone[] zoneAt; // Zone by matrix index
+    private final double[][] travelTime; // Seconds between matrix entries; entry 0 is home base
+
+    /**
+     * Builds the travel-time matrix for a set of zones.
+     *
+     * @param zones the zones
+     * @param cruiseSpeed the drones' cruise speed in meters per second
+     * @param nozzleFlowRate the litres a drone drops per second
+     */
+    public TourPlanner(List<Zone> zones, double cruiseSpeed, double nozzleFlowRate) {
+        this.cruiseSpeed = cruiseSpeed;
+        this.nozzleFlowRate = nozzleFlowRate;
+        int maxId = -1;
+        for (Zone zone : zones) maxId = Math.max(maxId, zone.getId());
+        indexOfZone = new int[maxId + 1];
+        zoneAt = new Zone[zones.size() + 1];
+        double[] x = new double[zones.size() + 1];
+        double[] y = new double[zones.size() + 1];
+        for (int i = 0; i < zones.size(); i++) {
+            Zone zone = zones.get(i);
+            indexOfZone[zone.getId()] = i + 1;
+            zoneAt[i + 1] = zone;
+            x[i + 1] = zone.getCenterX();
+            y[i + 1] = zone.getCenterY();
+        }
+        travelTime = new double[x.length][x.length];
+        for (int i = 0; i < x.length; i++) {
+            for (int j = i + 1; j < x.length; j++) {
+                travelTime[i][j] = travelTime[j][i] = Math.hypot(x[i] - x[j], y[i] - y[j]) / cruiseSpeed;
+            }
+        }
+    }
+
+    /**
+     * Returns the flying time between two zone centers.
+     *
+     * @param from the zone flown from
+     * @param to the zone flown to
+     * @return the time in seconds
+     */
+    public double travelTime(Zone from, Zone to) {
+        int i = indexOf(from), j = indexOf(to);
+        if (i != HOME && j != HOME) return travelTime[i][j];
+        return to.distanceFrom(from.getCenterX(), from.getCenterY()) / cruiseSpeed;
+    }
+
+    /**
+     * Returns the flying time from a zone center to home base.
+     *
+     * @param zone the zone
+     * @return the time in seconds
+     */
+    public double travelTimeHome(Zone zone) {
+        int i = indexOf(zone);
+        return i != HOME ? travelTime[i][HOME] : zone.getDistanceToHomeBase() / cruiseSpeed;
+    }
+
+    /**
+     * Plans a tour from a drone's position through some of the candidate events and back home.
+     *
+     * @param x the drone's x-coordinate
+     * @param y the drone's y-coordinate
+     * @param batteryLife the drone's remaining battery in seconds; the whole tour must take less
+     * @param agent the litres left in the drone's tank
+     * @param candidates the events the tour may visit
+     * @return the events to visit, in order; empty if none can be reached and left in time
+     */
+    public List<FireEvent> plan(int x, int y, double batteryLife, int agent, List<FireEvent> candidates) {
+        List<FireEvent> tour = new ArrayList<>();
+        if (agent <= 0) return tour;
+        List<FireEvent> remaining = new ArrayList<>(candidates);
+        double[] current = evaluate(x, y, tour, batteryLife, agent);
+        if (current == null) return tour; // Not even enough battery to get home
+        while (current[1] < agent && !remaining.isEmpty()) {
+            int bestCandidate = -1, bestPosition = -1;
+            double bestRate = 0;
+            double[] best = null;
+            for (int c = 0; c < remaining.size(); c++) {
+                for (int position = 0; position <= tour.size(); position++) {
+                    tour.add(position, remaining.get(c));
+                    double[] tried = evaluate(x, y, tour, batteryLife, agent);
+                    tour.remove(position);
+                    if (tried == null) continue;
+                    double gained = tried[1] - current[1];
+                    if (gained <= 0) continue;
+                    double rate = gained / Math.max(tried[0] - current[0], 1e-9);
+                    if (rate > bestRate) {
+                        bestRate = rate;
+                        bestCandidate = c;
+                        bestPosition = position;
+                        best = tried;
+                    }
+                }
+            }
+            if (best == null) break;
+            tour.add(bestPosition, remaining.remove(bestCandidate));
+            current = best;
+        }
+        twoOpt(x, y, tour, batteryLife, agent, current);
+        return tour;
+    }
+
+    /**
+     * Returns how long a tour takes, including the flight home.
+     *
+     * @param x the drone's x-coordinate
+     * @param y the drone's y-coordinate
+     * @param tour the events to visit, in order
+     * @param agent the litres in the drone's tank at the start
+     * @return the time in seconds
+     */
+    public double tourTime(int x, int y, List<FireEvent> tour, int agent) {
+        double[] result = evaluate(x, y, tour, Double.POSITIVE_INFINITY, agent);
+        return result == null ? Double.POSITIVE_INFINITY : result[0];
+    }
+
+    /**
+     * Reverses stretches of the tour while that shortens it and delivers as much.
+     */
+    private void twoOpt(int x, int y, List<FireEvent> tour, double batteryLife, int agent, double[] current) {
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 0; i < tour.size() - 1; i++) {
+                for (int j = i + 1; j < tour.size(); j++) {
+                    Collections.reverse(tour.subList(i, j + 1));
+                    double[] tried = evaluate(x, y, tour, batteryLife, agent);
+                    if (tried != null && tried[1] >= current[1] && tried[0] < current[0] - 1e-9) {
+                        current = tried;
+                        improved = true;
+                    } else {
+                        Collections.reverse(tour.subList(i, j + 1));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Times a tour and totals the litres it delivers.
+     *
+     * @return {seconds, litres}, or null if the tour does not fit in the battery or
+     *         reaches a stop with an empty tank
+     */
+    private double[] evaluate(int x, int y, List<FireEvent> tour, double batteryLife, int agent) {
+        double time = 0;
+        int left = agent;
+        Zone previous = null;
+        for (FireEvent event : tour) {
+            if (left <= 0) return null;
+            Zone zone = zoneOf(event);
+            time += previous == null ? zone.distanceFrom(x, y) / cruiseSpeed : travelTime(previous, zone);
+            int dropped = Math.min(event.getLitres(), left);
+            time += DROP_OVERHEAD + dropped / nozzleFlowRate;
+            left -= dropped;
+            previous = zone;
+        }
+        time += previous == null ? Math.hypot(x, y) / cruiseSpeed : travelTimeHome(previous);
+        if (time >= batteryLife) return null;
+        return new double[]{time, agent - left};
+    }
+
+    /**
+     * Returns the zone an event is in: the planner's zone with its id, or else the zone it carries.
+     */
+    private Zone zoneOf(FireEvent event) {
+        int id = event.getZoneId();
+        int i = id >= 0 && id < indexOfZone.length ? indexOfZone[id] : HOME;
+        return i != HOME ? zoneAt[i] : event.getZone();
+    }
+
+    private int indexOf(Zone zone) {
+        int id = zone.getId();
+        int i = id >= 0 && id < indexOfZone.length ? indexOfZone[id] : HOME;
+        return i != HOME && zoneAt[i] == zone ? i : HOME;
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how many bytes the RPC transport allocates per message.
+ * A drone client sends requests to a Scheduler with no zones, and the bytes allocated by each
+ * Scheduler stage and by the client are read from the JVM's per-thread allocation counters.
+ * Two round trips are measured: STOP_?, which carries no arguments and a boolean reply, and an
+ * ADD_FIRE_EVENT followed by the getNextFireEvent that hands the same event back, so a fire event
+ * is encoded and decoded once in each direction. The execute stage's figure for the second also
+ * covers the Scheduler queueing, recording and dispatching the event, not just the transport, and
+ * the Scheduler's log lines, which are still built while the benchmark discards its output.
+ *
+ * Usage: {@code java TransportBenchmark [messages]}
+ */
+public class TransportBenchmark {
+    private static final int WARMUP_MESSAGES = 5000;
+
+    /**
+     * One round trip of the workload being measured.
+     */
+    private interface RoundTrip {
+        void run(RpcClient client) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // The Scheduler logs every reply; keep that out of the terminal
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Scheduler scheduler = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, 900, SimulationObserver.NONE, new MetricsLogger());
+        Thread receiver = SimulationThreads.startDaemon("Scheduler-Receive", scheduler);
+        RpcClient client = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_DRONE, 1);
+        // A distinct event per round trip, made up front, as the metrics logger keeps a record per event
+        Zone zone = new Zone(3, 0, 0, 700, 600);
+        FireEvent[] events = new FireEvent[WARMUP_MESSAGES + messages];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new FireEvent("14:03:15", i + 1, "FIRE_DETECTED", "HIGH", "NONE", zone, 0, FireEvent.FireEventState.ACTIVE);
+        }
+        int[] nextEvent = {0};
+
+        Map<String, RoundTrip> workloads = new LinkedHashMap<>();
+        workloads.put("STOP_?", rpc -> rpc.call("STOP_?"));
+        workloads.put("ADD_FIRE_EVENT + getNextFireEvent", rpc -> {
+            rpc.call("ADD_FIRE_EVENT", events[nextEvent[0]++]);
+            rpc.call("getNextFireEvent", 0, 0);
+        });
+        for (RoundTrip roundTrip : workloads.values()) {
+            for (int i = 0; i < WARMUP_MESSAGES; i++) roundTrip.run(client);
+        }
+
+        Map<String, Thread> measured = new LinkedHashMap<>();
+        measured.put("receive", receiver);
+        for (Thread stage : scheduler.getStageThreads()) measured.put(stage.getName().replace("Scheduler-", "").toLowerCase(), stage);
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("RpcClient-1")) measured.put("client receiver", thread);
+        }
+        measured.put("client caller", Thread.currentThread());
+        List<Thread> order = new ArrayList<>(measured.values());
+
+        List<String> report = new ArrayList<>();
+        for (Map.Entry<String, RoundTrip> workload : workloads.entrySet()) {
+            long[] before = new long[order.size()];
+            for (int i = 0; i < order.size(); i++) before[i] = threads.getThreadAllocatedBytes(idOf(order.get(i)));
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) workload.getValue().run(client);
+            long elapsed = System.nanoTime() - start;
+            long[] after = new long[order.size()];
+            for (int i = 0; i < order.size(); i++) after[i] = threads.getThreadAllocatedBytes(idOf(order.get(i)));
+
+            report.add(String.format("%s: %d round trips in %d ms (%.1f us each)", workload.getKey(), messages,
+                    elapsed / 1_000_000, elapsed / 1000.0 / messages));
+            int i = 0;
+            for (String stage : measured.keySet()) {
+                report.add(String.format("  %-16s %8.1f bytes/round trip", stage, (double) (after[i] - before[i]) / messages));
+                i++;
+            }
+        }
+
+        System.setOut(console);
+        for (String line : report) System.out.println(line);
+        client.close();
+        System.exit(0);
+    }
+
+    /**
+     * Returns a thread's id. Thread.getId is deprecated from JDK 19, but its replacement,
+     * Thread.threadId, does not exist on the JDK 17 the simulation is built with.
+     *
+     * @param thread the thread
+     * @return the thread's id
+     */
+    @SuppressWarnings("deprecation")
+    private static long idOf(Thread thread) {
+        return thread.getId();
+    }
+}
@@ -0,0 +1,439 @@
+import java.net.ProtocolException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact binary encoding for every RPC exchanged between the Scheduler, the drones and
+ * the Fire Incident Subsystems. Replaces Java serialization of {@code List<Object>} requests.
+ *
+ * Every datagram starts with a fixed header:
+ * <pre>
+ *   byte version | byte opcode | byte senderType | int senderId | int correlationId
+ * </pre>
+ * followed by zero or more tagged values (one tag byte, then a fixed-width primitive).
+ * The sender type and id let a single Scheduler port tell every drone and zone apart.
+ * Requests carry the method arguments; responses carry exactly one value.
+ * Most requests go from drones and zones to the Scheduler; REASSIGN goes the other way,
+ * and the drone answers it like any other request. STEAL_EVENT goes from one Scheduler shard
+ * to another.
+ * Fire events are written field by field, so a request is a few dozen bytes and decoding
+ * needs no reflection.
+ */
+public final class WireProtocol {
+    public static final byte VERSION = 4;
+    public static final int HEADER_SIZE = 11;
+    public static final int MAX_DATAGRAM_SIZE = 1472; // Fits in a single Ethernet frame
+
+    // Request opcodes, one per RPC method name
+    public static final byte ADD_FIRE_EVENT = 1;
+    public static final byte SET_EVENTS_LOADED = 2;
+    public static final byte FLIGHT_LEG = 3;
+    public static final byte CALCULATE_DISTANCE_TO_HOME_BASE = 4;
+    public static final byte GET_NEXT_FIRE_EVENT = 5;
+    public static final byte CALCULATE_TRAVEL_TIME = 6;
+    public static final byte UPDATE_FIRE_STATUS = 7;
+    public static final byte GET_ADDITIONAL_FIRE_EVENT = 8;
+    public static final byte HANDLE_DRONE_FAULT = 9;
+    public static final byte STOP = 10;
+    public static final byte REASSIGN = 11; // Scheduler to drone
+    public static final byte ADD_FIRE_EVENTS = 12;
+    public static final byte STEAL_EVENT = 13; // Scheduler shard to scheduler shard
+    public static final byte HEARTBEAT = 14;
+    public static final byte REQUEUE_FIRE_EVENT = 15;
+
+    // Response opcode; the correlation id matches the request being answered
+    public static final byte RESPONSE = (byte) 0x80;
+
+    // Sender types
+    public static final byte SENDER_DRONE = 0;
+    public static final byte SENDER_ZONE = 1;
+    public static final byte SENDER_SCHEDULER = 2;
+
+    private static final String[] METHOD_NAMES = {
+            null,
+            "ADD_FIRE_EVENT",
+            "SET_EVENTS_LOADED",
+            "flightLeg",
+            "calculateDistanceToHomeBase",
+            "getNextFireEvent",
+            "calculateTravelTime",
+            "updateFireStatus",
+            "getAdditionalFireEvent",
+            "handleDroneFault",
+            "STOP_?",
+            "REASSIGN",
+            "ADD_FIRE_EVENTS",
+            "STEAL_EVENT",
+            "heartbeat",
+            "requeueFireEvent",
+    };
+
+    // Value tags
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_BOOLEAN = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_DOUBLE = 3;
+    private static final byte TAG_STRING = 4;
+    private static final byte TAG_FIRE_EVENT = 5;
+
+    // Code tables for the enumerated FireEvent string fields; anything else is sent as a string
+    private static final String[] EVENT_TYPES = {"FIRE_DETECTED", "DRONE_REQUEST"};
+    private static final String[] SEVERITIES = {"LOW", "MODERATE", "HIGH"};
+    private static final String[] FAULTS = {"NONE", "ARRIVAL", "NOZZLE", "PACKET_LOSS"};
+    private static final byte UNCODED = -1;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private WireProtocol() {
+    }
+
+    /**
+     * A decoded datagram: either a request naming a method or a response carrying one value.
+     */
+    public static final class Message {
+        private final byte opcode;
+        private final byte senderType;
+        private final int senderId;
+        private final int correlationId;
+        private final List<Object> args;
+
+        private Message(byte opcode, byte senderType, int senderId, int correlationId, List<Object> args) {
+            this.opcode = opcode;
+            this.senderType = senderType;
+            this.senderId = senderId;
+            this.correlationId = correlationId;
+            this.args = args;
+        }
+
+        public byte getOpcode() { return opcode; }
+
+        public byte getSenderType() { return senderType; }
+
+        public int getSenderId() { return senderId; }
+
+        public int getCorrelationId() { return correlationId; }
+
+        public boolean isResponse() { return opcode == RESPONSE; }
+
+        /**
+         * Returns the method name of a request.
+         *
+         * @return the method name, or null for a response
+         */
+        public String getMethodName() { return isResponse() ? null : methodName(opcode); }
+
+        /**
+         * Returns the arguments of a request, or the single value of a response.
+         *
+         * @return an unmodifiable list of decoded values
+         */
+        public List<Object> getArgs() { return args; }
+
+        /**
+         * Returns the value carried by a response.
+         *
+         * @return the decoded value, possibly null
+         */
+        public Object getValue() { return args.isEmpty() ? null : args.get(0); }
+
+        @Override
+        public String toString() {
+            if (isResponse()) return String.valueOf(getValue());
+            List<Object> list = new ArrayList<>();
+            list.add(getMethodName());
+            list.addAll(args);
+            list.add(senderId);
+            return list.toString();
+        }
+    }
+
+    /**
+     * Returns the opcode for an RPC method name.
+     *
+     * @param methodName the method name used by the drones and FIS
+     * @return the matching opcode
+     * @throws IllegalArgumentException if the method is not part of the protocol
+     */
+    public static byte opcodeFor(String methodName) {
+        for (int i = 1; i < METHOD_NAMES.length; i++) {
+            if (METHOD_NAMES[i].equals(methodName)) return (byte) i;
+        }
+        throw new IllegalArgumentException("Unknown RPC method: " + methodName);
+    }
+
+    /**
+     * Returns the RPC method name for a request opcode.
+     *
+     * @param opcode the request opcode
+     * @return the method name, or null if the opcode is unknown
+     */
+    public static String methodName(byte opcode) {
+        return opcode > 0 && opcode < METHOD_NAMES.length ? METHOD_NAMES[opcode] : null;
+    }
+
+    /**
+     * Writes a request into the buffer at its current position.
+     *
+     * @param buf the destination buffer
+     * @param methodName the method to invoke on the receiver
+     * @param senderType one of {@link #SENDER_DRONE}, {@link #SENDER_ZONE} or {@link #SENDER_SCHEDULER}
+     * @param senderId the drone or zone id of the sender
+     * @param correlationId the id the response will echo
+     * @param args the method arguments
+     */
+    public static void encodeRequest(ByteBuffer buf, String methodName, byte senderType, int senderId,
+                                     int correlationId, Object... args) {
+        writeHeader(buf, opcodeFor(methodName), senderType, senderId, correlationId);
+        for (Object arg : args) {
+            writeValue(buf, arg);
+        }
+    }
+
+    /**
+     * Writes a response into the buffer at its current position.
+     *
+     * @param buf the destination buffer
+     * @param senderType the sender type of the responder
+     * @param senderId the id of the responder
+     * @param correlationId the correlation id of the request being answered
+     * @param value the result value, possibly null
+     */
+    public static void encodeResponse(ByteBuffer buf, byte senderType, int senderId, int correlationId, Object value) {
+        writeHeader(buf, RESPONSE, senderType, senderId, correlationId);
+        writeValue(buf, value);
+    }
+
+    /**
+     * Encodes a request into a new byte array sized to fit.
+     *
+     * @see #encodeRequest(ByteBuffer, String, byte, int, int, Object...)
+     */
+    public static byte[] encodeRequest(String methodName, byte senderType, int senderId, int correlationId, Object... args) {
+        ByteBuffer buf = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        encodeRequest(buf, methodName, senderType, senderId, correlationId, args);
+        return toArray(buf);
+    }
+
+    /**
+     * Encodes a response into a new byte array sized to fit.
+     *
+     * @see #encodeResponse(ByteBuffer, byte, int, int, Object)
+     */
+    public static byte[] encodeResponse(byte senderType, int senderId, int correlationId, Object value) {
+        ByteBuffer buf = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        encodeResponse(buf, senderType, senderId, correlationId, value);
+        return toArray(buf);
+    }
+
+    /**
+     * Returns how many of the values, starting at {@code from}, fit after the header of a single
+     * request datagram. Used to pack batches up to {@link #MAX_DATAGRAM_SIZE}.
+     *
+     * @param values the values to pack
+     * @param from the index of the first value to pack
+     * @return the number of values that fit
+     */
+    public static int countFitting(List<?> values, int from) {
+        ByteBuffer buf = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        buf.position(HEADER_SIZE);
+        int count = 0;
+        try {
+            for (int i = from; i < values.size(); i++) {
+                writeValue(buf, values.get(i));
+                count++;
+            }
+        } catch (BufferOverflowException e) {
+            // The last value did not fit
+        }
+        return count;
+    }
+
+    /**
+     * Decodes one datagram.
+     *
+     * @param data the array holding the datagram
+     * @param offset the offset of the first byte
+     * @param length the datagram length
+     * @return the decoded message
+     * @throws ProtocolException if the datagram is truncated or malformed
+     */
+    public static Message decode(byte[] data, int offset, int length) throws ProtocolException {
+        return decode(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Decodes one datagram from the buffer's position up to its limit.
+     *
+     * @param buf the buffer holding the datagram
+     * @return the decoded message
+     * @throws ProtocolException if the datagram is truncated or malformed
+     */
+    public static Message decode(ByteBuffer buf) throws ProtocolException {
+        try {
+            byte version = buf.get();
+            if (version != VERSION) {
+                throw new ProtocolException("Unsupported protocol version " + version);
+            }
+            byte opcode = buf.get();
+            if (opcode != RESPONSE && methodName(opcode) == null) {
+                throw new ProtocolException("Unknown opcode " + opcode);
+            }
+            byte senderType = buf.get();
+            int senderId = buf.getInt();
+            int correlationId = buf.getInt();
+            List<Object> args = new ArrayList<>(4);
+            while (buf.hasRemaining()) {
+                args.add(readValue(buf));
+            }
+            return new Message(opcode, senderType, senderId, correlationId, Collections.unmodifiableList(args));
+        } catch (BufferUnderflowException e) {
+            throw new ProtocolException("Truncated datagram");
+        }
+    }
+
+    private static void writeHeader(ByteBuffer buf, byte opcode, byte senderType, int senderId, int correlationId) {
+        buf.put(VERSION).put(opcode).put(senderType).putInt(senderId).putInt(correlationId);
+    }
+
+    private static byte[] toArray(ByteBuffer buf) {
+        byte[] data = new byte[buf.position()];
+        buf.flip();
+        buf.get(data);
+        return data;
+    }
+
+    /**
+     * Writes one tagged value at the buffer's position, as in a request's arguments.
+     * Also used by {@link SchedulerJournal} to write its records.
+     *
+     * @param buf the destination buffer
+     * @param value a Boolean, Integer, Double, String, FireEvent or null
+     * @throws java.nio.BufferOverflowException if the value does not fit
+     */
+    public static void writeValue(ByteBuffer buf, Object value) {
+        if (value == null) {
+            buf.put(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            buf.put(TAG_BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof Integer) {
+            buf.put(TAG_INT).putInt((Integer) value);
+        } else if (value instanceof Double) {
+            buf.put(TAG_DOUBLE).putDouble((Double) value);
+        } else if (value instanceof String) {
+            buf.put(TAG_STRING);
+            writeString(buf, (String) value);
+        } else if (value instanceof FireEvent) {
+            buf.put(TAG_FIRE_EVENT);
+            writeFireEvent(buf, (FireEvent) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported RPC value type: " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads one tagged value written by {@link #writeValue(ByteBuffer, Object)}.
+     *
+     * @param buf the buffer positioned at the value
+     * @return the value, possibly null
+     * @throws ProtocolException if the tag is unknown
+     * @throws BufferUnderflowException if the value is truncated
+     */
+    public static Object readValue(ByteBuffer buf) throws ProtocolException {
+        byte tag = buf.get();
+        switch (tag) {
+            case TAG_NULL: return null;
+            case TAG_BOOLEAN: return buf.get() != 0;
+            case TAG_INT: return buf.getInt();
+            case TAG_DOUBLE: return buf.getDouble();
+            case TAG_STRING: return readString(buf);
+            case TAG_FIRE_EVENT: return readFireEvent(buf);
+            default: throw new ProtocolException("Unknown value tag " + tag);
+        }
+    }
+
+    /*
+     * FireEvent layout:
+     *   int time (second of day) | int zoneId | byte eventType | byte severity | byte fault
+     *   | int litres | byte state | byte hasZone [| int x1 | int y1 | int x2 | int y2]
+     * Times that are not HH:mm:ss and uncoded enum strings are followed by the raw string.
+     */
+    private static void writeFireEvent(ByteBuffer buf, FireEvent event) {
+        int seconds = event.getSecondOfDay();
+        buf.putInt(seconds);
+        if (seconds < 0) writeString(buf, event.getTime());
+        buf.putInt(event.getZoneId());
+        writeCode(buf, EVENT_TYPES, event.getEventType());
+        writeCode(buf, SEVERITIES, event.getSeverity());
+        writeCode(buf, FAULTS, event.getFault());
+        buf.putInt(event.getLitres());
+        buf.put((byte) event.getCurrentState().ordinal());
+        Zone zone = event.getZone();
+        if (zone == null) {
+            buf.put((byte) 0);
+        } else {
+            buf.put((byte) 1).putInt(zone.getX1()).putInt(zone.getY1()).putInt(zone.getX2()).putInt(zone.getY2());
+        }
+    }
+
+    private static FireEvent readFireEvent(ByteBuffer buf) throws ProtocolException {
+        int seconds = buf.getInt();
+        String time = seconds < 0 ? readString(buf) : LocalTime.ofSecondOfDay(seconds).format(TIME_FORMAT);
+        int zoneId = buf.getInt();
+        String eventType = readCode(buf, EVENT_TYPES);
+        String severity = readCode(buf, SEVERITIES);
+        String fault = readCode(buf, FAULTS);
+        int litres = buf.getInt();
+        byte state = buf.get();
+        if (state < 0 || state >= FireEvent.FireEventState.values().length) {
+            throw new ProtocolException("Unknown fire event state " + state);
+        }
+        Zone zone = null;
+        if (buf.get() != 0) {
+            zone = new Zone(zoneId, buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt());
+        }
+        return new FireEvent(time, zoneId, eventType, severity, fault, zone,
+                litres, FireEvent.FireEventState.values()[state]);
+    }
+
+    private static void writeCode(ByteBuffer buf, String[] table, String value) {
+        for (int i = 0; i < table.length; i++) {
+            if (table[i].equals(value)) {
+                buf.put((byte) i);
+                return;
+            }
+        }
+        buf.put(UNCODED);
+        writeString(buf, value);
+    }
+
+    private static String readCode(ByteBuffer buf, String[] table) throws ProtocolException {
+        byte code = buf.get();
+        if (code == UNCODED) return readString(buf);
+        if (code < 0 || code >= table.length) throw new ProtocolException("Unknown code " + code);
+        return table[code];
+    }
+
+    private static void writeString(ByteBuffer buf, String value) {
+        if (value == null) {
+            buf.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        short length = buf.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
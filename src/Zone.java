@@ -1,21 +1,102 @@
+import java.io.Serializable;
 import java.util.List;
 
-public class Zone {
+/**
+ * A rectangular fire zone read from the zone file.
+ * The center and the distance from the center to home base (0,0) are worked out once when the
+ * zone is created, so travel calculations read fields instead of recomputing them.
+ */
+public class Zone implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final int id;
     private final int x1, x2, y1, y2;
+    private final int centerX, centerY;
+    private final double distanceToHomeBase;
 
+    /**
+     * Constructs a new Zone.
+     *
+     * @param id the zone id
+     * @param x1 the x-coordinate of the zone's starting corner
+     * @param y1 the y-coordinate of the zone's starting corner
+     * @param x2 the x-coordinate of the zone's ending corner
+     * @param y2 the y-coordinate of the zone's ending corner
+     */
     public Zone(int id, int x1, int y1, int x2, int y2) {
         this.id = id;
         this.x1 = x1;
         this.y1 = y1;
         this.x2 = x2;
         this.y2 = y2;
+        this.centerX = (x1 + x2) / 2;
+        this.centerY = (y1 + y2) / 2;
+        this.distanceToHomeBase = Math.hypot(centerX, centerY);
     }
 
     public int getId() {
         return id;
     }
+
+    public int getX1() { return x1; }
+
+    public int getY1() { return y1; }
+
+    public int getX2() { return x2; }
+
+    public int getY2() { return y2; }
+
+    /**
+     * Returns the x-coordinate of the zone center, rounded towards zero.
+     *
+     * @return the center x-coordinate
+     */
+    public int getCenterX() { return centerX; }
+
+    /**
+     * Returns the y-coordinate of the zone center, rounded towards zero.
+     *
+     * @return the center y-coordinate
+     */
+    public int getCenterY() { return centerY; }
+
+    /**
+     * Returns the straight-line distance from the zone center to home base at (0,0).
+     *
+     * @return the distance in meters
+     */
+    public double getDistanceToHomeBase() { return distanceToHomeBase; }
+
+    /**
+     * Returns the straight-line distance from a point to the zone center.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return the distance in meters
+     */
+    public double distanceFrom(double x, double y) {
+        return Math.hypot(centerX - x, centerY - y);
+    }
+
     public List<List<Integer>> getCoords() {
         return List.of(List.of(x1, y1), List.of(x2, y2));
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Zone)) return false;
+        Zone other = (Zone) o;
+        return id == other.id && x1 == other.x1 && y1 == other.y1 && x2 == other.x2 && y2 == other.y2;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((((id * 31 + x1) * 31 + y1) * 31 + x2) * 31) + y2;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x1 + "," + y1 + ") to (" + x2 + "," + y2 + ")";
+    }
 }
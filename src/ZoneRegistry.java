@@ -0,0 +1,51 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The zones read from the zone file, indexed by zone id.
+ * The Scheduler builds it once while reading the zone file; after that, looking up a zone's
+ * geometry is an array read.
+ */
+public class ZoneRegistry {
+    private volatile Zone[] zones = new Zone[16];
+
+    /**
+     * Adds a zone, replacing any zone registered with the same id.
+     *
+     * @param zone the zone
+     * @throws IllegalArgumentException if the zone id is negative
+     */
+    public synchronized void register(Zone zone) {
+        int id = zone.getId();
+        if (id < 0) throw new IllegalArgumentException("Zone ids must not be negative: " + id);
+        Zone[] current = zones;
+        if (id >= current.length) current = Arrays.copyOf(current, Math.max(current.length * 2, id + 1));
+        current[id] = zone;
+        zones = current; // Publish the write
+    }
+
+    /**
+     * Returns the zone with the given id.
+     *
+     * @param id the zone id
+     * @return the zone, or null if no zone has that id
+     */
+    public Zone get(int id) {
+        Zone[] current = zones;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * Returns every registered zone.
+     *
+     * @return the zones, ordered by id
+     */
+    public List<Zone> getZones() {
+        List<Zone> found = new ArrayList<>();
+        for (Zone zone : zones) {
+            if (zone != null) found.add(zone);
+        }
+        return found;
+    }
+}
@@ -0,0 +1,151 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssignmentSolverTest {
+
+    /**
+     * Returns the cheapest total by trying every assignment; rows beyond the column count may be skipped.
+     */
+    private static double bruteForce(double[][] cost, int row, boolean[] used) {
+        if (row == cost.length) return 0;
+        int freeColumns = 0;
+        for (boolean u : used) if (!u) freeColumns++;
+        double best = cost.length - row > freeColumns ? bruteForce(cost, row + 1, used) : Double.POSITIVE_INFINITY;
+        for (int column = 0; column < used.length; column++) {
+            if (used[column]) continue;
+            used[column] = true;
+            best = Math.min(best, cost[row][column] + bruteForce(cost, row + 1, used));
+            used[column] = false;
+        }
+        return best;
+    }
+
+    private static void assertValid(double[][] cost, int[] assignment) {
+        int columns = cost[0].length;
+        boolean[] taken = new boolean[columns];
+        int matched = 0;
+        for (int column : assignment) {
+            if (column < 0) continue;
+            assertFalse(taken[column], "Column " + column + " was assigned twice.");
+            taken[column] = true;
+            matched++;
+        }
+        assertEquals(Math.min(cost.length, columns), matched);
+    }
+
+    @Test
+    public void testNearestDroneIsNotAlwaysBest() {
+        // Drone 0 is nearest to both fires; sending it to fire 0 makes drone 1 fly much further
+        double[][] cost = {
+                {1, 2},
+                {10, 100},
+        };
+        assertArrayEquals(new int[]{1, 0}, AssignmentSolver.solve(cost));
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 500; trial++) {
+            int rows = 1 + random.nextInt(6);
+            int columns = 1 + random.nextInt(6);
+            double[][] cost = new double[rows][columns];
+            boolean integers = random.nextBoolean(); // Small integer costs give many ties
+            for (double[] row : cost) {
+                for (int column = 0; column < columns; column++) {
+                    row[column] = integers ? random.nextInt(4) : random.nextDouble() * 1000;
+                }
+            }
+            int[] assignment = AssignmentSolver.solve(cost);
+            assertValid(cost, assignment);
+            assertEquals(bruteForce(cost, 0, new boolean[columns]), AssignmentSolver.totalCost(cost, assignment),
+                    AssignmentSolver.TOLERANCE, "Trial " + trial + ": " + rows + " x " + columns);
+        }
+    }
+
+    @Test
+    public void testFewDronesManyFires() {
+        // Wide enough that columns no row ranks among its cheapest are dropped before solving
+        Random random = new Random(7);
+        double[][] cost = new double[3][200];
+        for (double[] row : cost) {
+            for (int column = 0; column < 200; column++) row[column] = 100 + random.nextInt(900);
+        }
+        cost[0][150] = 1;
+        cost[1][20] = 2;
+        cost[2][199] = 3;
+        int[] assignment = AssignmentSolver.solve(cost);
+        assertArrayEquals(new int[]{150, 20, 199}, assignment);
+    }
+
+    @Test
+    public void testMoreDronesThanFires() {
+        double[][] cost = {
+                {50},
+                {5},
+                {20},
+        };
+        assertArrayEquals(new int[]{-1, 0, -1}, AssignmentSolver.solve(cost));
+    }
+
+    @Test
+    public void testEqualCosts() {
+        // Every drone at home base and every fire the same distance away
+        double[][] cost = new double[50][50];
+        for (double[] row : cost) Arrays.fill(row, 60);
+        int[] assignment = AssignmentSolver.solve(cost);
+        assertValid(cost, assignment);
+        assertEquals(3000, AssignmentSolver.totalCost(cost, assignment), AssignmentSolver.TOLERANCE);
+    }
+
+    @Test
+    public void testAuctionAgreesWithAugmentingPaths() {
+        // Close enough to square to be auctioned; the augmenting paths give the exact optimum
+        Random random = new Random(11);
+        for (int[] shape : new int[][]{{40, 40}, {60, 90}, {90, 60}}) {
+            double[][] cost = new double[shape[0]][shape[1]];
+            for (double[] row : cost) {
+                for (int column = 0; column < shape[1]; column++) row[column] = random.nextDouble() * 3000;
+            }
+            int[] assignment = AssignmentSolver.solve(cost);
+            assertValid(cost, assignment);
+            double[][] narrow = cost;
+            if (shape[0] > shape[1]) {
+                narrow = new double[shape[1]][shape[0]];
+                for (int row = 0; row < shape[0]; row++) {
+                    for (int column = 0; column < shape[1]; column++) narrow[column][row] = cost[row][column];
+                }
+            }
+            assertEquals(AssignmentSolver.totalCost(narrow, AssignmentSolver.solveNarrow(narrow)),
+                    AssignmentSolver.totalCost(cost, assignment), AssignmentSolver.TOLERANCE, shape[0] + " x " + shape[1]);
+        }
+    }
+
+    @Test
+    public void testTallProblemIsNotPaddedToItsLongSide() {
+        // 5,000 drones at base and 100 fires; padded to 5,000 x 5,000 this took over ten seconds
+        Random random = new Random(3);
+        double[] fireDistance = new double[100];
+        for (int column = 0; column < 100; column++) fireDistance[column] = 100 + random.nextInt(5000);
+        double[][] cost = new double[5000][];
+        for (int row = 0; row < 5000; row++) cost[row] = fireDistance.clone();
+        long start = System.nanoTime();
+        int[] assignment = AssignmentSolver.solve(cost);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        assertValid(cost, assignment);
+        double total = 0;
+        for (double distance : fireDistance) total += distance;
+        assertEquals(total, AssignmentSolver.totalCost(cost, assignment), AssignmentSolver.TOLERANCE);
+        assertTrue(elapsed < 3000, "Solving took " + elapsed + " ms");
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, AssignmentSolver.solve(new double[0][0]).length);
+        assertArrayEquals(new int[]{-1, -1}, AssignmentSolver.solve(new double[2][0]));
+    }
+}
@@ -0,0 +1,113 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchingObserverTest {
+
+    /**
+     * Records what it is shown, one line per update.
+     */
+    private static final class Recorder implements SimulationObserver {
+        final List<String> updates = new ArrayList<>();
+        final List<String> threads = new ArrayList<>();
+
+        @Override
+        public synchronized void zonesLoaded(List<Zone> zones) {
+            record("zones " + zones.size());
+        }
+
+        @Override
+        public synchronized void droneUpdated(int droneId, int x, int y, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+            record("drone " + droneId + " at " + x + "," + y + " " + state);
+        }
+
+        @Override
+        public synchronized void flightLegStarted(int droneId, FlightLeg leg, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+            double[] end = leg.positionAt(leg.getEndMillis());
+            record("drone " + droneId + " leg to " + (int) end[0] + "," + (int) end[1] + " " + state);
+        }
+
+        @Override
+        public synchronized void fireEventUpdated(FireEvent event) {
+            record("fire " + event.getZoneId() + " " + event.getCurrentState());
+        }
+
+        private void record(String update) {
+            updates.add(update);
+            threads.add(Thread.currentThread().getName());
+        }
+
+        synchronized List<String> updates() {
+            return new ArrayList<>(updates);
+        }
+    }
+
+    private static FireEvent event(int zoneId) {
+        return new FireEvent("12:00:00", zoneId, "FIRE_DETECTED", "LOW", "NONE", null, 0, FireEvent.FireEventState.ACTIVE);
+    }
+
+    @Test
+    public void testCoalescesDroneMovesBetweenFlushes() {
+        Recorder recorder = new Recorder();
+        BatchingObserver observer = new BatchingObserver(recorder, 60_000); // Flushed by hand
+        observer.zonesLoaded(List.of(new Zone(1, 0, 0, 100, 100)));
+        for (int step = 1; step <= 50; step++) observer.droneUpdated(1, step, 0, DroneSubsystem.DroneState.ON_ROUTE, 14, 1800 - step);
+        observer.droneUpdated(2, 5, 5, DroneSubsystem.DroneState.IDLE, 14, 1800);
+        FireEvent first = event(1), second = event(2);
+        observer.fireEventUpdated(first);
+        observer.fireEventUpdated(second);
+        assertTrue(recorder.updates().isEmpty(), "Nothing reaches the delegate until a flush.");
+
+        observer.flush();
+        List<String> updates = recorder.updates();
+        assertEquals("zones 1", updates.get(0));
+        assertEquals(List.of("fire 1 ACTIVE", "fire 2 ACTIVE"), updates.subList(1, 3), "Fire events keep their order.");
+        assertEquals(5, updates.size(), "Each drone is delivered once, at its latest position.");
+        assertTrue(updates.contains("drone 1 at 50,0 ON_ROUTE"));
+        assertTrue(updates.contains("drone 2 at 5,5 IDLE"));
+
+        observer.droneUpdated(1, 60, 0, DroneSubsystem.DroneState.DROPPING_AGENT, 4, 1700);
+        observer.close();
+        assertEquals("drone 1 at 60,0 DROPPING_AGENT", recorder.updates().get(5), "Closing delivers what is left.");
+    }
+
+    @Test
+    public void testFlusherDeliversOffTheCallersThread() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        BatchingObserver observer = new BatchingObserver(recorder, 10);
+        observer.droneUpdated(3, 1, 2, DroneSubsystem.DroneState.RETURNING, 0, 100);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (recorder.updates().isEmpty() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(List.of("drone 3 at 1,2 RETURNING"), recorder.updates());
+        synchronized (recorder) {
+            assertEquals("Observer Flusher", recorder.threads.get(0));
+        }
+        observer.close();
+    }
+
+    @Test
+    public void testNoneIgnoresEverything() {
+        SimulationObserver.NONE.zonesLoaded(List.of());
+        SimulationObserver.NONE.droneUpdated(1, 0, 0, DroneSubsystem.DroneState.IDLE, 14, 1800);
+        SimulationObserver.NONE.fireEventUpdated(event(1));
+    }
+
+    @Test
+    public void testLegAndPositionReplaceEachOther() {
+        Recorder recorder = new Recorder();
+        BatchingObserver observer = new BatchingObserver(recorder, 60_000); // Flushed by hand
+        observer.droneUpdated(1, 0, 0, DroneSubsystem.DroneState.IDLE, 14, 1800);
+        observer.flightLegStarted(1, new FlightLeg(1, 3, 0, 0, 500, 0, 0, 30_000), DroneSubsystem.DroneState.ON_ROUTE, 14, 1800);
+        observer.flush();
+        assertEquals(List.of("drone 1 leg to 500,0 ON_ROUTE"), recorder.updates(), "The leg is the drone's latest update.");
+
+        observer.flightLegStarted(1, new FlightLeg(1, 3, 200, 10, 500, 0, 10_000, 20_000), DroneSubsystem.DroneState.ON_ROUTE, 14, 1790);
+        observer.droneUpdated(1, 500, 0, DroneSubsystem.DroneState.DROPPING_AGENT, 14, 1770);
+        observer.close();
+        assertEquals("drone 1 at 500,0 DROPPING_AGENT", recorder.updates().get(1));
+        assertEquals(2, recorder.updates().size());
+    }
+}
@@ -5,6 +5,9 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DroneSubsystemTest {
     private static Scheduler scheduler;
@@ -30,6 +33,13 @@ public class DroneSubsystemTest {
         assertEquals(DroneSubsystem.DroneState.IDLE, idleDrone.getState(),"Drone should start in IDLE state.");
     }
 
+    @Test
+    public void testNullObserverMeansNone() {
+        DroneSubsystem unobserved = new DroneSubsystem(scheduler, 3, 399, null, new MetricsLogger());
+        assertSame(SimulationObserver.NONE, unobserved.observer);
+        assertEquals(DroneSubsystem.DroneState.IDLE, unobserved.getState());
+    }
+
     @Test
     public void testDroneOnRouteState() {
         FireEvent event = new FireEvent("14:03:15", 1, "FIRE_DETECTED", "LOW", "ARRIVAL", fis);
@@ -50,4 +60,87 @@ public class DroneSubsystemTest {
         drone.returnToBase(event);
         assertEquals(DroneSubsystem.DroneState.RETURNING, drone.getState(), "Drone should be RETURNING when its going back to base.");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFlightPublishesLegInsteadOfEverySecond() {
+        AtomicInteger legs = new AtomicInteger();
+        AtomicInteger positions = new AtomicInteger();
+        SimulationObserver counting = new SimulationObserver() {
+            @Override
+            public void zonesLoaded(List<Zone> zones) {
+            }
+
+            @Override
+            public void droneUpdated(int droneId, int x, int y, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+                positions.incrementAndGet();
+            }
+
+            @Override
+            public void flightLegStarted(int droneId, FlightLeg leg, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+                legs.incrementAndGet();
+            }
+
+            @Override
+            public void fireEventUpdated(FireEvent event) {
+            }
+        };
+        DroneSubsystem flying = new DroneSubsystem(scheduler, 2, 299, counting, new MetricsLogger());
+        SimulationClock.set(SimulationClock.realTime(10));
+        try {
+            FireEvent event = new FireEvent("14:03:15", 1, "FIRE_DETECTED", "LOW", "NONE", fis);
+            flying.travelToZoneCenter(20, event);
+        } finally {
+            SimulationClock.set(SimulationClock.realTime(1));
+        }
+        // Twenty seconds of flight used to be twenty position updates
+        assertEquals(1 + flying.getLegCorrections(), legs.get());
+        assertTrue(flying.getLegCorrections() <= 1, "Corrections: " + flying.getLegCorrections());
+        assertEquals(2, positions.get(), "Only the start on the ground and the arrival are sent as positions.");
+    }
+
+    @Test
+    public void testHeadwindMakesTheDroneCorrectItsLeg() {
+        AtomicReference<FlightLeg> lastLeg = new AtomicReference<>();
+        AtomicInteger legs = new AtomicInteger();
+        SimulationObserver watching = new SimulationObserver() {
+            @Override
+            public void zonesLoaded(List<Zone> zones) {
+            }
+
+            @Override
+            public void droneUpdated(int droneId, int x, int y, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+            }
+
+            @Override
+            public void flightLegStarted(int droneId, FlightLeg leg, DroneSubsystem.DroneState state, int remainingAgent, double batteryLife) {
+                legs.incrementAndGet();
+                lastLeg.set(leg);
+            }
+
+            @Override
+            public void fireEventUpdated(FireEvent event) {
+            }
+        };
+        DroneSubsystem flying = new DroneSubsystem(scheduler, 4, 499, watching, new MetricsLogger());
+        // Half the cruise speed against the drone, which flies from the origin to the zone center at (50, 50)
+        flying.setWind(-9 / Math.sqrt(2), -9 / Math.sqrt(2));
+        SimulationClock.set(SimulationClock.realTime(10));
+        long departure, arrival;
+        try {
+            departure = SimulationClock.get().currentTimeMillis();
+            flying.travelToZoneCenter(20, new FireEvent("14:03:15", 1, "FIRE_DETECTED", "LOW", "NONE", fis));
+            arrival = SimulationClock.get().currentTimeMillis();
+        } finally {
+            SimulationClock.set(SimulationClock.realTime(1));
+        }
+        assertTrue(arrival - departure >= 39_000, "The headwind doubles the flight: " + (arrival - departure) + " ms");
+        assertTrue(flying.getLegCorrections() >= 1, "The drone fell behind its leg without correcting it.");
+        assertEquals(1 + flying.getLegCorrections(), legs.get());
+        // The corrected leg has the drone arrive when it really does
+        assertTrue(Math.abs(lastLeg.get().getEndMillis() - arrival) <= 2000,
+                "Leg ends at " + lastLeg.get().getEndMillis() + ", drone arrived at " + arrival);
+        double[] destination = lastLeg.get().positionAt(lastLeg.get().getEndMillis());
+        assertEquals(50.0, destination[0]);
+        assertEquals(50.0, destination[1]);
+    }
+}
@@ -4,7 +4,7 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
-import java.io.*;
+import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
@@ -17,7 +17,6 @@ import java.net.InetAddress;
 class DroneUDPTests {
     private static DatagramSocket socket;
     private static DroneSubsystem drone;
-    private static Scheduler scheduler;
     private static InetAddress localhost;
 
     @BeforeAll
@@ -26,12 +25,11 @@ class DroneUDPTests {
         MapUI mapUI = new MapUI();
         String fireIncidentFile = "src//input//test_event_file.csv";
         String zoneFile = "src//input//test_zone_file_4.csv";
-        int port = 6500;
         int droneID = 123;
         localhost = InetAddress.getLocalHost();
-        socket = new DatagramSocket(port + droneID);
-        scheduler = new Scheduler(zoneFile, fireIncidentFile, 2, 345, mapUI, logger);
-        drone = new DroneSubsystem(scheduler, droneID, 111, mapUI, logger);
+        // Stand in for the scheduler on its shared ingress port
+        socket = new DatagramSocket(Scheduler.DEFAULT_SCHEDULER_PORT);
+        drone = new DroneSubsystem(null, droneID, 111, mapUI, logger);
     }
 
     @AfterAll
@@ -42,7 +40,7 @@ class DroneUDPTests {
     }
 
     @Test
-    public void testSendRequestFromDroneToScheduler() {
+    public void testSendRequestFromDroneToScheduler() throws IOException {
 
         new Thread(() -> {
             try {
@@ -51,24 +49,19 @@ class DroneUDPTests {
                 socket.receive(packet);
 
                 // Obtain the data from the packet
-                ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(packet.getData(), 0, packet.getLength()));
-                Object data = objectInputStream.readObject();
+                WireProtocol.Message data = WireProtocol.decode(packet.getData(), 0, packet.getLength());
 
                 // Send back an acknowledgement
-                ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-                ObjectOutputStream objectStream = new ObjectOutputStream(byteStream);
-                objectStream.writeObject("ACK:" + data);
-                objectStream.flush();
-                byte[] ackData = byteStream.toByteArray();
+                byte[] ackData = WireProtocol.encodeResponse(WireProtocol.SENDER_SCHEDULER, 0, data.getCorrelationId(), "ACK:" + data);
                 DatagramPacket ackPacket = new DatagramPacket(ackData, ackData.length, packet.getAddress(), packet.getPort());
                 socket.send(ackPacket);
-            } catch (IOException | ClassNotFoundException e) {
+            } catch (IOException e) {
                 e.printStackTrace();
                 System.exit(1);
             }
         }).start();
 
-        Object response = drone.sendRequest("testMethod", "testParameter");
-        assertTrue(response.toString().contains("ACK:[testMethod, testParameter, 123]"), "Drone RPC works.");
+        Object response = drone.sendRequest("STOP_?", "testParameter");
+        assertTrue(response.toString().contains("ACK:[STOP_?, testParameter, 123]"), "Drone RPC works.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventGridTest {
+
+    private static FireEvent event(int zoneId) {
+        return new FireEvent("12:00:00", zoneId, "FIRE_DETECTED", "LOW", "NONE",
+                null, 0, FireEvent.FireEventState.ACTIVE);
+    }
+
+    @Test
+    public void testQueriesMatchBruteForce() {
+        Random random = new Random(42);
+        EventGrid grid = new EventGrid(100);
+        List<FireEvent> events = new ArrayList<>();
+        List<double[]> positions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            FireEvent event = event(i);
+            double[] position = {random.nextInt(5000) - 1000, random.nextInt(5000) - 1000};
+            grid.add(event, position[0], position[1]);
+            events.add(event);
+            positions.add(position);
+        }
+        // Remove every third event again
+        for (int i = 0; i < events.size(); i += 3) assertTrue(grid.remove(events.get(i)));
+        assertEquals(2000 - 667, grid.size());
+
+        for (int query = 0; query < 50; query++) {
+            double x = random.nextInt(6000) - 1500, y = random.nextInt(6000) - 1500;
+            double radius = random.nextInt(400);
+            List<Integer> live = new ArrayList<>();
+            for (int i = 0; i < events.size(); i++) if (i % 3 != 0) live.add(i);
+            Comparator<Integer> byDistance = Comparator.comparingDouble(
+                    i -> Math.hypot(positions.get(i)[0] - x, positions.get(i)[1] - y));
+
+            HashSet<FireEvent> expectedInRadius = new HashSet<>();
+            for (int i : live) {
+                if (Math.hypot(positions.get(i)[0] - x, positions.get(i)[1] - y) <= radius) expectedInRadius.add(events.get(i));
+            }
+            assertEquals(expectedInRadius, new HashSet<>(grid.withinRadius(x, y, radius)));
+
+            // Events along a leg to a random destination
+            double toX = random.nextInt(6000) - 1500, toY = random.nextInt(6000) - 1500;
+            HashSet<FireEvent> expectedNearLeg = new HashSet<>();
+            for (int i : live) {
+                double px = positions.get(i)[0], py = positions.get(i)[1];
+                double t = Math.max(0, Math.min(1, ((px - x) * (toX - x) + (py - y) * (toY - y))
+                        / ((toX - x) * (toX - x) + (toY - y) * (toY - y))));
+                if (Math.hypot(px - (x + t * (toX - x)), py - (y + t * (toY - y))) <= 50) expectedNearLeg.add(events.get(i));
+            }
+            assertEquals(expectedNearLeg, new HashSet<>(grid.nearSegment(x, y, toX, toY, 50)));
+
+            live.sort(byDistance);
+            List<FireEvent> nearest = grid.nearest(x, y, 5);
+            assertEquals(5, nearest.size());
+            for (int k = 0; k < 5; k++) {
+                double expected = Math.hypot(positions.get(live.get(k))[0] - x, positions.get(live.get(k))[1] - y);
+                int actual = nearest.get(k).getZoneId();
+                assertEquals(expected, Math.hypot(positions.get(actual)[0] - x, positions.get(actual)[1] - y), 1e-9);
+            }
+
+            // Nearest event with an even zone id
+            Integer expectedEven = live.stream().filter(i -> i % 2 == 0).findFirst().orElse(null);
+            FireEvent even = grid.nearest(x, y, Double.MAX_VALUE, (event, ex, ey) -> event.getZoneId() % 2 == 0);
+            assertNotNull(even);
+            assertEquals(0, byDistance.compare(expectedEven, even.getZoneId()));
+        }
+    }
+
+    @Test
+    public void testManyEventsPerZoneKeepQueriesCheap() {
+        // Four zones, all in one cell, with a thousand pending events each
+        EventGrid grid = new EventGrid(100);
+        double[][] centers = {{10, 10}, {30, 10}, {50, 50}, {90, 90}};
+        List<FireEvent> nearZone = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            FireEvent event = event(i);
+            grid.add(event, centers[i % 4][0], centers[i % 4][1]);
+            if (i % 4 == 0) nearZone.add(event);
+        }
+
+        long before = grid.getExamined();
+        List<FireEvent> nearest = grid.nearest(0, 0, 5);
+        assertTrue(grid.getExamined() - before <= 4 + 5, "Examined " + (grid.getExamined() - before));
+        assertEquals(5, nearest.size());
+        assertTrue(nearZone.containsAll(nearest));
+
+        before = grid.getExamined();
+        FireEvent odd = grid.nearest(0, 0, 200, (event, x, y) -> event.getZoneId() % 4 == 1);
+        assertEquals(1, odd.getZoneId() % 4);
+        assertTrue(grid.getExamined() - before <= 4 + 1000 + 1, "Examined " + (grid.getExamined() - before));
+
+        // Emptying a zone drops its spot
+        for (FireEvent event : nearZone) grid.remove(event);
+        assertEquals(3000, grid.size());
+        assertEquals(1, grid.nearest(0, 0, 1).get(0).getZoneId() % 4);
+        assertEquals(1000, grid.withinRadius(30, 10, 0).size());
+    }
+
+    @Test
+    public void testNearSegmentAndLimits() {
+        EventGrid grid = new EventGrid(100);
+        FireEvent onPath = event(1), besidePath = event(2), pastEnd = event(3);
+        grid.add(onPath, 500, 10);
+        grid.add(besidePath, 500, 80);
+        grid.add(pastEnd, 1100, 0);
+
+        List<FireEvent> near = grid.nearSegment(0, 0, 1000, 0, 50);
+        assertEquals(1, near.size());
+        assertSame(onPath, near.get(0));
+        assertEquals(2, grid.nearSegment(0, 0, 1000, 0, 80).size());
+
+        assertNull(grid.nearest(0, 0, 400, (event, x, y) -> true), "Nothing is within 400 m of the origin.");
+        assertSame(onPath, grid.nearest(0, 0, 600, (event, x, y) -> true));
+
+        // Re-adding an event moves it
+        grid.add(onPath, 0, 0);
+        assertEquals(3, grid.size());
+        assertSame(onPath, grid.nearest(0, 0, 1).get(0));
+    }
+}
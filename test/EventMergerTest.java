@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventMergerTest {
+
+    private static FireEvent event(String time, int zoneId) {
+        return new FireEvent(time, zoneId, "FIRE_DETECTED", "LOW", "NONE", null);
+    }
+
+    private static int second(String time) {
+        return LocalTime.parse(time).toSecondOfDay();
+    }
+
+    @Test
+    public void testReleasesInTimeOrderAcrossZones() {
+        EventMerger merger = new EventMerger();
+        merger.expect(1);
+        merger.expect(2);
+        FireEvent a = event("10:00:05", 1);
+        FireEvent b = event("10:00:20", 1);
+        FireEvent c = event("10:00:10", 2);
+
+        // Zone 2 has sent nothing yet, so zone 1's events must wait
+        assertTrue(merger.offer(1, 0, second("10:00:30"), List.of(a, b)).isEmpty());
+        assertEquals(-1, merger.getWatermark());
+        assertEquals(2, merger.getBufferedCount());
+
+        // Zone 2 is through 10:00:15: everything up to then is released, oldest first
+        assertEquals(List.of(a, c), merger.offer(2, 0, second("10:00:15"), List.of(c)));
+        assertEquals(second("10:00:15"), merger.getWatermark());
+        assertEquals(1, merger.getBufferedCount());
+
+        assertEquals(List.of(b), merger.offer(2, 1, second("10:01:00"), List.of()));
+        assertEquals(0, merger.getBufferedCount());
+    }
+
+    @Test
+    public void testBatchAheadOfGapIsHeld() {
+        EventMerger merger = new EventMerger();
+        merger.expect(1);
+        FireEvent first = event("09:00:00", 1);
+        FireEvent second = event("09:05:00", 1);
+
+        // Batch 1 overtook batch 0; its promise must not release anything batch 0 may still hold
+        assertTrue(merger.offer(1, 1, second("09:10:00"), List.of(second)).isEmpty());
+        assertEquals(-1, merger.getWatermark());
+
+        assertEquals(List.of(first, second), merger.offer(1, 0, second("09:01:00"), List.of(first)));
+        assertTrue(merger.offer(1, 0, second("09:01:00"), List.of(first)).isEmpty(), "A duplicate batch is ignored.");
+    }
+
+    @Test
+    public void testCloseReleasesTheRest() {
+        EventMerger merger = new EventMerger();
+        merger.expect(1);
+        merger.expect(2);
+        merger.expect(3);
+        FireEvent late = event("23:30:00", 1);
+        assertTrue(merger.offer(1, 0, second("23:00:00"), List.of(late)).isEmpty());
+
+        // A zone with no events closes without sending a batch
+        assertTrue(merger.close(3).isEmpty());
+        assertFalse(merger.isComplete());
+        assertTrue(merger.close(2).isEmpty(), "Zone 1 has not closed yet, so its promise still bounds the watermark.");
+        assertEquals(second("23:00:00"), merger.getWatermark());
+        assertEquals(List.of(late), merger.close(1));
+        assertTrue(merger.isComplete());
+        assertEquals(Integer.MAX_VALUE, merger.getWatermark());
+    }
+
+    @Test
+    public void testCloseKeepsBatchesBehindAGap() {
+        EventMerger merger = new EventMerger();
+        merger.expect(1);
+        FireEvent stranded = event("08:00:00", 1);
+        assertTrue(merger.offer(1, 3, second("08:00:00"), List.of(stranded)).isEmpty());
+        assertEquals(List.of(stranded), merger.close(1));
+    }
+
+    @Test
+    public void testLateAndUnsequencedEventsAreReleasedAtOnce() {
+        EventMerger merger = new EventMerger();
+        merger.expect(1);
+        merger.expect(2);
+        FireEvent unsequenced = event("12:00:00", 2);
+        assertEquals(List.of(unsequenced), merger.offer(2, -1, -1, List.of(unsequenced)));
+
+        merger.offer(1, 0, second("12:30:00"), List.of());
+        merger.offer(2, 0, second("12:30:00"), List.of());
+        // Detected before the watermark, e.g. from a file not quite in time order
+        FireEvent late = event("12:10:00", 1);
+        assertEquals(List.of(late), merger.offer(1, 1, second("12:40:00"), List.of(late)));
+    }
+
+    @Test
+    public void testOutOfOrderWithinZoneIsSorted() {
+        EventMerger merger = new EventMerger();
+        merger.expect(1);
+        merger.expect(2);
+        List<FireEvent> events = new ArrayList<>();
+        for (String time : new String[]{"07:00:30", "07:00:10", "07:00:20", "07:00:05"}) events.add(event(time, 1));
+        merger.offer(1, 0, second("07:01:00"), events);
+        List<FireEvent> released = merger.close(2);
+        assertEquals(List.of(events.get(3), events.get(1), events.get(2), events.get(0)), released);
+    }
+}
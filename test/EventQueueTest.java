@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventQueueTest {
+
+    private static FireEvent event(String time, int zoneId, String severity, int litres) {
+        return new FireEvent(time, zoneId, "FIRE_DETECTED", severity, "NONE", null, litres, FireEvent.FireEventState.ACTIVE);
+    }
+
+    @Test
+    public void testPartlyExtinguishedHighFireGoesFirst() {
+        EventQueue queue = new EventQueue(EventPriority.DEFAULT);
+        FireEvent high = event("12:00:00", 1, "HIGH", 30);
+        queue.add(event("12:00:05", 2, "LOW", 10));
+        queue.add(event("12:00:10", 3, "LOW", 10));
+        queue.add(high);
+        // Dispatched, half put out, and queued again behind the newer LOW fires
+        assertSame(high, queue.poll());
+        high.removeLitres(15);
+        queue.add(high);
+        assertSame(high, queue.poll(), "A HIGH fire should not wait behind newer LOW fires.");
+        assertEquals(2, queue.poll().getZoneId(), "Equal fires go in order of detection.");
+        assertEquals(3, queue.poll().getZoneId());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testLongWaitOutranksSeverity() {
+        EventQueue queue = new EventQueue(EventPriority.DEFAULT);
+        queue.add(event("12:30:00", 1, "HIGH", 30));
+        queue.add(event("12:00:00", 2, "LOW", 10)); // Waited 30 minutes longer
+        assertEquals(2, queue.poll().getZoneId());
+    }
+
+    @Test
+    public void testRemoveAndUpdateKeepHeapOrder() {
+        Random random = new Random(7);
+        EventPriority priority = new EventPriority(600, 1, -10);
+        EventQueue queue = new EventQueue(priority);
+        String[] severities = {"LOW", "MODERATE", "HIGH"};
+        List<FireEvent> live = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            int op = random.nextInt(10);
+            if (op < 6 || live.isEmpty()) {
+                FireEvent event = event(String.format("%02d:%02d:%02d", 10 + random.nextInt(4), random.nextInt(60), random.nextInt(60)),
+                        i, severities[random.nextInt(3)], 10 + random.nextInt(30));
+                queue.add(event);
+                live.add(event);
+            } else if (op < 8) {
+                FireEvent event = live.remove(random.nextInt(live.size()));
+                assertTrue(queue.remove(event));
+                assertFalse(queue.contains(event));
+            } else {
+                FireEvent event = live.get(random.nextInt(live.size()));
+                event.removeLitres(random.nextInt(10));
+                assertTrue(queue.update(event));
+            }
+            assertEquals(live.size(), queue.size());
+        }
+        live.sort(Comparator.comparingDouble(priority::score).reversed());
+        double last = Double.POSITIVE_INFINITY;
+        while (!queue.isEmpty()) {
+            double score = priority.score(queue.poll());
+            assertTrue(score <= last, "Events should come out in priority order.");
+            last = score;
+        }
+        assertEquals(priority.score(live.get(live.size() - 1)), last);
+    }
+}
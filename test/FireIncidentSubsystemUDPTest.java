@@ -1,7 +1,7 @@
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
-import java.io.*;
+import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
@@ -39,25 +39,20 @@ public class FireIncidentSubsystemUDPTest {
                 socket.receive(packet);
 
                 // Obtain the data from the packet
-                ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(packet.getData(), 0, packet.getLength()));
-                Object data = objectInputStream.readObject();
+                WireProtocol.Message data = WireProtocol.decode(packet.getData(), 0, packet.getLength());
 
                 // Send back an acknowledgement
-                ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-                ObjectOutputStream objectStream = new ObjectOutputStream(byteStream);
-                objectStream.writeObject("ACK:" + data);
-                objectStream.flush();
-                byte[] ackData = byteStream.toByteArray();
+                byte[] ackData = WireProtocol.encodeResponse(WireProtocol.SENDER_SCHEDULER, 0, data.getCorrelationId(), "ACK:" + data);
                 DatagramPacket ackPacket = new DatagramPacket(ackData, ackData.length, packet.getAddress(), packet.getPort());
                 socket.send(ackPacket);
-            } catch (IOException | ClassNotFoundException e) {
+            } catch (IOException e) {
                 e.printStackTrace();
                 System.exit(1);
             }
         }).start();
 
-        Object response = fis.rpc_send(List.of("TEST", "fisData"), localhost, port - 10);
+        Object response = fis.rpc_send(List.of("SET_EVENTS_LOADED", "fisData"), localhost, port);
         System.out.println(response);
-        assertTrue(response.toString().startsWith("ACK:[TEST, fisData]"), "FIS RPC works.");
+        assertTrue(response.toString().startsWith("ACK:[SET_EVENTS_LOADED, fisData, 10]"), "FIS RPC works.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetEngineTest {
+
+    /**
+     * Hands out queued events in order and puts back any that still need agent.
+     */
+    private static final class QueueDispatcher implements FleetEngine.Dispatcher {
+        final Deque<FireEvent> queue = new ArrayDeque<>();
+        final List<String> log = new ArrayList<>();
+        int litresDropped = 0;
+
+        @Override
+        public FireEvent assign(int droneId, int x, int y, double batteryLife, int remainingAgent) {
+            return queue.poll();
+        }
+
+        @Override
+        public void dropped(int droneId, FireEvent event, int litres) {
+            log.add("drone " + droneId + " dropped " + litres);
+            litresDropped += litres;
+            event.removeLitres(litres);
+            if (event.getLitres() > 0) queue.add(event);
+        }
+
+        @Override
+        public void faulted(int droneId, FireEvent event) {
+            log.add("drone " + droneId + " faulted");
+            event.remFault();
+            queue.add(event);
+        }
+    }
+
+    private static FireEvent event(int centerX, int centerY, String severity, String fault) {
+        Zone zone = new Zone(1, centerX - 50, centerY - 50, centerX + 50, centerY + 50);
+        FireEvent event = new FireEvent("12:00:00", 1, "FIRE_DETECTED", severity, fault, zone, 0, FireEvent.FireEventState.ACTIVE);
+        event.setLitres("HIGH".equals(severity) ? 30 : 10);
+        return event;
+    }
+
+    private static void run(FleetEngine engine, int ticks) {
+        for (int i = 0; i < ticks; i++) engine.tick();
+    }
+
+    @Test
+    public void testDroneFollowsTheThreadedTimeline() {
+        QueueDispatcher dispatcher = new QueueDispatcher();
+        dispatcher.queue.add(event(900, 0, "LOW", "NONE"));
+        FleetEngine engine = new FleetEngine(1, dispatcher, 1, ForkJoinPool.commonPool());
+
+        engine.tick(); // Assigned at the end of the first tick
+        assertEquals(DroneSubsystem.DroneState.ON_ROUTE, engine.getState(1));
+        run(engine, 10); // Takeoff
+        assertEquals(0.0, engine.getX(1));
+        run(engine, 50); // 900 m at 18 m/s
+        assertEquals(900.0, engine.getX(1));
+        assertEquals(DroneSubsystem.DroneState.DROPPING_AGENT, engine.getState(1));
+        run(engine, 7); // Two seconds of nozzle handling and 10 L at 2 L/s
+        assertEquals(List.of("drone 1 dropped 10"), dispatcher.log);
+        assertEquals(4, engine.getRemainingAgent(1));
+        assertEquals(DroneSubsystem.DroneState.RETURNING, engine.getState(1), "Nothing else is queued.");
+        assertEquals(FleetEngine.BATTERY_SECONDS - 67, engine.getBatteryLife(1));
+
+        run(engine, 60); // Back to base and land
+        assertEquals(DroneSubsystem.DroneState.IDLE, engine.getState(1));
+        assertEquals(FleetEngine.CAPACITY, engine.getRemainingAgent(1));
+        assertEquals(FleetEngine.BATTERY_SECONDS, engine.getBatteryLife(1));
+    }
+
+    @Test
+    public void testNozzleFaultSendsDroneHomeAndEventToAnother() {
+        QueueDispatcher dispatcher = new QueueDispatcher();
+        dispatcher.queue.add(event(180, 0, "LOW", "NOZZLE"));
+        FleetEngine engine = new FleetEngine(2, dispatcher, 1, ForkJoinPool.commonPool());
+
+        run(engine, 21);
+        assertEquals(List.of("drone 1 faulted"), dispatcher.log);
+        assertEquals(DroneSubsystem.DroneState.ON_ROUTE, engine.getState(2), "The waiting drone takes the event back.");
+        assertEquals(DroneSubsystem.DroneState.RETURNING, engine.getState(1));
+        run(engine, 40);
+        assertTrue(dispatcher.log.contains("drone 2 dropped 10"));
+    }
+
+    @Test
+    public void testArrivalFaultTimesOutOnTheWay() {
+        QueueDispatcher dispatcher = new QueueDispatcher();
+        FireEvent faulty = event(900, 0, "LOW", "ARRIVAL");
+        dispatcher.queue.add(faulty);
+        FleetEngine engine = new FleetEngine(1, dispatcher, 1, ForkJoinPool.commonPool());
+
+        // 50 s of flight: it loiters 7.5 s after takeoff, and times out 55 s after takeoff
+        run(engine, 65);
+        assertEquals(DroneSubsystem.DroneState.ON_ROUTE, engine.getState(1));
+        assertTrue(engine.getX(1) < 900);
+        assertTrue(dispatcher.log.isEmpty());
+        run(engine, 1);
+        assertEquals(List.of("drone 1 faulted"), dispatcher.log);
+        assertEquals("NONE", faulty.getFault(), "The fault is cleared once reported.");
+        assertEquals(DroneSubsystem.DroneState.RETURNING, engine.getState(1));
+
+        run(engine, 200); // Home, and back out to the event now it has no fault
+        assertTrue(dispatcher.log.contains("drone 1 dropped 10"));
+    }
+
+    @Test
+    public void testPacketLossFaultsAfterTakeoffAndDroneWaitsAtBase() {
+        QueueDispatcher dispatcher = new QueueDispatcher();
+        dispatcher.queue.add(event(900, 0, "LOW", "PACKET_LOSS"));
+        FleetEngine engine = new FleetEngine(1, dispatcher, 1, ForkJoinPool.commonPool());
+
+        run(engine, 11); // Assigned, then ten seconds of takeoff
+        assertEquals(List.of("drone 1 faulted"), dispatcher.log);
+        assertEquals(DroneSubsystem.DroneState.IDLE, engine.getState(1));
+        assertEquals(0.0, engine.getX(1));
+        run(engine, 1);
+        assertEquals(DroneSubsystem.DroneState.ON_ROUTE, engine.getState(1), "The drone takes the event again without its fault.");
+    }
+
+    @Test
+    public void testSchedulerGivesDronesAtBaseTheHighestPriorityEvent() throws Exception {
+        Scheduler scheduler = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, 331, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler", scheduler);
+        RpcClient zone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_ZONE, 1);
+        zone.call("ADD_FIRE_EVENTS",
+                new FireEvent("12:00:00", 2, "FIRE_DETECTED", "LOW", "NONE",
+                        new Zone(2, 80, -20, 120, 20), 0, FireEvent.FireEventState.ACTIVE),
+                new FireEvent("12:00:01", 3, "FIRE_DETECTED", "HIGH", "NONE",
+                        new Zone(3, 1980, -20, 2020, 20), 0, FireEvent.FireEventState.ACTIVE));
+        zone.close();
+
+        FleetEngine engine = new FleetEngine(1, FleetEngine.Dispatcher.of(scheduler), 1, ForkJoinPool.commonPool());
+        engine.tick();
+        run(engine, 20); // Takeoff, then ten seconds of flight
+        assertTrue(engine.getX(1) > 100, "Nearest-first would have sent the drone to the low-severity fire next door.");
+    }
+
+    @Test
+    public void testParallelSweepMatchesSingleThread() {
+        List<FleetEngine> engines = new ArrayList<>();
+        List<QueueDispatcher> dispatchers = new ArrayList<>();
+        for (ForkJoinPool pool : new ForkJoinPool[]{new ForkJoinPool(1), new ForkJoinPool(4)}) {
+            QueueDispatcher dispatcher = new QueueDispatcher();
+            for (int i = 0; i < 3000; i++) {
+                dispatcher.queue.add(event(100 + i % 37 * 40, 100 + i % 23 * 50, i % 4 == 0 ? "HIGH" : "LOW", "NONE"));
+            }
+            FleetEngine engine = new FleetEngine(10_000, dispatcher, 1, pool);
+            run(engine, 300);
+            engines.add(engine);
+            dispatchers.add(dispatcher);
+        }
+        assertEquals(dispatchers.get(0).litresDropped, dispatchers.get(1).litresDropped);
+        assertTrue(dispatchers.get(0).litresDropped > 0);
+        for (int id = 1; id <= 10_000; id += 97) {
+            assertEquals(engines.get(0).getState(id), engines.get(1).getState(id));
+            assertEquals(engines.get(0).getX(id), engines.get(1).getX(id));
+            assertEquals(engines.get(0).getRemainingAgent(id), engines.get(1).getRemainingAgent(id));
+        }
+    }
+
+    @Test
+    public void testHundredThousandDronesKeepUpWithTheTickRate() {
+        QueueDispatcher dispatcher = new QueueDispatcher();
+        for (int i = 0; i < 50_000; i++) dispatcher.queue.add(event(100 + i % 97 * 20, 100 + i % 89 * 15, "LOW", "NONE"));
+        FleetEngine engine = new FleetEngine(100_000, dispatcher, 1, ForkJoinPool.commonPool());
+        engine.run(200, 0);
+        assertEquals(200.0, engine.getSimulatedSeconds());
+        assertTrue(dispatcher.litresDropped > 0);
+        // A tick a second of simulated time is easily real time, even on one core
+        long slowest = TimeUnit.NANOSECONDS.toMillis(engine.getSlowestTickNanos());
+        assertTrue(slowest < 1000, "The slowest tick took " + slowest + " ms");
+    }
+}
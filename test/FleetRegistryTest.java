@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetRegistryTest {
+
+    @Test
+    public void testHeartbeatOverwritesDrone() {
+        FleetRegistry fleet = new FleetRegistry();
+        assertNull(fleet.getState(3));
+        fleet.update(3, 10, 20, DroneSubsystem.DroneState.ON_ROUTE, 1700, 14);
+        fleet.update(3, 30, 40, DroneSubsystem.DroneState.DROPPING_AGENT, 1650, 4);
+
+        assertEquals(1, fleet.size());
+        assertEquals(DroneSubsystem.DroneState.DROPPING_AGENT, fleet.getState(3));
+        assertEquals(30, fleet.getX(3));
+        assertEquals(40, fleet.getY(3));
+        assertEquals(1650.0, fleet.getBatteryLife(3));
+        assertEquals(4, fleet.getRemainingAgent(3));
+        assertTrue(fleet.getLastHeard(3) > 0);
+        assertNull(fleet.getState(2), "Ids below a reported one are still unknown.");
+        assertThrows(IllegalArgumentException.class, () -> fleet.update(-1, 0, 0, DroneSubsystem.DroneState.IDLE, 0, 0));
+    }
+
+    @Test
+    public void testNearestIdleMatchesBruteForce() {
+        Random random = new Random(11);
+        FleetRegistry fleet = new FleetRegistry();
+        int drones = 5000;
+        int[][] reported = new int[drones][4]; // x, y, state, agent
+        for (int id = 0; id < drones; id++) {
+            DroneSubsystem.DroneState state = DroneSubsystem.DroneState.values()[random.nextInt(5)];
+            reported[id] = new int[]{random.nextInt(10_000), random.nextInt(10_000), state.ordinal(), random.nextInt(15)};
+            fleet.update(id, reported[id][0], reported[id][1], state, 1800, reported[id][3]);
+        }
+        assertEquals(drones, fleet.size());
+
+        for (int query = 0; query < 100; query++) {
+            int x = random.nextInt(10_000), y = random.nextInt(10_000), minAgent = random.nextInt(15);
+            int expected = -1;
+            double best = Double.MAX_VALUE;
+            int idle = 0;
+            for (int id = 0; id < drones; id++) {
+                if (reported[id][2] != DroneSubsystem.DroneState.IDLE.ordinal()) continue;
+                idle++;
+                if (reported[id][3] < minAgent) continue;
+                double distance = Math.hypot(reported[id][0] - x, reported[id][1] - y);
+                if (distance < best) {
+                    best = distance;
+                    expected = id;
+                }
+            }
+            assertEquals(expected, fleet.nearestIdle(x, y, 0, minAgent));
+            assertEquals(idle, fleet.countInState(DroneSubsystem.DroneState.IDLE));
+        }
+        assertEquals(-1, fleet.nearestIdle(0, 0, 1801, 0), "No drone has that much battery.");
+    }
+
+    @Test
+    public void testLegIsDeadReckonedUntilNextReport() throws InterruptedException {
+        SimulationClock clock = SimulationClock.discreteEvent();
+        SimulationClock.set(clock);
+        try {
+            clock.register(); // Only this thread moves time on
+            FleetRegistry fleet = new FleetRegistry();
+            fleet.updateLeg(5, new FlightLeg(5, 2, 0, 0, 900, 1200, 0, 100_000), DroneSubsystem.DroneState.ON_ROUTE, 1700, 14);
+            clock.sleep(40_000);
+            assertEquals(360, fleet.getX(5));
+            assertEquals(480, fleet.getY(5));
+            assertEquals(1660.0, fleet.getBatteryLife(5));
+            assertEquals(0, fleet.getLastHeard(5), "Nothing has been heard since the leg was published.");
+
+            clock.sleep(100_000);
+            assertEquals(900, fleet.getX(5), "A drone stays at the end of its leg.");
+            assertEquals(1600.0, fleet.getBatteryLife(5));
+
+            fleet.update(5, 900, 1200, DroneSubsystem.DroneState.DROPPING_AGENT, 1590, 14);
+            assertNull(fleet.getFlightLeg(5));
+            assertEquals(1590.0, fleet.getBatteryLife(5));
+            clock.deregister();
+        } finally {
+            SimulationClock.set(SimulationClock.realTime(1));
+        }
+    }
+}
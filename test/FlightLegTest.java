@@ -0,0 +1,31 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightLegTest {
+
+    @Test
+    public void testPositionIsInterpolated() {
+        FlightLeg leg = new FlightLeg(1, 2, 0, 0, 1000, 500, 10_000, 10_000);
+
+        assertArrayEquals(new double[]{0, 0}, leg.positionAt(5_000), 1e-9);
+        assertArrayEquals(new double[]{500, 250}, leg.positionAt(15_000), 1e-9);
+        assertArrayEquals(new double[]{1000, 500}, leg.positionAt(30_000), 1e-9);
+        assertTrue(leg.hasEnded(20_000));
+    }
+
+    @Test
+    public void testEarliestApproach() {
+        FlightLeg leg = new FlightLeg(1, 2, 0, 0, 1000, 0, 0, 10_000);
+
+        // Enters the 50 m circle around (500, 0) at x = 450
+        assertEquals(4_500, leg.earliestApproach(500, 0, 50, 0));
+        // Already inside the circle
+        assertEquals(4_800, leg.earliestApproach(500, 0, 50, 4_800));
+        // Passes 30 m away: enters where the remaining 40 m closes the gap
+        assertEquals(4_600, leg.earliestApproach(500, 30, 50, 0));
+        // Too far from the path, or already passed
+        assertEquals(-1, leg.earliestApproach(500, 80, 50, 0));
+        assertEquals(-1, leg.earliestApproach(500, 0, 50, 6_000));
+    }
+}
@@ -0,0 +1,59 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LegGridTest {
+
+    private static final double RADIUS = 50;
+
+    @Test
+    public void testEveryLegPassingNearAPointIsACandidate() {
+        Random random = new Random(7);
+        LegGrid grid = new LegGrid(100, RADIUS);
+        List<FlightLeg> legs = new ArrayList<>();
+        for (int droneId = 1; droneId <= 300; droneId++) {
+            FlightLeg leg = new FlightLeg(droneId, 1, random.nextInt(4000), random.nextInt(4000),
+                    random.nextInt(4000), random.nextInt(4000), 0, 60_000);
+            double[] start = leg.positionAt(0), destination = leg.positionAt(leg.getEndMillis());
+            grid.add(leg, start[0], start[1], destination[0], destination[1]);
+            legs.add(leg);
+        }
+        assertEquals(300, grid.size());
+
+        int candidates = 0;
+        for (int query = 0; query < 500; query++) {
+            double x = random.nextInt(4000), y = random.nextInt(4000);
+            Set<Integer> near = new HashSet<>();
+            for (FlightLeg leg : grid.legsNear(x, y)) near.add(leg.getDroneId());
+            candidates += near.size();
+            for (FlightLeg leg : legs) {
+                if (leg.earliestApproach(x, y, RADIUS, 0) >= 0) {
+                    assertTrue(near.contains(leg.getDroneId()), "Leg of drone " + leg.getDroneId() + " was missed");
+                }
+            }
+        }
+        // A cell is crossed by a few corridors, not by every leg
+        assertTrue(candidates / 500.0 < 30, "Too many candidate legs per query: " + candidates / 500.0);
+    }
+
+    @Test
+    public void testAddingALegReplacesTheDronesPreviousOne() {
+        LegGrid grid = new LegGrid(100, RADIUS);
+        grid.add(new FlightLeg(1, 1, 0, 0, 1000, 0, 0, 10_000), 0, 0, 1000, 0);
+        grid.add(new FlightLeg(1, 2, 0, 0, 0, 1000, 0, 10_000), 0, 0, 0, 1000);
+        assertEquals(1, grid.size());
+        assertTrue(grid.legsNear(900, 0).isEmpty());
+        assertEquals(2, grid.legsNear(0, 900).iterator().next().getTargetZoneId());
+
+        assertTrue(grid.remove(1));
+        assertFalse(grid.remove(1));
+        assertTrue(grid.legsNear(0, 900).isEmpty());
+        assertEquals(0, grid.size());
+    }
+}
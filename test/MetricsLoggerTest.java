@@ -0,0 +1,46 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsLoggerTest {
+
+    @Test
+    public void testExportWhileRecording() throws Exception {
+        MetricsLogger logger = new MetricsLogger();
+        File file = File.createTempFile("metrics", ".txt");
+        file.deleteOnExit();
+        ExecutorService drones = Executors.newFixedThreadPool(4);
+        List<Future<?>> recorders = new ArrayList<>();
+        for (int drone = 1; drone <= 4; drone++) {
+            int droneId = drone;
+            recorders.add(drones.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    FireEvent event = new FireEvent(String.format("12:%02d:%02d", i / 60 % 60, i % 60), droneId,
+                            "FIRE_DETECTED", "LOW", "NONE", null, 10, FireEvent.FireEventState.ACTIVE);
+                    logger.recordFireDetected(event);
+                    logger.recordFireDispatched(event, droneId);
+                    logger.logDroneTravel(droneId, 100);
+                    logger.recordFireExtinguished(event, droneId);
+                }
+            }));
+        }
+        // Exporting used to throw ConcurrentModificationException while drones were still recording
+        for (int i = 0; i < 20; i++) logger.exportToFile(file.getPath());
+        for (Future<?> recorder : recorders) recorder.get();
+        drones.shutdown();
+
+        logger.logAssignmentBatch(2, 200, 50);
+        logger.exportToFile(file.getPath());
+        String summary = Files.readString(file.toPath());
+        assertTrue(summary.contains("Drone 1: 200000.0 meters"), "Every concurrent distance should be counted.");
+        assertTrue(summary.contains("saved 150.0 s"));
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RpcClientTest {
+
+    @Test
+    public void testLostRequestIsRetransmitted() throws Exception {
+        try (DatagramSocket server = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            RpcClient client = new RpcClient(new DatagramSocket(), InetAddress.getLoopbackAddress(),
+                    server.getLocalPort(), WireProtocol.SENDER_DRONE, 9);
+            Thread fakeScheduler = new Thread(() -> {
+                try {
+                    byte[] buffer = new byte[WireProtocol.MAX_DATAGRAM_SIZE];
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    server.receive(packet); // Drop the first transmission
+                    server.receive(packet);
+                    WireProtocol.Message request = WireProtocol.decode(packet.getData(), 0, packet.getLength());
+                    byte[] reply = WireProtocol.encodeResponse(WireProtocol.SENDER_SCHEDULER, 0,
+                            request.getCorrelationId(), 12.5);
+                    server.send(new DatagramPacket(reply, reply.length, packet.getSocketAddress()));
+                } catch (Exception e) {
+                    fail(e);
+                }
+            });
+            fakeScheduler.start();
+
+            assertEquals(12.5, client.call("calculateTravelTime", 100, 200));
+            fakeScheduler.join();
+            assertEquals(1, client.getRetransmissionCount());
+            assertEquals(0, client.getPendingCallCount());
+            client.close();
+        }
+    }
+
+    @Test
+    public void testUnansweredRequestFailsAfterItsLastAttempt() throws Exception {
+        try (DatagramSocket server = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            RpcClient client = new RpcClient(new DatagramSocket(), InetAddress.getLoopbackAddress(),
+                    server.getLocalPort(), WireProtocol.SENDER_DRONE, 9);
+            client.setMaxAttempts(2);
+
+            // Nothing ever answers: sent once, resent once, then given up on
+            CompletableFuture<Object> call = client.callAsync("heartbeat", 0, 0, 0, 1800.0, 15);
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> call.get(10, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof SocketTimeoutException, "Failed with " + failure.getCause());
+            assertEquals(1, client.getRetransmissionCount());
+            assertEquals(0, client.getPendingCallCount());
+            assertThrows(IllegalArgumentException.class, () -> client.setMaxAttempts(0));
+            client.close();
+        }
+    }
+
+    @Test
+    public void testUpdateIsSentOnlyOnce() throws Exception {
+        try (DatagramSocket server = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            RpcClient client = new RpcClient(new DatagramSocket(), InetAddress.getLoopbackAddress(),
+                    server.getLocalPort(), WireProtocol.SENDER_DRONE, 9);
+
+            CompletableFuture<Object> update = client.sendOnce("heartbeat", 0, 0, 0, 1800.0, 15);
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> update.get(10, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof SocketTimeoutException, "Failed with " + failure.getCause());
+            assertEquals(0, client.getRetransmissionCount());
+            assertEquals(0, client.getPendingCallCount());
+            client.close();
+        }
+    }
+
+    @Test
+    public void testDuplicateRequestsAreAnsweredFromCache() {
+        DuplicateFilter filter = new DuplicateFilter();
+        String reply = "ACK:done";
+
+        assertEquals(DuplicateFilter.Verdict.NEW, filter.admit(WireProtocol.SENDER_DRONE, 4, 77));
+        assertEquals(DuplicateFilter.Verdict.IN_PROGRESS, filter.admit(WireProtocol.SENDER_DRONE, 4, 77));
+        filter.complete(WireProtocol.SENDER_DRONE, 4, 77, reply);
+        assertEquals(DuplicateFilter.Verdict.ANSWERED, filter.admit(WireProtocol.SENDER_DRONE, 4, 77));
+        assertEquals(reply, filter.cachedReply(WireProtocol.SENDER_DRONE, 4, 77));
+
+        // Same correlation id from a different sender is a different request
+        assertEquals(DuplicateFilter.Verdict.NEW, filter.admit(WireProtocol.SENDER_ZONE, 4, 77));
+        // Untracked requests are never suppressed
+        assertEquals(DuplicateFilter.Verdict.NEW, filter.admit(WireProtocol.SENDER_DRONE, 4, 0));
+        assertEquals(DuplicateFilter.Verdict.NEW, filter.admit(WireProtocol.SENDER_DRONE, 4, 0));
+    }
+}
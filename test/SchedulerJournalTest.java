@@ -0,0 +1,101 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchedulerJournalTest {
+
+    private static FireEvent event(int second, int zoneId, String severity) {
+        return new FireEvent(String.format("%02d:%02d:%02d", second / 3600, second / 60 % 60, second % 60), zoneId,
+                "FIRE_DETECTED", severity, "NONE", new Zone(zoneId, 0, 0, 100, 100), 0, FireEvent.FireEventState.ACTIVE);
+    }
+
+    @Test
+    public void testRecoversQueueAndCounters() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        FireEvent first = event(100, 1, "HIGH");
+        FireEvent second = event(200, 1, "LOW");
+        FireEvent third = event(300, 2, "MODERATE");
+        try (SchedulerJournal journal = new SchedulerJournal(directory)) {
+            journal.eventsReceived(1, List.of(first, second));
+            journal.eventsReceived(2, List.of(third));
+            journal.zoneLoaded(2);
+            journal.dispatched(7, first);
+            first.setLitres(12);
+            journal.requeued(first); // Partly extinguished
+            journal.dispatched(8, second);
+            journal.completed(second);
+            journal.dispatched(9, third);
+        }
+
+        SchedulerJournal recovered = new SchedulerJournal(directory);
+        assertEquals(3, recovered.getNumEvents());
+        assertEquals(1, recovered.getCompletedEvents());
+        List<FireEvent> queued = recovered.getQueuedEvents();
+        assertEquals(1, queued.size());
+        assertEquals("HIGH", queued.get(0).getSeverity());
+        assertEquals(12, queued.get(0).getLitres());
+        assertEquals(1, recovered.getAssignments().size());
+        assertEquals(9, recovered.getAssignments().get(0).getDroneId());
+        assertEquals(2, recovered.getEventsReceived(1));
+        assertFalse(recovered.isZoneLoaded(1));
+        assertTrue(recovered.isZoneLoaded(2));
+        recovered.close();
+    }
+
+    @Test
+    public void testCorruptRecordEndsReplay() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        try (SchedulerJournal journal = new SchedulerJournal(directory)) {
+            journal.eventsReceived(1, List.of(event(100, 1, "LOW")));
+            journal.eventsReceived(1, List.of(event(200, 1, "LOW")));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("scheduler.journal").toFile(), "rw")) {
+            int firstLength = file.readInt();
+            long secondBody = 8 + firstLength + 8 + 10;
+            file.seek(secondBody);
+            int original = file.read();
+            file.seek(secondBody);
+            file.write(original ^ 0xff); // As if the process died while writing it
+        }
+        try (SchedulerJournal recovered = new SchedulerJournal(directory)) {
+            assertEquals(1, recovered.getNumEvents());
+            // Later records follow on from the last good one
+            recovered.eventsReceived(1, List.of(event(300, 1, "LOW")));
+        }
+        try (SchedulerJournal recovered = new SchedulerJournal(directory)) {
+            assertEquals(2, recovered.getNumEvents());
+        }
+    }
+
+    @Test
+    public void testLargeBacklogRecoversQuickly() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        int events = 100_000;
+        try (SchedulerJournal journal = new SchedulerJournal(directory, 1024 * 1024)) {
+            List<FireEvent> batch = new ArrayList<>();
+            for (int i = 0; i < events; i++) {
+                batch.add(event(i % 86_400, 1 + i % 5, i % 3 == 0 ? "HIGH" : "LOW"));
+                if (batch.size() == 30) {
+                    journal.eventsReceived(1, batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            journal.eventsReceived(1, batch);
+            for (int i = 0; i < 1000; i++) journal.dispatched(i, event(i, 1 + i % 5, i % 3 == 0 ? "HIGH" : "LOW"));
+            assertTrue(journal.getSnapshotCount() > 0, "A small region should have forced snapshots.");
+        }
+
+        SchedulerJournal recovered = new SchedulerJournal(directory, 1024 * 1024);
+        assertEquals(events, recovered.getNumEvents());
+        assertEquals(events - 1000, recovered.getQueuedEvents().size());
+        assertEquals(1000, recovered.getAssignments().size());
+        assertTrue(recovered.getRecoveryMillis() < 1000, "Recovery took " + recovered.getRecoveryMillis() + " ms");
+        recovered.close();
+    }
+}
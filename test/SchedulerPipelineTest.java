@@ -0,0 +1,258 @@
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchedulerPipelineTest {
+
+    @Test
+    public void testParkedRequestDoesNotBlockOthers() throws Exception {
+        // No zone file, so no zones feed events in; the test supplies them itself
+        Scheduler scheduler = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, 321, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler", scheduler);
+        RpcClient drone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_DRONE, 1);
+
+        CompletableFuture<Object> next = drone.callAsync("getNextFireEvent");
+        assertEquals(false, drone.call("STOP_?", 1), "Requests behind a parked one should still be answered.");
+        assertFalse(next.isDone());
+
+        FireEvent event = new FireEvent("12:00:00", 4, "FIRE_DETECTED", "HIGH", "NONE",
+                new Zone(4, 0, 0, 100, 100), 0, FireEvent.FireEventState.ACTIVE);
+        drone.call("ADD_FIRE_EVENT", event);
+        FireEvent assigned = (FireEvent) next.get(5, TimeUnit.SECONDS);
+
+        assertEquals(4, assigned.getZoneId());
+        assertEquals(30, assigned.getLitres());
+        drone.close();
+    }
+
+    @Test
+    public void testEventNearFlightLegIsPushed() throws Exception {
+        Scheduler scheduler = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, 322, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler", scheduler);
+        RpcClient drone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_DRONE, 2);
+        CompletableFuture<FireEvent> pushed = new CompletableFuture<>();
+        drone.setRequestHandler((WireProtocol.Message request, InetSocketAddress from) -> {
+            try {
+                drone.reply(from, request.getCorrelationId(), true);
+            } catch (Exception e) {
+                pushed.completeExceptionally(e);
+            }
+            pushed.complete((FireEvent) request.getArgs().get(0));
+        });
+
+        // A two-second leg along the x axis that passes over zone 5's center after one second
+        drone.call("flightLeg", 9, 0, 0, 1000, 0, (double) SimulationClock.get().currentTimeMillis(), 2.0,
+                DroneSubsystem.DroneState.ON_ROUTE.ordinal(), 1800.0, 15, false);
+        drone.call("ADD_FIRE_EVENT", new FireEvent("12:00:00", 5, "FIRE_DETECTED", "LOW", "NONE",
+                new Zone(5, 480, -20, 520, 20), 0, FireEvent.FireEventState.ACTIVE));
+        drone.call("ADD_FIRE_EVENT", new FireEvent("12:00:00", 6, "FIRE_DETECTED", "LOW", "NONE",
+                new Zone(6, 480, 400, 520, 440), 0, FireEvent.FireEventState.ACTIVE));
+
+        assertEquals(5, pushed.get(5, TimeUnit.SECONDS).getZoneId());
+        drone.close();
+    }
+
+    @Test
+    public void testParkedDronesAreMatchedByTravelTime() throws Exception {
+        Scheduler scheduler = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 2, 323, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler", scheduler);
+        RpcClient atBase = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_DRONE, 3);
+        RpcClient faraway = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_DRONE, 4);
+        RpcClient zone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_ZONE, 1);
+
+        CompletableFuture<Object> first = atBase.callAsync("getNextFireEvent", 0, 0);
+        assertEquals(false, atBase.call("STOP_?", 3)); // Make sure the first request is parked first
+        CompletableFuture<Object> second = faraway.callAsync("getNextFireEvent", 2000, 0);
+        assertEquals(false, faraway.call("STOP_?", 4));
+
+        // Oldest drone first and highest priority first would send the drone at base 2 km out
+        zone.call("ADD_FIRE_EVENTS",
+                new FireEvent("12:00:00", 7, "FIRE_DETECTED", "HIGH", "NONE",
+                        new Zone(7, 1980, -20, 2020, 20), 0, FireEvent.FireEventState.ACTIVE),
+                new FireEvent("12:00:00", 8, "FIRE_DETECTED", "LOW", "NONE",
+                        new Zone(8, -20, -20, 20, 20), 0, FireEvent.FireEventState.ACTIVE));
+
+        assertEquals(8, ((FireEvent) first.get(5, TimeUnit.SECONDS)).getZoneId());
+        assertEquals(7, ((FireEvent) second.get(5, TimeUnit.SECONDS)).getZoneId());
+        assertEquals(2 * 2000.0 / 18, scheduler.getAssignmentTimeSaved(), 1.0);
+        atBase.close();
+        faraway.close();
+        zone.close();
+    }
+
+    @Test
+    public void testIdleShardBorrowsFromBusyShard() throws Exception {
+        ShardPlan shards = new ShardPlan(2, 324);
+        Scheduler busy = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, shards, 0, new MapUI(), new MetricsLogger());
+        Scheduler idle = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, shards, 1, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler 0", busy);
+        SimulationThreads.startDaemon("Scheduler 1", idle);
+        RpcClient zone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), busy.getPort(), WireProtocol.SENDER_ZONE, 2);
+        RpcClient drone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), idle.getPort(), WireProtocol.SENDER_DRONE, 5);
+
+        // Shard 1 has nothing queued, so its drone is lent to shard 0's backlog
+        CompletableFuture<Object> next = drone.callAsync("getNextFireEvent", 0, 0);
+        zone.call("ADD_FIRE_EVENTS",
+                new FireEvent("12:00:00", 2, "FIRE_DETECTED", "LOW", "NONE",
+                        new Zone(2, 0, 0, 100, 100), 0, FireEvent.FireEventState.ACTIVE),
+                new FireEvent("12:00:01", 2, "FIRE_DETECTED", "HIGH", "NONE",
+                        new Zone(2, 0, 0, 100, 100), 0, FireEvent.FireEventState.ACTIVE),
+                new FireEvent("12:00:02", 2, "FIRE_DETECTED", "LOW", "NONE",
+                        new Zone(2, 0, 0, 100, 100), 0, FireEvent.FireEventState.ACTIVE));
+
+        FireEvent borrowed = (FireEvent) next.get(5, TimeUnit.SECONDS);
+        assertEquals("HIGH", borrowed.getSeverity(), "The busy shard should lend its most urgent event.");
+        assertEquals(1, busy.getEventsLent());
+        assertEquals(1, idle.getEventsBorrowed());
+
+        // Two left is still a backlog with none of shard 0's own drones waiting; one left is not
+        assertNotNull(drone.callAsync("getNextFireEvent", 0, 0).get(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> last = drone.callAsync("getNextFireEvent", 0, 0);
+        Thread.sleep(1000);
+        assertFalse(last.isDone());
+        assertEquals(2, busy.getEventsLent());
+        assertEquals(2, idle.getEventsBorrowed());
+        zone.close();
+        drone.close();
+    }
+
+    @Test
+    public void testRestartedSchedulerResumesFromJournal() throws Exception {
+        Path journal = Files.createTempDirectory("scheduler-journal");
+        ShardPlan first = new ShardPlan(1, 326);
+        Scheduler crashed = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, first, 0, journal, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler", crashed);
+        RpcClient zone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), crashed.getPort(), WireProtocol.SENDER_ZONE, 3);
+        zone.call("ADD_FIRE_EVENTS",
+                new FireEvent("12:00:00", 3, "FIRE_DETECTED", "LOW", "NONE",
+                        new Zone(3, 0, 0, 100, 100), 0, FireEvent.FireEventState.ACTIVE),
+                new FireEvent("12:00:05", 3, "FIRE_DETECTED", "HIGH", "NONE",
+                        new Zone(3, 0, 0, 100, 100), 0, FireEvent.FireEventState.ACTIVE));
+        zone.close();
+
+        // A new Scheduler on the same journal, as if the first one's process had died
+        Scheduler restarted = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, new ShardPlan(1, 327), 0,
+                journal, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler", restarted);
+        RpcClient drone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), restarted.getPort(), WireProtocol.SENDER_DRONE, 6);
+        FireEvent next = (FireEvent) drone.callAsync("getNextFireEvent", 0, 0).get(5, TimeUnit.SECONDS);
+        assertEquals("HIGH", next.getSeverity());
+        assertEquals(30, next.getLitres());
+        assertEquals(2, restarted.getJournal().getNumEvents());
+        assertEquals(1, restarted.getJournal().getQueuedEvents().size());
+        drone.close();
+    }
+
+    @Test
+    public void testInProcessDispatchIsJournaled() throws Exception {
+        Path journal = Files.createTempDirectory("scheduler-journal");
+        Scheduler scheduler = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, new ShardPlan(1, 330), 0,
+                journal, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler", scheduler);
+        RpcClient zone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_ZONE, 4);
+        zone.call("ADD_FIRE_EVENTS", new FireEvent("12:00:00", 4, "FIRE_DETECTED", "LOW", "NONE",
+                new Zone(4, 0, 0, 100, 100), 0, FireEvent.FireEventState.ACTIVE));
+        zone.close();
+
+        // No RPC handler in between, as when the tick engine flies the drones
+        FireEvent event = scheduler.getAdditionalFireEvent(9, 1800.0, 0, 0, 14);
+        assertEquals(4, event.getZoneId());
+        assertTrue(scheduler.getJournal().getQueuedEvents().isEmpty(), "A dispatched event must not be recovered as queued.");
+        assertEquals(1, scheduler.getJournal().getAssignments().size());
+        assertEquals(9, scheduler.getJournal().getAssignments().get(0).getDroneId());
+    }
+
+    @Test
+    public void testOnlyAsManyWaitingDronesAsEventsAreMatched() throws Exception {
+        Scheduler scheduler = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 3, 332, new MapUI(), new MetricsLogger());
+        scheduler.addFireEvent(new FireEvent("12:00:00", 2, "FIRE_DETECTED", "LOW", "NONE",
+                new Zone(2, 80, -20, 120, 20), 0, FireEvent.FireEventState.ACTIVE));
+        scheduler.addFireEvent(new FireEvent("12:00:00", 3, "FIRE_DETECTED", "HIGH", "NONE",
+                new Zone(3, 1980, -20, 2020, 20), 0, FireEvent.FireEventState.ACTIVE));
+
+        // Drone 7 is nearest the low fire, but the two drones that have waited longest take both events
+        FireEvent[] assigned = scheduler.dispatchToWaitingDrones(new int[]{5, 6, 7}, new int[]{2000, 0, 100}, new int[]{0, 0, 0});
+        assertEquals(3, assigned[0].getZoneId());
+        assertEquals(2, assigned[1].getZoneId());
+        assertNull(assigned[2]);
+        assertNull(scheduler.dispatchToWaitingDrones(new int[]{7}, new int[]{100}, new int[]{0})[0]);
+    }
+
+    @Test
+    public void testHandedBackEventKeepsItsStateAndIsNotCountedAgain() throws Exception {
+        Scheduler scheduler = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, 333, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler", scheduler);
+        RpcClient drone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_DRONE, 10);
+
+        drone.call("ADD_FIRE_EVENT", new FireEvent("12:00:00", 11, "FIRE_DETECTED", "HIGH", "NONE",
+                new Zone(11, 0, 0, 100, 100), 0, FireEvent.FireEventState.ACTIVE));
+        FireEvent assigned = (FireEvent) drone.call("getNextFireEvent");
+        assertEquals(30, assigned.getLitres());
+        assertEquals(1, scheduler.getNumEvents());
+
+        // The drone put some water on the fire, then switched to an event near its path
+        assigned.removeLitres(12);
+        drone.call("requeueFireEvent", assigned);
+        FireEvent requeued = (FireEvent) drone.call("getNextFireEvent");
+        assertEquals(11, requeued.getZoneId());
+        assertEquals(18, requeued.getLitres());
+        assertEquals(1, scheduler.getNumEvents());
+        drone.close();
+    }
+
+    @Test
+    public void testHeartbeatsUpdateFleet() throws Exception {
+        Scheduler scheduler = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 2, 328, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler", scheduler);
+        RpcClient drone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_DRONE, 7);
+
+        drone.call("heartbeat", 120, -40, DroneSubsystem.DroneState.ON_ROUTE.ordinal(), 1500.0, 14);
+        FleetRegistry fleet = scheduler.getFleet();
+        assertEquals(DroneSubsystem.DroneState.ON_ROUTE, fleet.getState(7));
+        assertEquals(120, fleet.getX(7));
+        assertEquals(-40, fleet.getY(7));
+        assertEquals(1500.0, fleet.getBatteryLife(7));
+        assertEquals(-1, fleet.nearestIdle(0, 0, 0, 0));
+
+        drone.call("heartbeat", 0, 0, DroneSubsystem.DroneState.IDLE.ordinal(), 1800.0, 14);
+        assertEquals(7, fleet.nearestIdle(0, 0, 0, 0));
+        drone.close();
+    }
+
+    @Test
+    public void testFlightLegStandsInForPositionUpdates() throws Exception {
+        Scheduler scheduler = new Scheduler("missing_zone_file.csv", "missing_event_file.csv", 1, 329, new MapUI(), new MetricsLogger());
+        SimulationThreads.startDaemon("Scheduler", scheduler);
+        RpcClient drone = new RpcClient(new DatagramSocket(), InetAddress.getLocalHost(), scheduler.getPort(), WireProtocol.SENDER_DRONE, 8);
+        FleetRegistry fleet = scheduler.getFleet();
+
+        // A 100-second leg along the x axis at 10 m/s, published once
+        double departure = SimulationClock.get().currentTimeMillis();
+        drone.call("flightLeg", 0, 0, 0, 1000, 0, departure, 100.0,
+                DroneSubsystem.DroneState.RETURNING.ordinal(), 1500.0, 14, false);
+        assertEquals(DroneSubsystem.DroneState.RETURNING, fleet.getState(8));
+        Thread.sleep(1000);
+        assertTrue(fleet.getX(8) >= 10 && fleet.getX(8) < 100, "The registry works the position out from the leg: " + fleet.getX(8));
+        assertEquals(0, fleet.getY(8));
+        assertTrue(fleet.getBatteryLife(8) <= 1499.0);
+
+        // The drone strayed; its correction starts where it really is
+        drone.call("flightLeg", 0, 300, 50, 1000, 0, (double) SimulationClock.get().currentTimeMillis(), 70.0,
+                DroneSubsystem.DroneState.RETURNING.ordinal(), 1490.0, 14, true);
+        assertTrue(fleet.getX(8) >= 300 && fleet.getX(8) < 320);
+        assertTrue(fleet.getY(8) > 40);
+
+        drone.call("heartbeat", 1000, 0, DroneSubsystem.DroneState.IDLE.ordinal(), 1800.0, 14);
+        assertNull(fleet.getFlightLeg(8));
+        assertEquals(1000, fleet.getX(8));
+        drone.close();
+    }
+}
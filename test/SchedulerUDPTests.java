@@ -1,7 +1,7 @@
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
-import java.io.*;
+import java.io.IOException;
 import java.net.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -49,11 +49,10 @@ public class SchedulerUDPTests {
             droneSocket.receive(packet);
 
             // Obtain the data from the packet
-            ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(packet.getData(), 0, packet.getLength()));
-            Object data = objectInputStream.readObject();
+            Object data = WireProtocol.decode(packet.getData(), 0, packet.getLength()).getValue();
 
             assertEquals("TEST", data);
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
@@ -70,11 +69,10 @@ public class SchedulerUDPTests {
             fisSocket.receive(packet);
 
             // Obtain the data from the packet
-            ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(packet.getData(), 0, packet.getLength()));
-            Object data = objectInputStream.readObject();
+            Object data = WireProtocol.decode(packet.getData(), 0, packet.getLength()).getValue();
 
             assertEquals("TEST", data);
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
@@ -0,0 +1,143 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulationClockTest {
+
+    // Each participant registers, then waits for the rest, so time cannot move on before they have all joined
+    private static Thread participant(SimulationClock clock, CountDownLatch registered, Runnable body) {
+        Thread thread = new Thread(() -> {
+            clock.register();
+            try {
+                registered.countDown();
+                registered.await();
+                body.run();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                clock.deregister();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void sleep(SimulationClock clock, long millis) {
+        try {
+            clock.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testRealTimeRunsAtItsSpeed() throws InterruptedException {
+        SimulationClock clock = SimulationClock.realTime(20);
+        long simulatedStart = clock.currentTimeMillis();
+        long wallStart = System.nanoTime();
+        clock.sleep(2000);
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart);
+        assertTrue(wallMillis >= 90 && wallMillis < 1000, "Two simulated seconds took " + wallMillis + " ms");
+        assertTrue(clock.currentTimeMillis() - simulatedStart >= 1800);
+        assertThrows(IllegalArgumentException.class, () -> SimulationClock.realTime(0));
+    }
+
+    @Test
+    public void testDiscreteEventInterleavesSleepersInTimeOrder() throws InterruptedException {
+        SimulationClock clock = SimulationClock.discreteEvent();
+        List<String> log = new CopyOnWriteArrayList<>();
+        CountDownLatch registered = new CountDownLatch(2);
+        long wallStart = System.nanoTime();
+        // A day's worth of one-second steps for two drones
+        Thread slow = participant(clock, registered, () -> {
+            for (int i = 0; i < 3600; i++) sleep(clock, 20_000);
+            log.add("slow@" + clock.currentTimeMillis());
+        });
+        Thread fast = participant(clock, registered, () -> {
+            for (int i = 0; i < 3600; i++) sleep(clock, 10_000);
+            log.add("fast@" + clock.currentTimeMillis());
+        });
+        slow.join(10_000);
+        fast.join(10_000);
+        assertEquals(List.of("fast@36000000", "slow@72000000"), log);
+        assertEquals(72_000_000, clock.currentTimeMillis());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart) < 10_000);
+    }
+
+    @Test
+    public void testIdleParticipantDoesNotHoldTimeBack() throws InterruptedException {
+        SimulationClock clock = SimulationClock.discreteEvent();
+        CountDownLatch registered = new CountDownLatch(2);
+        CountDownLatch work = new CountDownLatch(1);
+        long[] wokeAt = new long[1];
+        Thread waiting = participant(clock, registered, () -> clock.idle(() -> {
+            try {
+                return work.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }));
+        Thread flying = participant(clock, registered, () -> {
+            sleep(clock, 60_000);
+            wokeAt[0] = clock.currentTimeMillis();
+            work.countDown();
+        });
+        flying.join(5000);
+        assertFalse(flying.isAlive(), "The flying drone must not wait for the idle one.");
+        assertEquals(60_000, wokeAt[0]);
+        waiting.join(5000);
+    }
+
+    @Test
+    public void testScheduledTaskFiresAtItsTimeUnlessCancelled() throws Exception {
+        SimulationClock clock = SimulationClock.discreteEvent();
+        CountDownLatch fired = new CountDownLatch(1);
+        long[] firedAt = new long[1];
+        AtomicBoolean cancelledRan = new AtomicBoolean();
+        clock.register(); // This thread stands in for a drone
+        Future<?> cancelled = clock.schedule("cancelled", () -> cancelledRan.set(true), 1000);
+        clock.schedule("timer", () -> {
+            firedAt[0] = clock.currentTimeMillis();
+            fired.countDown();
+        }, 5000);
+        cancelled.cancel(false);
+        clock.sleep(9000);
+        clock.deregister();
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(firedAt[0] >= 5000);
+        assertFalse(cancelledRan.get(), "A cancelled task must not run.");
+        assertEquals(9000, clock.currentTimeMillis());
+    }
+
+    @Test
+    public void testTimeWaitsForARunningTask() throws Exception {
+        SimulationClock clock = SimulationClock.discreteEvent();
+        List<Long> seen = new CopyOnWriteArrayList<>();
+        AtomicBoolean finished = new AtomicBoolean();
+        clock.register(); // This thread stands in for a drone
+        clock.schedule("slow timer", () -> {
+            seen.add(clock.currentTimeMillis());
+            try {
+                Thread.sleep(200); // Work that takes wall-clock time, not simulated time
+                seen.add(clock.currentTimeMillis());
+                clock.sleep(500); // A task waiting on the clock lets time move on
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            seen.add(clock.currentTimeMillis());
+            finished.set(true);
+        }, 1000);
+        clock.sleep(5000);
+        assertTrue(finished.get(), "Time must not pass the task while it runs.");
+        assertEquals(List.of(1000L, 1000L, 1500L), seen);
+        assertEquals(5000, clock.currentTimeMillis());
+        clock.deregister();
+    }
+}
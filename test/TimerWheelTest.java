@@ -0,0 +1,101 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimerWheelTest {
+
+    @Test
+    public void testTasksFireInDeadlineOrderAndNeverEarly() throws InterruptedException {
+        TimerWheel wheel = TimerWheel.start("Test-Wheel", 5, 8);
+        try {
+            List<String> fired = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(3);
+            long start = System.nanoTime();
+            long[] late = new long[1];
+            // The last one waits out several turns of a 40 ms wheel
+            wheel.schedule(() -> { fired.add("300"); late[0] = System.nanoTime(); done.countDown(); }, 300);
+            wheel.schedule(() -> { fired.add("20"); done.countDown(); }, 20);
+            wheel.schedule(() -> { fired.add("100"); done.countDown(); }, 100);
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of("20", "100", "300"), fired);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(late[0] - start) >= 300, "A task must not fire before its delay.");
+            assertEquals(0, wheel.pendingTimeouts());
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    public void testCancelledTaskDoesNotRun() throws Exception {
+        TimerWheel wheel = TimerWheel.start("Test-Wheel", 5, 64);
+        try {
+            AtomicInteger ran = new AtomicInteger();
+            Future<?> cancelled = wheel.schedule(ran::incrementAndGet, 50);
+            Future<?> kept = wheel.schedule(ran::incrementAndGet, 50);
+            assertTrue(cancelled.cancel(false));
+            assertFalse(cancelled.cancel(false), "A task can only be cancelled once.");
+            kept.get(5, TimeUnit.SECONDS);
+            Thread.sleep(50);
+            assertEquals(1, ran.get());
+            assertTrue(cancelled.isCancelled());
+            assertFalse(kept.cancel(false), "A task that has fired cannot be cancelled.");
+            assertEquals(0, wheel.pendingTimeouts());
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    public void testRunnerStartsTheTaskElsewhere() throws Exception {
+        TimerWheel wheel = TimerWheel.start("Test-Wheel", 5, 64);
+        try {
+            String[] ranOn = new String[1];
+            Future<?> timeout = wheel.schedule(() -> ranOn[0] = Thread.currentThread().getName(), 10,
+                    task -> SimulationThreads.startDaemon("Fired-Task", task));
+            timeout.get(5, TimeUnit.SECONDS);
+            assertEquals("Fired-Task", ranOn[0]);
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    public void testManyTimeoutsAreCheapToAddAndCancel() {
+        // Turned by hand, so what fires depends only on the clock the wheel is given
+        AtomicLong now = new AtomicLong();
+        TimerWheel wheel = new TimerWheel(10, 512, now::get);
+        // A fault timeout per drone for a large fleet, nearly all cancelled when the drones arrive
+        int fleet = 200_000;
+        AtomicInteger fired = new AtomicInteger();
+        List<Future<?>> timeouts = new ArrayList<>(fleet);
+        long start = System.nanoTime();
+        for (int i = 0; i < fleet; i++) timeouts.add(wheel.schedule(fired::incrementAndGet, 200 + i % 5000));
+        for (int i = 100; i < fleet; i++) timeouts.get(i).cancel(false);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed < 2000, "Adding and cancelling took " + elapsed + " ms");
+
+        now.set(TimeUnit.MILLISECONDS.toNanos(199));
+        wheel.advance();
+        assertEquals(0, fired.get(), "A task must not fire before its delay.");
+        // The tasks due from 200 to 209 ms fire together at the end of that tick
+        now.set(TimeUnit.MILLISECONDS.toNanos(210));
+        wheel.advance();
+        assertEquals(10, fired.get());
+        now.set(TimeUnit.MILLISECONDS.toNanos(5300));
+        wheel.advance();
+        assertEquals(100, fired.get());
+        assertEquals(0, wheel.pendingTimeouts());
+        TimerWheel running = TimerWheel.start("Test-Wheel", 10, 8);
+        assertThrows(IllegalStateException.class, running::advance, "A started wheel is turned by its own thread.");
+        running.stop();
+    }
+}
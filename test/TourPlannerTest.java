@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TourPlannerTest {
+    private static final double SPEED = 18;
+
+    private static FireEvent event(Zone zone, int litres) {
+        FireEvent event = new FireEvent("12:00:00", zone.getId(), "FIRE_DETECTED", "LOW", "NONE",
+                zone, 0, FireEvent.FireEventState.ACTIVE);
+        event.setLitres(litres);
+        return event;
+    }
+
+    private static Zone zoneAt(int id, int centerX, int centerY) {
+        return new Zone(id, centerX - 50, centerY - 50, centerX + 50, centerY + 50);
+    }
+
+    @Test
+    public void testMatrixMatchesStraightLines() {
+        Zone a = zoneAt(1, 500, 0), b = zoneAt(2, 500, 1200);
+        TourPlanner planner = new TourPlanner(List.of(a, b), SPEED, 2);
+        assertEquals(1200 / SPEED, planner.travelTime(a, b), 1e-9);
+        assertEquals(Math.hypot(500, 1200) / SPEED, planner.travelTimeHome(b), 1e-9);
+        // A zone the planner was not built with is timed directly
+        Zone other = zoneAt(9, 500, 600);
+        assertEquals(600 / SPEED, planner.travelTime(a, other), 1e-9);
+    }
+
+    @Test
+    public void testFillsTheTankBeforeFlyingHome() {
+        Zone here = zoneAt(1, 2000, 0), near = zoneAt(2, 2100, 0), nearToo = zoneAt(3, 2000, 150), far = zoneAt(4, 4000, 3000);
+        TourPlanner planner = new TourPlanner(List.of(here, near, nearToo, far), SPEED, 2);
+        FireEvent small = event(near, 7), smallToo = event(nearToo, 7), big = event(far, 14);
+
+        List<FireEvent> tour = planner.plan(2000, 0, 1800, 14, List.of(big, small, smallToo));
+        assertEquals(2, tour.size(), "Two nearby stops deliver the tank for far less flying than the distant one.");
+        assertTrue(tour.containsAll(List.of(small, smallToo)));
+    }
+
+    @Test
+    public void testRespectsBatteryAndTank() {
+        Zone here = zoneAt(1, 0, 0), far = zoneAt(2, 10_000, 0), a = zoneAt(3, 300, 0), b = zoneAt(4, 600, 0);
+        TourPlanner planner = new TourPlanner(List.of(here, far, a, b), SPEED, 2);
+        assertTrue(planner.plan(0, 0, 1000, 14, List.of(event(far, 10))).isEmpty(), "No battery to get there and back.");
+        assertTrue(planner.plan(0, 0, 1800, 0, List.of(event(a, 10))).isEmpty(), "Nothing left to drop.");
+
+        // The first stop takes the whole tank, so a second would be arriving empty
+        List<FireEvent> tour = planner.plan(0, 0, 1800, 10, List.of(event(a, 10), event(b, 10)));
+        assertEquals(1, tour.size());
+    }
+
+    @Test
+    public void testOrderIsNoLongerThanAnyOtherWithTheSameStops() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 50; trial++) {
+            List<Zone> zones = new ArrayList<>();
+            List<FireEvent> candidates = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                Zone zone = zoneAt(i, random.nextInt(3000), random.nextInt(3000));
+                zones.add(zone);
+                candidates.add(event(zone, 1 + random.nextInt(4)));
+            }
+            TourPlanner planner = new TourPlanner(zones, SPEED, 2);
+            int x = random.nextInt(3000), y = random.nextInt(3000);
+            List<FireEvent> tour = planner.plan(x, y, 1800, 14, candidates);
+            assertFalse(tour.isEmpty());
+            double time = planner.tourTime(x, y, tour, 14);
+            assertTrue(time < 1800);
+            int litres = 0;
+            for (FireEvent event : tour) litres += event.getLitres();
+            assertTrue(litres - tour.get(tour.size() - 1).getLitres() < 14, "Every stop but the last leaves agent in the tank.");
+
+            // No reversal of a stretch of the tour is shorter
+            for (int i = 0; i < tour.size(); i++) {
+                for (int j = i + 1; j < tour.size(); j++) {
+                    List<FireEvent> reordered = new ArrayList<>(tour);
+                    Collections.reverse(reordered.subList(i, j + 1));
+                    double other = planner.tourTime(x, y, reordered, 14);
+                    int otherLitres = 0, left = 14;
+                    for (FireEvent event : reordered) {
+                        int dropped = Math.min(event.getLitres(), left);
+                        otherLitres += dropped;
+                        left -= dropped;
+                    }
+                    if (otherLitres >= Math.min(litres, 14)) assertTrue(other >= time - 1e-9);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import org.junit.jupiter.api.Test;
+
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WireProtocolTest {
+
+    @Test
+    public void testRequestRoundTrip() throws ProtocolException {
+        byte[] data = WireProtocol.encodeRequest("calculateTravelTime", WireProtocol.SENDER_DRONE, 7, 42, 100, 250);
+        WireProtocol.Message message = WireProtocol.decode(data, 0, data.length);
+
+        assertFalse(message.isResponse());
+        assertEquals("calculateTravelTime", message.getMethodName());
+        assertEquals(WireProtocol.SENDER_DRONE, message.getSenderType());
+        assertEquals(7, message.getSenderId());
+        assertEquals(42, message.getCorrelationId());
+        assertEquals(Arrays.asList(100, 250), message.getArgs());
+    }
+
+    @Test
+    public void testFireEventRoundTrip() throws ProtocolException {
+        FireEvent event = new FireEvent("14:03:15", 3, "FIRE_DETECTED", "HIGH", "NOZZLE",
+                new Zone(3, 300, 0, 1000, 450), 30, FireEvent.FireEventState.ACTIVE);
+        byte[] data = WireProtocol.encodeResponse(WireProtocol.SENDER_SCHEDULER, 0, 1, event);
+        FireEvent decoded = (FireEvent) WireProtocol.decode(data, 0, data.length).getValue();
+
+        assertTrue(data.length < 64, "Fire event response should only be a few dozen bytes.");
+        assertEquals(event.getTime(), decoded.getTime());
+        assertEquals(event.getZoneId(), decoded.getZoneId());
+        assertEquals(event.getSeverity(), decoded.getSeverity());
+        assertEquals(event.getFault(), decoded.getFault());
+        assertEquals(event.getLitres(), decoded.getLitres());
+        assertEquals(event.getZone(), decoded.getZone());
+        assertEquals(650, decoded.getZone().getCenterX());
+        assertEquals(FireEvent.FireEventState.ACTIVE, decoded.getCurrentState());
+        assertEquals(14 * 3600 + 3 * 60 + 15, decoded.getSecondOfDay());
+    }
+
+    @Test
+    public void testOnlyHoursMinutesAndSecondsHaveASecondOfDay() {
+        assertEquals(0, new FireEvent("00:00:00", 1, "FIRE_DETECTED", "LOW", "NONE", null).getSecondOfDay());
+        assertEquals(86399, new FireEvent("23:59:59", 1, "FIRE_DETECTED", "LOW", "NONE", null).getSecondOfDay());
+        for (String time : new String[]{"12:00", "24:00:00", "12:60:00", "1a:00:00", "12-00-00", null}) {
+            assertEquals(-1, new FireEvent(time, 1, "FIRE_DETECTED", "LOW", "NONE", null).getSecondOfDay(), time);
+        }
+    }
+
+    @Test
+    public void testUncodedFieldsSurvive() throws ProtocolException {
+        FireEvent event = new FireEvent("12:00", 1, "FIRE_DETECTED", "EXTREME", "NONE", null);
+        byte[] data = WireProtocol.encodeResponse(WireProtocol.SENDER_SCHEDULER, 0, 0, event);
+        FireEvent decoded = (FireEvent) WireProtocol.decode(data, 0, data.length).getValue();
+
+        assertEquals("12:00", decoded.getTime());
+        assertEquals("EXTREME", decoded.getSeverity());
+        assertNull(decoded.getZone());
+    }
+
+    @Test
+    public void testEveryKnownMethodHasOpcode() {
+        for (String method : new String[]{"ADD_FIRE_EVENT", "SET_EVENTS_LOADED", "flightLeg",
+                "calculateDistanceToHomeBase", "getNextFireEvent", "calculateTravelTime", "updateFireStatus",
+                "getAdditionalFireEvent", "handleDroneFault", "STOP_?", "REASSIGN", "ADD_FIRE_EVENTS",
+                "STEAL_EVENT", "heartbeat", "requeueFireEvent"}) {
+            assertEquals(method, WireProtocol.methodName(WireProtocol.opcodeFor(method)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> WireProtocol.opcodeFor("testMethod"));
+    }
+
+    @Test
+    public void testRejectsMalformedDatagrams() {
+        byte[] data = WireProtocol.encodeResponse(WireProtocol.SENDER_SCHEDULER, 0, 0, 5);
+        assertThrows(ProtocolException.class, () -> WireProtocol.decode(data, 0, data.length - 1));
+        data[0] = 99;
+        assertThrows(ProtocolException.class, () -> WireProtocol.decode(data, 0, data.length));
+    }
+
+    @Test
+    public void testBatchFillsOneDatagram() throws ProtocolException {
+        List<FireEvent> events = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            events.add(new FireEvent("14:03:15", i, "FIRE_DETECTED", "LOW", "NONE",
+                    new Zone(i, 0, 0, 700, 600), 10, FireEvent.FireEventState.ACTIVE));
+        }
+        int count = WireProtocol.countFitting(events, 0);
+        byte[] data = WireProtocol.encodeRequest("ADD_FIRE_EVENTS", WireProtocol.SENDER_ZONE, 1, 1,
+                events.subList(0, count).toArray());
+        WireProtocol.Message message = WireProtocol.decode(data, 0, data.length);
+
+        assertTrue(count > 1 && count < events.size());
+        assertTrue(data.length <= WireProtocol.MAX_DATAGRAM_SIZE);
+        assertEquals(count, message.getArgs().size());
+        assertEquals(count - 1, ((FireEvent) message.getArgs().get(count - 1)).getZoneId());
+    }
+}
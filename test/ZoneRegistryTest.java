@@ -0,0 +1,30 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZoneRegistryTest {
+
+    @Test
+    public void testGeometryIsPrecomputed() {
+        Zone zone = new Zone(2, 0, 0, 700, 601);
+        assertEquals(350, zone.getCenterX());
+        assertEquals(300, zone.getCenterY());
+        assertEquals(Math.sqrt(350 * 350 + 300 * 300), zone.getDistanceToHomeBase(), 1e-9);
+        assertEquals(500, zone.distanceFrom(650, 700), 1e-9);
+    }
+
+    @Test
+    public void testZonesAreLookedUpById() {
+        ZoneRegistry registry = new ZoneRegistry();
+        Zone far = new Zone(40, 100, 100, 200, 200);
+        registry.register(new Zone(1, 0, 0, 100, 100));
+        registry.register(far);
+
+        assertSame(far, registry.get(40));
+        assertNull(registry.get(2));
+        assertNull(registry.get(-1));
+        assertEquals(2, registry.getZones().size());
+        assertEquals(1, registry.getZones().get(0).getId());
+        assertThrows(IllegalArgumentException.class, () -> registry.register(new Zone(-3, 0, 0, 1, 1)));
+    }
+}